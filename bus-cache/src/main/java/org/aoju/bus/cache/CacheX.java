@@ -84,4 +84,28 @@ public interface CacheX {
      */
     void clear();
 
+    /**
+     * 尝试获取分布式锁,用于多个节点之间合并同一个键的回源请求
+     * 锁的值为持有者的凭证,释放时只删除凭证一致的锁,避免删除锁过期后其它节点获得的锁
+     * 默认不支持分布式锁,直接返回{@code true}
+     *
+     * @param key    锁的键
+     * @param token  持有者凭证,每次加锁唯一
+     * @param expire 锁的持有时长,单位毫秒
+     * @return 是否获得锁
+     */
+    default boolean tryLock(String key, String token, long expire) {
+        return true;
+    }
+
+    /**
+     * 释放{@link #tryLock(String, String, long)}获得的锁,锁已被其它持有者获得时不做处理
+     *
+     * @param key   锁的键
+     * @param token 加锁时的凭证
+     */
+    default void unlock(String key, String token) {
+
+    }
+
 }
@@ -39,18 +39,46 @@ public class Context {
     // 缓存分组命中率统计
     private Hitting hitting;
 
+    // 缓存指标采集
+    private Metrics metrics;
+
+    // 读缓存日志的采样间隔, 每N次读取输出一条debug日志, 0为关闭
+    private int logSample;
+
     // 是否开启Cache(全局开关)
     private Switch cache;
 
     // 是否开启缓存防击穿
     private Switch prevent;
 
+    // 是否合并同一个键的并发回源请求
+    private Switch singleFlight;
+
+    // 是否通过缓存实现的分布式锁合并跨节点的回源请求
+    private Switch distributed;
+
+    // 分布式锁的持有时长(毫秒), 超时后等待方自行回源
+    private long lockExpire;
+
+    // 是否在缓存过期前概率性提前刷新
+    private Switch refreshAhead;
+
+    // 提前刷新的激进程度, 越大越早刷新
+    private double refreshBeta;
+
     public static Context newConfig(Map<String, CacheX> caches) {
         Context config = new Context();
         config.caches = caches;
         config.cache = Switch.ON;
         config.prevent = Switch.OFF;
+        config.singleFlight = Switch.ON;
+        config.distributed = Switch.OFF;
+        config.lockExpire = 3000;
+        config.refreshAhead = Switch.OFF;
+        config.refreshBeta = 1.0;
         config.hitting = null;
+        config.metrics = null;
+        config.logSample = 0;
         return config;
     }
 
@@ -58,6 +86,18 @@ public class Context {
         return prevent != null && prevent == Switch.ON;
     }
 
+    public boolean isSingleFlightOn() {
+        return singleFlight != null && singleFlight == Switch.ON;
+    }
+
+    public boolean isDistributedOn() {
+        return distributed != null && distributed == Switch.ON;
+    }
+
+    public boolean isRefreshAheadOn() {
+        return refreshAhead != null && refreshAhead == Switch.ON && refreshBeta > 0;
+    }
+
     public Map<String, CacheX> getCaches() {
         return caches;
     }
@@ -74,6 +114,22 @@ public class Context {
         this.hitting = hitting;
     }
 
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public int getLogSample() {
+        return logSample;
+    }
+
+    public void setLogSample(int logSample) {
+        this.logSample = logSample;
+    }
+
     public Switch getCache() {
         return cache;
     }
@@ -90,6 +146,46 @@ public class Context {
         this.prevent = prevent;
     }
 
+    public Switch getSingleFlight() {
+        return singleFlight;
+    }
+
+    public void setSingleFlight(Switch singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    public Switch getDistributed() {
+        return distributed;
+    }
+
+    public void setDistributed(Switch distributed) {
+        this.distributed = distributed;
+    }
+
+    public long getLockExpire() {
+        return lockExpire;
+    }
+
+    public void setLockExpire(long lockExpire) {
+        this.lockExpire = lockExpire;
+    }
+
+    public Switch getRefreshAhead() {
+        return refreshAhead;
+    }
+
+    public void setRefreshAhead(Switch refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    public double getRefreshBeta() {
+        return refreshBeta;
+    }
+
+    public void setRefreshBeta(double refreshBeta) {
+        this.refreshBeta = refreshBeta;
+    }
+
     public enum Switch {
         ON,
         OFF
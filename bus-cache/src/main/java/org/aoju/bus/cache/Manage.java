@@ -160,6 +160,26 @@ public class Manage {
         }
     }
 
+    /**
+     * 获取分布式锁,缓存不可用时视为未获得锁
+     */
+    public boolean tryLock(String cache, String key, String token, long expire) {
+        try {
+            return getCacheImpl(cache).getRight().tryLock(key, token, expire);
+        } catch (Throwable e) {
+            Logger.error("lock cache failed, key: {} ", key, e);
+            return false;
+        }
+    }
+
+    public void unlock(String cache, String key, String token) {
+        try {
+            getCacheImpl(cache).getRight().unlock(key, token);
+        } catch (Throwable e) {
+            Logger.error("unlock cache failed, key: {} ", key, e);
+        }
+    }
+
     private CachePair<String, CacheX> getCacheImpl(String cacheName) {
         if (StringKit.isEmpty(cacheName)) {
             return defaultCache;
@@ -0,0 +1,65 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache;
+
+/**
+ * 缓存指标采集接口
+ * 读缓存的热路径上调用,实现需保证线程安全且不阻塞
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public interface Metrics {
+
+    /**
+     * 记录命中
+     *
+     * @param cache   缓存名称
+     * @param pattern 分组模板
+     * @param count   命中的键数
+     */
+    void hit(String cache, String pattern, int count);
+
+    /**
+     * 记录未命中
+     *
+     * @param cache   缓存名称
+     * @param pattern 分组模板
+     * @param count   未命中的键数
+     */
+    void miss(String cache, String pattern, int count);
+
+    /**
+     * 记录一次回源
+     *
+     * @param cache   缓存名称
+     * @param pattern 分组模板
+     * @param nanos   回源耗时(纳秒)
+     * @param success 是否成功返回
+     */
+    void load(String cache, String pattern, long nanos, boolean success);
+
+}
@@ -80,6 +80,10 @@ public class Module extends AbstractModule {
         Optional.ofNullable(config.getHitting())
                 .ifPresent(mxBean -> bind(Hitting.class).toInstance(mxBean));
 
+        // bind metrics
+        Optional.ofNullable(config.getMetrics())
+                .ifPresent(metrics -> bind(Metrics.class).toInstance(metrics));
+
         bind(AbstractReader.class).annotatedWith(Names.named("singleCacheReader")).to(SingleCacheReader.class);
         bind(AbstractReader.class).annotatedWith(Names.named("multiCacheReader")).to(MultiCacheReader.class);
     }
@@ -24,9 +24,16 @@
  ********************************************************************************/
 package org.aoju.bus.cache.magic;
 
+import org.aoju.bus.cache.Context;
+import org.aoju.bus.cache.Hitting;
+import org.aoju.bus.cache.Metrics;
+import org.aoju.bus.cache.support.PatternGenerator;
+import org.aoju.bus.core.annotation.Inject;
 import org.aoju.bus.logger.Logger;
 import org.aoju.bus.proxy.invoker.ProxyChain;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * @author Kimi Liu
  * @version 6.1.1
@@ -34,17 +41,59 @@ import org.aoju.bus.proxy.invoker.ProxyChain;
  */
 public abstract class AbstractReader {
 
+    @Inject
+    protected Context config;
+
+    @Inject(optional = true)
+    protected Hitting baseHitting;
+
+    @Inject(optional = true)
+    protected Metrics metrics;
+
     public abstract Object read(AnnoHolder annoHolder,
                                 MethodHolder methodHolder,
                                 ProxyChain baseInvoker,
                                 boolean needWrite) throws Throwable;
 
-    Object doLogInvoke(ThrowableSupplier<Object> throwableSupplier) throws Throwable {
-        long start = System.currentTimeMillis();
+    Object doLogInvoke(AnnoHolder annoHolder, ThrowableSupplier<Object> throwableSupplier) throws Throwable {
+        long start = System.nanoTime();
+        boolean success = false;
         try {
-            return throwableSupplier.get();
+            Object result = throwableSupplier.get();
+            success = true;
+            return result;
         } finally {
-            Logger.debug("method invoke total cost [{}] ms", (System.currentTimeMillis() - start));
+            if (this.metrics != null) {
+                this.metrics.load(annoHolder.getCache(), PatternGenerator.generatePattern(annoHolder),
+                        System.nanoTime() - start, success);
+            }
+        }
+    }
+
+    /**
+     * 记录命中情况, 日志按{@link Context#getLogSample()}采样输出
+     *
+     * @param annoHolder 注解信息
+     * @param hitCount   命中的键数
+     * @param missCount  未命中的键数
+     * @param detail     日志中附带的键信息
+     */
+    void doRecord(AnnoHolder annoHolder, int hitCount, int missCount, Object detail) {
+        if (this.baseHitting != null || this.metrics != null) {
+            String pattern = PatternGenerator.generatePattern(annoHolder);
+            if (this.baseHitting != null) {
+                this.baseHitting.hitIncr(pattern, hitCount);
+                this.baseHitting.reqIncr(pattern, hitCount + missCount);
+            }
+            if (this.metrics != null) {
+                this.metrics.hit(annoHolder.getCache(), pattern, hitCount);
+                this.metrics.miss(annoHolder.getCache(), pattern, missCount);
+            }
+        }
+
+        int sample = config.getLogSample();
+        if (sample > 0 && ThreadLocalRandom.current().nextInt(sample) == 0) {
+            Logger.debug("cache hit rate: {}/{}, keys: {}", hitCount, hitCount + missCount, detail);
         }
     }
 
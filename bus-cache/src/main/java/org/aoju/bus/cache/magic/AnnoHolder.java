@@ -25,8 +25,11 @@
 package org.aoju.bus.cache.magic;
 
 import org.aoju.bus.cache.annotation.CacheKey;
+import org.aoju.bus.cache.support.ArgNameGenerator;
+import org.aoju.bus.cache.support.KeyExpression;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -50,6 +53,12 @@ public class AnnoHolder {
 
     private String id;
 
+    // 参数名, multi时末尾追加`i`
+    private String[] argNames;
+
+    // 按@CacheKey顺序预编译的表达式
+    private KeyExpression[] keyExpressions;
+
     private AnnoHolder(Method method,
                        String cache, String prefix, int expire,
                        Map<Integer, CacheKey> cacheKeyMap, int multiIndex, String id) {
@@ -60,6 +69,14 @@ public class AnnoHolder {
         this.cacheKeyMap = cacheKeyMap;
         this.multiIndex = multiIndex;
         this.id = id;
+        this.argNames = ArgNameGenerator.getArgNames(method);
+        if (multiIndex != -1) {
+            this.argNames = Arrays.copyOf(argNames, argNames.length + 1);
+            this.argNames[argNames.length - 1] = "i";
+        }
+        this.keyExpressions = cacheKeyMap.entrySet().stream()
+                .map(entry -> KeyExpression.compile(entry.getKey(), entry.getValue().value(), argNames))
+                .toArray(KeyExpression[]::new);
     }
 
     public Method getMethod() {
@@ -94,6 +111,14 @@ public class AnnoHolder {
         return id;
     }
 
+    public String[] getArgNames() {
+        return argNames;
+    }
+
+    public KeyExpression[] getKeyExpressions() {
+        return keyExpressions;
+    }
+
     public static class Builder {
 
         private Method method;
@@ -24,6 +24,8 @@
  ********************************************************************************/
 package org.aoju.bus.cache.magic;
 
+import java.util.Objects;
+
 /**
  * @author Kimi Liu
  * @version 6.1.1
@@ -52,4 +54,21 @@ public class CachePair<L, R> {
         return right;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CachePair)) {
+            return false;
+        }
+        CachePair<?, ?> that = (CachePair<?, ?>) o;
+        return Objects.equals(left, that.left) && Objects.equals(right, that.right);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(left, right);
+    }
+
 }
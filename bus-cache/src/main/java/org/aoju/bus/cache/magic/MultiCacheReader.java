@@ -24,13 +24,10 @@
  ********************************************************************************/
 package org.aoju.bus.cache.magic;
 
-import org.aoju.bus.cache.Context;
-import org.aoju.bus.cache.Hitting;
 import org.aoju.bus.cache.Manage;
 import org.aoju.bus.cache.support.*;
 import org.aoju.bus.core.annotation.Inject;
 import org.aoju.bus.core.annotation.Singleton;
-import org.aoju.bus.logger.Logger;
 import org.aoju.bus.proxy.invoker.ProxyChain;
 
 import java.util.*;
@@ -47,12 +44,6 @@ public class MultiCacheReader extends AbstractReader {
     @Inject
     private Manage cacheManager;
 
-    @Inject
-    private Context config;
-
-    @Inject(optional = true)
-    private Hitting baseHitting;
-
     private static Map mergeMap(Class<?> resultMapType,
                                 Map proceedEntryValueMap,
                                 Map<String, Object> key2MultiEntry,
@@ -126,7 +117,8 @@ public class MultiCacheReader extends AbstractReader {
         // request cache
         Set<String> keys = key2MultiEntry.keySet();
         CacheKeys cacheKeys = cacheManager.readBatch(annoHolder.getCache(), keys);
-        doRecord(cacheKeys, annoHolder);
+        doRecord(annoHolder, cacheKeys.getHitKeyMap().size(), cacheKeys.getMissKeySet().size(),
+                cacheKeys.getMissKeySet());
 
         Object result;
         // have miss keys : part hit || all not hit
@@ -136,7 +128,7 @@ public class MultiCacheReader extends AbstractReader {
         // no miss keys : all hit || empty key
         else {
             Map<String, Object> keyValueMap = cacheKeys.getHitKeyMap();
-            result = handleFullHit(baseInvoker, keyValueMap, methodHolder, key2MultiEntry);
+            result = handleFullHit(baseInvoker, annoHolder, keyValueMap, methodHolder, key2MultiEntry);
         }
 
         return result;
@@ -154,7 +146,7 @@ public class MultiCacheReader extends AbstractReader {
 
         // 用未命中的keys调用方法
         Object[] missArgs = toMissArgs(missKeys, key2MultiEntry, baseInvoker.getArguments(), annoHolder.getMultiIndex());
-        Object proceed = doLogInvoke(() -> baseInvoker.proceed(missArgs));
+        Object proceed = doLogInvoke(annoHolder, () -> baseInvoker.proceed(missArgs));
 
         Object result;
         if (proceed != null) {
@@ -186,7 +178,7 @@ public class MultiCacheReader extends AbstractReader {
             }
         } else {
             // read as full shooting
-            result = handleFullHit(baseInvoker, hitKeyValueMap, methodHolder, key2MultiEntry);
+            result = handleFullHit(baseInvoker, annoHolder, hitKeyValueMap, methodHolder, key2MultiEntry);
         }
 
         return result;
@@ -208,7 +200,7 @@ public class MultiCacheReader extends AbstractReader {
         return Arrays.asList((Object[]) proceed);
     }
 
-    private Object handleFullHit(ProxyChain baseInvoker, Map<String, Object> keyValueMap,
+    private Object handleFullHit(ProxyChain baseInvoker, AnnoHolder annoHolder, Map<String, Object> keyValueMap,
                                  MethodHolder methodHolder, Map<String, Object> key2Id) throws Throwable {
 
         Object result;
@@ -216,7 +208,7 @@ public class MultiCacheReader extends AbstractReader {
 
         // when method return type not cached. case: full shooting when application restart
         if (returnType == null) {
-            result = doLogInvoke(baseInvoker::proceed);
+            result = doLogInvoke(annoHolder, baseInvoker::proceed);
 
             // catch return type for next time
             if (result != null) {
@@ -249,22 +241,4 @@ public class MultiCacheReader extends AbstractReader {
         return args;
     }
 
-    private void doRecord(CacheKeys cacheKeys, AnnoHolder annoHolder) {
-        Set<String> missKeys = cacheKeys.getMissKeySet();
-
-        // 计数
-        int hitCount = cacheKeys.getHitKeyMap().size();
-        int totalCount = hitCount + missKeys.size();
-        Logger.info("multi cache hit rate: {}/{}, missed keys: {}",
-                hitCount, totalCount, missKeys);
-
-        if (this.baseHitting != null) {
-            // 分组模板
-            String pattern = PatternGenerator.generatePattern(annoHolder);
-
-            this.baseHitting.hitIncr(pattern, hitCount);
-            this.baseHitting.reqIncr(pattern, totalCount);
-        }
-    }
-
 }
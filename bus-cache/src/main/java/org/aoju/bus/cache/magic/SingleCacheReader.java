@@ -24,17 +24,23 @@
  ********************************************************************************/
 package org.aoju.bus.cache.magic;
 
-import org.aoju.bus.cache.Context;
-import org.aoju.bus.cache.Hitting;
 import org.aoju.bus.cache.Manage;
 import org.aoju.bus.cache.support.KeyGenerator;
-import org.aoju.bus.cache.support.PatternGenerator;
 import org.aoju.bus.cache.support.PreventObjects;
 import org.aoju.bus.core.annotation.Inject;
 import org.aoju.bus.core.annotation.Singleton;
-import org.aoju.bus.logger.Logger;
+import org.aoju.bus.core.lang.Symbol;
+import org.aoju.bus.core.map.BoundedConcurrentMap;
 import org.aoju.bus.proxy.invoker.ProxyChain;
 
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author Kimi Liu
  * @version 6.1.1
@@ -43,21 +49,36 @@ import org.aoju.bus.proxy.invoker.ProxyChain;
 @Singleton
 public class SingleCacheReader extends AbstractReader {
 
-    @Inject
-    private Manage cacheManager;
+    /**
+     * 记录提前刷新信息的最大键数
+     */
+    private static final int MAX_REFRESH_KEYS = 10_000;
 
-    @Inject
-    private Context config;
+    /**
+     * 等待其它节点回源时的轮询间隔(毫秒)
+     */
+    private static final long LOCK_POLL_INTERVAL = 50;
+
+    /**
+     * 正在回源的键(按缓存名区分), 同一个键的并发请求等待同一个结果
+     */
+    private final Map<CachePair<String, String>, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
 
-    @Inject(optional = true)
-    private Hitting baseHitting;
+    /**
+     * 键(按缓存名区分)的过期时间与回源耗时, 用于提前刷新
+     */
+    private final Map<CachePair<String, String>, Freshness> freshness = new BoundedConcurrentMap<>(MAX_REFRESH_KEYS);
+
+    @Inject
+    private Manage cacheManager;
 
     @Override
     public Object read(AnnoHolder annoHolder, MethodHolder methodHolder, ProxyChain baseInvoker, boolean needWrite) throws Throwable {
         String key = KeyGenerator.generateSingleKey(annoHolder, baseInvoker.getArguments());
         Object readResult = cacheManager.readSingle(annoHolder.getCache(), key);
+        CachePair<String, String> flightKey = CachePair.of(annoHolder.getCache(), key);
 
-        doRecord(readResult, key, annoHolder);
+        doRecord(annoHolder, readResult == null ? 0 : 1, readResult == null ? 1 : 0, key);
         // 命中
         if (readResult != null) {
             // 是放击穿对象
@@ -65,10 +86,69 @@ public class SingleCacheReader extends AbstractReader {
                 return null;
             }
 
+            if (needWrite && shouldRefresh(flightKey)) {
+                return refresh(flightKey, readResult, annoHolder, methodHolder, baseInvoker);
+            }
+
             return readResult;
         }
 
-        Object invokeResult = doLogInvoke(baseInvoker::proceed);
+        if (!config.isSingleFlightOn()) {
+            return doLoad(key, annoHolder, methodHolder, baseInvoker, needWrite);
+        }
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> leader = loading.putIfAbsent(flightKey, future);
+        if (leader != null) {
+            return await(leader);
+        }
+        try {
+            Object result = doLoad(key, annoHolder, methodHolder, baseInvoker, needWrite);
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(flightKey, future);
+        }
+    }
+
+    /**
+     * 回源并写入缓存, 开启分布式合并时只有获得锁的节点回源,
+     * 其它节点在锁有效期内轮询缓存, 超时后再自行回源
+     */
+    private Object doLoad(String key, AnnoHolder annoHolder, MethodHolder methodHolder, ProxyChain baseInvoker, boolean needWrite) throws Throwable {
+        if (!needWrite || !config.isDistributedOn()) {
+            return invokeAndWrite(key, annoHolder, methodHolder, baseInvoker, needWrite);
+        }
+
+        String lockKey = key + Symbol.COLON + "lock";
+        String token = UUID.randomUUID().toString();
+        long lockExpire = config.getLockExpire();
+        if (cacheManager.tryLock(annoHolder.getCache(), lockKey, token, lockExpire)) {
+            try {
+                return invokeAndWrite(key, annoHolder, methodHolder, baseInvoker, true);
+            } finally {
+                cacheManager.unlock(annoHolder.getCache(), lockKey, token);
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lockExpire);
+        while (System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(LOCK_POLL_INTERVAL);
+            Object readResult = cacheManager.readSingle(annoHolder.getCache(), key);
+            if (readResult != null) {
+                return PreventObjects.isPrevent(readResult) ? null : readResult;
+            }
+        }
+        return invokeAndWrite(key, annoHolder, methodHolder, baseInvoker, true);
+    }
+
+    private Object invokeAndWrite(String key, AnnoHolder annoHolder, MethodHolder methodHolder, ProxyChain baseInvoker, boolean needWrite) throws Throwable {
+        long start = System.currentTimeMillis();
+        Object invokeResult = doLogInvoke(annoHolder, baseInvoker::proceed);
+        long cost = System.currentTimeMillis() - start;
         if (invokeResult != null && methodHolder.getInnerReturnType() == null) {
             methodHolder.setInnerReturnType(invokeResult.getClass());
         }
@@ -79,6 +159,7 @@ public class SingleCacheReader extends AbstractReader {
 
         if (invokeResult != null) {
             cacheManager.writeSingle(annoHolder.getCache(), key, invokeResult, annoHolder.getExpire());
+            recordFreshness(CachePair.of(annoHolder.getCache(), key), annoHolder.getExpire(), start + cost, cost);
             return invokeResult;
         }
 
@@ -89,15 +170,66 @@ public class SingleCacheReader extends AbstractReader {
         return null;
     }
 
-    private void doRecord(Object result, String key, AnnoHolder annoHolder) {
-        Logger.info("single cache hit rate: {}/1, key: {}", result == null ? 0 : 1, key);
-        if (this.baseHitting != null) {
-            String pattern = PatternGenerator.generatePattern(annoHolder);
+    /**
+     * 概率性提前过期(XFetch): 越接近过期、回源越慢, 提前刷新的概率越高
+     */
+    private boolean shouldRefresh(CachePair<String, String> flightKey) {
+        if (!config.isRefreshAheadOn()) {
+            return false;
+        }
+        Freshness current = freshness.get(flightKey);
+        if (current == null) {
+            return false;
+        }
+        double gap = current.delta * config.getRefreshBeta() * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() - gap >= current.expireAt;
+    }
 
-            if (result != null) {
-                this.baseHitting.hitIncr(pattern, 1);
-            }
-            this.baseHitting.reqIncr(pattern, 1);
+    /**
+     * 提前刷新, 同一时刻只有一个线程回源, 其它线程直接返回旧值
+     */
+    private Object refresh(CachePair<String, String> flightKey, Object readResult, AnnoHolder annoHolder, MethodHolder methodHolder, ProxyChain baseInvoker) throws Throwable {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (loading.putIfAbsent(flightKey, future) != null) {
+            return readResult;
+        }
+        try {
+            Object result = invokeAndWrite(flightKey.getRight(), annoHolder, methodHolder, baseInvoker, true);
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(flightKey, future);
+        }
+    }
+
+    private void recordFreshness(CachePair<String, String> flightKey, int expire, long writeTime, long cost) {
+        if (config.isRefreshAheadOn() && expire > CacheExpire.FOREVER) {
+            freshness.put(flightKey, new Freshness(writeTime + expire, cost));
+        }
+    }
+
+    private Object await(CompletableFuture<Object> leader) throws Throwable {
+        try {
+            return leader.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class Freshness {
+
+        // 预计过期的时间点
+        private final long expireAt;
+
+        // 上一次回源耗时
+        private final long delta;
+
+        Freshness(long expireAt, long delta) {
+            this.expireAt = expireAt;
+            this.delta = delta;
         }
     }
 
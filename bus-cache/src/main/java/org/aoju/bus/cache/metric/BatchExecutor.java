@@ -0,0 +1,161 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.metric;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * 批量操作的分批与并发执行
+ * 将键按批大小切分,多个批次可在线程池中并发执行,调用线程执行其中一批并等待其余批次完成
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+class BatchExecutor {
+
+    /**
+     * 默认每批的键数
+     */
+    static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final int batchSize;
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param batchSize   每批的键数
+     * @param parallelism 最大并发批次数,不大于1时在调用线程中顺序执行
+     * @param name        线程名前缀
+     */
+    BatchExecutor(int batchSize, int parallelism, String name) {
+        this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        this.parallelism = Math.max(1, parallelism);
+        if (parallelism > 1) {
+            ThreadFactory factory = r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            };
+            this.executor = new ThreadPoolExecutor(parallelism - 1, parallelism - 1,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+            ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * 按批大小切分
+     *
+     * @param items 元素
+     * @param <T>   元素类型
+     * @return 各批次
+     */
+    <T> List<List<T>> partition(List<T> items) {
+        List<List<T>> batches = new ArrayList<>((items.size() + batchSize - 1) / batchSize);
+        for (int i = 0; i < items.size(); i += batchSize) {
+            batches.add(items.subList(i, Math.min(items.size(), i + batchSize)));
+        }
+        return batches;
+    }
+
+    /**
+     * 按批大小切分后再按并发数分组,同一组的批次在一个连接上流水线执行
+     *
+     * @param items 元素
+     * @param <T>   元素类型
+     * @return 各组的批次
+     */
+    <T> List<List<List<T>>> split(List<T> items) {
+        List<List<T>> batches = partition(items);
+        int groups = Math.max(1, Math.min(parallelism, batches.size()));
+        List<List<List<T>>> result = new ArrayList<>(groups);
+        for (int i = 0; i < groups; i++) {
+            result.add(new ArrayList<>());
+        }
+        for (int i = 0; i < batches.size(); i++) {
+            result.get(i % groups).add(batches.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 执行所有任务,任一任务失败时抛出其异常
+     *
+     * @param tasks  任务参数
+     * @param action 任务
+     * @param <T>    参数类型
+     */
+    <T> void execute(List<T> tasks, Consumer<T> action) {
+        if (null == executor || tasks.size() <= 1) {
+            tasks.forEach(action);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(tasks.size() - 1);
+        for (int i = 1; i < tasks.size(); i++) {
+            T task = tasks.get(i);
+            futures.add(executor.submit(() -> action.accept(task)));
+        }
+        RuntimeException failure = null;
+        try {
+            action.accept(tasks.get(0));
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (null == failure) {
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause() : new InstrumentException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (null == failure) {
+                    failure = new InstrumentException(e);
+                }
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+    void shutdown() {
+        if (null != executor) {
+            executor.shutdown();
+        }
+    }
+
+}
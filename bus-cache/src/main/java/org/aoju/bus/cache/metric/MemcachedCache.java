@@ -24,6 +24,7 @@
  ********************************************************************************/
 package org.aoju.bus.cache.metric;
 
+import net.rubyeye.xmemcached.GetsResponse;
 import net.rubyeye.xmemcached.MemcachedClient;
 import net.rubyeye.xmemcached.XMemcachedClientBuilder;
 import net.rubyeye.xmemcached.exception.MemcachedException;
@@ -34,9 +35,7 @@ import org.aoju.bus.cache.serialize.Hessian2Serializer;
 
 import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -54,13 +53,37 @@ public class MemcachedCache implements CacheX {
 
     private BaseSerializer serializer;
 
+    private BatchExecutor batchExecutor;
+
     public MemcachedCache(String ipPorts) throws IOException {
         this(ipPorts, new Hessian2Serializer());
     }
 
     public MemcachedCache(String addressList, BaseSerializer serializer) throws IOException {
-        client = new XMemcachedClientBuilder(addressList).build();
+        this(addressList, serializer, BatchExecutor.DEFAULT_BATCH_SIZE, 1);
+    }
+
+    /**
+     * @param addressList 服务地址
+     * @param serializer  序列化
+     * @param batchSize   批量读取时每条getMulti的键数
+     * @param parallelism 批量读取时最多同时发出的getMulti数
+     * @throws IOException 连接异常
+     */
+    public MemcachedCache(String addressList, BaseSerializer serializer, int batchSize, int parallelism) throws IOException {
+        this.client = new XMemcachedClientBuilder(addressList).build();
         this.serializer = serializer;
+        this.batchExecutor = new BatchExecutor(batchSize, parallelism, "cache:memcached-batch");
+    }
+
+    /**
+     * 转换为Memcached的过期秒数,0表示永不过期,因此不足1秒的按1秒计
+     */
+    private static int toExpireSeconds(long expire) {
+        if (expire == CacheExpire.FOREVER) {
+            return _30_DAYS;
+        }
+        return (int) Math.min(_30_DAYS, Math.max(1, expire / 1000));
     }
 
     @Override
@@ -77,56 +100,101 @@ public class MemcachedCache implements CacheX {
     public void write(String key, Object value, long expire) {
         byte[] byteValue = serializer.serialize(value);
         try {
-            if (expire == CacheExpire.FOREVER) {
-                client.set(key, _30_DAYS, byteValue);
-            } else {
-                client.set(key, (int) (expire / 1000), byteValue);
-            }
+            client.set(key, toExpireSeconds(expire), byteValue);
         } catch (TimeoutException | InterruptedException | MemcachedException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * 按批大小拆分为多条getMulti
+     */
     @Override
     public Map<String, Object> read(Collection<String> keys) {
-        try {
-            Map<String, byte[]> byteMap = client.get(keys);
-            Map<String, Object> resultMap = new HashMap<>(byteMap.size());
-            for (Map.Entry<String, byte[]> entry : byteMap.entrySet()) {
-                String key = entry.getKey();
-                Object value = serializer.deserialize(entry.getValue());
+        if (keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
 
-                resultMap.put(key, value);
+        Map<String, Object> resultMap = new HashMap<>(keys.size());
+        List<List<String>> batches = batchExecutor.partition(new ArrayList<>(keys));
+        batchExecutor.execute(batches, batch -> {
+            Map<String, byte[]> byteMap;
+            try {
+                byteMap = client.get(batch);
+            } catch (TimeoutException | InterruptedException | MemcachedException e) {
+                throw new RuntimeException(e);
+            }
+            Map<String, Object> values = new HashMap<>(byteMap.size());
+            for (Map.Entry<String, byte[]> entry : byteMap.entrySet()) {
+                values.put(entry.getKey(), serializer.deserialize(entry.getValue()));
+            }
+            synchronized (resultMap) {
+                resultMap.putAll(values);
             }
+        });
+        return resultMap;
+    }
 
-            return resultMap;
-        } catch (TimeoutException | InterruptedException | MemcachedException e) {
+    /**
+     * 以noreply方式连续发送,无需逐个等待响应
+     */
+    @Override
+    public void write(Map<String, Object> keyValueMap, long expire) {
+        int seconds = toExpireSeconds(expire);
+        try {
+            for (Map.Entry<String, Object> entry : keyValueMap.entrySet()) {
+                client.setWithNoReply(entry.getKey(), seconds, serializer.serialize(entry.getValue()));
+            }
+        } catch (InterruptedException | MemcachedException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * 失效操作需确认结果,逐个等待响应,失败时抛出异常
+     */
     @Override
-    public void write(Map<String, Object> keyValueMap, long expire) {
-        for (Map.Entry<String, Object> entry : keyValueMap.entrySet()) {
-            this.write(entry.getKey(), entry.getValue(), expire);
+    public void remove(String... keys) {
+        if (keys.length == 0) {
+            return;
         }
+        batchExecutor.execute(batchExecutor.partition(Arrays.asList(keys)), batch -> {
+            try {
+                for (String key : batch) {
+                    client.delete(key);
+                }
+            } catch (TimeoutException | InterruptedException | MemcachedException e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     @Override
-    public void remove(String... keys) {
+    public void clear() {
         try {
-            for (String key : keys) {
-                client.delete(key);
-            }
+            client.flushAll();
         } catch (TimeoutException | InterruptedException | MemcachedException e) {
             throw new RuntimeException(e);
         }
     }
 
     @Override
-    public void clear() {
+    public boolean tryLock(String key, String token, long expire) {
         try {
-            client.flushAll();
+            return client.add(key, (int) Math.max(1, expire / 1000), token);
+        } catch (TimeoutException | InterruptedException | MemcachedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void unlock(String key, String token) {
+        try {
+            // gets取得版本号,凭证一致时按版本号删除,期间锁被重新获得则删除失败
+            GetsResponse<Object> response = client.gets(key);
+            if (null != response && token.equals(response.getValue())) {
+                client.delete(key, response.getCas(), client.getOpTimeout());
+            }
         } catch (TimeoutException | InterruptedException | MemcachedException e) {
             throw new RuntimeException(e);
         }
@@ -134,6 +202,7 @@ public class MemcachedCache implements CacheX {
 
     @PreDestroy
     public void tearDown() {
+        batchExecutor.shutdown();
         if (client != null && !client.isShutdown()) {
             try {
                 client.shutdown();
@@ -24,26 +24,29 @@
  ********************************************************************************/
 package org.aoju.bus.cache.metric;
 
-import lombok.Getter;
-import lombok.Setter;
 import org.aoju.bus.cache.CacheX;
+import org.aoju.bus.cache.support.TimerWheel;
+import org.aoju.bus.core.map.BoundedConcurrentMap;
 import org.aoju.bus.core.toolkit.MapKit;
 
-import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntBiFunction;
 
 /**
  * 内存缓存支持
+ * 每个实例独立存储,按条目数或权重限制容量,超出时按LRU或TinyLFU淘汰
+ * 读取不加锁,过期由分层时间轮在写入和定时任务中批量清理
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -55,7 +58,11 @@ public class MemoryCache implements CacheX {
      * 默认缓存过期时间：3分钟
      * 鉴于授权过程中,根据个人的操作习惯,或者授权平台的不同(google等),每个授权流程的耗时也有差异,不过单个授权流程一般不会太长
      * 本缓存工具默认的过期时间设置为3分钟,即程序默认认为3分钟内的授权有效,超过3分钟则默认失效,失效后删除
+     *
+     * @deprecated 过期时间由{@link #write(String, Object, long)}指定,此值仅作为新实例定时清理的默认间隔(毫秒),
+     * 写入时也会推进时间轮,可通过{@link #schedulePrune(long)}单独调整
      */
+    @Deprecated
     public static long timeout = 3 * 60 * 1000;
 
     /**
@@ -63,12 +70,42 @@ public class MemoryCache implements CacheX {
      */
     public static boolean schedulePrune = true;
 
-    private static Map<String, CacheState> map = new ConcurrentHashMap<>();
-    private final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock(true);
-    private final Lock writeLock = cacheLock.writeLock();
-    private final Lock readLock = cacheLock.readLock();
+    /**
+     * 默认最大条目数
+     */
+    public static final long DEFAULT_CAPACITY = 100_000;
+
+    private final BoundedConcurrentMap<String, CacheState> map;
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    private final TimerWheel<String> wheel;
+    /**
+     * 被淘汰但尚未从时间轮移除的条目
+     * 淘汰回调在Map的淘汰锁内执行,为避免与时间轮锁交叉加锁,先入队再由持有时间轮锁的线程处理
+     */
+    private final Queue<CacheState> evicted = new ConcurrentLinkedQueue<>();
+    private ScheduledFuture<?> pruneTask;
 
     public MemoryCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 最大条目数
+     */
+    public MemoryCache(long capacity) {
+        this(capacity, BoundedConcurrentMap.Policy.LRU, null);
+    }
+
+    /**
+     * @param capacity 最大条目数,指定权重函数时为最大权重
+     * @param policy   淘汰策略
+     * @param weigher  按键和值计算权重,{@code null}表示每个条目权重为1
+     */
+    public MemoryCache(long capacity, BoundedConcurrentMap.Policy policy, ToIntBiFunction<String, Object> weigher) {
+        this.map = new BoundedConcurrentMap<>(capacity, policy,
+                null == weigher ? null : (key, state) -> weigher.applyAsInt(key, state.value),
+                (key, state) -> evicted.offer(state));
+        this.wheel = new TimerWheel<>(System.currentTimeMillis(), this::expire);
         if (schedulePrune) {
             this.schedulePrune(timeout);
         }
@@ -92,15 +129,24 @@ public class MemoryCache implements CacheX {
      *
      * @param key    缓存KEY
      * @param value  缓存内容
-     * @param expire 指定缓存过期时间(毫秒)
+     * @param expire 指定缓存过期时间(毫秒),不大于0时永不过期
      */
     @Override
     public void write(String key, Object value, long expire) {
-        writeLock.lock();
+        long now = System.currentTimeMillis();
+        CacheState state = new CacheState(key, value, expire > 0 ? now + expire : Long.MAX_VALUE);
+        CacheState prior = map.put(key, state);
+        wheelLock.lock();
         try {
-            map.put(key, new CacheState(value, expire));
+            if (null != prior) {
+                wheel.remove(prior);
+            }
+            if (expire > 0) {
+                wheel.schedule(state);
+            }
+            prune(now);
         } finally {
-            writeLock.unlock();
+            wheelLock.unlock();
         }
     }
 
@@ -112,16 +158,15 @@ public class MemoryCache implements CacheX {
      */
     @Override
     public Object read(String key) {
-        readLock.lock();
-        try {
-            CacheState cacheState = map.get(key);
-            if (null == cacheState || cacheState.isExpired()) {
-                return null;
-            }
-            return cacheState.getState();
-        } finally {
-            readLock.unlock();
+        CacheState state = map.get(key);
+        if (null == state) {
+            return null;
+        }
+        if (state.isExpired(System.currentTimeMillis())) {
+            map.remove(key, state);
+            return null;
         }
+        return state.value;
     }
 
     @Override
@@ -138,32 +183,91 @@ public class MemoryCache implements CacheX {
      */
     @Override
     public void clear() {
-        Iterator<CacheState> values = map.values().iterator();
-        while (values.hasNext()) {
-            CacheState cache = values.next();
-            if (cache.isExpired()) {
-                values.remove();
-            }
+        wheelLock.lock();
+        try {
+            prune(System.currentTimeMillis());
+        } finally {
+            wheelLock.unlock();
         }
     }
 
     /**
-     * 清理过期的缓存
+     * 移除缓存
      */
     @Override
     public void remove(String... keys) {
         for (String key : keys) {
-            map.remove(key);
+            CacheState state = map.remove(key);
+            if (null != state) {
+                wheelLock.lock();
+                try {
+                    wheel.remove(state);
+                } finally {
+                    wheelLock.unlock();
+                }
+            }
         }
     }
 
+    /**
+     * 当前条目数
+     *
+     * @return 条目数
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * 当前的权重之和
+     *
+     * @return 权重之和
+     */
+    public long weightedSize() {
+        return map.weightedSize();
+    }
+
     /**
      * 定时清理
      *
      * @param delay 间隔时长,单位毫秒
      */
-    public void schedulePrune(long delay) {
-        CacheScheduler.INSTANCE.schedule(this::clear, delay);
+    public synchronized void schedulePrune(long delay) {
+        if (null != pruneTask) {
+            pruneTask.cancel(false);
+        }
+        // 定时任务只弱引用缓存实例,实例被回收后任务自行取消
+        WeakReference<MemoryCache> reference = new WeakReference<>(this);
+        AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+        self.set(pruneTask = CacheScheduler.INSTANCE.schedule(() -> {
+            MemoryCache cache = reference.get();
+            if (null == cache) {
+                ScheduledFuture<?> task = self.get();
+                if (null != task) {
+                    task.cancel(false);
+                }
+                return;
+            }
+            cache.clear();
+        }, delay));
+    }
+
+    /**
+     * 移除已淘汰的条目并推进时间轮,调用方需持有时间轮锁
+     */
+    private void prune(long now) {
+        CacheState state;
+        while ((state = evicted.poll()) != null) {
+            wheel.remove(state);
+        }
+        wheel.advance(now);
+    }
+
+    /**
+     * 时间轮回调,调用方持有时间轮锁
+     */
+    private void expire(TimerWheel.Timer<String> timer) {
+        map.remove(timer.getKey(), timer);
     }
 
     enum CacheScheduler {
@@ -173,45 +277,31 @@ public class MemoryCache implements CacheX {
          */
         INSTANCE;
 
-        private AtomicInteger cacheTaskNumber = new AtomicInteger(1);
-        private ScheduledExecutorService scheduler;
-
-        CacheScheduler() {
-            create();
-        }
-
-        private void create() {
-            this.shutdown();
-            this.scheduler = new ScheduledThreadPoolExecutor(10, r -> new Thread(r, String.format("OAuth-Task-%s", cacheTaskNumber.getAndIncrement())));
-        }
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache:memory-pruner");
+            thread.setDaemon(true);
+            return thread;
+        });
 
         public void shutdown() {
-            if (null != scheduler) {
-                this.scheduler.shutdown();
-            }
+            this.scheduler.shutdown();
         }
 
-        public void schedule(Runnable task, long delay) {
-            this.scheduler.scheduleAtFixedRate(task, delay, delay, TimeUnit.MILLISECONDS);
+        public ScheduledFuture<?> schedule(Runnable task, long delay) {
+            return this.scheduler.scheduleWithFixedDelay(task, delay, delay, TimeUnit.MILLISECONDS);
         }
 
     }
 
-    @Getter
-    @Setter
-    private class CacheState implements Serializable {
-        private Object state;
-        private long expire;
+    private static class CacheState extends TimerWheel.Timer<String> {
 
-        CacheState(Object state, long expire) {
-            this.state = state;
-            // 实际过期时间等于当前时间加上有效期
-            this.expire = System.currentTimeMillis() + expire;
-        }
+        private final Object value;
 
-        boolean isExpired() {
-            return System.currentTimeMillis() > this.expire;
+        CacheState(String key, Object value, long expireAt) {
+            super(key, expireAt);
+            this.value = value;
         }
+
     }
 
 }
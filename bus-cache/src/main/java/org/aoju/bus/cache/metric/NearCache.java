@@ -0,0 +1,234 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.metric;
+
+import org.aoju.bus.cache.Broadcaster;
+import org.aoju.bus.cache.CacheX;
+import org.aoju.bus.cache.magic.CacheExpire;
+import org.aoju.bus.core.lang.Symbol;
+import org.aoju.bus.core.toolkit.MapKit;
+
+import java.util.*;
+
+/**
+ * 二级缓存
+ * 以有界的本地缓存(L1)作为远程缓存(L2)的前置,命中L1时无需网络往返和反序列化
+ * L1条目的有效期取写入有效期与{@code localExpire}中的较小值;
+ * 写入和删除时通过{@link Broadcaster}通知其它节点删除各自的L1条目,
+ * 消息丢失时L1最多在{@code localExpire}内读到旧值
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class NearCache implements CacheX {
+
+    /**
+     * 默认L1有效期(毫秒)
+     */
+    public static final long DEFAULT_LOCAL_EXPIRE = CacheExpire.ONE_MIN;
+
+    private final CacheX local;
+
+    private final CacheX remote;
+
+    private final long localExpire;
+
+    private final Broadcaster broadcaster;
+
+    /**
+     * 当前节点标识,用于忽略自身发出的失效消息
+     */
+    private final String id = UUID.randomUUID().toString();
+
+    /**
+     * 不跨节点同步失效,适用于单节点部署
+     *
+     * @param remote 远程缓存
+     */
+    public NearCache(CacheX remote) {
+        this(new MemoryCache(), remote, DEFAULT_LOCAL_EXPIRE, null);
+    }
+
+    /**
+     * @param remote      远程缓存
+     * @param broadcaster 失效消息广播
+     */
+    public NearCache(CacheX remote, Broadcaster broadcaster) {
+        this(new MemoryCache(), remote, DEFAULT_LOCAL_EXPIRE, broadcaster);
+    }
+
+    /**
+     * @param local       本地缓存
+     * @param remote      远程缓存
+     * @param localExpire L1有效期上限(毫秒)
+     * @param broadcaster 失效消息广播,{@code null}表示不跨节点同步
+     */
+    public NearCache(CacheX local, CacheX remote, long localExpire, Broadcaster broadcaster) {
+        this.local = local;
+        this.remote = remote;
+        this.localExpire = localExpire > 0 ? localExpire : DEFAULT_LOCAL_EXPIRE;
+        this.broadcaster = broadcaster;
+        if (null != broadcaster) {
+            broadcaster.subscribe(this::onMessage);
+        }
+    }
+
+    @Override
+    public Object read(String key) {
+        Object value = local.read(key);
+        if (null != value) {
+            return value;
+        }
+        value = remote.read(key);
+        if (null != value) {
+            local.write(key, value, localExpire);
+        }
+        return value;
+    }
+
+    /**
+     * 先读L1,只将未命中的键批量发往L2
+     */
+    @Override
+    public Map<String, Object> read(Collection<String> keys) {
+        Map<String, Object> result = new HashMap<>(keys.size());
+        List<String> missKeys = new ArrayList<>();
+        for (String key : keys) {
+            Object value = local.read(key);
+            if (null != value) {
+                result.put(key, value);
+            } else {
+                missKeys.add(key);
+            }
+        }
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+
+        Map<String, Object> remoteValues = remote.read(missKeys);
+        Map<String, Object> fill = new HashMap<>(remoteValues.size());
+        for (String key : missKeys) {
+            Object value = remoteValues.get(key);
+            result.put(key, value);
+            if (null != value) {
+                fill.put(key, value);
+            }
+        }
+        if (!fill.isEmpty()) {
+            local.write(fill, localExpire);
+        }
+        return result;
+    }
+
+    @Override
+    public void write(String key, Object value, long expire) {
+        remote.write(key, value, expire);
+        local.write(key, value, localExpire(expire));
+        publish(key);
+    }
+
+    @Override
+    public void write(Map<String, Object> keyValueMap, long expire) {
+        if (MapKit.isEmpty(keyValueMap)) {
+            return;
+        }
+        remote.write(keyValueMap, expire);
+        local.write(keyValueMap, localExpire(expire));
+        publish(keyValueMap.keySet().toArray(new String[0]));
+    }
+
+    @Override
+    public void remove(String... keys) {
+        remote.remove(keys);
+        local.remove(keys);
+        publish(keys);
+    }
+
+    @Override
+    public void clear() {
+        local.clear();
+        remote.clear();
+    }
+
+    @Override
+    public boolean tryLock(String key, String token, long expire) {
+        return remote.tryLock(key, token, expire);
+    }
+
+    @Override
+    public void unlock(String key, String token) {
+        remote.unlock(key, token);
+    }
+
+    private long localExpire(long expire) {
+        return expire == CacheExpire.FOREVER ? localExpire : Math.min(expire, localExpire);
+    }
+
+    /**
+     * 消息格式: 节点标识后接换行,每个键编码为{@code 长度:键},键中可包含任意字符
+     */
+    private void publish(String... keys) {
+        if (null == broadcaster || keys.length == 0) {
+            return;
+        }
+        StringBuilder message = new StringBuilder(id).append(Symbol.C_LF);
+        for (String key : keys) {
+            message.append(key.length()).append(Symbol.C_COLON).append(key);
+        }
+        broadcaster.publish(message.toString());
+    }
+
+    private void onMessage(String message) {
+        int start = message.indexOf(Symbol.C_LF);
+        if (start < 0 || id.equals(message.substring(0, start))) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        int index = start + 1;
+        while (index < message.length()) {
+            int colon = message.indexOf(Symbol.C_COLON, index);
+            if (colon <= index) {
+                break;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(message.substring(index, colon));
+            } catch (NumberFormatException e) {
+                break;
+            }
+            index = colon + 1;
+            if (length < 0 || length > message.length() - index) {
+                break;
+            }
+            keys.add(message.substring(index, index + length));
+            index += length;
+        }
+        if (!keys.isEmpty()) {
+            local.remove(keys.toArray(new String[0]));
+        }
+    }
+
+}
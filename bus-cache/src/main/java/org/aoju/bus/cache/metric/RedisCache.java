@@ -31,12 +31,10 @@ import org.aoju.bus.cache.serialize.Hessian2Serializer;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 
 import javax.annotation.PreDestroy;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Redis 单机缓存支持
@@ -47,17 +45,36 @@ import java.util.Map;
  */
 public class RedisCache implements CacheX {
 
+    /**
+     * 凭证一致时才删除锁
+     */
+    static final String UNLOCK_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then "
+            + "return redis.call('del', KEYS[1]) else return 0 end";
+
     private BaseSerializer serializer;
 
     private JedisPool jedisPool;
 
+    private BatchExecutor batchExecutor;
+
     public RedisCache(JedisPool jedisPool) {
         this(jedisPool, new Hessian2Serializer());
     }
 
     public RedisCache(JedisPool jedisPool, BaseSerializer serializer) {
+        this(jedisPool, serializer, BatchExecutor.DEFAULT_BATCH_SIZE, 1);
+    }
+
+    /**
+     * @param jedisPool   连接池
+     * @param serializer  序列化
+     * @param batchSize   批量读写时每条命令的键数
+     * @param parallelism 批量读写时最多同时使用的连接数
+     */
+    public RedisCache(JedisPool jedisPool, BaseSerializer serializer, int batchSize, int parallelism) {
         this.jedisPool = jedisPool;
         this.serializer = serializer;
+        this.batchExecutor = new BatchExecutor(batchSize, parallelism, "cache:redis-batch");
     }
 
     static byte[][] toByteArray(Map<String, Object> keyValueMap, BaseSerializer serializer) {
@@ -109,28 +126,66 @@ public class RedisCache implements CacheX {
         }
     }
 
+    /**
+     * 按批大小拆分为多条MGET,同一连接上的批次以流水线方式一次往返完成
+     */
     @Override
     public Map<String, Object> read(Collection<String> keys) {
-        try (Jedis client = jedisPool.getResource()) {
-            List<byte[]> bytesValues = client.mget(toByteArray(keys));
-            return toObjectMap(keys, bytesValues, this.serializer);
+        if (keys.isEmpty()) {
+            return Collections.emptyMap();
         }
+
+        Map<String, Object> result = new HashMap<>(keys.size());
+        batchExecutor.execute(batchExecutor.split(new ArrayList<>(keys)), batches -> {
+            Map<String, Object> values = new HashMap<>();
+            try (Jedis client = jedisPool.getResource()) {
+                Pipeline pipeline = client.pipelined();
+                List<Response<List<byte[]>>> responses = new ArrayList<>(batches.size());
+                for (List<String> batch : batches) {
+                    responses.add(pipeline.mget(toByteArray(batch)));
+                }
+                pipeline.sync();
+                for (int i = 0; i < batches.size(); i++) {
+                    values.putAll(toObjectMap(batches.get(i), responses.get(i).get(), this.serializer));
+                }
+            }
+            synchronized (result) {
+                result.putAll(values);
+            }
+        });
+        return result;
     }
 
+    /**
+     * 永不过期时按批使用MSET,否则逐个键PSETEX,均以流水线方式发送
+     */
     @Override
     public void write(Map<String, Object> keyValueMap, long expire) {
-        try (Jedis client = jedisPool.getResource()) {
-            byte[][] kvs = toByteArray(keyValueMap, serializer);
-            if (expire == CacheExpire.FOREVER) {
-                client.mset(kvs);
-            } else {
+        if (keyValueMap.isEmpty()) {
+            return;
+        }
+
+        batchExecutor.execute(batchExecutor.split(new ArrayList<>(keyValueMap.keySet())), batches -> {
+            try (Jedis client = jedisPool.getResource()) {
                 Pipeline pipeline = client.pipelined();
-                for (int i = 0; i < kvs.length; i += 2) {
-                    pipeline.psetex(kvs[i], expire, kvs[i + 1]);
+                for (List<String> batch : batches) {
+                    if (expire == CacheExpire.FOREVER) {
+                        byte[][] kvs = new byte[batch.size() * 2][];
+                        int index = 0;
+                        for (String key : batch) {
+                            kvs[index++] = key.getBytes();
+                            kvs[index++] = serializer.serialize(keyValueMap.get(key));
+                        }
+                        pipeline.mset(kvs);
+                    } else {
+                        for (String key : batch) {
+                            pipeline.psetex(key.getBytes(), expire, serializer.serialize(keyValueMap.get(key)));
+                        }
+                    }
                 }
                 pipeline.sync();
             }
-        }
+        });
     }
 
     @Override
@@ -145,8 +200,23 @@ public class RedisCache implements CacheX {
         tearDown();
     }
 
+    @Override
+    public boolean tryLock(String key, String token, long expire) {
+        try (Jedis client = jedisPool.getResource()) {
+            return "OK".equals(client.set(key, token, "NX", "PX", expire));
+        }
+    }
+
+    @Override
+    public void unlock(String key, String token) {
+        try (Jedis client = jedisPool.getResource()) {
+            client.eval(UNLOCK_SCRIPT, Collections.singletonList(key), Collections.singletonList(token));
+        }
+    }
+
     @PreDestroy
     public void tearDown() {
+        batchExecutor.shutdown();
         if (jedisPool != null && !jedisPool.isClosed()) {
             jedisPool.destroy();
         }
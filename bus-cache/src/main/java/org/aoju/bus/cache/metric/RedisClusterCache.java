@@ -28,7 +28,11 @@ import org.aoju.bus.cache.CacheX;
 import org.aoju.bus.cache.magic.CacheExpire;
 import org.aoju.bus.cache.serialize.BaseSerializer;
 import org.aoju.bus.cache.serialize.Hessian2Serializer;
-import redis.clients.jedis.JedisCluster;
+import org.aoju.bus.logger.Logger;
+import redis.clients.jedis.*;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.SafeEncoder;
 
 import javax.annotation.PreDestroy;
 import java.io.IOException;
@@ -36,6 +40,9 @@ import java.util.*;
 
 /**
  * Redis 集群缓存支持
+ * 批量读写时按槽位所在节点分组,每个节点使用一个流水线完成,同一槽位的键合并为一条MGET/MSET,
+ * 节点映射过期(如槽位迁移)时对应的键退回逐个读写并刷新映射,
+ * 读取槽位分布失败后在退避时间内直接逐个读写,不再重复读取
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -45,15 +52,45 @@ public class RedisClusterCache implements CacheX {
 
     private BaseSerializer serializer;
 
+    private static final int SLOTS = 16384;
+
+    /**
+     * 读取槽位分布失败后的退避时间(毫秒)
+     */
+    private static final long SLOTS_RETRY_INTERVAL = 1000;
+
     private JedisCluster jedisCluster;
 
+    private BatchExecutor batchExecutor;
+
+    /**
+     * 槽位所在节点, 元素为{@code host:port}
+     */
+    private volatile String[] slotOwners;
+
+    /**
+     * 读取槽位分布失败后,下次允许重试的时间
+     */
+    private volatile long slotsRetryAt;
+
     public RedisClusterCache(JedisCluster jedisCluster) {
         this(jedisCluster, new Hessian2Serializer());
     }
 
     public RedisClusterCache(JedisCluster jedisCluster, BaseSerializer serializer) {
+        this(jedisCluster, serializer, BatchExecutor.DEFAULT_BATCH_SIZE, 1);
+    }
+
+    /**
+     * @param jedisCluster 集群客户端
+     * @param serializer   序列化
+     * @param batchSize    批量读写时每个流水线的最大键数
+     * @param parallelism  批量读写时最多同时访问的节点数
+     */
+    public RedisClusterCache(JedisCluster jedisCluster, BaseSerializer serializer, int batchSize, int parallelism) {
         this.jedisCluster = jedisCluster;
         this.serializer = serializer;
+        this.batchExecutor = new BatchExecutor(batchSize, parallelism, "cache:redis-cluster-batch");
     }
 
     static byte[][] toByteArray(Map<String, Object> keyValueMap, BaseSerializer serializer) {
@@ -96,7 +133,7 @@ public class RedisClusterCache implements CacheX {
         if (expire == CacheExpire.FOREVER) {
             jedisCluster.set(key.getBytes(), bytes);
         } else {
-            jedisCluster.setex(key.getBytes(), (int) (expire / 1000), bytes);
+            jedisCluster.setex(key.getBytes(), (int) Math.max(1, expire / 1000), bytes);
         }
     }
 
@@ -106,8 +143,17 @@ public class RedisClusterCache implements CacheX {
             return Collections.emptyMap();
         }
 
-        List<byte[]> bytesValues = jedisCluster.mget(toByteArray(keys));
-        return toObjectMap(keys, bytesValues, this.serializer);
+        Map<String, Object> result = new HashMap<>(keys.size());
+        batchExecutor.execute(groupByNode(keys), group -> {
+            Map<String, Object> values = new HashMap<>(group.keys.size());
+            for (List<String> batch : batchExecutor.partition(group.keys)) {
+                values.putAll(readFromNode(group.node, batch));
+            }
+            synchronized (result) {
+                result.putAll(values);
+            }
+        });
+        return result;
     }
 
     @Override
@@ -116,13 +162,11 @@ public class RedisClusterCache implements CacheX {
             return;
         }
 
-        if (expire == CacheExpire.FOREVER) {
-            jedisCluster.mset(toByteArray(keyValueMap, this.serializer));
-        } else {
-            for (Map.Entry<String, Object> entry : keyValueMap.entrySet()) {
-                write(entry.getKey(), entry.getValue(), expire);
+        batchExecutor.execute(groupByNode(keyValueMap.keySet()), group -> {
+            for (List<String> batch : batchExecutor.partition(group.keys)) {
+                writeToNode(group.node, batch, keyValueMap, expire);
             }
-        }
+        });
     }
 
     @Override
@@ -138,8 +182,168 @@ public class RedisClusterCache implements CacheX {
         tearDown();
     }
 
+    @Override
+    public boolean tryLock(String key, String token, long expire) {
+        return "OK".equals(jedisCluster.set(key, token, "NX", "PX", expire));
+    }
+
+    @Override
+    public void unlock(String key, String token) {
+        jedisCluster.eval(RedisCache.UNLOCK_SCRIPT, Collections.singletonList(key), Collections.singletonList(token));
+    }
+
+    private Map<String, Object> readFromNode(JedisPool pool, List<String> keys) {
+        Map<String, Object> result = new HashMap<>(keys.size());
+        if (null == pool) {
+            for (String key : keys) {
+                result.put(key, read(key));
+            }
+            return result;
+        }
+        List<List<String>> slots = groupBySlot(keys);
+        try (Jedis client = pool.getResource()) {
+            Pipeline pipeline = client.pipelined();
+            List<Response<List<byte[]>>> responses = new ArrayList<>(slots.size());
+            for (List<String> slot : slots) {
+                responses.add(pipeline.mget(toByteArray(slot)));
+            }
+            pipeline.sync();
+            for (int i = 0; i < slots.size(); i++) {
+                List<String> slot = slots.get(i);
+                try {
+                    result.putAll(toObjectMap(slot, responses.get(i).get(), serializer));
+                } catch (JedisDataException e) {
+                    // 槽位已迁移
+                    slotOwners = null;
+                    for (String key : slot) {
+                        result.put(key, read(key));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void writeToNode(JedisPool pool, List<String> keys, Map<String, Object> keyValueMap, long expire) {
+        if (null == pool) {
+            for (String key : keys) {
+                write(key, keyValueMap.get(key), expire);
+            }
+            return;
+        }
+        // 不过期时同一槽位合并为一条MSET,带过期时间的写入没有批量命令,逐个PSETEX
+        List<List<String>> groups = expire == CacheExpire.FOREVER ? groupBySlot(keys) : toSingletons(keys);
+        try (Jedis client = pool.getResource()) {
+            Pipeline pipeline = client.pipelined();
+            List<Response<String>> responses = new ArrayList<>(groups.size());
+            for (List<String> group : groups) {
+                if (expire == CacheExpire.FOREVER) {
+                    Map<String, Object> values = new LinkedHashMap<>(group.size());
+                    for (String key : group) {
+                        values.put(key, keyValueMap.get(key));
+                    }
+                    responses.add(pipeline.mset(toByteArray(values, serializer)));
+                } else {
+                    String key = group.get(0);
+                    responses.add(pipeline.psetex(key.getBytes(), expire, serializer.serialize(keyValueMap.get(key))));
+                }
+            }
+            pipeline.sync();
+            for (int i = 0; i < groups.size(); i++) {
+                try {
+                    responses.get(i).get();
+                } catch (JedisDataException e) {
+                    slotOwners = null;
+                    for (String key : groups.get(i)) {
+                        write(key, keyValueMap.get(key), expire);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 按槽位分组,同一槽位的键可用一条多键命令读写
+     */
+    private static List<List<String>> groupBySlot(List<String> keys) {
+        Map<Integer, List<String>> slots = new LinkedHashMap<>();
+        for (String key : keys) {
+            slots.computeIfAbsent(JedisClusterCRC16.getSlot(key), k -> new ArrayList<>()).add(key);
+        }
+        return new ArrayList<>(slots.values());
+    }
+
+    private static List<List<String>> toSingletons(List<String> keys) {
+        List<List<String>> result = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            result.add(Collections.singletonList(key));
+        }
+        return result;
+    }
+
+    /**
+     * 按键所在的节点分组
+     */
+    private List<NodeKeys> groupByNode(Collection<String> keys) {
+        String[] owners = slotOwners();
+        Map<String, JedisPool> nodes = jedisCluster.getClusterNodes();
+        Map<String, NodeKeys> groups = new LinkedHashMap<>();
+        for (String key : keys) {
+            String owner = null == owners ? null : owners[JedisClusterCRC16.getSlot(key)];
+            JedisPool pool = null == owner ? null : nodes.get(owner);
+            groups.computeIfAbsent(null == pool ? null : owner, k -> new NodeKeys(pool)).keys.add(key);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private String[] slotOwners() {
+        String[] owners = slotOwners;
+        if (null == owners && System.currentTimeMillis() >= slotsRetryAt) {
+            owners = slotOwners = loadSlotOwners();
+            if (null == owners) {
+                slotsRetryAt = System.currentTimeMillis() + SLOTS_RETRY_INTERVAL;
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * 从任一节点读取槽位分布
+     */
+    private String[] loadSlotOwners() {
+        for (JedisPool pool : jedisCluster.getClusterNodes().values()) {
+            try (Jedis client = pool.getResource()) {
+                String[] owners = new String[SLOTS];
+                for (Object info : client.clusterSlots()) {
+                    List<Object> slotInfo = (List<Object>) info;
+                    int start = ((Long) slotInfo.get(0)).intValue();
+                    int end = ((Long) slotInfo.get(1)).intValue();
+                    List<Object> master = (List<Object>) slotInfo.get(2);
+                    String owner = SafeEncoder.encode((byte[]) master.get(0)) + ":" + master.get(1);
+                    Arrays.fill(owners, start, end + 1, owner);
+                }
+                return owners;
+            } catch (Exception e) {
+                Logger.warn("load cluster slots error: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private static class NodeKeys {
+
+        private final JedisPool node;
+
+        private final List<String> keys = new ArrayList<>();
+
+        NodeKeys(JedisPool node) {
+            this.node = node;
+        }
+    }
+
     @PreDestroy
     public void tearDown() {
+        batchExecutor.shutdown();
         if (this.jedisCluster != null) {
             try {
                 this.jedisCluster.close();
@@ -25,59 +25,68 @@
 package org.aoju.bus.cache.provider;
 
 import org.aoju.bus.cache.Hitting;
-import org.aoju.bus.cache.magic.CachePair;
 import org.aoju.bus.core.lang.Normal;
+import org.aoju.bus.logger.Logger;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.yaml.snakeyaml.Yaml;
 
 import javax.annotation.PreDestroy;
 import java.io.InputStream;
+import java.sql.BatchUpdateException;
+import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
+ * 持久化命中率统计的基类
+ * 计数先在内存中累加,由后台线程按固定间隔将增量合并为一条批量语句写入数据库,
+ * 可通过上下文参数{@code interval}(毫秒)调整写入间隔
+ *
  * @author Kimi Liu
  * @version 6.1.1
  * @since JDK 1.8+
  */
 public abstract class AbstractHitting implements Hitting {
 
-    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+    /**
+     * 默认写入间隔(毫秒)
+     */
+    public static final long DEFAULT_INTERVAL = 1000;
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
         Thread thread = new Thread(r);
         thread.setName("cache:db-writer");
         thread.setDaemon(true);
         return thread;
     });
 
-    private static final Lock lock = new ReentrantLock();
-
-    private volatile boolean isShutdown = false;
+    private final HittingCounter counter = new HittingCounter();
 
-    private BlockingQueue<CachePair<String, Integer>> hitQueue = new LinkedTransferQueue<>();
-
-    private BlockingQueue<CachePair<String, Integer>> requireQueue = new LinkedTransferQueue<>();
+    private final ScheduledFuture<?> flushTask;
 
     private JdbcOperations jdbcOperations;
 
     private Properties sqls;
 
+    /**
+     * 驱动是否在批量更新中返回真实的影响行数,
+     * 返回{@link Statement#SUCCESS_NO_INFO}时无法区分记录是否存在,之后改为逐条更新
+     */
+    private volatile boolean batchCountsReported = true;
+
     protected AbstractHitting(Map<String, Object> context) {
         InputStream resource = this.getClass().getClassLoader().getResourceAsStream(Normal.META_DATA_INF + "/caches/bus-cache.yaml");
         this.sqls = new Yaml().loadAs(resource, Properties.class);
 
         this.jdbcOperations = jdbcOperationsSupplier(context).get();
-        executor.submit(() -> {
-            while (!isShutdown) {
-                dumpToDB(hitQueue, "hit_count");
-                dumpToDB(requireQueue, "require_count");
-            }
-        });
+
+        long interval = getInterval(context);
+        this.flushTask = executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
     }
 
     public AbstractHitting(String url, String username, String password) {
@@ -100,6 +109,15 @@ public abstract class AbstractHitting implements Hitting {
         return map;
     }
 
+    private static long getInterval(Map<String, Object> context) {
+        Object interval = context.get("interval");
+        if (interval == null) {
+            return DEFAULT_INTERVAL;
+        }
+        long value = interval instanceof Number ? ((Number) interval).longValue() : Long.parseLong(interval.toString());
+        return value > 0 ? value : DEFAULT_INTERVAL;
+    }
+
     /**
      * 1. create JdbcOperations
      * 2. init db(like: load sql script, create table, init table...)
@@ -117,99 +135,154 @@ public abstract class AbstractHitting implements Hitting {
      */
     protected abstract Stream<DataDO> transferResults(List<Map<String, Object>> map);
 
-    private void dumpToDB(BlockingQueue<CachePair<String, Integer>> queue, String column) {
-        long times = 0;
-        CachePair<String, Integer> head;
-
-        // gather queue's all or before 100 data to a Map
-        Map<String, AtomicLong> holdMap = new HashMap<>();
-        while ((head = queue.poll()) != null && times <= 100) {
-            holdMap
-                    .computeIfAbsent(head.getLeft(), (key) -> new AtomicLong(0L))
-                    .addAndGet(head.getRight());
-            ++times;
-        }
-
-        // batch write to DB
-        holdMap.forEach((pattern, count) -> countAddCas(column, pattern, count.get()));
-    }
-
     @Override
     public void hitIncr(String pattern, int count) {
-        if (count != 0)
-            hitQueue.add(CachePair.of(pattern, count));
+        counter.hitIncr(pattern, count);
     }
 
     @Override
     public void reqIncr(String pattern, int count) {
-        if (count != 0)
-            requireQueue.add(CachePair.of(pattern, count));
+        counter.reqIncr(pattern, count);
     }
 
     @Override
     public Map<String, Hitting.HittingDO> getHitting() {
         List<DataDO> dataDOS = queryAll();
-        AtomicLong statisticsHit = new AtomicLong(0);
-        AtomicLong statisticsRequired = new AtomicLong(0);
+        Map<String, long[]> pending = counter.pending();
 
-        // gather pattern's hit rate
+        // gather pattern's hit rate, include counts not yet written
         Map<String, Hitting.HittingDO> result = dataDOS.stream().collect(Collectors.toMap(
                 DataDO::getPattern,
-                (dataDO) -> {
-                    statisticsHit.addAndGet(dataDO.hitCount);
-                    statisticsRequired.addAndGet(dataDO.requireCount);
-                    return Hitting.HittingDO.newInstance(dataDO.hitCount, dataDO.requireCount);
-                },
+                (dataDO) -> Hitting.HittingDO.newInstance(dataDO.hitCount, dataDO.requireCount),
                 Hitting.HittingDO::mergeShootingDO,
                 LinkedHashMap::new
         ));
+        pending.forEach((pattern, delta) -> result.merge(pattern,
+                Hitting.HittingDO.newInstance(delta[0], delta[1]),
+                Hitting.HittingDO::mergeShootingDO));
 
         // gather application all pattern's hit rate
-        result.put(summaryName(), Hitting.HittingDO.newInstance(statisticsHit.get(), statisticsRequired.get()));
+        long statisticsHit = 0;
+        long statisticsRequired = 0;
+        for (Hitting.HittingDO hittingDO : result.values()) {
+            statisticsHit += hittingDO.getHit();
+            statisticsRequired += hittingDO.getRequired();
+        }
+        result.put(summaryName(), Hitting.HittingDO.newInstance(statisticsHit, statisticsRequired));
 
         return result;
     }
 
     @Override
     public void reset(String pattern) {
+        counter.reset(pattern);
         jdbcOperations.update(sqls.getProperty("delete"), pattern);
     }
 
     @Override
     public void resetAll() {
+        counter.resetAll();
         jdbcOperations.update(sqls.getProperty("truncate"));
     }
 
-    private void countAddCas(String column, String pattern, long count) {
-        Optional<DataDO> dataOptional = queryObject(pattern);
+    /**
+     * 将内存中的增量批量写入数据库,失败的部分归还计数器等待下次写入
+     */
+    private void flush() {
+        Map<String, long[]> deltas = counter.drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        if (!batchCountsReported) {
+            deltas.forEach(this::upsert);
+            return;
+        }
+
+        List<String> patterns = new ArrayList<>(deltas.keySet());
+        List<Object[]> args = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            long[] delta = deltas.get(pattern);
+            args.add(new Object[]{delta[0], delta[1], pattern});
+        }
+
+        int[] rows;
+        try {
+            rows = jdbcOperations.batchUpdate(sqls.getProperty("increase"), args);
+        } catch (DataAccessException e) {
+            Logger.error(e, "dump hit count to db error: {}", e.getMessage());
+            BatchUpdateException batch = batchUpdateException(e);
+            if (null == batch || null == batch.getUpdateCounts()) {
+                counter.restore(deltas);
+                return;
+            }
+            // 已执行的语句不再重复写入,未执行或执行失败的归还计数器
+            rows = Arrays.copyOf(batch.getUpdateCounts(), patterns.size());
+            for (int i = batch.getUpdateCounts().length; i < rows.length; i++) {
+                rows[i] = Statement.EXECUTE_FAILED;
+            }
+        }
 
-        // if has pattern record, update it.
-        if (dataOptional.isPresent()) {
-            DataDO dataDO = dataOptional.get();
-            while (update(column, pattern, getObjectCount(dataDO, column, count), dataDO.version) <= 0) {
-                dataDO = queryObject(pattern).get();
+        // 记录不存在的pattern逐条插入
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] > 0) {
+                continue;
+            }
+            String pattern = patterns.get(i);
+            long[] delta = deltas.get(pattern);
+            if (rows[i] == Statement.EXECUTE_FAILED) {
+                counter.restore(Collections.singletonMap(pattern, delta));
+                continue;
             }
-        } else {
-            lock.lock();
             try {
-                // double check
-                dataOptional = queryObject(pattern);
-                if (dataOptional.isPresent()) {
-                    update(column, pattern, count, dataOptional.get().version);
-                } else {
-                    insert(column, pattern, count);
+                if (rows[i] == Statement.SUCCESS_NO_INFO) {
+                    // 驱动未返回影响行数,记录存在则增量已写入
+                    batchCountsReported = false;
+                    if (!jdbcOperations.queryForList(sqls.getProperty("select"), pattern).isEmpty()) {
+                        continue;
+                    }
                 }
-            } finally {
-                lock.unlock();
+                insert(pattern, delta[0], delta[1]);
+            } catch (DataAccessException e) {
+                counter.restore(Collections.singletonMap(pattern, delta));
+                Logger.error(e, "insert hit count to db error: {}", e.getMessage());
             }
         }
     }
 
-    private Optional<DataDO> queryObject(String pattern) {
-        String selectSql = sqls.getProperty("select");
-        List<Map<String, Object>> mapResults = jdbcOperations.queryForList(selectSql, pattern);
+    /**
+     * 从异常链中查找驱动抛出的{@link BatchUpdateException}
+     */
+    private static BatchUpdateException batchUpdateException(Throwable e) {
+        for (Throwable cause = e; null != cause; cause = cause.getCause()) {
+            if (cause instanceof BatchUpdateException) {
+                return (BatchUpdateException) cause;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 逐条更新,记录不存在时插入
+     */
+    private void upsert(String pattern, long[] delta) {
+        try {
+            if (jdbcOperations.update(sqls.getProperty("increase"), delta[0], delta[1], pattern) == 0) {
+                insert(pattern, delta[0], delta[1]);
+            }
+        } catch (DataAccessException e) {
+            counter.restore(Collections.singletonMap(pattern, delta));
+            Logger.error(e, "dump hit count to db error: {}", e.getMessage());
+        }
+    }
 
-        return transferResults(mapResults).findFirst();
+    private void insert(String pattern, long hit, long require) {
+        try {
+            jdbcOperations.update(sqls.getProperty("insert"), pattern, hit, require);
+        } catch (DataIntegrityViolationException e) {
+            // 其它节点已插入
+            jdbcOperations.update(sqls.getProperty("increase"), hit, require, pattern);
+        }
     }
 
     private List<DataDO> queryAll() {
@@ -219,34 +292,18 @@ public abstract class AbstractHitting implements Hitting {
         return transferResults(mapResults).collect(Collectors.toList());
     }
 
-    private int insert(String column, String pattern, long count) {
-        String insertSql = String.format(sqls.getProperty("insert"), column);
-
-        return jdbcOperations.update(insertSql, pattern, count);
-    }
-
-    private int update(String column, String pattern, long count, long version) {
-        String updateSql = String.format(sqls.getProperty("update"), column);
-
-        return jdbcOperations.update(updateSql, count, pattern, version);
-    }
-
-    private long getObjectCount(DataDO data, String column, long countOffset) {
-        long lastCount = column.equals("hit_count") ? data.hitCount : data.requireCount;
-
-        return lastCount + countOffset;
-    }
-
     @PreDestroy
     public void tearDown() {
-        while (hitQueue.size() > 0 || requireQueue.size() > 0) {
+        if (flushTask.cancel(false)) {
+            // 在写入线程上完成最后一次写入,避免与进行中的写入并发
             try {
-                TimeUnit.SECONDS.sleep(1);
-            } catch (InterruptedException ignored) {
+                executor.submit(this::flush).get(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                Logger.error(e, "flush hit count on shutdown error: {}", e.getMessage());
             }
         }
-
-        isShutdown = true;
     }
 
     protected static final class DataDO {
@@ -0,0 +1,151 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.provider;
+
+import org.aoju.bus.cache.Hitting;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 命中率计数器
+ * 按pattern分别累加命中与请求次数,写入只涉及{@link LongAdder},不加锁也不分配对象
+ * 持久化实现定期通过{@link #drain()}取出增量后批量写入
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class HittingCounter {
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public void hitIncr(String pattern, int count) {
+        if (count != 0) {
+            counter(pattern).hit.add(count);
+        }
+    }
+
+    public void reqIncr(String pattern, int count) {
+        if (count != 0) {
+            counter(pattern).require.add(count);
+        }
+    }
+
+    /**
+     * 取出上次取出以来的增量
+     *
+     * @return pattern -> {命中增量, 请求增量}, 仅包含有变化的pattern
+     */
+    public synchronized Map<String, long[]> drain() {
+        Map<String, long[]> deltas = new HashMap<>();
+        counters.forEach((pattern, counter) -> {
+            long hit = counter.hit.sum();
+            long require = counter.require.sum();
+            long hitDelta = hit - counter.flushedHit;
+            long requireDelta = require - counter.flushedRequire;
+            if (hitDelta != 0 || requireDelta != 0) {
+                counter.flushedHit = hit;
+                counter.flushedRequire = require;
+                deltas.put(pattern, new long[]{hitDelta, requireDelta});
+            }
+        });
+        return deltas;
+    }
+
+    /**
+     * 写入失败时归还增量,下次{@link #drain()}时重新取出
+     *
+     * @param deltas 取出的增量
+     */
+    public synchronized void restore(Map<String, long[]> deltas) {
+        deltas.forEach((pattern, delta) -> {
+            Counter counter = counters.get(pattern);
+            if (counter != null) {
+                counter.flushedHit -= delta[0];
+                counter.flushedRequire -= delta[1];
+            }
+        });
+    }
+
+    /**
+     * 尚未取出的增量
+     *
+     * @return pattern -> {命中增量, 请求增量}
+     */
+    public synchronized Map<String, long[]> pending() {
+        Map<String, long[]> pending = new HashMap<>();
+        counters.forEach((pattern, counter) -> pending.put(pattern, new long[]{
+                counter.hit.sum() - counter.flushedHit,
+                counter.require.sum() - counter.flushedRequire
+        }));
+        return pending;
+    }
+
+    /**
+     * 各pattern累计的命中率,不含汇总项
+     *
+     * @return pattern -> 命中率
+     */
+    public Map<String, Hitting.HittingDO> getHitting() {
+        Map<String, Hitting.HittingDO> result = new LinkedHashMap<>();
+        counters.forEach((pattern, counter) ->
+                result.put(pattern, Hitting.HittingDO.newInstance(counter.hit.sum(), counter.require.sum())));
+        return result;
+    }
+
+    public void reset(String pattern) {
+        counters.remove(pattern);
+    }
+
+    public void resetAll() {
+        counters.clear();
+    }
+
+    private Counter counter(String pattern) {
+        Counter counter = counters.get(pattern);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(pattern, key -> new Counter());
+        }
+        return counter;
+    }
+
+    private static final class Counter {
+
+        private final LongAdder hit = new LongAdder();
+
+        private final LongAdder require = new LongAdder();
+
+        // 已取出的累计值,仅在持有计数器锁时访问
+        private long flushedHit;
+
+        private long flushedRequire;
+    }
+
+}
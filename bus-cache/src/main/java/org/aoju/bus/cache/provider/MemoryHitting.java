@@ -26,70 +26,52 @@ package org.aoju.bus.cache.provider;
 
 import org.aoju.bus.cache.Hitting;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 纯内存命中率统计,不产生任何I/O
+ *
  * @author Kimi Liu
  * @version 6.1.1
  * @since JDK 1.8+
  */
 public class MemoryHitting implements Hitting {
 
-    private ConcurrentMap<String, AtomicLong> hitMap = new ConcurrentHashMap<>();
-
-    private ConcurrentMap<String, AtomicLong> requireMap = new ConcurrentHashMap<>();
+    private final HittingCounter counter = new HittingCounter();
 
     @Override
     public void hitIncr(String pattern, int count) {
-        hitMap.computeIfAbsent(
-                pattern,
-                (k) -> new AtomicLong()
-        ).addAndGet(count);
+        counter.hitIncr(pattern, count);
     }
 
     @Override
     public void reqIncr(String pattern, int count) {
-        requireMap.computeIfAbsent(
-                pattern,
-                (k) -> new AtomicLong()
-        ).addAndGet(count);
+        counter.reqIncr(pattern, count);
     }
 
     @Override
     public Map<String, Hitting.HittingDO> getHitting() {
-        Map<String, Hitting.HittingDO> result = new LinkedHashMap<>();
-
-        AtomicLong statisticsHit = new AtomicLong(0);
-        AtomicLong statisticsRequired = new AtomicLong(0);
-        requireMap.forEach((pattern, count) -> {
-            long hit = hitMap.computeIfAbsent(pattern, (key) -> new AtomicLong(0)).get();
-            long require = count.get();
-
-            statisticsHit.addAndGet(hit);
-            statisticsRequired.addAndGet(require);
-
-            result.put(pattern, Hitting.HittingDO.newInstance(hit, require));
-        });
+        Map<String, Hitting.HittingDO> result = counter.getHitting();
 
-        result.put(summaryName(), Hitting.HittingDO.newInstance(statisticsHit.get(), statisticsRequired.get()));
+        long statisticsHit = 0;
+        long statisticsRequired = 0;
+        for (Hitting.HittingDO hittingDO : result.values()) {
+            statisticsHit += hittingDO.getHit();
+            statisticsRequired += hittingDO.getRequired();
+        }
+        result.put(summaryName(), Hitting.HittingDO.newInstance(statisticsHit, statisticsRequired));
 
         return result;
     }
 
     @Override
     public void reset(String pattern) {
-        hitMap.remove(pattern);
-        requireMap.remove(pattern);
+        counter.reset(pattern);
     }
 
     @Override
     public void resetAll() {
-        hitMap.clear();
-        requireMap.clear();
+        counter.resetAll();
     }
 
 }
@@ -0,0 +1,230 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.provider;
+
+import org.aoju.bus.cache.Metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内存中的缓存指标
+ * 按缓存名称和分组模板分别统计命中、未命中次数及回源耗时分布,
+ * 记录时只做两次Map查找和{@link LongAdder}累加,不产生额外对象
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class MemoryMetrics implements Metrics {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Stats>> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public void hit(String cache, String pattern, int count) {
+        if (count != 0) {
+            stats(cache, pattern).hit.add(count);
+        }
+    }
+
+    @Override
+    public void miss(String cache, String pattern, int count) {
+        if (count != 0) {
+            stats(cache, pattern).miss.add(count);
+        }
+    }
+
+    @Override
+    public void load(String cache, String pattern, long nanos, boolean success) {
+        Stats current = stats(cache, pattern);
+        current.loadTime.record(nanos);
+        if (!success) {
+            current.loadFailure.increment();
+        }
+    }
+
+    /**
+     * 所有指标
+     *
+     * @return 缓存名称 -> 分组模板 -> 指标
+     */
+    public Map<String, Map<String, Stats>> getStats() {
+        Map<String, Map<String, Stats>> result = new LinkedHashMap<>();
+        stats.forEach((cache, patterns) -> result.put(cache, new LinkedHashMap<>(patterns)));
+        return result;
+    }
+
+    /**
+     * 指定缓存与分组的指标
+     *
+     * @param cache   缓存名称
+     * @param pattern 分组模板
+     * @return 指标, 不存在时返回null
+     */
+    public Stats getStats(String cache, String pattern) {
+        Map<String, Stats> patterns = stats.get(cache);
+        return patterns == null ? null : patterns.get(pattern);
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    private Stats stats(String cache, String pattern) {
+        ConcurrentMap<String, Stats> patterns = stats.get(cache);
+        if (patterns == null) {
+            patterns = stats.computeIfAbsent(cache, key -> new ConcurrentHashMap<>());
+        }
+        Stats current = patterns.get(pattern);
+        if (current == null) {
+            current = patterns.computeIfAbsent(pattern, key -> new Stats());
+        }
+        return current;
+    }
+
+    /**
+     * 单个分组的指标
+     */
+    public static class Stats {
+
+        private final LongAdder hit = new LongAdder();
+
+        private final LongAdder miss = new LongAdder();
+
+        private final LongAdder loadFailure = new LongAdder();
+
+        private final Histogram loadTime = new Histogram();
+
+        public long getHitCount() {
+            return hit.sum();
+        }
+
+        public long getMissCount() {
+            return miss.sum();
+        }
+
+        public long getLoadCount() {
+            return loadTime.count();
+        }
+
+        public long getLoadFailureCount() {
+            return loadFailure.sum();
+        }
+
+        /**
+         * 累计回源耗时(纳秒)
+         *
+         * @return 耗时
+         */
+        public long getTotalLoadTime() {
+            return loadTime.sum();
+        }
+
+        /**
+         * 回源耗时的分位值(纳秒),按2的幂分桶,返回所在桶的上界
+         *
+         * @param quantile 分位,0~1
+         * @return 耗时
+         */
+        public long getLoadTime(double quantile) {
+            return loadTime.quantile(quantile);
+        }
+
+        public double getHitRate() {
+            long hits = hit.sum();
+            long total = hits + miss.sum();
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hit=" + getHitCount()
+                    + ", miss=" + getMissCount()
+                    + ", load=" + getLoadCount()
+                    + ", loadFailure=" + getLoadFailureCount()
+                    + ", p50=" + getLoadTime(0.5)
+                    + ", p99=" + getLoadTime(0.99) + "}";
+        }
+    }
+
+    /**
+     * 按2的幂分桶的耗时直方图
+     */
+    static class Histogram {
+
+        private final LongAdder[] buckets = new LongAdder[Long.SIZE + 1];
+
+        private final LongAdder sum = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long value) {
+            long positive = Math.max(0, value);
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(positive)].increment();
+            sum.add(positive);
+        }
+
+        long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        long sum() {
+            return sum.sum();
+        }
+
+        long quantile(double quantile) {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return i == 0 ? 0 : i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+}
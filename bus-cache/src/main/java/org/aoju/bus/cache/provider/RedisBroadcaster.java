@@ -0,0 +1,148 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.provider;
+
+import org.aoju.bus.cache.Broadcaster;
+import org.aoju.bus.logger.Logger;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 基于Redis发布/订阅的消息广播
+ * 首次订阅时启动一个守护线程阻塞监听频道,连接断开后自动重连
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class RedisBroadcaster implements Broadcaster {
+
+    /**
+     * 默认频道
+     */
+    public static final String DEFAULT_CHANNEL = "bus:cache:invalidate";
+
+    private final String channel;
+    private final Consumer<String> publisher;
+    private final Consumer<JedisPubSub> subscriber;
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final PubSub pubSub = new PubSub();
+    private volatile boolean running;
+
+    public RedisBroadcaster(JedisPool jedisPool) {
+        this(jedisPool, DEFAULT_CHANNEL);
+    }
+
+    public RedisBroadcaster(JedisPool jedisPool, String channel) {
+        this.channel = channel;
+        this.publisher = message -> {
+            try (Jedis client = jedisPool.getResource()) {
+                client.publish(channel, message);
+            }
+        };
+        this.subscriber = pubSub -> {
+            try (Jedis client = jedisPool.getResource()) {
+                client.subscribe(pubSub, channel);
+            }
+        };
+    }
+
+    public RedisBroadcaster(JedisCluster jedisCluster) {
+        this(jedisCluster, DEFAULT_CHANNEL);
+    }
+
+    public RedisBroadcaster(JedisCluster jedisCluster, String channel) {
+        this.channel = channel;
+        this.publisher = message -> jedisCluster.publish(channel, message);
+        this.subscriber = pubSub -> jedisCluster.subscribe(pubSub, channel);
+    }
+
+    @Override
+    public void publish(String message) {
+        try {
+            publisher.accept(message);
+        } catch (Exception e) {
+            Logger.error(e, "publish to channel {} error: {}", channel, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<String> listener) {
+        listeners.add(listener);
+        if (!running) {
+            running = true;
+            Thread thread = new Thread(this::listen, "cache:redis-subscriber");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @PreDestroy
+    public void tearDown() {
+        running = false;
+        if (pubSub.isSubscribed()) {
+            pubSub.unsubscribe();
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try {
+                subscriber.accept(pubSub);
+            } catch (Exception e) {
+                Logger.error(e, "subscribe channel {} error: {}", channel, e.getMessage());
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private class PubSub extends JedisPubSub {
+
+        @Override
+        public void onMessage(String channel, String message) {
+            for (Consumer<String> listener : listeners) {
+                try {
+                    listener.accept(message);
+                } catch (Exception e) {
+                    Logger.error(e, "handle message from channel {} error: {}", channel, e.getMessage());
+                }
+            }
+        }
+    }
+
+}
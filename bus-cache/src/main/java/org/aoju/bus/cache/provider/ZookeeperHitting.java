@@ -25,7 +25,6 @@
 package org.aoju.bus.cache.provider;
 
 import org.aoju.bus.cache.Hitting;
-import org.aoju.bus.cache.magic.CachePair;
 import org.aoju.bus.core.lang.Symbol;
 import org.aoju.bus.logger.Logger;
 import org.apache.curator.framework.CuratorFramework;
@@ -36,20 +35,23 @@ import org.apache.curator.retry.RetryNTimes;
 import org.apache.zookeeper.KeeperException;
 
 import javax.annotation.PreDestroy;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 基于Zookeeper的命中率统计
+ * 计数先在内存中累加,由后台线程按固定间隔将增量写入分布式计数器
+ *
  * @author Kimi Liu
  * @version 6.1.1
  * @since JDK 1.8+
  */
 public class ZookeeperHitting implements Hitting {
 
-    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
         Thread thread = new Thread(r);
         thread.setName("cache:zk-uploader");
         thread.setDaemon(true);
@@ -58,15 +60,13 @@ public class ZookeeperHitting implements Hitting {
 
     private static final String NAME_SPACE = "cache";
 
-    private volatile boolean isShutdown = false;
+    private final HittingCounter counter = new HittingCounter();
 
-    private BlockingQueue<CachePair<String, Integer>> hitQueue = new LinkedTransferQueue<>();
+    private final ScheduledFuture<?> flushTask;
 
-    private BlockingQueue<CachePair<String, Integer>> requireQueue = new LinkedTransferQueue<>();
+    private Map<String, DistributedAtomicLong> hitCounterMap = new ConcurrentHashMap<>();
 
-    private Map<String, DistributedAtomicLong> hitCounterMap = new HashMap<>();
-
-    private Map<String, DistributedAtomicLong> requireCounterMap = new HashMap<>();
+    private Map<String, DistributedAtomicLong> requireCounterMap = new ConcurrentHashMap<>();
 
     private CuratorFramework client;
 
@@ -79,6 +79,15 @@ public class ZookeeperHitting implements Hitting {
     }
 
     public ZookeeperHitting(String zkServer, String productName) {
+        this(zkServer, productName, AbstractHitting.DEFAULT_INTERVAL);
+    }
+
+    /**
+     * @param zkServer    Zookeeper地址
+     * @param productName 产品名称,作为计数器路径前缀
+     * @param interval    写入间隔(毫秒)
+     */
+    public ZookeeperHitting(String zkServer, String productName, long interval) {
         this.client = CuratorFrameworkFactory.builder()
                 .connectString(zkServer)
                 .retryPolicy(new RetryNTimes(3, 0))
@@ -98,24 +107,17 @@ public class ZookeeperHitting implements Hitting {
             throw new RuntimeException("create path: " + hitPathPrefix + ", " + requirePathPrefix + " on namespace: " + NAME_SPACE + " error", e);
         }
 
-        executor.submit(() -> {
-            while (!isShutdown) {
-                dumpToZK(hitQueue, hitCounterMap, hitPathPrefix);
-                dumpToZK(requireQueue, requireCounterMap, requirePathPrefix);
-            }
-        });
+        this.flushTask = executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void hitIncr(String pattern, int count) {
-        if (count != 0)
-            hitQueue.add(CachePair.of(pattern, count));
+        counter.hitIncr(pattern, count);
     }
 
     @Override
     public void reqIncr(String pattern, int count) {
-        if (count != 0)
-            requireQueue.add(CachePair.of(pattern, count));
+        counter.reqIncr(pattern, count);
     }
 
     @Override
@@ -145,26 +147,29 @@ public class ZookeeperHitting implements Hitting {
 
     @Override
     public void reset(String pattern) {
+        counter.reset(pattern);
         hitCounterMap.computeIfPresent(pattern, this::doReset);
         requireCounterMap.computeIfPresent(pattern, this::doReset);
     }
 
     @Override
     public void resetAll() {
+        counter.resetAll();
         hitCounterMap.forEach(this::doReset);
         requireCounterMap.forEach(this::doReset);
     }
 
     @PreDestroy
     public void tearDown() {
-        while (hitQueue.size() > 0 || requireQueue.size() > 0) {
+        if (flushTask.cancel(false)) {
             try {
-                TimeUnit.SECONDS.sleep(1);
-            } catch (InterruptedException ignored) {
+                executor.submit(this::flush).get(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                Logger.error(e, "flush hit count on shutdown error: {}", e.getMessage());
             }
         }
-
-        isShutdown = true;
     }
 
     private String processProductName(String productName) {
@@ -189,30 +194,32 @@ public class ZookeeperHitting implements Hitting {
         return null;
     }
 
-    private void dumpToZK(BlockingQueue<CachePair<String, Integer>> queue, Map<String, DistributedAtomicLong> counterMap, String zkPrefix) {
-        long count = 0;
-        CachePair<String, Integer> head;
-
-        // 将queue中所有的 || 前100条数据聚合到一个暂存Map中
-        Map<String, AtomicLong> holdMap = new HashMap<>();
-        while ((head = queue.poll()) != null && count <= 100) {
-            holdMap
-                    .computeIfAbsent(head.getLeft(), (key) -> new AtomicLong(0L))
-                    .addAndGet(head.getRight());
-            ++count;
-        }
-
-        holdMap.forEach((pattern, atomicCount) -> {
-            String zkPath = String.format("%s/%s", zkPrefix, pattern);
-            DistributedAtomicLong counter = counterMap.computeIfAbsent(pattern, (key) -> new DistributedAtomicLong(client, zkPath, new RetryNTimes(10, 10)));
-            try {
-                counter.add(atomicCount.get()).postValue();
-            } catch (Exception e) {
-                Logger.error(e, "dump data from queue to zookeeper error: ", e.getMessage());
+    private void flush() {
+        Map<String, long[]> deltas = counter.drain();
+        deltas.forEach((pattern, delta) -> {
+            if (!add(hitCounterMap, hitPathPrefix, pattern, delta[0])) {
+                counter.restore(Collections.singletonMap(pattern, new long[]{delta[0], 0}));
+            }
+            if (!add(requireCounterMap, requirePathPrefix, pattern, delta[1])) {
+                counter.restore(Collections.singletonMap(pattern, new long[]{0, delta[1]}));
             }
         });
     }
 
+    private boolean add(Map<String, DistributedAtomicLong> counterMap, String zkPrefix, String pattern, long delta) {
+        DistributedAtomicLong distributed = counterMap.computeIfAbsent(pattern, (key) ->
+                new DistributedAtomicLong(client, String.format("%s/%s", zkPrefix, pattern), new RetryNTimes(10, 10)));
+        if (delta == 0) {
+            return true;
+        }
+        try {
+            return distributed.add(delta).succeeded();
+        } catch (Exception e) {
+            Logger.error(e, "dump data to zookeeper error: ", e.getMessage());
+            return false;
+        }
+    }
+
     private long getValue(Object value) throws Exception {
         long result = 0L;
         if (value != null) {
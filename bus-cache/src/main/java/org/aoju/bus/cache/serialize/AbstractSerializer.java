@@ -26,27 +26,73 @@ package org.aoju.bus.cache.serialize;
 
 import org.aoju.bus.logger.Logger;
 
+import java.util.Arrays;
+
 /**
+ * 序列化基类
+ * 子类可直接写入{@link BufferOutput}并从数组区间读取, 序列化为byte[]时使用线程复用的缓冲区, 只复制一次;
+ * 只实现{@link #doSerialize(Object)}与{@link #doDeserialize(byte[])}的子类仍可使用, 两组方法至少覆盖其一
+ *
  * @author Kimi Liu
  * @version 6.1.1
  * @since JDK 1.8+
  */
 public abstract class AbstractSerializer implements BaseSerializer {
 
-    protected abstract byte[] doSerialize(Object obj) throws Throwable;
+    protected byte[] doSerialize(Object obj) throws Throwable {
+        BufferOutput out = BufferOutput.acquire();
+        try {
+            doSerialize(obj, out);
+            return out.toByteArray();
+        } finally {
+            out.release();
+        }
+    }
 
-    protected abstract Object doDeserialize(byte[] bytes) throws Throwable;
+    protected Object doDeserialize(byte[] bytes) throws Throwable {
+        return doDeserialize(bytes, 0, bytes.length);
+    }
+
+    protected void doSerialize(Object obj, BufferOutput out) throws Throwable {
+        byte[] bytes = doSerialize(obj);
+        if (null != bytes) {
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    protected Object doDeserialize(byte[] bytes, int offset, int length) throws Throwable {
+        if (offset == 0 && length == bytes.length) {
+            return doDeserialize(bytes);
+        }
+        return doDeserialize(Arrays.copyOfRange(bytes, offset, offset + length));
+    }
 
     @Override
     public <T> byte[] serialize(T obj) {
         if (obj == null) {
             return null;
         }
+        BufferOutput out = BufferOutput.acquire();
         try {
-            return doSerialize(obj);
+            return serialize(obj, out) ? out.toByteArray() : null;
+        } finally {
+            out.release();
+        }
+    }
+
+    @Override
+    public <T> boolean serialize(T obj, BufferOutput out) {
+        if (obj == null) {
+            return false;
+        }
+        int mark = out.size();
+        try {
+            doSerialize(obj, out);
+            return true;
         } catch (Throwable t) {
+            out.setSize(mark);
             Logger.error("{} serialize error.", this.getClass().getName(), t);
-            return null;
+            return false;
         }
     }
 
@@ -55,9 +101,17 @@ public abstract class AbstractSerializer implements BaseSerializer {
         if (bytes == null) {
             return null;
         }
+        return deserialize(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, int offset, int length) {
+        if (bytes == null) {
+            return null;
+        }
 
         try {
-            return (T) doDeserialize(bytes);
+            return (T) doDeserialize(bytes, offset, length);
         } catch (Throwable t) {
             Logger.error("{} deserialize error.", this.getClass().getName(), t);
             return null;
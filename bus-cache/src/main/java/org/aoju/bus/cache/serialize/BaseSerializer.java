@@ -24,6 +24,9 @@
  ********************************************************************************/
 package org.aoju.bus.cache.serialize;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * @author Kimi Liu
  * @version 6.1.1
@@ -34,4 +37,57 @@ public interface BaseSerializer {
     <T> byte[] serialize(T obj);
 
     <T> T deserialize(byte[] bytes);
+
+    /**
+     * 序列化并追加到缓冲区, 不生成中间数组
+     *
+     * @param obj 对象
+     * @param out 缓冲区
+     * @param <T> 对象类型
+     * @return 是否写入, 对象为null或序列化失败时不写入任何内容
+     */
+    default <T> boolean serialize(T obj, BufferOutput out) {
+        byte[] bytes = serialize(obj);
+        if (bytes == null) {
+            return false;
+        }
+        out.write(bytes, 0, bytes.length);
+        return true;
+    }
+
+    /**
+     * 反序列化数组中的一段
+     *
+     * @param bytes  数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @param <T>    对象类型
+     * @return 对象
+     */
+    default <T> T deserialize(byte[] bytes, int offset, int length) {
+        if (bytes == null) {
+            return null;
+        }
+        return deserialize(offset == 0 && length == bytes.length ? bytes : Arrays.copyOfRange(bytes, offset, offset + length));
+    }
+
+    /**
+     * 反序列化缓冲区中剩余的内容, 不改变其position
+     *
+     * @param buffer 缓冲区
+     * @param <T>    对象类型
+     * @return 对象
+     */
+    default <T> T deserialize(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            return deserialize(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return deserialize(bytes);
+    }
+
 }
@@ -0,0 +1,440 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.serialize;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+
+import java.util.*;
+
+/**
+ * 紧凑的二进制序列化
+ * String、基本类型包装类、byte[]以及由它们组成的ArrayList/LinkedList/HashMap/LinkedHashMap/HashSet/LinkedHashSet
+ * 直接按类型标记编码, 整数使用变长编码; 其他类型交给后备序列化方式处理
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class BinarySerializer extends AbstractSerializer {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte SHORT = 8;
+    private static final byte BYTE = 9;
+    private static final byte CHAR = 10;
+    private static final byte BYTES = 11;
+    private static final byte ARRAY_LIST = 12;
+    private static final byte LINKED_LIST = 13;
+    private static final byte HASH_MAP = 14;
+    private static final byte LINKED_HASH_MAP = 15;
+    private static final byte HASH_SET = 16;
+    private static final byte LINKED_HASH_SET = 17;
+    private static final byte OBJECT = 18;
+
+    private static final Map<Class<?>, Byte> TAGS = new IdentityHashMap<>();
+
+    static {
+        TAGS.put(String.class, STRING);
+        TAGS.put(Integer.class, INT);
+        TAGS.put(Long.class, LONG);
+        TAGS.put(Boolean.class, TRUE);
+        TAGS.put(Double.class, DOUBLE);
+        TAGS.put(Float.class, FLOAT);
+        TAGS.put(Short.class, SHORT);
+        TAGS.put(Byte.class, BYTE);
+        TAGS.put(Character.class, CHAR);
+        TAGS.put(byte[].class, BYTES);
+        TAGS.put(ArrayList.class, ARRAY_LIST);
+        TAGS.put(LinkedList.class, LINKED_LIST);
+        TAGS.put(HashMap.class, HASH_MAP);
+        TAGS.put(LinkedHashMap.class, LINKED_HASH_MAP);
+        TAGS.put(HashSet.class, HASH_SET);
+        TAGS.put(LinkedHashSet.class, LINKED_HASH_SET);
+    }
+
+    private final BaseSerializer fallback;
+
+    public BinarySerializer() {
+        this(new Hessian2Serializer());
+    }
+
+    /**
+     * @param fallback 不支持的类型使用的序列化方式
+     */
+    public BinarySerializer(BaseSerializer fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    protected void doSerialize(Object obj, BufferOutput out) throws Throwable {
+        write(obj, out);
+    }
+
+    @Override
+    protected Object doDeserialize(byte[] bytes, int offset, int length) throws Throwable {
+        Input in = new Input(bytes, offset, offset + length);
+        Object result = read(in);
+        if (in.pos != in.end) {
+            throw new InstrumentException("{} trailing bytes", in.end - in.pos);
+        }
+        return result;
+    }
+
+    private void write(Object obj, BufferOutput out) {
+        if (obj == null) {
+            out.write(NULL);
+            return;
+        }
+
+        Byte tag = TAGS.get(obj.getClass());
+        if (tag == null) {
+            writeObject(obj, out);
+            return;
+        }
+
+        switch (tag) {
+            case STRING:
+                out.write(STRING);
+                writeString((String) obj, out);
+                break;
+            case INT:
+                out.write(INT);
+                out.writeVarInt(zigzag((Integer) obj));
+                break;
+            case LONG:
+                out.write(LONG);
+                writeVarLong(zigzag((Long) obj), out);
+                break;
+            case TRUE:
+                out.write((Boolean) obj ? TRUE : FALSE);
+                break;
+            case DOUBLE:
+                out.write(DOUBLE);
+                writeFixedLong(Double.doubleToRawLongBits((Double) obj), out);
+                break;
+            case FLOAT:
+                out.write(FLOAT);
+                writeFixedInt(Float.floatToRawIntBits((Float) obj), out);
+                break;
+            case SHORT:
+                out.write(SHORT);
+                out.writeVarInt(zigzag((Short) obj));
+                break;
+            case BYTE:
+                out.write(BYTE);
+                out.write((Byte) obj);
+                break;
+            case CHAR:
+                out.write(CHAR);
+                out.writeVarInt((Character) obj);
+                break;
+            case BYTES:
+                byte[] bytes = (byte[]) obj;
+                out.write(BYTES);
+                out.writeVarInt(bytes.length);
+                out.write(bytes, 0, bytes.length);
+                break;
+            case ARRAY_LIST:
+            case LINKED_LIST:
+            case HASH_SET:
+            case LINKED_HASH_SET:
+                Collection<?> collection = (Collection<?>) obj;
+                out.write(tag);
+                out.writeVarInt(collection.size());
+                for (Object element : collection) {
+                    write(element, out);
+                }
+                break;
+            default:
+                Map<?, ?> map = (Map<?, ?>) obj;
+                out.write(tag);
+                out.writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    write(entry.getKey(), out);
+                    write(entry.getValue(), out);
+                }
+                break;
+        }
+    }
+
+    /**
+     * 后备序列化的结果前写入长度, 先写入临时缓冲区
+     */
+    private void writeObject(Object obj, BufferOutput out) {
+        BufferOutput buffer = BufferOutput.acquire();
+        try {
+            if (!fallback.serialize(obj, buffer)) {
+                throw new InstrumentException("{} serialize failed", obj.getClass().getName());
+            }
+            out.write(OBJECT);
+            out.writeVarInt(buffer.size());
+            out.write(buffer.buffer(), 0, buffer.size());
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private Object read(Input in) {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INT:
+                return unzigzag(in.readVarInt());
+            case LONG:
+                return unzigzag(in.readVarLong());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readFixedLong());
+            case FLOAT:
+                return Float.intBitsToFloat(in.readFixedInt());
+            case SHORT:
+                return (short) unzigzag(in.readVarInt());
+            case BYTE:
+                return in.readByte();
+            case CHAR:
+                return (char) in.readVarInt();
+            case BYTES:
+                int length = in.readLength();
+                byte[] bytes = Arrays.copyOfRange(in.buf, in.pos, in.pos + length);
+                in.pos += length;
+                return bytes;
+            case ARRAY_LIST:
+                return readCollection(in, new ArrayList<>(capacity(in)));
+            case LINKED_LIST:
+                return readCollection(in, new LinkedList<>());
+            case HASH_SET:
+                return readCollection(in, new HashSet<>(capacity(in)));
+            case LINKED_HASH_SET:
+                return readCollection(in, new LinkedHashSet<>(capacity(in)));
+            case HASH_MAP:
+                return readMap(in, new HashMap<>(capacity(in)));
+            case LINKED_HASH_MAP:
+                return readMap(in, new LinkedHashMap<>(capacity(in)));
+            case OBJECT:
+                int size = in.readLength();
+                Object result = fallback.deserialize(in.buf, in.pos, size);
+                in.pos += size;
+                return result;
+            default:
+                throw new InstrumentException("unknown type tag: {}", tag);
+        }
+    }
+
+    /**
+     * 预读元素个数估算容量, 不移动读取位置
+     */
+    private static int capacity(Input in) {
+        int pos = in.pos;
+        int size = in.readLength();
+        in.pos = pos;
+        return Math.min(size, in.end - in.pos) + 1;
+    }
+
+    private Collection<Object> readCollection(Input in, Collection<Object> collection) {
+        int size = in.readLength();
+        for (int i = 0; i < size; ++i) {
+            collection.add(read(in));
+        }
+        return collection;
+    }
+
+    private Map<Object, Object> readMap(Input in, Map<Object, Object> map) {
+        int size = in.readLength();
+        for (int i = 0; i < size; ++i) {
+            Object key = read(in);
+            map.put(key, read(in));
+        }
+        return map;
+    }
+
+    /**
+     * 字符数 + 逐字符UTF-8编码(代理对按单个字符编码), ASCII占1字节
+     */
+    private static void writeString(String value, BufferOutput out) {
+        int length = value.length();
+        out.writeVarInt(length);
+        byte[] buf = out.ensureCapacity(length * 3);
+        int pos = out.size();
+        for (int i = 0; i < length; ++i) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | c >> 6);
+                buf[pos++] = (byte) (0x80 | c & 0x3F);
+            } else {
+                buf[pos++] = (byte) (0xE0 | c >> 12);
+                buf[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buf[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        out.setSize(pos);
+    }
+
+    private static String readString(Input in) {
+        int length = in.readLength();
+        char[] chars = new char[length];
+        byte[] buf = in.buf;
+        int pos = in.pos;
+        for (int i = 0; i < length; ++i) {
+            int b = buf[pos++] & 0xFF;
+            if (b < 0x80) {
+                chars[i] = (char) b;
+            } else if (b < 0xE0) {
+                chars[i] = (char) ((b & 0x1F) << 6 | buf[pos++] & 0x3F);
+            } else {
+                chars[i] = (char) ((b & 0x0F) << 12 | (buf[pos++] & 0x3F) << 6 | buf[pos++] & 0x3F);
+            }
+        }
+        if (pos > in.end) {
+            throw new InstrumentException("corrupted string");
+        }
+        in.pos = pos;
+        return new String(chars);
+    }
+
+    private static void writeVarLong(long value, BufferOutput out) {
+        byte[] buf = out.ensureCapacity(10);
+        int pos = out.size();
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        out.setSize(pos);
+    }
+
+    private static void writeFixedInt(int value, BufferOutput out) {
+        byte[] buf = out.ensureCapacity(4);
+        int pos = out.size();
+        buf[pos] = (byte) value;
+        buf[pos + 1] = (byte) (value >>> 8);
+        buf[pos + 2] = (byte) (value >>> 16);
+        buf[pos + 3] = (byte) (value >>> 24);
+        out.setSize(pos + 4);
+    }
+
+    private static void writeFixedLong(long value, BufferOutput out) {
+        writeFixedInt((int) value, out);
+        writeFixedInt((int) (value >>> 32), out);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 读取位置, 越界由数组下标检查发现
+     */
+    private static class Input {
+
+        private final byte[] buf;
+        private final int end;
+        private int pos;
+
+        Input(byte[] buf, int pos, int end) {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        byte readByte() {
+            if (pos >= end) {
+                throw new InstrumentException("unexpected end of data");
+            }
+            return buf[pos++];
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = readByte();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new InstrumentException("malformed varint");
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new InstrumentException("malformed varint");
+        }
+
+        int readLength() {
+            int length = readVarInt();
+            if (length < 0 || length > end - pos) {
+                throw new InstrumentException("invalid length: {}", length);
+            }
+            return length;
+        }
+
+        int readFixedInt() {
+            if (end - pos < 4) {
+                throw new InstrumentException("unexpected end of data");
+            }
+            int value = (buf[pos] & 0xFF) | (buf[pos + 1] & 0xFF) << 8 | (buf[pos + 2] & 0xFF) << 16 | (buf[pos + 3] & 0xFF) << 24;
+            pos += 4;
+            return value;
+        }
+
+        long readFixedLong() {
+            return (readFixedInt() & 0xFFFFFFFFL) | (long) readFixedInt() << 32;
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.serialize;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 可复用的字节输出缓冲区
+ * 每个线程缓存少量实例, 序列化直接写入其中, 只在最终交给客户端时复制一次;
+ * 同一线程嵌套使用超出缓存数量时另行创建临时实例
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public final class BufferOutput extends OutputStream {
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    /**
+     * 超过该大小的缓冲区用完后不再保留, 避免偶发的大对象长期占用内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+    /**
+     * 每个线程保留两个, 满足序列化与压缩同时使用
+     */
+    private static final ThreadLocal<BufferOutput[]> CACHED = ThreadLocal.withInitial(() -> new BufferOutput[]{
+            new BufferOutput(INITIAL_CAPACITY), new BufferOutput(INITIAL_CAPACITY)
+    });
+
+    private byte[] buf;
+    private int count;
+    private boolean acquired;
+
+    public BufferOutput(int capacity) {
+        this.buf = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * 获取当前线程的缓冲区, 用完后须调用{@link #release()}
+     *
+     * @return 已清空的缓冲区
+     */
+    public static BufferOutput acquire() {
+        BufferOutput out = null;
+        for (BufferOutput cached : CACHED.get()) {
+            if (!cached.acquired) {
+                out = cached;
+                break;
+            }
+        }
+        if (out == null) {
+            out = new BufferOutput(INITIAL_CAPACITY);
+        }
+        out.acquired = true;
+        out.count = 0;
+        return out;
+    }
+
+    /**
+     * 归还缓冲区
+     */
+    public void release() {
+        acquired = false;
+        count = 0;
+        if (buf.length > MAX_RETAINED_CAPACITY) {
+            buf = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * 确保还能写入指定字节数
+     *
+     * @param length 字节数
+     * @return 底层数组, 扩容后会变化
+     */
+    public byte[] ensureCapacity(int length) {
+        int required = count + length;
+        if (required < 0) {
+            throw new OutOfMemoryError("buffer too large");
+        }
+        if (required > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(required, buf.length << 1));
+        }
+        return buf;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    /**
+     * 写入变长整数, 每字节7位, 小端
+     *
+     * @param value 非负整数
+     */
+    public void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buf[count++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[count++] = (byte) value;
+    }
+
+    /**
+     * 底层数组, 有效数据为[0, size())
+     *
+     * @return 数组
+     */
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 直接写入底层数组后更新长度, 或回退到之前的长度
+     *
+     * @param size 新的长度
+     */
+    public void setSize(int size) {
+        if (size < 0 || size > buf.length) {
+            throw new IndexOutOfBoundsException("size: " + size);
+        }
+        this.count = size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * 包装为ByteBuffer, 不复制数据, 在缓冲区归还前有效
+     *
+     * @return 只读的ByteBuffer
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(buf, 0, count).asReadOnlyBuffer();
+    }
+
+    @Override
+    public void close() {
+        // 由acquire/release管理生命周期
+    }
+
+}
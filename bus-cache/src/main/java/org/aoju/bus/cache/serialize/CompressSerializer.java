@@ -0,0 +1,167 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.serialize;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+
+/**
+ * 按大小压缩的序列化包装
+ * 序列化结果不小于阈值时压缩, 压缩后没有变小则保留原文;
+ * 数据首字节为压缩算法标识(0表示未压缩), 压缩时其后为原始长度与压缩数据,
+ * 解压时按标识选择算法, 因此更换算法后旧数据仍可读取
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class CompressSerializer extends AbstractSerializer {
+
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    /**
+     * 默认允许解压的最大长度: 64MB
+     */
+    public static final int DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
+    private static final byte RAW = 0;
+
+    private static final Compressor DEFLATE = new DeflateCompressor();
+
+    private static final Compressor LZ4 = new Lz4Compressor();
+
+    private final BaseSerializer delegate;
+
+    private final Compressor compressor;
+
+    private final int threshold;
+
+    private final int maxSize;
+
+    public CompressSerializer(BaseSerializer delegate) {
+        this(delegate, LZ4, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param delegate   实际的序列化方式
+     * @param compressor 压缩算法
+     * @param threshold  压缩阈值(字节)
+     */
+    public CompressSerializer(BaseSerializer delegate, Compressor compressor, int threshold) {
+        this(delegate, compressor, threshold, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param delegate   实际的序列化方式
+     * @param compressor 压缩算法
+     * @param threshold  压缩阈值(字节)
+     * @param maxSize    允许解压的最大长度(字节), 数据头中的原始长度超出时拒绝解压
+     */
+    public CompressSerializer(BaseSerializer delegate, Compressor compressor, int threshold, int maxSize) {
+        if (compressor.id() == RAW) {
+            throw new IllegalArgumentException("compressor id 0 is reserved");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.delegate = delegate;
+        this.compressor = compressor;
+        this.threshold = threshold;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    protected void doSerialize(Object obj, BufferOutput out) throws Throwable {
+        int mark = out.size();
+        out.write(RAW);
+        if (!delegate.serialize(obj, out)) {
+            throw new InstrumentException("{} serialize failed", delegate.getClass().getName());
+        }
+
+        int length = out.size() - mark - 1;
+        if (length < threshold) {
+            return;
+        }
+
+        BufferOutput compressed = BufferOutput.acquire();
+        try {
+            compressed.writeVarInt(length);
+            compressor.compress(out.buffer(), mark + 1, length, compressed);
+            if (compressed.size() < length) {
+                out.setSize(mark);
+                out.write(compressor.id());
+                out.write(compressed.buffer(), 0, compressed.size());
+            }
+        } finally {
+            compressed.release();
+        }
+    }
+
+    @Override
+    protected Object doDeserialize(byte[] bytes, int offset, int length) throws Throwable {
+        if (length == 0) {
+            return null;
+        }
+
+        byte id = bytes[offset];
+        if (id == RAW) {
+            return delegate.deserialize(bytes, offset + 1, length - 1);
+        }
+
+        int pos = offset + 1;
+        int end = offset + length;
+        int size = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (pos >= end || shift > 28) {
+                throw new InstrumentException("corrupted compressed data");
+            }
+            byte b = bytes[pos++];
+            size |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+
+        // 原始长度来自数据本身, 分配前校验, 避免损坏或伪造的数据申请过大的内存
+        if (size < 0 || size > maxSize) {
+            throw new InstrumentException("compressed data too large: {} bytes", size);
+        }
+
+        byte[] raw = new byte[size];
+        compressorOf(id).decompress(bytes, pos, end - pos, raw);
+        return delegate.deserialize(raw, 0, size);
+    }
+
+    private Compressor compressorOf(byte id) {
+        if (id == compressor.id()) {
+            return compressor;
+        } else if (id == DeflateCompressor.ID) {
+            return DEFLATE;
+        } else if (id == Lz4Compressor.ID) {
+            return LZ4;
+        }
+        throw new InstrumentException("unknown compressor: {}", id);
+    }
+
+}
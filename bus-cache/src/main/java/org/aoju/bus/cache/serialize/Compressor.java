@@ -0,0 +1,64 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.serialize;
+
+/**
+ * 压缩算法, 供{@link CompressSerializer}使用
+ * 实现需要线程安全
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public interface Compressor {
+
+    /**
+     * 算法标识, 写入数据头用于解压时识别, 0保留给未压缩的数据
+     *
+     * @return 标识
+     */
+    byte id();
+
+    /**
+     * 压缩并追加到缓冲区
+     *
+     * @param src    源数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @param out    输出
+     */
+    void compress(byte[] src, int offset, int length, BufferOutput out);
+
+    /**
+     * 解压到目标数组
+     *
+     * @param src       压缩数据
+     * @param offset    起始位置
+     * @param length    长度
+     * @param dest      目标数组, 长度即原始数据长度
+     */
+    void decompress(byte[] src, int offset, int length, byte[] dest);
+
+}
@@ -0,0 +1,103 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.serialize;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate压缩, 可指定压缩级别
+ * 每个线程复用Deflater/Inflater, 避免反复申请本地内存
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class DeflateCompressor implements Compressor {
+
+    public static final byte ID = 1;
+
+    private final ThreadLocal<Deflater> deflater;
+
+    private final ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    public DeflateCompressor() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param level 压缩级别, 0~9, 越大压缩率越高、速度越慢
+     */
+    public DeflateCompressor(int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("invalid deflate level: " + level);
+        }
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public void compress(byte[] src, int offset, int length, BufferOutput out) {
+        Deflater deflater = this.deflater.get();
+        deflater.reset();
+        deflater.setInput(src, offset, length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            byte[] buf = out.ensureCapacity(Math.max(64, length >>> 1));
+            int size = out.size();
+            out.setSize(size + deflater.deflate(buf, size, buf.length - size));
+        }
+    }
+
+    @Override
+    public void decompress(byte[] src, int offset, int length, byte[] dest) {
+        Inflater inflater = this.inflater.get();
+        inflater.reset();
+        inflater.setInput(src, offset, length);
+        try {
+            int size = 0;
+            while (size < dest.length && !inflater.finished()) {
+                int count = inflater.inflate(dest, size, dest.length - size);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                size += count;
+            }
+            if (size != dest.length) {
+                throw new InstrumentException("corrupted deflate data, expected " + dest.length + " bytes but got " + size);
+            }
+        } catch (DataFormatException e) {
+            throw new InstrumentException(e);
+        }
+    }
+
+}
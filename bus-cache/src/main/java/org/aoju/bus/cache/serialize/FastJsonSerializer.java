@@ -41,15 +41,13 @@ public class FastJsonSerializer extends AbstractSerializer {
     }
 
     @Override
-    protected byte[] doSerialize(Object obj) throws Throwable {
-        String json = JSON.toJSONString(obj);
-        return json.getBytes(Charset.DEFAULT_UTF_8);
+    protected void doSerialize(Object obj, BufferOutput out) throws Throwable {
+        JSON.writeJSONString(out, Charset.UTF_8, obj);
     }
 
     @Override
-    protected Object doDeserialize(byte[] bytes) throws Throwable {
-        String json = new String(bytes, 0, bytes.length, Charset.DEFAULT_UTF_8);
-        return JSON.parseObject(json, type);
+    protected Object doDeserialize(byte[] bytes, int offset, int length) throws Throwable {
+        return JSON.parseObject(bytes, offset, length, Charset.UTF_8, type);
     }
 
 }
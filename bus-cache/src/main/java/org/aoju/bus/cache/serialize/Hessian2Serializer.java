@@ -28,32 +28,42 @@ import com.caucho.hessian.io.Hessian2Input;
 import com.caucho.hessian.io.Hessian2Output;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 
 /**
+ * Hessian2序列化
+ * 每个线程复用一组Hessian2Output/Hessian2Input及其内部缓冲区
+ *
  * @author Kimi Liu
  * @version 6.1.1
  * @since JDK 1.8+
  */
 public class Hessian2Serializer extends AbstractSerializer {
 
+    private static final ThreadLocal<Hessian2Output> OUTPUT = ThreadLocal.withInitial(Hessian2Output::new);
+
+    private static final ThreadLocal<Hessian2Input> INPUT = ThreadLocal.withInitial(Hessian2Input::new);
+
     @Override
-    protected byte[] doSerialize(Object obj) throws Throwable {
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            Hessian2Output out = new Hessian2Output(os);
-            out.writeObject(obj);
-            os.close();
-            return os.toByteArray();
+    protected void doSerialize(Object obj, BufferOutput out) throws Throwable {
+        Hessian2Output output = OUTPUT.get();
+        output.init(out);
+        try {
+            output.writeObject(obj);
+            // 内部缓冲区需要刷出, 否则小对象不会写入out
+            output.flushBuffer();
+        } finally {
+            output.init(null);
         }
     }
 
     @Override
-    protected Object doDeserialize(byte[] bytes) throws Throwable {
-        try (ByteArrayInputStream is = new ByteArrayInputStream(bytes)) {
-            Hessian2Input in = new Hessian2Input(is);
-            Object result = in.readObject();
-            in.close();
-            return result;
+    protected Object doDeserialize(byte[] bytes, int offset, int length) throws Throwable {
+        Hessian2Input input = INPUT.get();
+        input.init(new ByteArrayInputStream(bytes, offset, length));
+        try {
+            return input.readObject();
+        } finally {
+            input.init(null);
         }
     }
 
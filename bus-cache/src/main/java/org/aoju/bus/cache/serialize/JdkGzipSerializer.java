@@ -25,7 +25,6 @@
 package org.aoju.bus.cache.serialize;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.zip.GZIPInputStream;
@@ -39,22 +38,17 @@ import java.util.zip.GZIPOutputStream;
 public class JdkGzipSerializer extends AbstractSerializer {
 
     @Override
-    protected byte[] doSerialize(Object obj) throws Throwable {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             GZIPOutputStream gzout = new GZIPOutputStream(bos);
-             ObjectOutputStream out = new ObjectOutputStream(gzout)) {
-
-            out.writeObject(obj);
-            return bos.toByteArray();
+    protected void doSerialize(Object obj, BufferOutput out) throws Throwable {
+        // 关闭ObjectOutputStream时才会写出gzip尾部, 之后out中才是完整数据
+        try (ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(out))) {
+            oos.writeObject(obj);
         }
     }
 
     @Override
-    protected Object doDeserialize(byte[] bytes) throws Throwable {
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-             GZIPInputStream gzin = new GZIPInputStream(bis);
-             ObjectInputStream ois = new ObjectInputStream(gzin)) {
-
+    protected Object doDeserialize(byte[] bytes, int offset, int length) throws Throwable {
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(bytes, offset, length)))) {
             return ois.readObject();
         }
     }
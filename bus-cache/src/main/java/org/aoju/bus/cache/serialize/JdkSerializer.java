@@ -85,18 +85,16 @@ public class JdkSerializer extends AbstractSerializer {
     }
 
     @Override
-    protected byte[] doSerialize(Object obj) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(512);
-        serialize((Serializable) obj, baos);
-        return baos.toByteArray();
+    protected void doSerialize(Object obj, BufferOutput out) {
+        serialize((Serializable) obj, (OutputStream) out);
     }
 
     @Override
-    protected Object doDeserialize(byte[] bytes) {
+    protected Object doDeserialize(byte[] bytes, int offset, int length) {
         if (bytes == null) {
             throw new IllegalArgumentException("The byte[] must not be null");
         } else {
-            return deserialize(new ByteArrayInputStream(bytes));
+            return deserialize(new ByteArrayInputStream(bytes, offset, length));
         }
     }
 
@@ -0,0 +1,209 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.serialize;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+
+import java.util.Arrays;
+
+/**
+ * LZ4块格式的快速压缩, 纯Java实现, 不依赖本地库
+ * 以4字节哈希查找64KB窗口内的重复串, 压缩率低于Deflate, 但压缩与解压速度高出数倍,
+ * 适合延迟敏感、数据重复度较高的缓存值
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class Lz4Compressor implements Compressor {
+
+    public static final byte ID = 2;
+
+    private static final int MIN_MATCH = 4;
+    private static final int HASH_LOG = 12;
+    private static final int MAX_OFFSET = 65535;
+    /**
+     * 最后一个匹配须在结尾前12字节之前开始, 最后5字节必须是字面量
+     */
+    private static final int MF_LIMIT = 12;
+    private static final int LAST_LITERALS = 5;
+    private static final int SKIP_TRIGGER = 6;
+
+    private static final ThreadLocal<int[]> TABLE = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    private static int readInt(byte[] buf, int i) {
+        return (buf[i] & 0xFF) | (buf[i + 1] & 0xFF) << 8 | (buf[i + 2] & 0xFF) << 16 | (buf[i + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int value) {
+        return (value * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int writeLength(byte[] dest, int op, int length) {
+        while (length >= 255) {
+            dest[op++] = (byte) 255;
+            length -= 255;
+        }
+        dest[op++] = (byte) length;
+        return op;
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public void compress(byte[] src, int offset, int length, BufferOutput out) {
+        byte[] dest = out.ensureCapacity(length + length / 255 + 16);
+        int op = out.size();
+        int end = offset + length;
+        int anchor = offset;
+
+        if (length >= MF_LIMIT + 1) {
+            int[] table = TABLE.get();
+            Arrays.fill(table, -1);
+            int matchLimit = end - LAST_LITERALS;
+            int mfLimit = end - MF_LIMIT;
+            int ip = offset;
+            int searches = 1 << SKIP_TRIGGER;
+
+            while (ip < mfLimit) {
+                int sequence = readInt(src, ip);
+                int h = hash(sequence);
+                int ref = table[h];
+                table[h] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    // 连续未命中时逐渐加大步长, 快速跳过不可压缩的数据
+                    ip += searches++ >>> SKIP_TRIGGER;
+                    continue;
+                }
+                searches = 1 << SKIP_TRIGGER;
+
+                // 向前扩展匹配
+                while (ip > anchor && ref > offset && src[ip - 1] == src[ref - 1]) {
+                    --ip;
+                    --ref;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+                    ++matchLength;
+                }
+
+                op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dest, op);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+
+        // 剩余部分作为字面量
+        int literals = end - anchor;
+        int token = op++;
+        if (literals >= 15) {
+            dest[token] = (byte) 0xF0;
+            op = writeLength(dest, op, literals - 15);
+        } else {
+            dest[token] = (byte) (literals << 4);
+        }
+        System.arraycopy(src, anchor, dest, op, literals);
+        out.setSize(op + literals);
+    }
+
+    private int writeSequence(byte[] src, int anchor, int literals, int matchOffset, int matchLength, byte[] dest, int op) {
+        int token = op++;
+        int high = Math.min(literals, 15);
+        int low = Math.min(matchLength - MIN_MATCH, 15);
+        dest[token] = (byte) (high << 4 | low);
+        if (high == 15) {
+            op = writeLength(dest, op, literals - 15);
+        }
+        System.arraycopy(src, anchor, dest, op, literals);
+        op += literals;
+        dest[op++] = (byte) matchOffset;
+        dest[op++] = (byte) (matchOffset >>> 8);
+        if (low == 15) {
+            op = writeLength(dest, op, matchLength - MIN_MATCH - 15);
+        }
+        return op;
+    }
+
+    @Override
+    public void decompress(byte[] src, int offset, int length, byte[] dest) {
+        int ip = offset;
+        int end = offset + length;
+        int op = 0;
+        try {
+            while (ip < end) {
+                int token = src[ip++] & 0xFF;
+
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dest, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip >= end) {
+                    break;
+                }
+
+                int matchOffset = (src[ip++] & 0xFF) | (src[ip++] & 0xFF) << 8;
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+
+                int ref = op - matchOffset;
+                if (matchOffset == 0 || ref < 0 || op + matchLength > dest.length) {
+                    throw new InstrumentException("corrupted lz4 data at " + (ip - offset));
+                }
+                if (matchOffset >= matchLength) {
+                    System.arraycopy(dest, ref, dest, op, matchLength);
+                    op += matchLength;
+                } else {
+                    // 重叠复制, 逐字节展开
+                    for (int i = 0; i < matchLength; ++i) {
+                        dest[op++] = dest[ref++];
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new InstrumentException("corrupted lz4 data", e);
+        }
+        if (op != dest.length) {
+            throw new InstrumentException("corrupted lz4 data, expected " + dest.length + " bytes but got " + op);
+        }
+    }
+
+}
@@ -85,6 +85,33 @@ public class ArgNameGenerator {
         return xArgs;
     }
 
+    /**
+     * 解析argsN形式的参数名
+     *
+     * @param name 参数名
+     * @return 参数索引, 不是argsN形式时返回-1
+     */
+    public static int getXArgIndex(String name) {
+        int length = name.length();
+        if (length <= X_ARGS_PREFIX.length() || length > X_ARGS_PREFIX.length() + 3 || !name.startsWith(X_ARGS_PREFIX)) {
+            return -1;
+        }
+        if (length > X_ARGS_PREFIX.length() + 1 && name.charAt(X_ARGS_PREFIX.length()) == '0') {
+            return -1;
+        }
+
+        int index = 0;
+        for (int i = X_ARGS_PREFIX.length(); i < length; ++i) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+
+        return index;
+    }
+
     // Java1.8之后提供了获取参数名方法, 但需要编译时添加`–parameters`参数支持, 如`javac –parameters`, 不然参数名为'arg0'
     private static String[] doGetArgNamesWithJava8(Method method) {
         Parameter[] parameters = method.getParameters();
@@ -0,0 +1,218 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.support;
+
+import com.google.common.base.Strings;
+import org.springframework.expression.Expression;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的@CacheKey表达式
+ * 在{@link org.aoju.bus.cache.magic.AnnoHolder}构建时生成,
+ * `#arg`、`#arg.prop`这类简单表达式直接按参数索引取值并反射调用getter, 不经过Spel;
+ * 其他表达式使用解析好的Spel表达式计算
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class KeyExpression {
+
+    private static final Pattern SIMPLE = Pattern.compile("#([A-Za-z_$][\\w$]*)((?:\\.[A-Za-z_$][\\w$]*)*)");
+
+    private static final Object NOT_RESOLVED = new Object();
+
+    private final int argIndex;
+
+    private final Expression expression;
+
+    /**
+     * 简单表达式引用的参数索引, -1表示需要Spel计算
+     */
+    private final int varIndex;
+
+    private final String[] properties;
+
+    private final Accessor[] accessors;
+
+    private KeyExpression(int argIndex, Expression expression, int varIndex, String[] properties) {
+        this.argIndex = argIndex;
+        this.expression = expression;
+        this.varIndex = varIndex;
+        this.properties = properties;
+        this.accessors = properties == null ? null : new Accessor[properties.length];
+    }
+
+    /**
+     * 编译表达式
+     *
+     * @param argIndex 注解所在参数的索引, 表达式为空时取该参数的值
+     * @param spel     表达式
+     * @param argNames 参数名
+     * @return 编译结果
+     */
+    public static KeyExpression compile(int argIndex, String spel, String[] argNames) {
+        if (Strings.isNullOrEmpty(spel)) {
+            return new KeyExpression(argIndex, null, argIndex, null);
+        }
+
+        Expression expression = SpelCalculator.parse(spel);
+        Matcher matcher = SIMPLE.matcher(spel.trim());
+        if (matcher.matches()) {
+            int varIndex = indexOf(matcher.group(1), argNames);
+            if (varIndex != -1) {
+                String path = matcher.group(2);
+                String[] properties = path.isEmpty() ? null : path.substring(1).split("\\.");
+                return new KeyExpression(argIndex, expression, varIndex, properties);
+            }
+        }
+
+        return new KeyExpression(argIndex, expression, -1, null);
+    }
+
+    /**
+     * 与{@link SpelCalculator}中变量的覆盖顺序一致: argsN优先, 同名参数取后者
+     */
+    private static int indexOf(String name, String[] argNames) {
+        int index = ArgNameGenerator.getXArgIndex(name);
+        if (index >= 0) {
+            return index < argNames.length ? index : -1;
+        }
+        for (int i = argNames.length - 1; i >= 0; --i) {
+            if (argNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getArgIndex() {
+        return argIndex;
+    }
+
+    /**
+     * 计算key片段
+     *
+     * @param argNames  参数名
+     * @param argValues 参数值
+     * @return key片段
+     */
+    public Object getValue(String[] argNames, Object[] argValues) {
+        if (varIndex != -1) {
+            Object value = argValues[varIndex];
+            if (properties == null) {
+                return value;
+            }
+
+            for (int i = 0; i < properties.length && value != NOT_RESOLVED; ++i) {
+                value = null == value ? NOT_RESOLVED : read(i, value);
+            }
+            if (value != NOT_RESOLVED) {
+                return value;
+            }
+            // 空值或无法直接读取的属性交给Spel, 保持原有的异常与取值规则
+        }
+
+        return SpelCalculator.calcSpelValue(expression, argNames, argValues);
+    }
+
+    private Object read(int i, Object target) {
+        Accessor accessor = accessors[i];
+        if (accessor == null || accessor.type != target.getClass()) {
+            accessor = Accessor.of(target.getClass(), properties[i]);
+            if (accessor == null) {
+                return NOT_RESOLVED;
+            }
+            accessors[i] = accessor;
+        }
+        return accessor.read(target);
+    }
+
+    /**
+     * 某个类型上属性的读取方式, 与Spel一致优先getter、isXxx, 其次public字段
+     */
+    private static class Accessor {
+
+        private final Class<?> type;
+        private final Method getter;
+        private final Field field;
+
+        private Accessor(Class<?> type, Method getter, Field field) {
+            this.type = type;
+            this.getter = getter;
+            this.field = field;
+        }
+
+        static Accessor of(Class<?> type, String property) {
+            String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+            try {
+                Method getter = findGetter(type, "get" + suffix);
+                if (getter == null) {
+                    getter = findGetter(type, "is" + suffix);
+                    if (getter != null && getter.getReturnType() != boolean.class && getter.getReturnType() != Boolean.class) {
+                        getter = null;
+                    }
+                }
+                if (getter != null) {
+                    getter.setAccessible(true);
+                    return new Accessor(type, getter, null);
+                }
+
+                Field field = type.getField(property);
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    return new Accessor(type, null, field);
+                }
+            } catch (NoSuchFieldException | RuntimeException e) {
+                // 交给Spel处理
+            }
+            return null;
+        }
+
+        private static Method findGetter(Class<?> type, String name) {
+            try {
+                Method method = type.getMethod(name);
+                return method.getReturnType() == void.class || Modifier.isStatic(method.getModifiers()) ? null : method;
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        Object read(Object target) {
+            try {
+                return getter != null ? getter.invoke(target) : field.get(target);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                return NOT_RESOLVED;
+            }
+        }
+    }
+
+}
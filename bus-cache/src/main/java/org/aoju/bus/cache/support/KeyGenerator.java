@@ -24,13 +24,14 @@
  ********************************************************************************/
 package org.aoju.bus.cache.support;
 
-import org.aoju.bus.cache.annotation.CacheKey;
 import org.aoju.bus.cache.magic.AnnoHolder;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
+ * 根据{@link AnnoHolder}中预编译的表达式拼装缓存key
+ *
  * @author Kimi Liu
  * @version 6.1.1
  * @since JDK 1.8+
@@ -38,11 +39,7 @@ import java.util.stream.Collectors;
 public class KeyGenerator {
 
     public static String generateSingleKey(AnnoHolder annoHolder, Object[] argValues) {
-        String[] argNames = ArgNameGenerator.getArgNames(annoHolder.getMethod());
-        Map<Integer, CacheKey> cacheKeyMap = annoHolder.getCacheKeyMap();
-        String prefix = annoHolder.getPrefix();
-
-        return doGenerateKey(cacheKeyMap, prefix, argNames, argValues);
+        return doGenerateKey(annoHolder.getKeyExpressions(), annoHolder.getPrefix(), annoHolder.getArgNames(), argValues);
     }
 
     public static Map[] generateMultiKey(AnnoHolder annoHolder, Object[] argValues) {
@@ -53,23 +50,23 @@ public class KeyGenerator {
         // 准备要拼装key所需的原材料
         // 标记为multi的参数
         Collection multiArgEntries = getMultiArgEntries(argValues[annoHolder.getMultiIndex()]);
-        // 参数索引 -> CacheKey
-        Map<Integer, CacheKey> argIndex2CacheKey = annoHolder.getCacheKeyMap();
+        // 预编译的@CacheKey表达式
+        KeyExpression[] expressions = annoHolder.getKeyExpressions();
         // 全局prefix
         String prefix = annoHolder.getPrefix();
 
-        // 根据方法获取原始的参数名
-        String[] argNames = ArgNameGenerator.getArgNames(annoHolder.getMethod());
-        // 给参数名添加一个`#i`遍历指令
-        String[] appendArgNames = (String[]) appendArray(argNames, "i");
+        // 参数名末尾已追加`#i`遍历指令
+        String[] appendArgNames = annoHolder.getArgNames();
+        // 表达式不会持有参数数组, 所有元素共用一个数组, 只改写末尾`#i`的值
+        Object[] appendArgValues = Arrays.copyOf(argValues, argValues.length + 1);
 
         int i = 0;
         for (Object multiElement : multiArgEntries) {
 
             // 给参数值数组的`#i`指令赋值
-            Object[] appendArgValues = appendArray(argValues, i);
+            appendArgValues[argValues.length] = i;
 
-            String key = doGenerateKey(argIndex2CacheKey, prefix, appendArgNames, appendArgValues);
+            String key = doGenerateKey(expressions, prefix, appendArgNames, appendArgValues);
 
             key2MultiEntry.put(key, multiElement);
             multiEntry2Key.put(multiElement, key);
@@ -79,32 +76,26 @@ public class KeyGenerator {
         return new Map[]{multiEntry2Key, key2MultiEntry};
     }
 
-    private static String doGenerateKey(Map<Integer, CacheKey> parameterIndex2CacheKey,
+    private static String doGenerateKey(KeyExpression[] expressions,
                                         String prefix, String[] argNames, Object[] argValues) {
+        // 无前缀的单个String片段直接作为key, 不再复制
+        if (expressions.length == 1 && prefix.isEmpty()) {
+            Object keyPart = expressions[0].getValue(argNames, argValues);
+            if (keyPart instanceof String) {
+                return (String) keyPart;
+            }
+            return String.valueOf(keyPart);
+        }
 
-        StringBuilder sb = new StringBuilder(prefix);
-        for (Map.Entry<Integer, CacheKey> entry : parameterIndex2CacheKey.entrySet()) {
-            int argIndex = entry.getKey();
-            String argSpel = entry.getValue().value();
-
-            Object defaultValue = getDefaultValue(argValues, argIndex);
-            Object keyPart = SpelCalculator.calcSpelValueWithContext(argSpel, argNames, argValues, defaultValue);
-
-            sb.append(keyPart);
-
+        StringBuilder sb = new StringBuilder(prefix.length() + (expressions.length << 4));
+        sb.append(prefix);
+        for (KeyExpression expression : expressions) {
+            sb.append(expression.getValue(argNames, argValues));
         }
 
         return sb.toString();
     }
 
-    /**
-     * 获取当spel表达式为空(null or '')时, 默认的拼装keyPart
-     * 注意: 当multi的spel表达式为空时, 这时会将整个`Collection`实例作为keyPart(当然, 这种情况不会发生)...
-     */
-    private static Object getDefaultValue(Object[] argValues, int argIndex) {
-        return argValues[argIndex];
-    }
-
     /**
      * 将标记为`multi`的参数转成`Collection`实例
      *
@@ -125,11 +116,4 @@ public class KeyGenerator {
             return Arrays.stream((Object[]) multiArg).collect(Collectors.toList());
         }
     }
-
-    private static Object[] appendArray(Object[] origin, Object append) {
-        Object[] dest = Arrays.copyOf(origin, origin.length + 1);
-        dest[origin.length] = append;
-
-        return dest;
-    }
 }
@@ -42,7 +42,13 @@ public class PatternGenerator {
     private static final ConcurrentMap<Method, String> patterns = new ConcurrentHashMap<>();
 
     public static String generatePattern(AnnoHolder annoHolder) {
-        return patterns.computeIfAbsent(annoHolder.getMethod(), (method) -> doPatternCombiner(annoHolder));
+        Method method = annoHolder.getMethod();
+        // JDK 8的computeIfAbsent在键已存在时仍会加锁,命中时先走无锁读取
+        String pattern = patterns.get(method);
+        if (null != pattern) {
+            return pattern;
+        }
+        return patterns.computeIfAbsent(method, (key) -> doPatternCombiner(annoHolder));
     }
 
     private static String doPatternCombiner(AnnoHolder annoHolder) {
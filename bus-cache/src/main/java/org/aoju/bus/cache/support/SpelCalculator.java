@@ -26,13 +26,20 @@ package org.aoju.bus.cache.support;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
-import org.springframework.expression.EvaluationContext;
-import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.*;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Spel表达式的计算功能(@Cached内的condition、@CacheKey内的spel只是作为一个增值服务, 并不作为核心功能, 只是作为key拼装的一个亮点, 并不是必须功能)
+ * 表达式解析后缓存并以MIXED模式编译为字节码, 计算时直接从参数数组中查找变量, 不再每次创建{@link StandardEvaluationContext}
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -40,28 +47,60 @@ import org.springframework.expression.spel.support.StandardEvaluationContext;
  */
 public class SpelCalculator {
 
-    private static final ExpressionParser parser = new SpelExpressionParser();
+    private static final ExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, SpelCalculator.class.getClassLoader()));
+
+    /**
+     * 表达式均来自注解, 数量有限, 不做淘汰
+     */
+    private static final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    /**
+     * 共享的解析器、类型转换等组件, 初始化完成后只读, 可以并发使用
+     */
+    private static final StandardEvaluationContext shared = new StandardEvaluationContext();
+
+    static {
+        shared.getPropertyAccessors();
+        shared.getConstructorResolvers();
+        shared.getMethodResolvers();
+        shared.getTypeLocator();
+        shared.getTypeConverter();
+    }
+
+    /**
+     * 解析表达式, 同一表达式只解析一次
+     *
+     * @param spel 表达式
+     * @return 解析结果
+     */
+    public static Expression parse(String spel) {
+        Expression expression = expressions.get(spel);
+        if (expression == null) {
+            expression = expressions.computeIfAbsent(spel, parser::parseExpression);
+        }
+        return expression;
+    }
 
     public static Object calcSpelValueWithContext(String spel, String[] argNames, Object[] argValues, Object defaultValue) {
         if (Strings.isNullOrEmpty(spel)) {
             return defaultValue;
         }
 
-        // 将[参数名->参数值]导入spel环境
-        EvaluationContext context = new StandardEvaluationContext();
-
         Preconditions.checkState(argNames.length == argValues.length);
-        for (int i = 0; i < argValues.length; ++i) {
-            context.setVariable(argNames[i], argValues[i]);
-        }
-
-        // todo: 先将xArg放到这儿, 后面可以再想下可以放到哪儿?
-        String[] xArgNames = ArgNameGenerator.getXArgNames(argValues.length);
-        for (int i = 0; i < argValues.length; ++i) {
-            context.setVariable(xArgNames[i], argValues[i]);
-        }
+        return calcSpelValue(parse(spel), argNames, argValues);
+    }
 
-        return parser.parseExpression(spel).getValue(context);
+    /**
+     * 以方法参数作为变量计算已解析的表达式, 参数名与argsN两种写法均可引用
+     *
+     * @param expression 已解析的表达式
+     * @param argNames   参数名
+     * @param argValues  参数值
+     * @return 计算结果
+     */
+    public static Object calcSpelValue(Expression expression, String[] argNames, Object[] argValues) {
+        return expression.getValue(new ArgumentContext(argNames, argValues));
     }
 
     public static Object calcSpelWithNoContext(String spel, Object defaultValue) {
@@ -69,7 +108,94 @@ public class SpelCalculator {
             return defaultValue;
         }
 
-        return parser.parseExpression(spel).getValue(defaultValue);
+        return parse(spel).getValue(defaultValue);
+    }
+
+    /**
+     * 直接从参数数组中查找变量的计算环境, 其余组件使用共享实例
+     */
+    private static class ArgumentContext implements EvaluationContext {
+
+        private final String[] argNames;
+        private final Object[] argValues;
+        private Map<String, Object> variables;
+
+        ArgumentContext(String[] argNames, Object[] argValues) {
+            this.argNames = argNames;
+            this.argValues = argValues;
+        }
+
+        @Override
+        public TypedValue getRootObject() {
+            return TypedValue.NULL;
+        }
+
+        @Override
+        public List<PropertyAccessor> getPropertyAccessors() {
+            return shared.getPropertyAccessors();
+        }
+
+        @Override
+        public List<ConstructorResolver> getConstructorResolvers() {
+            return shared.getConstructorResolvers();
+        }
+
+        @Override
+        public List<MethodResolver> getMethodResolvers() {
+            return shared.getMethodResolvers();
+        }
+
+        @Override
+        public BeanResolver getBeanResolver() {
+            return null;
+        }
+
+        @Override
+        public TypeLocator getTypeLocator() {
+            return shared.getTypeLocator();
+        }
+
+        @Override
+        public TypeConverter getTypeConverter() {
+            return shared.getTypeConverter();
+        }
+
+        @Override
+        public TypeComparator getTypeComparator() {
+            return shared.getTypeComparator();
+        }
+
+        @Override
+        public OperatorOverloader getOperatorOverloader() {
+            return shared.getOperatorOverloader();
+        }
+
+        @Override
+        public void setVariable(String name, Object value) {
+            if (variables == null) {
+                variables = new HashMap<>();
+            }
+            variables.put(name, value);
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            if (variables != null && variables.containsKey(name)) {
+                return variables.get(name);
+            }
+
+            // 与原先先导入参数名、再导入argsN的覆盖顺序保持一致
+            int index = ArgNameGenerator.getXArgIndex(name);
+            if (index >= 0 && index < argValues.length) {
+                return argValues[index];
+            }
+            for (int i = argNames.length - 1; i >= 0; --i) {
+                if (argNames[i].equals(name)) {
+                    return argValues[i];
+                }
+            }
+            return null;
+        }
     }
 
 }
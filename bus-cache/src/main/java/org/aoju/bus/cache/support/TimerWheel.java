@@ -0,0 +1,189 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.support;
+
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮,用于批量处理条目过期
+ * 共5层,每层64个槽,第一层每槽约1秒,逐层放大64倍;
+ * 条目按剩余时间放入对应层的槽中,时间推进时只处理到期的槽,
+ * 高层槽到期后未真正过期的条目下沉到低层,整体为O(到期条目数)
+ * 非线程安全,由调用方加锁
+ *
+ * @param <K> 键类型
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class TimerWheel<K> {
+
+    private static final int BUCKETS = 64;
+    private static final int BUCKET_MASK = BUCKETS - 1;
+    /**
+     * 各层每个槽跨越时长的位移(毫秒),分别约为1秒、65秒、70分钟、3天、198天
+     */
+    private static final int[] SHIFT = {10, 16, 22, 28, 34};
+
+    private final Timer<K>[][] wheel;
+    private final Consumer<Timer<K>> expiredListener;
+    private long time;
+
+    /**
+     * 构造
+     *
+     * @param now             当前时间(毫秒)
+     * @param expiredListener 条目到期时的回调
+     */
+    public TimerWheel(long now, Consumer<Timer<K>> expiredListener) {
+        this.time = now;
+        this.expiredListener = expiredListener;
+        this.wheel = new Timer[SHIFT.length][BUCKETS];
+        for (int i = 0; i < SHIFT.length; i++) {
+            for (int j = 0; j < BUCKETS; j++) {
+                Timer<K> sentinel = new Timer<>(null, 0);
+                sentinel.prev = sentinel.next = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * 加入或重新调度条目
+     *
+     * @param timer 条目
+     */
+    public void schedule(Timer<K> timer) {
+        unlink(timer);
+        long delay = Math.max(0, timer.expireAt - time);
+        for (int i = 0; i < SHIFT.length; i++) {
+            if (i == SHIFT.length - 1 || delay < 1L << (SHIFT[i + 1])) {
+                long ticks = Math.max(timer.expireAt, time) >>> SHIFT[i];
+                link(wheel[i][(int) (ticks & BUCKET_MASK)], timer);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 移除条目
+     *
+     * @param timer 条目
+     */
+    public void remove(Timer<K> timer) {
+        unlink(timer);
+    }
+
+    /**
+     * 推进时间,回调所有到期的条目
+     *
+     * @param now 当前时间(毫秒)
+     */
+    public void advance(long now) {
+        long previous = time;
+        if (now <= previous) {
+            return;
+        }
+        time = now;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previous >>> SHIFT[i];
+            long currentTicks = now >>> SHIFT[i];
+            if (currentTicks == previousTicks) {
+                break;
+            }
+            expire(i, previousTicks, currentTicks);
+        }
+    }
+
+    private void expire(int level, long previousTicks, long currentTicks) {
+        long ticks = Math.min(currentTicks - previousTicks, BUCKETS - 1);
+        for (long i = 0; i <= ticks; i++) {
+            Timer<K> sentinel = wheel[level][(int) ((previousTicks + i) & BUCKET_MASK)];
+            Timer<K> timer = sentinel.next;
+            // 先摘下整条链表,避免重新调度回同一个槽时重复处理
+            sentinel.prev = sentinel.next = sentinel;
+            while (timer != sentinel) {
+                Timer<K> next = timer.next;
+                timer.prev = timer.next = null;
+                if (timer.expireAt <= time) {
+                    expiredListener.accept(timer);
+                } else {
+                    schedule(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    private void link(Timer<K> sentinel, Timer<K> timer) {
+        timer.prev = sentinel.prev;
+        timer.next = sentinel;
+        sentinel.prev.next = timer;
+        sentinel.prev = timer;
+    }
+
+    private void unlink(Timer<K> timer) {
+        if (null != timer.next) {
+            timer.prev.next = timer.next;
+            timer.next.prev = timer.prev;
+            timer.prev = timer.next = null;
+        }
+    }
+
+    /**
+     * 时间轮中的条目
+     *
+     * @param <K> 键类型
+     */
+    public static class Timer<K> {
+
+        private final K key;
+        private final long expireAt;
+        private Timer<K> prev;
+        private Timer<K> next;
+
+        /**
+         * @param key      键
+         * @param expireAt 到期时间(毫秒)
+         */
+        public Timer(K key, long expireAt) {
+            this.key = key;
+            this.expireAt = expireAt;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public long getExpireAt() {
+            return expireAt;
+        }
+
+        public boolean isExpired(long now) {
+            return now >= expireAt;
+        }
+    }
+
+}
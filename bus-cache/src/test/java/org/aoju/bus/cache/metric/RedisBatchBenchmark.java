@@ -0,0 +1,113 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.metric;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import redis.clients.jedis.JedisPool;
+import redis.embedded.RedisServer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量读写与逐个读写的对比,使用嵌入式Redis
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisBatchBenchmark {
+
+    private static final int PORT = 16380;
+
+    @Param({"10", "100", "1000"})
+    private int keys;
+
+    private RedisServer server;
+
+    private RedisCache cache;
+
+    private List<String> keyList;
+
+    private Map<String, Object> values;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RedisBatchBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new RedisServer(PORT);
+        server.start();
+        cache = new RedisCache(new JedisPool("127.0.0.1", PORT));
+        keyList = new ArrayList<>(keys);
+        values = new HashMap<>(keys);
+        for (int i = 0; i < keys; i++) {
+            keyList.add("bench:" + i);
+            values.put("bench:" + i, "value-" + i);
+        }
+        cache.write(values, 60_000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.tearDown();
+        server.stop();
+    }
+
+    @Benchmark
+    public Map<String, Object> readBatch() {
+        return cache.read(keyList);
+    }
+
+    @Benchmark
+    public Map<String, Object> readEach() {
+        Map<String, Object> result = new HashMap<>(keys);
+        for (String key : keyList) {
+            result.put(key, cache.read(key));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public void writeBatch() {
+        cache.write(values, 60_000);
+    }
+
+    @Benchmark
+    public void writeEach() {
+        values.forEach((key, value) -> cache.write(key, value, 60_000));
+    }
+
+}
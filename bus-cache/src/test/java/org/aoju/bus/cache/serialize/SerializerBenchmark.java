@@ -0,0 +1,135 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.serialize;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各序列化方式的吞吐量, {@code legacy}为每次新建流与缓冲区的原实现
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"legacy", "hessian2", "binary", "lz4", "deflate"})
+    private String serializer;
+
+    @Param({"64", "4096"})
+    private int size;
+
+    private BaseSerializer target;
+
+    private Map<String, Object> value;
+
+    private byte[] bytes;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SerializerBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        switch (serializer) {
+            case "legacy":
+                target = new LegacyHessian2Serializer();
+                break;
+            case "hessian2":
+                target = new Hessian2Serializer();
+                break;
+            case "binary":
+                target = new BinarySerializer();
+                break;
+            case "lz4":
+                target = new CompressSerializer(new BinarySerializer(), new Lz4Compressor(), 0);
+                break;
+            default:
+                target = new CompressSerializer(new BinarySerializer(), new DeflateCompressor(), 0);
+        }
+        value = new HashMap<>();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < size; i++) {
+            builder.append("item-").append(i).append(',');
+            value.put("key-" + i, i);
+        }
+        value.put("text", builder.toString());
+        bytes = target.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return target.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return target.deserialize(bytes);
+    }
+
+    /**
+     * 只实现byte[]方法的子类, 每次新建流与缓冲区
+     */
+    static class LegacyHessian2Serializer extends AbstractSerializer {
+
+        @Override
+        protected byte[] doSerialize(Object obj) throws Throwable {
+            try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+                Hessian2Output out = new Hessian2Output(os);
+                out.writeObject(obj);
+                out.close();
+                return os.toByteArray();
+            }
+        }
+
+        @Override
+        protected Object doDeserialize(byte[] bytes) throws Throwable {
+            try (ByteArrayInputStream is = new ByteArrayInputStream(bytes)) {
+                Hessian2Input in = new Hessian2Input(is);
+                Object result = in.readObject();
+                in.close();
+                return result;
+            }
+        }
+    }
+
+}
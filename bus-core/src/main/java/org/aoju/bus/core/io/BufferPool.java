@@ -50,9 +50,19 @@ public class BufferPool {
      * @param isDirect 是否使用直接缓冲区
      */
     public BufferPool(final int pageSize, final int poolSize, final boolean isDirect) {
+        this(pageSize, poolSize, isDirect, Overflow.HEAP);
+    }
+
+    /**
+     * @param pageSize 内存页大小
+     * @param poolSize 内存页个数
+     * @param isDirect 是否使用直接缓冲区
+     * @param overflow 内存页空间不足时的处理策略
+     */
+    public BufferPool(final int pageSize, final int poolSize, final boolean isDirect, final Overflow overflow) {
         pageBufferList = new PageBuffer[poolSize];
         for (int i = 0; i < poolSize; i++) {
-            pageBufferList[i] = new PageBuffer(pageSize, isDirect);
+            pageBufferList[i] = new PageBuffer(pageSize, isDirect, overflow);
         }
         timer.schedule(new TimerTask() {
             @Override
@@ -71,7 +81,73 @@ public class BufferPool {
      */
     public PageBuffer allocateBufferPage() {
         //轮训游标,均衡分配内存页
-        return pageBufferList[cursor.getAndIncrement() % pageBufferList.length];
+        return pageBufferList[(cursor.getAndIncrement() & Integer.MAX_VALUE) % pageBufferList.length];
+    }
+
+    /**
+     * 所有内存页
+     *
+     * @return 内存页数组
+     */
+    public PageBuffer[] getPageBuffers() {
+        return pageBufferList.clone();
+    }
+
+    /**
+     * 所有内存页已分配的字节数
+     *
+     * @return 字节数
+     */
+    public long used() {
+        long used = 0;
+        for (PageBuffer pageBuffer : pageBufferList) {
+            used += pageBuffer.used();
+        }
+        return used;
+    }
+
+    /**
+     * 所有内存页空闲的字节数
+     *
+     * @return 字节数
+     */
+    public long free() {
+        long free = 0;
+        for (PageBuffer pageBuffer : pageBufferList) {
+            free += pageBuffer.free();
+        }
+        return free;
+    }
+
+    /**
+     * 所有内存页走溢出策略的次数
+     *
+     * @return 次数
+     */
+    public long fallbackCount() {
+        long count = 0;
+        for (PageBuffer pageBuffer : pageBufferList) {
+            count += pageBuffer.fallbackCount();
+        }
+        return count;
+    }
+
+    /**
+     * 内存页空间不足时的处理策略
+     */
+    public enum Overflow {
+        /**
+         * 临时申请堆内缓冲区
+         */
+        HEAP,
+        /**
+         * 临时申请堆外缓冲区
+         */
+        DIRECT,
+        /**
+         * 抛出异常
+         */
+        FAIL
     }
 
 }
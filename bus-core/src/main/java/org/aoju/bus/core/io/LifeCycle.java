@@ -24,9 +24,14 @@
  ********************************************************************************/
 package org.aoju.bus.core.io;
 
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * 这是避免GC搅动和零填充所必需的
- * 这个池是一个线程安全的静态单例
+ * 这个池是一个线程安全的静态单例,按线程散列到多个桶中,
+ * 每个桶是一个无锁的单链栈,以减少多核下的竞争
+ * 池的总容量可以通过系统属性 {@code bus.io.pool.size} 配置(字节)
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -34,39 +39,131 @@ package org.aoju.bus.core.io;
  */
 public final class LifeCycle {
 
-    static final long MAX_SIZE = 64 * 1024;
+    /**
+     * 桶的数量,取不小于CPU核数的2的幂
+     */
+    static final int HASH_BUCKET_COUNT =
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    /**
+     * 池的总容量(字节),默认每个桶64 KiB
+     */
+    static final long MAX_SIZE = Long.getLong("bus.io.pool.size", 64 * 1024L * HASH_BUCKET_COUNT);
+
+    /**
+     * 单个桶的容量(字节),至少能容纳一个段
+     */
+    static final long BUCKET_SIZE = Math.max(Segment.SIZE, MAX_SIZE / HASH_BUCKET_COUNT);
+
+    /**
+     * 标记桶当前正被某个{@link #take()}占用,此时其他调用方直接绕过该桶
+     */
+    static final Segment LOCK = new Segment(new byte[0], 0, 0, false, false);
 
-    static Segment next;
+    /**
+     * 每个桶的栈顶,栈顶段的{@code limit}记录了桶内缓存的字节数
+     */
+    static final AtomicReference<Segment>[] HASH_BUCKETS;
 
-    static long byteCount;
+    /**
+     * 从池中取到段的次数
+     */
+    static final LongAdder HITS = new LongAdder();
+
+    /**
+     * 池中没有可用段而新建的次数
+     */
+    static final LongAdder MISSES = new LongAdder();
+
+    static {
+        HASH_BUCKETS = new AtomicReference[HASH_BUCKET_COUNT];
+        for (int i = 0; i < HASH_BUCKET_COUNT; i++) {
+            HASH_BUCKETS[i] = new AtomicReference<>();
+        }
+    }
 
     private LifeCycle() {
 
     }
 
     public static Segment take() {
-        synchronized (LifeCycle.class) {
-            if (next != null) {
-                Segment result = next;
-                next = result.next;
-                result.next = null;
-                byteCount -= Segment.SIZE;
-                return result;
-            }
+        AtomicReference<Segment> firstRef = firstRef();
+
+        Segment first = firstRef.getAndSet(LOCK);
+        if (first == LOCK) {
+            // 其他线程正在使用该桶,直接新建
+            MISSES.increment();
+            return new Segment();
         }
-        return new Segment();
+        if (first == null) {
+            firstRef.set(null);
+            MISSES.increment();
+            return new Segment();
+        }
+        firstRef.set(first.next);
+        first.next = null;
+        first.limit = 0;
+        HITS.increment();
+        return first;
     }
 
     public static void recycle(Segment segment) {
         if (segment.next != null || segment.prev != null) throw new IllegalArgumentException();
         if (segment.shared) return;
-        synchronized (LifeCycle.class) {
-            if (byteCount + Segment.SIZE > MAX_SIZE) return;
-            byteCount += Segment.SIZE;
-            segment.next = next;
-            segment.pos = segment.limit = 0;
-            next = segment;
+
+        AtomicReference<Segment> firstRef = firstRef();
+
+        Segment first = firstRef.get();
+        if (first == LOCK) return;
+        long firstLimit = first != null ? first.limit : 0;
+        if (firstLimit + Segment.SIZE > BUCKET_SIZE) return;
+
+        segment.next = first;
+        segment.pos = 0;
+        segment.limit = (int) (firstLimit + Segment.SIZE);
+
+        if (!firstRef.compareAndSet(first, segment)) {
+            segment.next = null;
+        }
+    }
+
+    /**
+     * 当前池中缓存的字节数
+     *
+     * @return 字节数
+     */
+    public static long byteCount() {
+        long result = 0;
+        for (AtomicReference<Segment> bucket : HASH_BUCKETS) {
+            Segment first = bucket.get();
+            if (first != null && first != LOCK) {
+                result += first.limit;
+            }
         }
+        return result;
+    }
+
+    /**
+     * 从池中复用段的次数
+     *
+     * @return 命中次数
+     */
+    public static long hitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * 池中无可用段而新建段的次数
+     *
+     * @return 未命中次数
+     */
+    public static long missCount() {
+        return MISSES.sum();
+    }
+
+    private static AtomicReference<Segment> firstRef() {
+        int index = (int) (Thread.currentThread().getId() & (HASH_BUCKET_COUNT - 1L));
+        return HASH_BUCKETS[index];
     }
 
 }
@@ -24,17 +24,19 @@
  ********************************************************************************/
 package org.aoju.bus.core.io;
 
-import org.aoju.bus.core.lang.Normal;
+import org.aoju.bus.core.lang.exception.InstrumentException;
 
 import java.nio.ByteBuffer;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * ByteBuffer内存页
+ * 采用伙伴算法管理物理缓冲区,按2的幂划分块大小,每一阶维护一个空闲链表,
+ * 分配时拆分、释放时与伙伴合并,避免首次适配带来的线性扫描和外部碎片
+ * 释放的块先放入对应阶的无锁缓存,同阶申请可直接复用而无需加锁
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -43,30 +45,110 @@ import java.util.concurrent.locks.ReentrantLock;
 public class PageBuffer {
 
     /**
-     * 当前空闲的虚拟Buffer
+     * 最小块大小
      */
-    private List<VirtualBuffer> availableBuffers;
+    private static final int MIN_BLOCK_SIZE = 256;
     /**
-     * 待回收的虚拟Buffer
+     * 链表结束标志
      */
-    private ConcurrentLinkedQueue<VirtualBuffer> cleanBuffers = new ConcurrentLinkedQueue<>();
+    private static final int NIL = -1;
+    /**
+     * 块已被分配或不是块起点
+     */
+    private static final byte USED = -1;
 
+    /**
+     * 待回收的虚拟Buffer,按阶存放
+     */
+    private final ConcurrentLinkedQueue<VirtualBuffer>[] cleanBuffers;
     /**
      * 当前缓存页的物理缓冲区
      */
-    private ByteBuffer buffer;
-    private ReentrantLock lock = new ReentrantLock();
+    private final ByteBuffer buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * 页内空间不足时的处理策略
+     */
+    private final BufferPool.Overflow overflow;
+    /**
+     * 最小块大小
+     */
+    private final int blockSize;
+    /**
+     * 块大小相对最小块的位移
+     */
+    private final int blockShift;
+    /**
+     * 参与伙伴算法管理的容量
+     */
+    private final int capacity;
+    /**
+     * 最大阶
+     */
+    private final int maxOrder;
+    /**
+     * 各阶空闲链表头
+     */
+    private final int[] freeHeads;
+    /**
+     * 空闲链表的后继与前驱,以最小块下标索引
+     */
+    private final int[] nextFree;
+    private final int[] prevFree;
+    /**
+     * 空闲块的阶,非空闲块为{@link #USED}
+     */
+    private final byte[] freeOrder;
+    /**
+     * 页内空间不足而走溢出策略的次数
+     */
+    private final AtomicLong fallbackCount = new AtomicLong();
+    /**
+     * 已分配出去(含缓存中)的字节数
+     */
+    private final AtomicLong usedBytes = new AtomicLong();
 
-    private long lastAllocateTime;
+    private volatile long lastAllocateTime;
 
     /**
      * @param size   缓存页大小
      * @param direct 是否使用堆外内存
      */
     PageBuffer(int size, boolean direct) {
-        availableBuffers = new LinkedList<>();
+        this(size, direct, BufferPool.Overflow.HEAP);
+    }
+
+    /**
+     * @param size     缓存页大小
+     * @param direct   是否使用堆外内存
+     * @param overflow 页内空间不足时的处理策略
+     */
+    PageBuffer(int size, boolean direct, BufferPool.Overflow overflow) {
         this.buffer = allocate0(size, direct);
-        availableBuffers.add(new VirtualBuffer(this, null, buffer.position(), buffer.limit()));
+        this.overflow = overflow;
+        this.blockSize = Math.min(MIN_BLOCK_SIZE, Integer.highestOneBit(Math.max(1, size)));
+        this.blockShift = Integer.numberOfTrailingZeros(blockSize);
+        int blocks = size >>> blockShift;
+        this.capacity = blocks << blockShift;
+        this.maxOrder = 31 - Integer.numberOfLeadingZeros(Math.max(1, blocks));
+        this.freeHeads = new int[maxOrder + 1];
+        this.nextFree = new int[blocks];
+        this.prevFree = new int[blocks];
+        this.freeOrder = new byte[blocks];
+        this.cleanBuffers = new ConcurrentLinkedQueue[maxOrder + 1];
+        for (int i = 0; i <= maxOrder; i++) {
+            cleanBuffers[i] = new ConcurrentLinkedQueue<>();
+        }
+        Arrays.fill(freeHeads, NIL);
+        Arrays.fill(freeOrder, USED);
+        // 按二进制分解将整页划入各阶空闲链表
+        int index = 0;
+        for (int order = maxOrder; order >= 0; order--) {
+            if ((blocks & (1 << order)) != 0) {
+                pushFree(index, order);
+                index += 1 << order;
+            }
+        }
     }
 
     /**
@@ -82,116 +164,235 @@ public class PageBuffer {
 
     public VirtualBuffer allocate(final int size) {
         lastAllocateTime = System.currentTimeMillis();
-        VirtualBuffer cleanBuffer = cleanBuffers.poll();
-        if (cleanBuffer != null && cleanBuffer.getParentLimit() - cleanBuffer.getParentPosition() >= size) {
-            cleanBuffer.buffer().clear();
-            cleanBuffer.buffer(cleanBuffer.buffer());
-            return cleanBuffer;
-        }
-        lock.lock();
-        try {
-            if (cleanBuffer != null) {
-                clean0(cleanBuffer);
-            }
-            while ((cleanBuffer = cleanBuffers.poll()) != null) {
-                if (cleanBuffer.getParentLimit() - cleanBuffer.getParentPosition() >= size) {
-                    cleanBuffer.buffer().clear();
-                    cleanBuffer.buffer(cleanBuffer.buffer());
-                    return cleanBuffer;
-                } else {
-                    clean0(cleanBuffer);
-                }
+        int order = orderOf(size);
+        if (order <= maxOrder) {
+            VirtualBuffer cleanBuffer = cleanBuffers[order].poll();
+            if (cleanBuffer != null && cleanBuffer.buffer().capacity() == size) {
+                cleanBuffer.buffer().clear();
+                cleanBuffer.buffer(cleanBuffer.buffer());
+                return cleanBuffer;
             }
-            Iterator<VirtualBuffer> iterator = availableBuffers.iterator();
-            VirtualBuffer bufferChunk;
-            while (iterator.hasNext()) {
-                VirtualBuffer freeChunk = iterator.next();
-                final int remaining = freeChunk.getParentLimit() - freeChunk.getParentPosition();
-                if (remaining < size) {
-                    continue;
+            lock.lock();
+            try {
+                if (cleanBuffer != null) {
+                    return slice(cleanBuffer.getParentPosition(), size);
                 }
-                if (remaining == size) {
-                    iterator.remove();
-                    buffer.limit(freeChunk.getParentLimit());
-                    buffer.position(freeChunk.getParentPosition());
-                    freeChunk.buffer(buffer.slice());
-                    bufferChunk = freeChunk;
-                } else {
-                    buffer.limit(freeChunk.getParentPosition() + size);
-                    buffer.position(freeChunk.getParentPosition());
-                    bufferChunk = new VirtualBuffer(this, buffer.slice(), buffer.position(), buffer.limit());
-                    freeChunk.setParentPosition(buffer.limit());
+                int index = allocateBlock(order);
+                if (index == NIL) {
+                    // 归还所有缓存后再尝试一次
+                    drain();
+                    index = allocateBlock(order);
                 }
-                if (bufferChunk.buffer().remaining() != size) {
-                    throw new RuntimeException("allocate " + size + ", buffer:" + bufferChunk);
+                if (index != NIL) {
+                    usedBytes.addAndGet(blockSize << order);
+                    return slice(index << blockShift, size);
                 }
-                return bufferChunk;
+            } finally {
+                lock.unlock();
             }
-        } finally {
-            lock.unlock();
         }
-        return new VirtualBuffer(null, allocate0(size, false), 0, 0);
+        return overflow(size);
     }
 
     void clean(VirtualBuffer cleanBuffer) {
-        if (cleanBuffers.offer(cleanBuffer)) {
+        int order = orderOf(cleanBuffer.getParentLimit() - cleanBuffer.getParentPosition());
+        cleanBuffers[order].offer(cleanBuffer);
+    }
+
+    void tryClean() {
+        if (System.currentTimeMillis() - lastAllocateTime < 1000 || !lock.tryLock()) {
             return;
         }
-        lock.lock();
         try {
-            clean0(cleanBuffer);
+            drain();
         } finally {
             lock.unlock();
         }
     }
 
-    void tryClean() {
-        if (System.currentTimeMillis() - lastAllocateTime < 1000 || !lock.tryLock()) {
-            return;
-        }
+    /**
+     * 参与分配的页容量
+     *
+     * @return 字节数
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 已分配的字节数,按块大小计算,包含已释放但尚在缓存中的块
+     *
+     * @return 字节数
+     */
+    public long used() {
+        return usedBytes.get();
+    }
+
+    /**
+     * 空闲的字节数
+     *
+     * @return 字节数
+     */
+    public long free() {
+        return capacity - usedBytes.get();
+    }
+
+    /**
+     * 当前可分配的最大连续块
+     *
+     * @return 字节数
+     */
+    public int largestFreeBlock() {
+        lock.lock();
         try {
-            VirtualBuffer cleanBuffer;
-            while ((cleanBuffer = cleanBuffers.poll()) != null) {
-                clean0(cleanBuffer);
+            for (int order = maxOrder; order >= 0; order--) {
+                if (freeHeads[order] != NIL) {
+                    return blockSize << order;
+                }
             }
+            return 0;
         } finally {
             lock.unlock();
         }
+    }
+
+    /**
+     * 外部碎片率: 1 - 最大空闲块 / 空闲总量
+     *
+     * @return 0~1之间的值, 无空闲时为0
+     */
+    public double fragmentation() {
+        long free = free();
+        if (free <= 0) {
+            return 0;
+        }
+        return Math.max(0, 1 - (double) largestFreeBlock() / free);
+    }
 
+    /**
+     * 页内空间不足而走溢出策略的次数
+     *
+     * @return 次数
+     */
+    public long fallbackCount() {
+        return fallbackCount.get();
     }
 
-    private void clean0(VirtualBuffer cleanBuffer) {
-        int index = 0;
-        Iterator<VirtualBuffer> iterator = availableBuffers.iterator();
-        while (iterator.hasNext()) {
-            VirtualBuffer freeBuffer = iterator.next();
-            //cleanBuffer在freeBuffer之前并且形成连续块
-            if (freeBuffer.getParentPosition() == cleanBuffer.getParentLimit()) {
-                freeBuffer.setParentPosition(cleanBuffer.getParentPosition());
-                return;
-            }
-            //cleanBuffer与freeBuffer之后并形成连续块
-            if (freeBuffer.getParentLimit() == cleanBuffer.getParentPosition()) {
-                freeBuffer.setParentLimit(cleanBuffer.getParentLimit());
-                //判断后一个是否连续
-                if (iterator.hasNext()) {
-                    VirtualBuffer next = iterator.next();
-                    if (next.getParentPosition() == freeBuffer.getParentLimit()) {
-                        freeBuffer.setParentLimit(next.getParentLimit());
-                        iterator.remove();
-                    } else if (next.getParentPosition() < freeBuffer.getParentLimit()) {
-                        throw new IllegalStateException(Normal.EMPTY);
-                    }
-                }
-                return;
+    @Override
+    public String toString() {
+        return "PageBuffer{capacity=" + capacity
+                + ", used=" + used()
+                + ", free=" + free()
+                + ", fragmentation=" + String.format("%.2f", fragmentation())
+                + ", fallback=" + fallbackCount() + "}";
+    }
+
+    /**
+     * 切出指定位置的虚拟缓冲区,调用方需持有锁
+     */
+    private VirtualBuffer slice(int position, int size) {
+        int blockLimit = position + (blockSize << orderOf(size));
+        buffer.limit(position + size);
+        buffer.position(position);
+        return new VirtualBuffer(this, buffer.slice(), position, blockLimit);
+    }
+
+    private VirtualBuffer overflow(int size) {
+        fallbackCount.incrementAndGet();
+        switch (overflow) {
+            case DIRECT:
+                return new VirtualBuffer(null, allocate0(size, true), 0, 0);
+            case FAIL:
+                throw new InstrumentException("allocate " + size + " exceeds page buffer: " + this);
+            default:
+                return new VirtualBuffer(null, allocate0(size, false), 0, 0);
+        }
+    }
+
+    /**
+     * 计算容纳指定字节数所需的阶
+     */
+    private int orderOf(int size) {
+        int blocks = (Math.max(1, size) + blockSize - 1) >>> blockShift;
+        return blocks == 1 ? 0 : 32 - Integer.numberOfLeadingZeros(blocks - 1);
+    }
+
+    /**
+     * 将缓存中的块全部归还给伙伴系统,调用方需持有锁
+     */
+    private void drain() {
+        for (int order = 0; order <= maxOrder; order++) {
+            VirtualBuffer cleanBuffer;
+            while ((cleanBuffer = cleanBuffers[order].poll()) != null) {
+                freeBlock(cleanBuffer.getParentPosition() >>> blockShift, order);
+                usedBytes.addAndGet(-(blockSize << order));
             }
-            if (freeBuffer.getParentPosition() > cleanBuffer.getParentLimit()) {
-                availableBuffers.add(index, cleanBuffer);
-                return;
+        }
+    }
+
+    /**
+     * 分配指定阶的块,必要时拆分更大的块,调用方需持有锁
+     *
+     * @return 块下标, 无可用块时返回{@link #NIL}
+     */
+    private int allocateBlock(int order) {
+        int current = order;
+        while (current <= maxOrder && freeHeads[current] == NIL) {
+            current++;
+        }
+        if (current > maxOrder) {
+            return NIL;
+        }
+        int index = freeHeads[current];
+        removeFree(index, current);
+        while (current > order) {
+            current--;
+            pushFree(index + (1 << current), current);
+        }
+        return index;
+    }
+
+    /**
+     * 释放块并与空闲的伙伴逐级合并,调用方需持有锁
+     */
+    private void freeBlock(int index, int order) {
+        int blocks = nextFree.length;
+        while (order < maxOrder) {
+            int buddy = index ^ (1 << order);
+            int merged = Math.min(index, buddy);
+            if (merged + (2 << order) > blocks || freeOrder[buddy] != order) {
+                break;
             }
-            index++;
+            removeFree(buddy, order);
+            index = merged;
+            order++;
+        }
+        pushFree(index, order);
+    }
+
+    private void pushFree(int index, int order) {
+        int head = freeHeads[order];
+        nextFree[index] = head;
+        prevFree[index] = NIL;
+        if (head != NIL) {
+            prevFree[head] = index;
+        }
+        freeHeads[order] = index;
+        freeOrder[index] = (byte) order;
+    }
+
+    private void removeFree(int index, int order) {
+        int prev = prevFree[index];
+        int next = nextFree[index];
+        if (prev != NIL) {
+            nextFree[prev] = next;
+        } else {
+            freeHeads[order] = next;
+        }
+        if (next != NIL) {
+            prevFree[next] = prev;
         }
-        availableBuffers.add(cleanBuffer);
+        freeOrder[index] = USED;
     }
 
 }
@@ -24,211 +24,304 @@
  ********************************************************************************/
 package org.aoju.bus.core.io;
 
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.BooleanSupplier;
 
 /**
+ * 基于序号的环形缓冲区,支持多生产者/多消费者
+ * 容量向上取整为2的幂,所有元素在创建时由{@link EventFactory}预先分配
+ * 每个槽位维护一个序号,生产者和消费者分别通过CAS推进各自的游标来认领槽位,
+ * 认领后即可无锁地读写元素,最后通过publish方法发布
+ *
  * @author Kimi Liu
  * @version 6.1.1
  * @since JDK 1.8+
  */
 public final class RingBuffer<T> {
 
-    private static final byte READABLE = 1, READING = 1 << 1, WRITEABLE = 1 << 2, WRITING = 1 << 3;
     /**
-     * 排队的项目
+     * 预分配的元素
      */
-    private final Node<T>[] items;
+    private final Object[] entries;
     /**
-     * 主锁保护所有入口
+     * 各槽位的序号
+     * 等于写游标时可写,等于写游标+1时可读
      */
-    private final ReentrantLock lock;
+    private final AtomicLongArray sequences;
     /**
-     * 等待条件
+     * 容量掩码
      */
-    private final Condition notEmpty;
+    private final int mask;
     /**
-     * 等待权条件
+     * 下一个待认领的写序号
      */
-    private final Condition notFull;
+    private final Sequence writeCursor = new Sequence();
     /**
-     * 项目索引为下一次采取，投票删除
+     * 下一个待认领的读序号
      */
-    private int takeIndex;
+    private final Sequence readCursor = new Sequence();
     /**
-     * 项目索引的下一个出售，出价，或增加
+     * 等待策略
      */
-    private int putIndex;
-    private volatile boolean needFullSingle = false;
-
-    private volatile boolean needEmptySingle = false;
-
-    private EventFactory<T> eventFactory;
+    private final WaitStrategy waitStrategy;
+    private final BooleanSupplier writable = () -> isWritable(1);
+    private final BooleanSupplier readable = () -> isReadable(1);
+    private final EventFactory<T> eventFactory;
 
     public RingBuffer(int capacity, EventFactory<T> factory) {
-        if (capacity <= 0)
+        this(capacity, factory, new WaitStrategy.Blocking());
+    }
+
+    public RingBuffer(int capacity, EventFactory<T> factory, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || capacity > 1 << 30)
             throw new IllegalArgumentException();
-        this.items = new Node[capacity];
-        lock = new ReentrantLock(false);
-        notEmpty = lock.newCondition();
-        notFull = lock.newCondition();
+        if (null == factory || null == waitStrategy)
+            throw new NullPointerException();
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.entries = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.newInstance();
+            sequences.lazySet(i, i);
+        }
         this.eventFactory = factory;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * 缓冲区容量(2的幂)
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        return entries.length;
     }
 
     public int nextWriteIndex() throws InterruptedException {
-        final ReentrantLock lock = this.lock;
-        lock.lockInterruptibly();
-        try {
-            notFullSignal();
-            final Node<T>[] items = this.items;
-            Node<T> node = items[putIndex];
-            if (node == null) {
-                node = new Node<>(eventFactory.newInstance());
-                node.status = WRITEABLE;
-                items[putIndex] = node;
-            }
-            while (node.status != WRITEABLE) {
-                notFull.await();
-                notFullSignal();
-                node = items[putIndex];
-            }
+        return nextWriteIndex(1);
+    }
 
-            node.status = WRITING;
-            int index = putIndex;
-            if (++putIndex == items.length)
-                putIndex = 0;
-            return index;
-        } finally {
-            lock.unlock();
+    /**
+     * 认领连续的n个可写槽位,无空位时按等待策略等待
+     *
+     * @param n 槽位数
+     * @return 第一个槽位的索引, 后续槽位为 {@code index + i}
+     * @throws InterruptedException 线程被中断
+     */
+    public int nextWriteIndex(int n) throws InterruptedException {
+        int index;
+        int counter = 0;
+        BooleanSupplier condition = n == 1 ? writable : null;
+        while ((index = tryNextWriteIndex(n)) < 0) {
+            if (null == condition) {
+                // 批量认领时须等到n个槽位都可写,否则等待策略会反复唤醒
+                condition = () -> isWritable(n);
+            }
+            counter = waitStrategy.waitFor(counter, condition);
         }
+        return index;
     }
 
-    public int tryNextWriteIndex() throws InterruptedException {
-        final ReentrantLock lock = this.lock;
-        lock.lockInterruptibly();
-        try {
-            notFullSignal();
-            final Node<T>[] items = this.items;
-            Node<T> node = items[putIndex];
-            if (node == null) {
-                node = new Node<>(eventFactory.newInstance());
-                node.status = WRITEABLE;
-                items[putIndex] = node;
-            }
-            if (node.status != WRITEABLE) {
+    public int tryNextWriteIndex() {
+        return tryNextWriteIndex(1);
+    }
+
+    /**
+     * 尝试认领连续的n个可写槽位
+     *
+     * @param n 槽位数
+     * @return 第一个槽位的索引, 空位不足时返回-1
+     */
+    public int tryNextWriteIndex(int n) {
+        checkBatch(n);
+        long current;
+        do {
+            current = writeCursor.get();
+            int state = available(current, n, 0);
+            if (state < 0) {
                 return -1;
             }
-
-            node.status = WRITING;
-            int index = putIndex;
-            if (++putIndex == items.length)
-                putIndex = 0;
-            return index;
-        } finally {
-            lock.unlock();
-        }
+            if (state > 0) {
+                continue;
+            }
+            if (writeCursor.compareAndSet(current, current + n)) {
+                return (int) (current & mask);
+            }
+        } while (true);
     }
 
     public void publishWriteIndex(int sequence) {
-        Node<T> node = items[sequence];
-        if (node.status != WRITING) {
-            throw new RuntimeException("invalid status");
-        }
-        node.status = READABLE;
-        final ReentrantLock lock = this.lock;
-        needEmptySingle = true;
-        if (lock.tryLock()) {
-            try {
-                notFullSignal();
-            } finally {
-                lock.unlock();
-            }
+        publishWriteIndex(sequence, 1);
+    }
+
+    /**
+     * 发布已写入的n个槽位,使其对消费者可见
+     *
+     * @param sequence 第一个槽位的索引
+     * @param n        槽位数
+     */
+    public void publishWriteIndex(int sequence, int n) {
+        checkIndex(sequence, n);
+        for (int i = 0; i < n; i++) {
+            int index = (sequence + i) & mask;
+            sequences.set(index, sequences.get(index) + 1);
         }
+        waitStrategy.signal();
     }
 
     public T get(int sequence) {
-        return items[sequence].entity;
+        return (T) entries[sequence & mask];
     }
 
     public int tryNextReadIndex() {
-        final ReentrantLock lock = this.lock;
-        lock.lock();
-        try {
-            notFullSignal();
-            final Node[] items = this.items;
-            Node x = items[takeIndex];
-            if (x == null || x.status != READABLE) {
+        return tryNextReadIndex(1);
+    }
+
+    /**
+     * 尝试认领连续的n个可读槽位
+     *
+     * @param n 槽位数
+     * @return 第一个槽位的索引, 可读数据不足时返回-1
+     */
+    public int tryNextReadIndex(int n) {
+        checkBatch(n);
+        long current;
+        do {
+            current = readCursor.get();
+            int state = available(current, n, 1);
+            if (state < 0) {
                 return -1;
             }
-            x.status = READING;
-            int index = takeIndex;
-            if (++takeIndex == items.length)
-                takeIndex = 0;
-            return index;
-        } finally {
-            lock.unlock();
-        }
+            if (state > 0) {
+                continue;
+            }
+            if (readCursor.compareAndSet(current, current + n)) {
+                return (int) (current & mask);
+            }
+        } while (true);
     }
 
     public int nextReadIndex() throws InterruptedException {
-        final ReentrantLock lock = this.lock;
-        lock.lockInterruptibly();
-        try {
-            notFullSignal();
-            final Node[] items = this.items;
-            Node x = items[takeIndex];
-            while (x == null || x.status != READABLE) {
-                notEmpty.await();
-                notFullSignal();
-                x = items[takeIndex];
+        return nextReadIndex(1);
+    }
+
+    /**
+     * 认领连续的n个可读槽位,无数据时按等待策略等待
+     *
+     * @param n 槽位数
+     * @return 第一个槽位的索引, 后续槽位为 {@code index + i}
+     * @throws InterruptedException 线程被中断
+     */
+    public int nextReadIndex(int n) throws InterruptedException {
+        int index;
+        int counter = 0;
+        BooleanSupplier condition = n == 1 ? readable : null;
+        while ((index = tryNextReadIndex(n)) < 0) {
+            if (null == condition) {
+                condition = () -> isReadable(n);
             }
-            x.status = READING;
-            int index = takeIndex;
-            if (++takeIndex == items.length)
-                takeIndex = 0;
-            return index;
-        } finally {
-            lock.unlock();
+            counter = waitStrategy.waitFor(counter, condition);
         }
+        return index;
+    }
+
+    public void publishReadIndex(int sequence) {
+        publishReadIndex(sequence, 1);
     }
 
-    private void notFullSignal() {
-        if (needFullSingle) {
-            notFull.signal();
-            needFullSingle = false;
+    /**
+     * 归还已读取的n个槽位,重置元素后供生产者复用
+     *
+     * @param sequence 第一个槽位的索引
+     * @param n        槽位数
+     */
+    public void publishReadIndex(int sequence, int n) {
+        checkIndex(sequence, n);
+        final int size = entries.length;
+        for (int i = 0; i < n; i++) {
+            int index = (sequence + i) & mask;
+            eventFactory.restEntity((T) entries[index]);
+            sequences.set(index, sequences.get(index) + size - 1);
         }
-        if (needEmptySingle) {
-            notEmpty.signal();
-            needEmptySingle = false;
+        waitStrategy.signal();
+    }
+
+    /**
+     * 检查从游标开始的n个槽位状态
+     *
+     * @param cursor 游标
+     * @param n      槽位数
+     * @param lag    槽位序号相对游标的期望偏移,写为0,读为1
+     * @return 0表示全部就绪, 负数表示尚未就绪, 正数表示游标已被其他线程推进
+     */
+    private int available(long cursor, int n, int lag) {
+        for (int i = 0; i < n; i++) {
+            long expected = cursor + i + lag;
+            long sequence = sequences.get((int) ((cursor + i) & mask));
+            if (sequence < expected) {
+                return -1;
+            }
+            if (sequence > expected) {
+                return 1;
+            }
         }
+        return 0;
     }
 
-    public void publishReadIndex(int sequence) {
-        Node<T> node = items[sequence];
-        if (node.status != READING) {
-            throw new RuntimeException("invalid status");
+    /**
+     * 从写游标开始的n个槽位是否都可写,或游标已被其他线程推进
+     */
+    private boolean isWritable(int n) {
+        return available(writeCursor.get(), n, 0) >= 0;
+    }
+
+    /**
+     * 从读游标开始的n个槽位是否都可读,或游标已被其他线程推进
+     */
+    private boolean isReadable(int n) {
+        return available(readCursor.get(), n, 1) >= 0;
+    }
+
+    private void checkBatch(int n) {
+        if (n <= 0 || n > entries.length) {
+            throw new IllegalArgumentException("invalid batch size: " + n);
         }
-        eventFactory.restEntity(node.entity);
-        node.status = WRITEABLE;
-        final ReentrantLock lock = this.lock;
-        needFullSingle = true;
-        if (lock.tryLock()) {
-            try {
-                notFullSignal();
-            } finally {
-                lock.unlock();
-            }
+    }
+
+    private void checkIndex(int sequence, int n) {
+        if (sequence < 0 || n <= 0 || n > entries.length) {
+            throw new IllegalArgumentException("invalid index: " + sequence);
         }
     }
 
-    class Node<T1> {
+    static class LhsPadding {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    static class Value extends LhsPadding {
+        protected volatile long value;
+    }
+
+    /**
+     * 填充至独占缓存行的游标,避免读写游标之间的伪共享
+     */
+    static final class Sequence extends Value {
 
-        byte status;
-        T1 entity;
+        private static final AtomicLongFieldUpdater<Value> UPDATER =
+                AtomicLongFieldUpdater.newUpdater(Value.class, "value");
 
-        Node(T1 entity) {
-            this.entity = entity;
+        protected long p9, p10, p11, p12, p13, p14, p15;
+
+        long get() {
+            return value;
+        }
+
+        boolean compareAndSet(long expect, long update) {
+            return UPDATER.compareAndSet(this, expect, update);
         }
+
     }
 
 }
@@ -0,0 +1,197 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.core.io;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * {@link RingBuffer}的等待策略
+ * 当生产者无空位可写或消费者无数据可读时,决定线程如何等待
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public interface WaitStrategy {
+
+    /**
+     * 忙等,延迟最低但会占满一个核
+     */
+    WaitStrategy BUSY_SPIN = new BusySpin();
+
+    /**
+     * 先自旋再让出CPU
+     */
+    WaitStrategy YIELDING = new Yielding();
+
+    /**
+     * 先自旋再短暂挂起线程
+     */
+    WaitStrategy PARKING = new Parking();
+
+    /**
+     * 等待一次
+     *
+     * @param counter   本次等待前已等待的次数
+     * @param available 条件是否可能已满足
+     * @return 新的等待次数
+     * @throws InterruptedException 线程被中断
+     */
+    int waitFor(int counter, BooleanSupplier available) throws InterruptedException;
+
+    /**
+     * 通知等待中的线程状态已变化
+     */
+    default void signal() {
+
+    }
+
+    /**
+     * 忙等策略
+     */
+    class BusySpin implements WaitStrategy {
+
+        @Override
+        public int waitFor(int counter, BooleanSupplier available) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            return counter + 1;
+        }
+
+    }
+
+    /**
+     * 自旋一定次数后调用{@link Thread#yield()}
+     */
+    class Yielding implements WaitStrategy {
+
+        private static final int SPIN_TRIES = 100;
+
+        @Override
+        public int waitFor(int counter, BooleanSupplier available) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (counter >= SPIN_TRIES) {
+                Thread.yield();
+            }
+            return counter + 1;
+        }
+
+    }
+
+    /**
+     * 自旋、让出CPU后再以固定间隔挂起线程
+     */
+    class Parking implements WaitStrategy {
+
+        private static final int SPIN_TRIES = 100;
+
+        private static final int YIELD_TRIES = 200;
+
+        private final long parkNanos;
+
+        public Parking() {
+            this(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+
+        public Parking(long parkNanos) {
+            this.parkNanos = parkNanos;
+        }
+
+        @Override
+        public int waitFor(int counter, BooleanSupplier available) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (counter >= YIELD_TRIES) {
+                LockSupport.parkNanos(this, parkNanos);
+            } else if (counter >= SPIN_TRIES) {
+                Thread.yield();
+            }
+            return counter + 1;
+        }
+
+    }
+
+    /**
+     * 短暂让出CPU后基于锁和条件变量阻塞,CPU占用最低
+     * 每个{@link RingBuffer}需使用独立的实例
+     */
+    class Blocking implements WaitStrategy {
+
+        private static final int YIELD_TRIES = 64;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition condition = lock.newCondition();
+
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        @Override
+        public int waitFor(int counter, BooleanSupplier available) throws InterruptedException {
+            if (counter < YIELD_TRIES) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                Thread.yield();
+                return counter + 1;
+            }
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            waiters.incrementAndGet();
+            try {
+                while (!available.getAsBoolean()) {
+                    condition.await();
+                }
+            } finally {
+                waiters.decrementAndGet();
+                lock.unlock();
+            }
+            return counter + 1;
+        }
+
+        @Override
+        public void signal() {
+            if (waiters.get() > 0) {
+                final ReentrantLock lock = this.lock;
+                lock.lock();
+                try {
+                    condition.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+    }
+
+}
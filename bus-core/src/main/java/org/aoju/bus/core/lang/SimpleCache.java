@@ -24,14 +24,25 @@
  ********************************************************************************/
 package org.aoju.bus.core.lang;
 
+import org.aoju.bus.core.map.BoundedConcurrentMap;
+import org.aoju.bus.core.map.ReferenceConcurrentMap;
+
 import java.io.Serializable;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * 简单缓存,无超时实现,使用{@link WeakHashMap}实现缓存自动清理
+ * 简单缓存,无超时实现,默认使用{@link ReferenceConcurrentMap}实现弱键缓存自动清理
+ * 当缓存池为{@link ConcurrentMap}时读写不加全局锁,否则使用读写锁保护
+ * 通过回调生产值时按键合并并发请求,同一个键只会有一个线程执行回调,
+ * 其它线程等待其结果,不同键之间互不阻塞
  *
  * @param <K> 键类型
  * @param <V> 值类型
@@ -48,26 +59,53 @@ public class SimpleCache<K, V> implements Iterable<Map.Entry<K, V>>, Serializabl
      */
     private final Map<K, V> cache;
     /**
-     * 乐观读写锁
+     * 缓存池是否线程安全
+     */
+    private final boolean concurrent;
+    /**
+     * 乐观读写锁,仅在缓存池非线程安全时使用
      */
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * 正在生产中的值
+     */
+    private final Map<K, Loader<V>> loading = new ConcurrentHashMap<>();
+    /**
+     * 命中次数
+     */
+    private final LongAdder hitCount = new LongAdder();
+    /**
+     * 未命中次数
+     */
+    private final LongAdder missCount = new LongAdder();
 
     /**
-     * 构造，默认使用{@link WeakHashMap}实现缓存自动清理
+     * 构造，默认使用{@link ReferenceConcurrentMap}实现弱键缓存自动清理
      */
     public SimpleCache() {
-        this(new WeakHashMap<>());
+        this(new ReferenceConcurrentMap<>());
+    }
+
+    /**
+     * 构造有界缓存，超出容量时按最近最少使用淘汰
+     *
+     * @param capacity 最大条目数
+     */
+    public SimpleCache(long capacity) {
+        this(new BoundedConcurrentMap<>(capacity));
     }
 
     /**
      * 通过自定义Map初始化，可以自定义缓存实现
      * 比如使用{@link WeakHashMap}则会自动清理key，使用HashMap则不会清理
+     * 使用{@link ConcurrentMap}则读写不再加锁
      * 同时，传入的Map对象也可以自带初始化的键值对，防止在get时创建
      *
      * @param initMap 初始Map，用于定义Map类型
      */
     public SimpleCache(Map<K, V> initMap) {
         this.cache = initMap;
+        this.concurrent = initMap instanceof ConcurrentMap;
     }
 
     /**
@@ -77,12 +115,13 @@ public class SimpleCache<K, V> implements Iterable<Map.Entry<K, V>>, Serializabl
      * @return 值
      */
     public V get(K key) {
-        lock.readLock().lock();
-        try {
-            return cache.get(key);
-        } finally {
-            lock.readLock().unlock();
+        V v = get0(key);
+        if (null == v) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
         }
+        return v;
     }
 
     /**
@@ -91,25 +130,33 @@ public class SimpleCache<K, V> implements Iterable<Map.Entry<K, V>>, Serializabl
      * @param key      键
      * @param supplier 如果不存在回调方法，用于生产值对象
      * @return 值对象
+     * @throws IllegalStateException 回调中再次加载同一个键
      */
     public V get(K key, Func.Func0<V> supplier) {
         V v = get(key);
 
         if (null == v && null != supplier) {
-            lock.writeLock().lock();
+            Loader<V> task = new Loader<>(supplier);
+            Loader<V> loader = loading.putIfAbsent(key, task);
+            if (null != loader) {
+                if (loader.owner == Thread.currentThread()) {
+                    // 等待自身正在执行的回调会永远阻塞
+                    throw new IllegalStateException("Recursive load of key: " + key);
+                }
+                return await(loader);
+            }
             try {
-                v = cache.get(key);
-                // 双重检查，防止在竞争锁的过程中已经有其它线程写入
+                v = get0(key);
+                // 双重检查，防止在竞争的过程中已经有其它线程写入
                 if (null == v) {
-                    try {
-                        v = supplier.call();
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
+                    task.run();
+                    v = await(task);
+                    if (null != v) {
+                        put(key, v);
                     }
-                    cache.put(key, v);
                 }
             } finally {
-                lock.writeLock().unlock();
+                loading.remove(key, task);
             }
         }
 
@@ -124,6 +171,15 @@ public class SimpleCache<K, V> implements Iterable<Map.Entry<K, V>>, Serializabl
      * @return 值
      */
     public V put(K key, V value) {
+        if (concurrent) {
+            // 并发Map不接受null值,null值等同于不存在
+            if (null == value) {
+                cache.remove(key);
+            } else {
+                cache.put(key, value);
+            }
+            return value;
+        }
         lock.writeLock().lock();
         try {
             cache.put(key, value);
@@ -140,6 +196,9 @@ public class SimpleCache<K, V> implements Iterable<Map.Entry<K, V>>, Serializabl
      * @return 移除的值
      */
     public V remove(K key) {
+        if (concurrent) {
+            return cache.remove(key);
+        }
         lock.writeLock().lock();
         try {
             return cache.remove(key);
@@ -152,6 +211,10 @@ public class SimpleCache<K, V> implements Iterable<Map.Entry<K, V>>, Serializabl
      * 清空缓存池
      */
     public void clear() {
+        if (concurrent) {
+            this.cache.clear();
+            return;
+        }
         lock.writeLock().lock();
         try {
             this.cache.clear();
@@ -160,9 +223,68 @@ public class SimpleCache<K, V> implements Iterable<Map.Entry<K, V>>, Serializabl
         }
     }
 
+    /**
+     * 获取命中次数
+     *
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * 获取未命中次数
+     *
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
     @Override
     public Iterator<Map.Entry<K, V>> iterator() {
         return this.cache.entrySet().iterator();
     }
 
+    private V get0(K key) {
+        if (concurrent) {
+            return cache.get(key);
+        }
+        lock.readLock().lock();
+        try {
+            return cache.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private V await(Loader<V> task) {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 生产值的任务,记录执行回调的线程
+     *
+     * @param <V> 值类型
+     */
+    private static class Loader<V> extends FutureTask<V> {
+
+        private final Thread owner = Thread.currentThread();
+
+        Loader(Func.Func0<V> supplier) {
+            super(supplier::call);
+        }
+
+    }
+
 }
@@ -0,0 +1,600 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.core.map;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * 有界的线程安全Map,超出容量时按最近最少使用(LRU)淘汰
+ * 读操作不加锁,只把访问记录写入按线程分段的有损缓冲区,
+ * 由写操作或缓冲区写满时在淘汰锁内批量回放,维护访问顺序
+ * 容量默认按条目数计算,指定权重函数后按权重之和计算;
+ * 使用{@link Policy#TINY_LFU}时新条目需比待淘汰条目访问更频繁才会被保留
+ * 不支持{@code null}键和{@code null}值
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class BoundedConcurrentMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    /**
+     * 读缓冲区分段数
+     */
+    private static final int BUFFER_COUNT =
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+    /**
+     * 每段读缓冲区的大小
+     */
+    private static final int BUFFER_SIZE = 32;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+    /**
+     * 读缓冲区累积到该数量时尝试回放
+     */
+    private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+    /**
+     * 按权重计算容量时,访问频率统计的最大条目数
+     */
+    private static final long WEIGHTED_SKETCH_SIZE = 1 << 16;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    /**
+     * 访问顺序链表的哨兵,头部为最久未使用
+     */
+    private final Node<K, V> sentinel = new Node<>(null, null);
+    private final ReadBuffer<K, V>[] readBuffers;
+    private final Policy policy;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    private final BiConsumer<? super K, ? super V> evictionListener;
+    /**
+     * 访问频率,仅{@link Policy#TINY_LFU}使用,由淘汰锁保护
+     */
+    private final FrequencySketch sketch;
+    private volatile long capacity;
+    /**
+     * 已链入访问顺序链表的条目权重之和,由淘汰锁保护
+     */
+    private volatile long weightedSize;
+    private Set<Entry<K, V>> entrySet;
+
+    /**
+     * 构造
+     *
+     * @param capacity 最大条目数
+     */
+    public BoundedConcurrentMap(long capacity) {
+        this(capacity, Policy.LRU, null, null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param capacity         最大条目数,指定权重函数时为最大权重
+     * @param policy           淘汰策略
+     * @param weigher          权重函数,返回值不能为负,{@code null}表示每个条目权重为1
+     * @param evictionListener 条目因容量不足被淘汰时的回调,在淘汰锁内执行,{@code null}表示不回调
+     */
+    public BoundedConcurrentMap(long capacity, Policy policy,
+                                ToIntBiFunction<? super K, ? super V> weigher,
+                                BiConsumer<? super K, ? super V> evictionListener) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.policy = Objects.requireNonNull(policy);
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+        this.sketch = policy == Policy.TINY_LFU ? new FrequencySketch(sketchSize(capacity)) : null;
+        this.data = new ConcurrentHashMap<>((int) Math.min(capacity, 1 << 16));
+        this.readBuffers = new ReadBuffer[BUFFER_COUNT];
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+        sentinel.prev = sentinel.next = sentinel;
+    }
+
+    /**
+     * 获取容量
+     *
+     * @return 最大条目数或最大权重
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 设置容量,缩小时立即淘汰多余条目
+     *
+     * @param capacity 最大条目数或最大权重
+     */
+    public void setCapacity(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        evictionLock.lock();
+        try {
+            this.capacity = capacity;
+            if (null != sketch) {
+                sketch.ensureCapacity(sketchSize(capacity));
+            }
+            drainReadBuffers();
+            evict(null);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 当前的权重之和,未指定权重函数时约等于条目数
+     *
+     * @return 权重之和
+     */
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return data.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = data.get(key);
+        if (null == node) {
+            return null;
+        }
+        afterRead(node);
+        return node.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<K, V> node = data.remove(key);
+        if (null == node) {
+            return null;
+        }
+        afterRemove(node);
+        return node.value;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        Node<K, V> node = data.get(key);
+        if (null == node || !Objects.equals(node.value, value)) {
+            return false;
+        }
+        if (data.remove(key, node)) {
+            afterRemove(node);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(value);
+        Node<K, V> node = data.get(key);
+        if (null == node) {
+            return null;
+        }
+        V old = node.getAndSetValue(value);
+        afterUpdate(node, weigh(node.key, value));
+        return old;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(newValue);
+        Node<K, V> node = data.get(key);
+        if (null == node) {
+            return false;
+        }
+        for (; ; ) {
+            V current = node.value;
+            if (!Objects.equals(current, oldValue)) {
+                return false;
+            }
+            if (node.compareAndSetValue(current, newValue)) {
+                afterUpdate(node, weigh(node.key, newValue));
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            for (ReadBuffer<K, V> buffer : readBuffers) {
+                buffer.drainTo(null);
+            }
+            Node<K, V> node = sentinel.next;
+            while (node != sentinel) {
+                Node<K, V> next = node.next;
+                node.prev = node.next = null;
+                node = next;
+            }
+            sentinel.prev = sentinel.next = sentinel;
+            weightedSize = 0;
+            for (Node<K, V> value : data.values()) {
+                value.alive = false;
+                data.remove(value.key, value);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> es = entrySet;
+        if (null == es) {
+            es = entrySet = new EntrySet();
+        }
+        return es;
+    }
+
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(value);
+        int weight = weigh(key, value);
+        Node<K, V> node = new Node<>(key, value, weight);
+        for (; ; ) {
+            Node<K, V> prior = data.putIfAbsent(key, node);
+            if (null == prior) {
+                afterWrite(node);
+                return null;
+            }
+            if (onlyIfAbsent) {
+                afterRead(prior);
+                return prior.value;
+            }
+            V old = prior.getAndSetValue(value);
+            if (prior.alive) {
+                afterUpdate(prior, weight);
+                return old;
+            }
+            // 节点在写入过程中被淘汰,重试
+        }
+    }
+
+    /**
+     * 访问频率统计的条目数,按权重计算容量时条目数未知,取容量与上限的较小值
+     */
+    private long sketchSize(long capacity) {
+        return null == weigher ? capacity : Math.min(capacity, WEIGHTED_SKETCH_SIZE);
+    }
+
+    private void afterRead(Node<K, V> node) {
+        ReadBuffer<K, V> buffer = readBuffers[(int) (Thread.currentThread().getId() & (BUFFER_COUNT - 1))];
+        long pending = buffer.offer(node);
+        if (pending >= DRAIN_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void afterWrite(Node<K, V> node) {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            if (node.alive) {
+                linkLast(node);
+                if (null != sketch) {
+                    sketch.increment(node.key);
+                }
+            }
+            evict(node);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 值被替换后更新权重,未指定权重函数时等同于一次读取
+     */
+    private void afterUpdate(Node<K, V> node, int weight) {
+        if (null == weigher) {
+            afterRead(node);
+            return;
+        }
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            if (null != node.next) {
+                weightedSize += weight - node.weight;
+                node.weight = weight;
+                moveToLast(node);
+            } else {
+                // 尚未链入时由afterWrite按新权重计入
+                node.weight = weight;
+            }
+            evict(null);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void afterRemove(Node<K, V> node) {
+        evictionLock.lock();
+        try {
+            node.alive = false;
+            unlink(node);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 回放访问记录,调用方需持有淘汰锁
+     */
+    private void drainReadBuffers() {
+        for (ReadBuffer<K, V> buffer : readBuffers) {
+            buffer.drainTo(this);
+        }
+    }
+
+    /**
+     * 淘汰超出容量的最久未使用条目,调用方需持有淘汰锁
+     * TinyLFU策略下新写入的条目与最久未使用的条目比较访问频率,淘汰频率较低者
+     *
+     * @param candidate 新写入的条目,可为{@code null}
+     */
+    private void evict(Node<K, V> candidate) {
+        while (weightedSize > capacity) {
+            Node<K, V> victim = sentinel.next;
+            if (victim == sentinel) {
+                return;
+            }
+            if (null != sketch && null != candidate && candidate != victim && null != candidate.next
+                    && sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                victim = candidate;
+            }
+            candidate = null;
+            unlink(victim);
+            victim.alive = false;
+            if (data.remove(victim.key, victim) && null != evictionListener) {
+                evictionListener.accept(victim.key, victim.value);
+            }
+        }
+    }
+
+    /**
+     * 回放一次读取,调用方需持有淘汰锁
+     */
+    private void afterAccess(Node<K, V> node) {
+        if (null != sketch && node.alive) {
+            sketch.increment(node.key);
+        }
+        moveToLast(node);
+    }
+
+    private void moveToLast(Node<K, V> node) {
+        if (null != node.next && node.alive && sentinel.prev != node) {
+            Node<K, V> prev = node.prev;
+            Node<K, V> next = node.next;
+            prev.next = next;
+            next.prev = prev;
+            Node<K, V> last = sentinel.prev;
+            node.prev = last;
+            node.next = sentinel;
+            last.next = node;
+            sentinel.prev = node;
+        }
+    }
+
+    private void linkLast(Node<K, V> node) {
+        Node<K, V> last = sentinel.prev;
+        node.prev = last;
+        node.next = sentinel;
+        last.next = node;
+        sentinel.prev = node;
+        weightedSize += node.weight;
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (null == node.next) {
+            return;
+        }
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+        weightedSize -= node.weight;
+    }
+
+    private int weigh(K key, V value) {
+        if (null == weigher) {
+            return 1;
+        }
+        int weight = weigher.applyAsInt(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("weight must not be negative");
+        }
+        return weight;
+    }
+
+    /**
+     * 淘汰策略
+     */
+    public enum Policy {
+        /**
+         * 淘汰最近最少使用的条目
+         */
+        LRU,
+        /**
+         * 按访问频率决定新条目能否替换最近最少使用的条目,可抵御一次性扫描对热点数据的冲刷
+         */
+        TINY_LFU
+    }
+
+    static final class Node<K, V> {
+
+        static final AtomicReferenceFieldUpdater<Node, Object> VALUE =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "value");
+
+        final K key;
+        volatile V value;
+        volatile boolean alive = true;
+        /**
+         * 访问顺序链表指针及计入容量的权重,由淘汰锁保护
+         */
+        Node<K, V> prev;
+        Node<K, V> next;
+        int weight;
+
+        Node(K key, V value) {
+            this(key, value, 1);
+        }
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        V getAndSetValue(V value) {
+            return (V) VALUE.getAndSet(this, value);
+        }
+
+        boolean compareAndSetValue(V expect, V update) {
+            return VALUE.compareAndSet(this, expect, update);
+        }
+    }
+
+    /**
+     * 单个线程段的有损读缓冲区,写满时直接丢弃访问记录
+     */
+    static final class ReadBuffer<K, V> {
+
+        final AtomicReferenceArray<Node<K, V>> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+        final AtomicLong writeCount = new AtomicLong();
+        volatile long readCount;
+
+        long offer(Node<K, V> node) {
+            long head = readCount;
+            long tail = writeCount.get();
+            long size = tail - head;
+            if (size < BUFFER_SIZE && writeCount.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) (tail & BUFFER_MASK), node);
+                return size + 1;
+            }
+            return size;
+        }
+
+        void drainTo(BoundedConcurrentMap<K, V> map) {
+            long head = readCount;
+            long tail = writeCount.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & BUFFER_MASK);
+                Node<K, V> node = buffer.get(index);
+                if (null == node) {
+                    break;
+                }
+                buffer.lazySet(index, null);
+                if (null != map) {
+                    map.afterAccess(node);
+                }
+            }
+            readCount = head;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            Iterator<Node<K, V>> iterator = data.values().iterator();
+            return new Iterator<Entry<K, V>>() {
+
+                private Node<K, V> lastReturned;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    lastReturned = iterator.next();
+                    return new SimpleImmutableEntry<>(lastReturned.key, lastReturned.value);
+                }
+
+                @Override
+                public void remove() {
+                    if (null == lastReturned) {
+                        throw new IllegalStateException();
+                    }
+                    BoundedConcurrentMap.this.remove(lastReturned.key, lastReturned.value);
+                    lastReturned = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return data.size();
+        }
+
+        @Override
+        public void clear() {
+            BoundedConcurrentMap.this.clear();
+        }
+    }
+
+}
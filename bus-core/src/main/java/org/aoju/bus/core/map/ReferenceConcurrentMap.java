@@ -0,0 +1,325 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.core.map;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 线程安全的引用键Map,键以弱引用或软引用持有,被GC回收后对应的键值对自动清除
+ * 相当于并发版本的{@link WeakHashMap},读写均不加全局锁
+ * 不支持{@code null}键和{@code null}值
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class ReferenceConcurrentMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    private final ConcurrentHashMap<Object, V> raw;
+    private final Type type;
+    private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+    private Set<Entry<K, V>> entrySet;
+
+    /**
+     * 构造,默认使用弱引用
+     */
+    public ReferenceConcurrentMap() {
+        this(Type.WEAK);
+    }
+
+    /**
+     * 构造
+     *
+     * @param type 引用类型
+     */
+    public ReferenceConcurrentMap(Type type) {
+        this.raw = new ConcurrentHashMap<>();
+        this.type = type;
+    }
+
+    @Override
+    public int size() {
+        purge();
+        return raw.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return null != get(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return raw.get(new Lookup(key));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        purge();
+        return raw.put(wrap(key), value);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        purge();
+        V current = raw.get(new Lookup(key));
+        return null != current ? current : raw.putIfAbsent(wrap(key), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        purge();
+        return raw.remove(new Lookup(key));
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        purge();
+        return raw.remove(new Lookup(key), value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        purge();
+        return raw.replace(new Lookup(key), oldValue, newValue);
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        purge();
+        return raw.replace(new Lookup(key), value);
+    }
+
+    @Override
+    public void clear() {
+        raw.clear();
+        while (queue.poll() != null) {
+            // 丢弃已入队的引用
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> es = entrySet;
+        if (null == es) {
+            es = entrySet = new EntrySet();
+        }
+        return es;
+    }
+
+    /**
+     * 清除键已被回收的条目
+     */
+    public void purge() {
+        Reference<? extends K> reference;
+        while ((reference = queue.poll()) != null) {
+            raw.remove(reference);
+        }
+    }
+
+    private Object wrap(K key) {
+        Objects.requireNonNull(key);
+        return type == Type.SOFT ? new SoftKey<>(key, queue) : new WeakKey<>(key, queue);
+    }
+
+    /**
+     * 引用类型
+     */
+    public enum Type {
+        /**
+         * 弱引用,下次GC即回收
+         */
+        WEAK,
+        /**
+         * 软引用,内存不足时回收
+         */
+        SOFT
+    }
+
+    /**
+     * 引用键的公共行为
+     */
+    private interface Ref<K> {
+        K get();
+    }
+
+    /**
+     * 查询用的强引用键,避免每次查询都创建引用对象
+     */
+    private static final class Lookup {
+
+        private final Object key;
+        private final int hash;
+
+        Lookup(Object key) {
+            this.key = Objects.requireNonNull(key);
+            this.hash = key.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Ref) {
+                Object referent = ((Ref<?>) o).get();
+                return key == referent || key.equals(referent);
+            }
+            return o instanceof Lookup && key.equals(((Lookup) o).key);
+        }
+    }
+
+    private static final class WeakKey<K> extends WeakReference<K> implements Ref<K> {
+
+        private final int hash;
+
+        WeakKey(K referent, ReferenceQueue<? super K> queue) {
+            super(referent, queue);
+            this.hash = referent.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o == this || equalsRef(get(), o);
+        }
+    }
+
+    private static final class SoftKey<K> extends SoftReference<K> implements Ref<K> {
+
+        private final int hash;
+
+        SoftKey(K referent, ReferenceQueue<? super K> queue) {
+            super(referent, queue);
+            this.hash = referent.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o == this || equalsRef(get(), o);
+        }
+    }
+
+    private static boolean equalsRef(Object referent, Object o) {
+        if (null == referent) {
+            return false;
+        }
+        if (o instanceof Ref) {
+            Object other = ((Ref<?>) o).get();
+            return referent == other || referent.equals(other);
+        }
+        return o instanceof Lookup && referent.equals(((Lookup) o).key);
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntryIterator(raw.entrySet().iterator());
+        }
+
+        @Override
+        public int size() {
+            return ReferenceConcurrentMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ReferenceConcurrentMap.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+
+        private final Iterator<Entry<Object, V>> iterator;
+        private Entry<K, V> next;
+        private Entry<K, V> lastReturned;
+
+        EntryIterator(Iterator<Entry<Object, V>> iterator) {
+            this.iterator = iterator;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (null == next && iterator.hasNext()) {
+                Entry<Object, V> entry = iterator.next();
+                K key = ((Ref<K>) entry.getKey()).get();
+                if (null != key) {
+                    next = new SimpleImmutableEntry<>(key, entry.getValue());
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return null != next;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (null == next) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            advance();
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (null == lastReturned) {
+                throw new IllegalStateException();
+            }
+            raw.remove(new Lookup(lastReturned.getKey()));
+            lastReturned = null;
+        }
+    }
+
+}
@@ -28,10 +28,10 @@ import org.aoju.bus.core.convert.Convert;
 import org.aoju.bus.core.lang.Holder;
 import org.aoju.bus.core.lang.Normal;
 import org.aoju.bus.core.lang.RegEx;
+import org.aoju.bus.core.lang.SimpleCache;
 import org.aoju.bus.core.lang.Symbol;
 
 import java.util.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,10 +44,7 @@ import java.util.regex.Pattern;
  */
 public class PatternKit {
 
-    private static final Map<RegexWithFlag, Pattern> CACHE = new WeakHashMap<>();
-    private static final ReentrantReadWriteLock CACHE_LOCK = new ReentrantReadWriteLock();
-    private static final ReentrantReadWriteLock.ReadLock READ_LOCK = CACHE_LOCK.readLock();
-    private static final ReentrantReadWriteLock.WriteLock WRITE_LOCK = CACHE_LOCK.writeLock();
+    private static final SimpleCache<RegexWithFlag, Pattern> CACHE = new SimpleCache<>();
 
     /**
      * 先从Pattern池中查找正则对应的{@link Pattern},找不到则编译正则表达式并入池
@@ -68,12 +65,7 @@ public class PatternKit {
      */
     public static Pattern get(String regex, int flags) {
         final RegexWithFlag regexWithFlag = new RegexWithFlag(regex, flags);
-        Pattern pattern = isGet(regexWithFlag);
-        if (null == pattern) {
-            pattern = Pattern.compile(regex, flags);
-            isPut(regexWithFlag, pattern);
-        }
-        return pattern;
+        return CACHE.get(regexWithFlag, () -> Pattern.compile(regex, flags));
     }
 
     /**
@@ -700,54 +692,14 @@ public class PatternKit {
         return builder.toString();
     }
 
-    /**
-     * 从缓存池中查找值
-     *
-     * @param key 键
-     * @return 值
-     */
-    private static Pattern isGet(RegexWithFlag key) {
-        // 尝试读取缓存
-        READ_LOCK.lock();
-        Pattern value;
-        try {
-            value = CACHE.get(key);
-        } finally {
-            READ_LOCK.unlock();
-        }
-        return value;
-    }
-
-    /**
-     * 放入缓存
-     *
-     * @param key   键
-     * @param value 值
-     * @return 值
-     */
-    private static Object isPut(RegexWithFlag key, Pattern value) {
-        WRITE_LOCK.lock();
-        try {
-            CACHE.put(key, value);
-        } finally {
-            WRITE_LOCK.unlock();
-        }
-        return value;
-    }
-
     /**
      * 移除缓存
      *
      * @param key 键
      * @return 移除的值
      */
-    private static Object isRemove(Object key) {
-        WRITE_LOCK.lock();
-        try {
-            return CACHE.remove(key);
-        } finally {
-            WRITE_LOCK.unlock();
-        }
+    private static Object isRemove(RegexWithFlag key) {
+        return CACHE.remove(key);
     }
 
     /**
@@ -764,12 +716,7 @@ public class PatternKit {
      * 清空缓存池
      */
     public void clear() {
-        WRITE_LOCK.lock();
-        try {
-            CACHE.clear();
-        } finally {
-            WRITE_LOCK.unlock();
-        }
+        CACHE.clear();
     }
 
     /**
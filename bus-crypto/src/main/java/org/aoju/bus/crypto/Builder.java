@@ -76,6 +76,7 @@ import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.spec.*;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -126,6 +127,10 @@ public final class Builder {
     public static final String SM2_DEFAULT_CURVE = "sm2p256v1";
     public static final ECDomainParameters SM2_DOMAIN_PARAMS = toDomainParams(GMNamedCurves.getByName(SM2_DEFAULT_CURVE));
     private final static int RS_LEN = 32;
+    /**
+     * 静态摘要方法使用的线程级摘要器，按算法缓存，避免每次调用都创建{@link MessageDigest}
+     */
+    private static final ThreadLocal<Map<String, Digester>> DIGESTERS = ThreadLocal.withInitial(HashMap::new);
 
     /**
      * 数据加密
@@ -1106,7 +1111,7 @@ public final class Builder {
      * @return MD5摘要
      */
     public static byte[] md5(byte[] data) {
-        return new MD5().digest(data);
+        return localDigester(Algorithm.MD5).digest(data);
     }
 
     /**
@@ -1117,7 +1122,7 @@ public final class Builder {
      * @return MD5摘要
      */
     public static byte[] md5(String data, String charset) {
-        return new MD5().digest(data, charset);
+        return localDigester(Algorithm.MD5).digest(data, charset);
     }
 
     /**
@@ -1157,7 +1162,7 @@ public final class Builder {
      * @return MD5摘要的16进制表示
      */
     public static String md5Hex(byte[] data) {
-        return new MD5().digestHex(data);
+        return localDigester(Algorithm.MD5).digestHex(data);
     }
 
     /**
@@ -1168,7 +1173,7 @@ public final class Builder {
      * @return MD5摘要的16进制表示
      */
     public static String md5Hex(String data, String charset) {
-        return new MD5().digestHex(data, charset);
+        return localDigester(Algorithm.MD5).digestHex(data, charset);
     }
 
     /**
@@ -1179,7 +1184,7 @@ public final class Builder {
      * @return MD5摘要的16进制表示
      */
     public static String md5Hex(String data, java.nio.charset.Charset charset) {
-        return new MD5().digestHex(data, charset);
+        return localDigester(Algorithm.MD5).digestHex(data, charset);
     }
 
     /**
@@ -1219,7 +1224,7 @@ public final class Builder {
      * @return MD5摘要的16进制表示
      */
     public static String md5Hex16(byte[] data) {
-        return new MD5().digestHex16(data);
+        return md5HexTo16(localDigester(Algorithm.MD5).digestHex(data));
     }
 
     /**
@@ -1230,7 +1235,7 @@ public final class Builder {
      * @return MD5摘要的16进制表示
      */
     public static String md5Hex16(String data, java.nio.charset.Charset charset) {
-        return new MD5().digestHex16(data, charset);
+        return md5HexTo16(localDigester(Algorithm.MD5).digestHex(data, charset));
     }
 
     /**
@@ -1292,7 +1297,7 @@ public final class Builder {
      * @return SHA-1摘要
      */
     public static byte[] sha1(byte[] data) {
-        return new Digester(Algorithm.SHA1).digest(data);
+        return localDigester(Algorithm.SHA1).digest(data);
     }
 
     /**
@@ -1303,7 +1308,7 @@ public final class Builder {
      * @return SHA-1摘要
      */
     public static byte[] sha1(String data, String charset) {
-        return new Digester(Algorithm.SHA1).digest(data, charset);
+        return localDigester(Algorithm.SHA1).digest(data, charset);
     }
 
     /**
@@ -1343,7 +1348,7 @@ public final class Builder {
      * @return SHA-1摘要的16进制表示
      */
     public static String sha1Hex(byte[] data) {
-        return new Digester(Algorithm.SHA1).digestHex(data);
+        return localDigester(Algorithm.SHA1).digestHex(data);
     }
 
     /**
@@ -1354,7 +1359,7 @@ public final class Builder {
      * @return SHA-1摘要的16进制表示
      */
     public static String sha1Hex(String data, String charset) {
-        return new Digester(Algorithm.SHA1).digestHex(data, charset);
+        return localDigester(Algorithm.SHA1).digestHex(data, charset);
     }
 
     /**
@@ -1406,7 +1411,7 @@ public final class Builder {
      * @return SHA256字符串
      */
     public static String sha256(String data) {
-        return new Digester(Algorithm.SHA256).digestHex(data);
+        return localDigester(Algorithm.SHA256).digestHex(data);
     }
 
     /**
@@ -1437,7 +1442,7 @@ public final class Builder {
      * @return SHA-256摘要
      */
     public static byte[] sha256(byte[] data) {
-        return new Digester(Algorithm.SHA256).digest(data);
+        return localDigester(Algorithm.SHA256).digest(data);
     }
 
     /**
@@ -1448,7 +1453,7 @@ public final class Builder {
      * @return SHA-256摘要
      */
     public static byte[] sha256(String data, String charset) {
-        return new Digester(Algorithm.SHA256).digest(data, charset);
+        return localDigester(Algorithm.SHA256).digest(data, charset);
     }
 
     /**
@@ -1458,7 +1463,7 @@ public final class Builder {
      * @return SHA-256摘要的16进制表示
      */
     public static String sha256Hex(byte[] data) {
-        return new Digester(Algorithm.SHA256).digestHex(data);
+        return localDigester(Algorithm.SHA256).digestHex(data);
     }
 
     /**
@@ -1469,7 +1474,7 @@ public final class Builder {
      * @return SHA-256摘要的16进制表示
      */
     public static String sha256Hex(String data, String charset) {
-        return new Digester(Algorithm.SHA256).digestHex(data, charset);
+        return localDigester(Algorithm.SHA256).digestHex(data, charset);
     }
 
     /**
@@ -1584,6 +1589,26 @@ public final class Builder {
         return new Digester(algorithm);
     }
 
+    /**
+     * 新建树形摘要器，可对大文件并行计算摘要，支持增量计算
+     *
+     * @param algorithm 摘要算法，例如SHA-256、SM3
+     * @return TreeDigester
+     */
+    public static TreeDigester treeDigester(String algorithm) {
+        return new TreeDigester(algorithm);
+    }
+
+    /**
+     * 获取当前线程的摘要器，仅用于内部一次性计算byte[]或字符串的摘要，不可修改盐值等配置
+     *
+     * @param algorithm 算法
+     * @return Digester
+     */
+    private static Digester localDigester(String algorithm) {
+        return DIGESTERS.get().computeIfAbsent(algorithm, Digester::new);
+    }
+
     /**
      * 生成Bcrypt加密后的密文
      *
@@ -1816,7 +1841,7 @@ public final class Builder {
      */
     public static String signParams(String algorithm, Map<?, ?> params, String separator,
                                     String keyValueSeparator, boolean isIgnoreNull, String... otherParams) {
-        return new Digester(algorithm).digestHex(MapKit.sortJoin(params, separator, keyValueSeparator, isIgnoreNull, otherParams));
+        return localDigester(algorithm).digestHex(MapKit.sortJoin(params, separator, keyValueSeparator, isIgnoreNull, otherParams));
     }
 
     /**
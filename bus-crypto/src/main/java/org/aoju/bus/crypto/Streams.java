@@ -0,0 +1,114 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 流式加解密使用的缓冲区
+ * 每个线程缓存两个缓冲区(输入与输出), 避免每次处理流都申请大数组
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public final class Streams {
+
+    /**
+     * 默认缓冲区大小
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 超过该大小的缓冲区用完后不再缓存
+     */
+    private static final int MAX_RETAINED_SIZE = 4 * BUFFER_SIZE;
+
+    private static final ThreadLocal<byte[][]> CACHED = ThreadLocal.withInitial(() -> new byte[2][]);
+
+    private Streams() {
+
+    }
+
+    /**
+     * 获取不小于指定长度的缓冲区, 用完后调用{@link #release(byte[])}
+     *
+     * @param length 最小长度
+     * @return 缓冲区
+     */
+    public static byte[] acquire(int length) {
+        final byte[][] cached = CACHED.get();
+        for (int i = 0; i < cached.length; i++) {
+            final byte[] buffer = cached[i];
+            if (null != buffer && buffer.length >= length) {
+                cached[i] = null;
+                return buffer;
+            }
+        }
+        return new byte[Math.max(length, BUFFER_SIZE)];
+    }
+
+    /**
+     * 归还缓冲区
+     *
+     * @param buffer 缓冲区
+     */
+    public static void release(byte[] buffer) {
+        if (buffer.length > MAX_RETAINED_SIZE) {
+            return;
+        }
+        final byte[][] cached = CACHED.get();
+        for (int i = 0; i < cached.length; i++) {
+            if (null == cached[i]) {
+                cached[i] = buffer;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 读满指定长度, 除非流已结束
+     *
+     * @param in     输入流
+     * @param buffer 缓冲区
+     * @param off    偏移
+     * @param len    长度
+     * @return 实际读取的长度
+     * @throws IOException IO异常
+     */
+    public static int readFully(InputStream in, byte[] buffer, int off, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            final int read = in.read(buffer, off + total, len - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+}
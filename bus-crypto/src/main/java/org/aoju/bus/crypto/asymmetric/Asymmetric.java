@@ -25,17 +25,19 @@
 package org.aoju.bus.crypto.asymmetric;
 
 import org.aoju.bus.core.codec.Base64;
-import org.aoju.bus.core.io.streams.ByteArrayOutputStream;
 import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.core.toolkit.IoKit;
 import org.aoju.bus.crypto.Builder;
+import org.aoju.bus.crypto.Streams;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.Arrays;
 
 /**
  * 非对称加密算法
@@ -174,16 +176,8 @@ public class Asymmetric extends Safety<Asymmetric> {
         final Key key = getKeyByType(keyType);
         lock.lock();
         try {
-            cipher.init(Cipher.ENCRYPT_MODE, key);
-
-            if (this.encryptBlockSize < 0) {
-                // 在引入BC库情况下，自动获取块大小
-                final int blockSize = this.cipher.getBlockSize();
-                if (blockSize > 0) {
-                    this.encryptBlockSize = blockSize;
-                }
-            }
-            return doFinal(data, this.encryptBlockSize < 0 ? data.length : this.encryptBlockSize);
+            final int maxBlockSize = initCipher(Cipher.ENCRYPT_MODE, key);
+            return doFinal(data, maxBlockSize < 0 ? data.length : maxBlockSize);
         } catch (Exception e) {
             throw new InstrumentException(e);
         } finally {
@@ -203,17 +197,8 @@ public class Asymmetric extends Safety<Asymmetric> {
         final Key key = getKeyByType(keyType);
         lock.lock();
         try {
-            cipher.init(Cipher.DECRYPT_MODE, key);
-
-            if (this.decryptBlockSize < 0) {
-                // 在引入BC库情况下，自动获取块大小
-                final int blockSize = this.cipher.getBlockSize();
-                if (blockSize > 0) {
-                    this.decryptBlockSize = blockSize;
-                }
-            }
-
-            return doFinal(data, this.decryptBlockSize < 0 ? data.length : this.decryptBlockSize);
+            final int maxBlockSize = initCipher(Cipher.DECRYPT_MODE, key);
+            return doFinal(data, maxBlockSize < 0 ? data.length : maxBlockSize);
         } catch (Exception e) {
             throw new InstrumentException(e);
         } finally {
@@ -221,6 +206,32 @@ public class Asymmetric extends Safety<Asymmetric> {
         }
     }
 
+    /**
+     * 流式加密，按块大小分段读取并逐段写出，不会关闭流
+     * 无法确定块大小时读取全部数据后加密
+     *
+     * @param data    被加密的数据
+     * @param out     加密后的输出
+     * @param keyType 私钥或公钥 {@link KeyType}
+     * @throws InstrumentException IO异常
+     */
+    public void encrypt(InputStream data, OutputStream out, KeyType keyType) throws InstrumentException {
+        crypt(Cipher.ENCRYPT_MODE, data, out, getKeyByType(keyType));
+    }
+
+    /**
+     * 流式解密，按块大小分段读取并逐段写出，不会关闭流
+     * 无法确定块大小时读取全部数据后解密
+     *
+     * @param data    被解密的数据
+     * @param out     解密后的输出
+     * @param keyType 私钥或公钥 {@link KeyType}
+     * @throws InstrumentException IO异常
+     */
+    public void decrypt(InputStream data, OutputStream out, KeyType keyType) throws InstrumentException {
+        crypt(Cipher.DECRYPT_MODE, data, out, getKeyByType(keyType));
+    }
+
     /**
      * 获得加密或解密器
      *
@@ -237,17 +248,77 @@ public class Asymmetric extends Safety<Asymmetric> {
         this.cipher = Builder.createCipher(algorithm);
     }
 
+    /**
+     * 初始化Cipher并确定分段大小
+     *
+     * @param mode 模式
+     * @param key  密钥
+     * @return 分段大小，小于0表示不分段
+     * @throws GeneralSecurityException 初始化失败
+     */
+    private int initCipher(int mode, Key key) throws GeneralSecurityException {
+        cipher.init(mode, key);
+        final boolean encrypt = mode == Cipher.ENCRYPT_MODE;
+        if ((encrypt ? this.encryptBlockSize : this.decryptBlockSize) < 0) {
+            // 在引入BC库情况下，自动获取块大小
+            final int blockSize = this.cipher.getBlockSize();
+            if (blockSize > 0) {
+                if (encrypt) {
+                    this.encryptBlockSize = blockSize;
+                } else {
+                    this.decryptBlockSize = blockSize;
+                }
+            }
+        }
+        return encrypt ? this.encryptBlockSize : this.decryptBlockSize;
+    }
+
+    private void crypt(int mode, InputStream in, OutputStream out, Key key) {
+        byte[] input = null;
+        byte[] output = null;
+        lock.lock();
+        try {
+            final int maxBlockSize = initCipher(mode, key);
+            if (maxBlockSize < 0) {
+                final byte[] data = IoKit.readBytes(in);
+                out.write(doFinal(data, data.length));
+            } else {
+                input = Streams.acquire(maxBlockSize);
+                output = Streams.acquire(cipher.getOutputSize(maxBlockSize));
+                int read;
+                // 首段即使为空也要处理，保证空数据有输出
+                boolean first = true;
+                while ((read = Streams.readFully(in, input, 0, maxBlockSize)) > 0 || first) {
+                    first = false;
+                    out.write(output, 0, cipher.doFinal(input, 0, read, output, 0));
+                    if (read < maxBlockSize) {
+                        break;
+                    }
+                }
+            }
+            out.flush();
+        } catch (Exception e) {
+            throw new InstrumentException(e);
+        } finally {
+            lock.unlock();
+            if (null != output) {
+                Streams.release(output);
+            }
+            if (null != input) {
+                Streams.release(input);
+            }
+        }
+    }
+
     /**
      * 加密或解密
      *
      * @param data         被加密或解密的内容数据
      * @param maxBlockSize 最大块(分段)大小
      * @return 加密或解密后的数据
-     * @throws IllegalBlockSizeException 分段异常
-     * @throws BadPaddingException       padding错误异常
-     * @throws IOException               IO异常，不会被触发
+     * @throws GeneralSecurityException 分段或padding错误异常
      */
-    private byte[] doFinal(byte[] data, int maxBlockSize) throws IllegalBlockSizeException, BadPaddingException, IOException {
+    private byte[] doFinal(byte[] data, int maxBlockSize) throws GeneralSecurityException {
         // 模长
         final int dataLength = data.length;
 
@@ -266,29 +337,24 @@ public class Asymmetric extends Safety<Asymmetric> {
      * @param data         数据
      * @param maxBlockSize 最大分段的段大小，不能为小于1
      * @return 加密或解密后的数据
-     * @throws IllegalBlockSizeException 分段异常
-     * @throws BadPaddingException       padding错误异常
-     * @throws IOException               IO异常，不会被触发
+     * @throws GeneralSecurityException 分段或padding错误异常
      */
-    private byte[] doFinalWithBlock(byte[] data, int maxBlockSize) throws IllegalBlockSizeException, BadPaddingException, IOException {
+    private byte[] doFinalWithBlock(byte[] data, int maxBlockSize) throws GeneralSecurityException {
         final int dataLength = data.length;
-
-        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // 按每段输出的上限一次分配，各段直接写入结果
+        final int blocks = (dataLength + maxBlockSize - 1) / maxBlockSize;
+        final byte[] out = new byte[blocks * cipher.getOutputSize(maxBlockSize)];
 
         int offSet = 0;
-        // 剩余长度
-        int remainLength = dataLength;
-        int blockSize;
+        int outLength = 0;
         // 对数据分段处理
-        while (remainLength > 0) {
-            blockSize = Math.min(remainLength, maxBlockSize);
-            out.write(cipher.doFinal(data, offSet, blockSize));
-
+        while (offSet < dataLength) {
+            final int blockSize = Math.min(dataLength - offSet, maxBlockSize);
+            outLength += cipher.doFinal(data, offSet, blockSize, out, outLength);
             offSet += blockSize;
-            remainLength = dataLength - offSet;
         }
 
-        return out.toByteArray();
+        return outLength == out.length ? out : Arrays.copyOf(out, outLength);
     }
 
 }
@@ -30,6 +30,8 @@ import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.bus.crypto.Builder;
 import org.aoju.bus.crypto.Holder;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -171,22 +173,42 @@ public class RSA extends Asymmetric {
 
     @Override
     public byte[] encrypt(byte[] data, KeyType keyType) {
+        initEncryptBlockSize(keyType);
+        return super.encrypt(data, keyType);
+    }
+
+    @Override
+    public void encrypt(InputStream data, OutputStream out, KeyType keyType) {
+        initEncryptBlockSize(keyType);
+        super.encrypt(data, out, keyType);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] bytes, KeyType keyType) {
+        initDecryptBlockSize(keyType);
+        return super.decrypt(bytes, keyType);
+    }
+
+    @Override
+    public void decrypt(InputStream data, OutputStream out, KeyType keyType) {
+        initDecryptBlockSize(keyType);
+        super.decrypt(data, out, keyType);
+    }
+
+    private void initEncryptBlockSize(KeyType keyType) {
         // 在非使用BC库情况下，blockSize使用默认的算法
         if (this.encryptBlockSize < 0 && null == Instances.singletion(Holder.class).getProvider()) {
             // 加密数据长度 <= 模长-11
             this.encryptBlockSize = ((RSAKey) getKeyByType(keyType)).getModulus().bitLength() / 8 - 11;
         }
-        return super.encrypt(data, keyType);
     }
 
-    @Override
-    public byte[] decrypt(byte[] bytes, KeyType keyType) {
+    private void initDecryptBlockSize(KeyType keyType) {
         // 在非使用BC库情况下，blockSize使用默认的算法
         if (this.decryptBlockSize < 0 && null == Instances.singletion(Holder.class).getProvider()) {
-            // 加密数据长度 <= 模长-11
+            // 解密数据长度 = 模长
             this.decryptBlockSize = ((RSAKey) getKeyByType(keyType)).getModulus().bitLength() / 8;
         }
-        return super.decrypt(bytes, keyType);
     }
 
     @Override
@@ -33,6 +33,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
@@ -48,6 +51,19 @@ import java.security.Provider;
 public class Digester implements Serializable {
 
     private static final long serialVersionUID = 1L;
+    /**
+     * 不小于此大小的文件通过{@link FileChannel}读入直接缓冲区计算摘要
+     */
+    private static final long CHANNEL_THRESHOLD = 1 << 20;
+    /**
+     * 直接缓冲区大小
+     */
+    private static final int CHANNEL_BUFFER_SIZE = 256 * 1024;
+    /**
+     * 每个线程复用的直接缓冲区,不使用内存映射,避免映射区域在GC前无法释放
+     */
+    private static final ThreadLocal<ByteBuffer> CHANNEL_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE));
     /**
      * 盐值
      */
@@ -222,20 +238,42 @@ public class Digester implements Serializable {
 
     /**
      * 生成文件摘要
-     * 使用默认缓存大小，见 {@link IoKit#DEFAULT_BUFFER_SIZE}
+     * 小文件使用默认缓存大小读取，见 {@link IoKit#DEFAULT_BUFFER_SIZE}，
+     * 大文件从{@link FileChannel}读入线程复用的直接缓冲区后交给{@link MessageDigest}
      *
      * @param file 被摘要文件
      * @return 摘要bytes
      * @throws InstrumentException Cause by IOException
      */
     public byte[] digest(File file) throws InstrumentException {
-        InputStream in = null;
-        try {
-            in = FileKit.getInputStream(file);
-            return digest(in);
-        } finally {
-            IoKit.close(in);
+        if (file.length() < CHANNEL_THRESHOLD) {
+            InputStream in = null;
+            try {
+                in = FileKit.getInputStream(file);
+                return digest(in);
+            } finally {
+                IoKit.close(in);
+            }
+        }
+
+        byte[] result;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            saltFirst();
+            final ByteBuffer buffer = CHANNEL_BUFFER.get();
+            long total = 0;
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                total = update(buffer, total);
+                buffer.clear();
+            }
+            saltLast(total);
+            result = this.digest.digest();
+        } catch (IOException e) {
+            reset();
+            throw new InstrumentException(e);
         }
+        return resetAndRepeatDigest(result);
     }
 
     /**
@@ -323,12 +361,17 @@ public class Digester implements Serializable {
 
         byte[] result;
         try {
-            if (ArrayKit.isEmpty(this.salt)) {
-                result = digestWithoutSalt(data, bufferLength);
-            } else {
-                result = digestWithSalt(data, bufferLength);
+            saltFirst();
+            final byte[] buffer = new byte[bufferLength];
+            long total = 0;
+            int read;
+            while ((read = data.read(buffer, 0, bufferLength)) > -1) {
+                total = update(ByteBuffer.wrap(buffer, 0, read), total);
             }
+            saltLast(total);
+            result = this.digest.digest();
         } catch (IOException e) {
+            reset();
             throw new InstrumentException(e);
         }
 
@@ -366,59 +409,45 @@ public class Digester implements Serializable {
     }
 
     /**
-     * 生成摘要
-     *
-     * @param data         {@link InputStream} 数据流
-     * @param bufferLength 缓存长度，不足1使用 {@link IoKit#DEFAULT_BUFFER_SIZE} 做为默认值
-     * @return 摘要bytes
-     * @throws IOException 从流中读取数据引发的IO异常
+     * 盐值位于开头时先写入盐值
      */
-    private byte[] digestWithoutSalt(InputStream data, int bufferLength) throws IOException {
-        final byte[] buffer = new byte[bufferLength];
-        int read;
-        while ((read = data.read(buffer, 0, bufferLength)) > -1) {
-            this.digest.update(buffer, 0, read);
+    private void saltFirst() {
+        if (this.saltPosition <= 0 && ArrayKit.isNotEmpty(this.salt)) {
+            this.digest.update(this.salt);
         }
-        return this.digest.digest();
     }
 
     /**
-     * 生成摘要
+     * 数据长度不足加盐位置时，盐值放在末尾
      *
-     * @param data         {@link InputStream} 数据流
-     * @param bufferLength 缓存长度，不足1使用 {@link IoKit#DEFAULT_BUFFER_SIZE} 做为默认值
-     * @return 摘要bytes
-     * @throws IOException 从流中读取数据引发的IO异常
+     * @param total 已写入的数据长度
      */
-    private byte[] digestWithSalt(InputStream data, int bufferLength) throws IOException {
-        if (this.saltPosition <= 0) {
-            // 加盐在开头
+    private void saltLast(long total) {
+        if (total < this.saltPosition && ArrayKit.isNotEmpty(this.salt)) {
             this.digest.update(this.salt);
         }
+    }
 
-        final byte[] buffer = new byte[bufferLength];
-        int total = 0;
-        int read;
-        while ((read = data.read(buffer, 0, bufferLength)) > -1) {
-            total += read;
-            if (this.saltPosition > 0 && total >= this.saltPosition) {
-                if (total != this.saltPosition) {
-                    digest.update(buffer, 0, total - this.saltPosition);
-                }
-                // 加盐在中间
-                this.digest.update(this.salt);
-                this.digest.update(buffer, total - this.saltPosition, read);
-            } else {
-                this.digest.update(buffer, 0, read);
-            }
-        }
-
-        if (total < this.saltPosition) {
-            // 加盐在末尾
+    /**
+     * 写入一段数据，数据跨过加盐位置时在该位置插入盐值
+     *
+     * @param buffer 数据
+     * @param total  此前已写入的数据长度
+     * @return 写入后的数据长度
+     */
+    private long update(ByteBuffer buffer, long total) {
+        final int length = buffer.remaining();
+        if (this.saltPosition > 0 && total < this.saltPosition && total + length >= this.saltPosition
+                && ArrayKit.isNotEmpty(this.salt)) {
+            // 加盐在中间
+            final ByteBuffer head = buffer.duplicate();
+            head.limit(head.position() + (int) (this.saltPosition - total));
+            this.digest.update(head);
             this.digest.update(this.salt);
+            buffer.position(head.limit());
         }
-
-        return this.digest.digest();
+        this.digest.update(buffer);
+        return total + length;
     }
 
     /**
@@ -35,7 +35,6 @@ import org.aoju.bus.crypto.digest.mac.MacEngine;
 import org.aoju.bus.crypto.digest.mac.MacEngineFactory;
 
 import javax.crypto.spec.SecretKeySpec;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.io.Serializable;
@@ -175,7 +174,7 @@ public class HMac implements Serializable {
      * @return 摘要bytes
      */
     public byte[] digest(byte[] data) {
-        return digest(new ByteArrayInputStream(data), -1);
+        return this.engine.digest(data);
     }
 
     /**
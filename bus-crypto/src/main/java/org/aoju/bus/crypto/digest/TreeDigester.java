@@ -0,0 +1,475 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.crypto.digest;
+
+import org.aoju.bus.core.lang.Assert;
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.core.toolkit.HexKit;
+import org.aoju.bus.crypto.Builder;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 树形摘要(Merkle树)
+ * 数据按固定大小分块，叶子节点为H(0x00 || 块)，父节点为H(0x01 || 左 || 右)，
+ * 左子树取小于块数的最大2的幂个块，空数据视为一个空块；
+ * 底层可使用SHA-256、SM3等任意{@link MessageDigest}算法
+ * 分块之间互不依赖，大文件可映射到内存后由多个线程并行计算，
+ * 也可通过{@link Incremental}增量计算，并保存、恢复中间状态
+ * 结果与对整个数据直接计算摘要不同，只能与同样算法、同样块大小的树形摘要比较
+ * 此对象可在多线程间共享
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class TreeDigester {
+
+    /**
+     * 默认块大小，1MB
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    private static final int STATE_VERSION = 1;
+    private static final byte LEAF = 0x00;
+    private static final byte PARENT = 0x01;
+    /**
+     * 并行计算时单个任务顺序处理的字节数上限，即一次映射的大小
+     */
+    private static final long SEQUENTIAL_SIZE = 16L << 20;
+
+    private final String algorithm;
+    private final int chunkSize;
+    private final ThreadLocal<MessageDigest> digests;
+
+    /**
+     * 构造，使用默认块大小
+     *
+     * @param algorithm 摘要算法
+     */
+    public TreeDigester(String algorithm) {
+        this(algorithm, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 构造
+     *
+     * @param algorithm 摘要算法
+     * @param chunkSize 块大小
+     */
+    public TreeDigester(String algorithm, int chunkSize) {
+        Assert.isTrue(chunkSize > 0, "Chunk size must be positive: {}", chunkSize);
+        this.algorithm = algorithm;
+        this.chunkSize = chunkSize;
+        this.digests = ThreadLocal.withInitial(() -> Builder.createMessageDigest(algorithm));
+        // 算法不存在时尽早失败
+        this.digests.get();
+    }
+
+    /**
+     * 左子树的块数，即小于n的最大2的幂
+     *
+     * @param chunks 块数，不小于2
+     * @return 左子树的块数
+     */
+    private static long split(long chunks) {
+        return Long.highestOneBit(chunks - 1);
+    }
+
+    /**
+     * 计算摘要
+     *
+     * @param data 数据
+     * @return 摘要
+     */
+    public byte[] digest(byte[] data) {
+        return digest(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * 计算摘要，并转为16进制字符串
+     *
+     * @param data 数据
+     * @return 摘要
+     */
+    public String digestHex(byte[] data) {
+        return HexKit.encodeHexStr(digest(data));
+    }
+
+    /**
+     * 计算摘要，读取buffer中剩余的全部数据
+     *
+     * @param data 数据
+     * @return 摘要
+     */
+    public byte[] digest(ByteBuffer data) {
+        return hash(data.slice(), chunks(data.remaining()));
+    }
+
+    /**
+     * 使用{@link ForkJoinPool#commonPool()}并行计算文件摘要
+     *
+     * @param file 文件
+     * @return 摘要
+     */
+    public byte[] digest(File file) {
+        return digest(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 计算文件摘要，并转为16进制字符串
+     *
+     * @param file 文件
+     * @return 摘要
+     */
+    public String digestHex(File file) {
+        return HexKit.encodeHexStr(digest(file));
+    }
+
+    /**
+     * 并行计算文件摘要，文件按区段映射到内存，每个区段由一个任务计算
+     *
+     * @param file 文件
+     * @param pool 执行计算的线程池
+     * @return 摘要
+     * @throws InstrumentException IO异常
+     */
+    public byte[] digest(File file, ForkJoinPool pool) throws InstrumentException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            return pool.invoke(new Node(channel, size, 0, chunks(size)));
+        } catch (IOException e) {
+            throw new InstrumentException(e);
+        }
+    }
+
+    /**
+     * 新建增量计算
+     *
+     * @return {@link Incremental}
+     */
+    public Incremental incremental() {
+        return new Incremental();
+    }
+
+    /**
+     * 从{@link Incremental#saveState()}保存的状态恢复增量计算
+     *
+     * @param state 状态
+     * @return {@link Incremental}
+     * @throws InstrumentException 状态无效或与当前算法、块大小不一致
+     */
+    public Incremental resume(byte[] state) throws InstrumentException {
+        final Incremental incremental = new Incremental();
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(state));
+            if (in.readByte() != STATE_VERSION) {
+                throw new InstrumentException("Unsupported state version");
+            }
+            final String stateAlgorithm = in.readUTF();
+            final int stateChunkSize = in.readInt();
+            if (!algorithm.equalsIgnoreCase(stateAlgorithm) || chunkSize != stateChunkSize) {
+                throw new InstrumentException("State of {} / {} does not match {} / {}",
+                        stateAlgorithm, stateChunkSize, algorithm, chunkSize);
+            }
+            incremental.length = in.readLong();
+            incremental.chunks = in.readLong();
+            final int depth = in.readInt();
+            final int digestLength = in.readInt();
+            if (depth != Long.bitCount(incremental.chunks) || depth < 0) {
+                throw new InstrumentException("Corrupted state");
+            }
+            for (int i = 0; i < depth; i++) {
+                final byte[] node = new byte[digestLength];
+                in.readFully(node);
+                incremental.stack.add(node);
+            }
+            incremental.pending = in.readInt();
+            if (incremental.pending < 0 || incremental.pending > chunkSize
+                    || incremental.length != incremental.chunks * chunkSize + incremental.pending) {
+                throw new InstrumentException("Corrupted state");
+            }
+            if (incremental.pending > 0) {
+                incremental.buffer = new byte[chunkSize];
+                in.readFully(incremental.buffer, 0, incremental.pending);
+            }
+        } catch (IOException e) {
+            throw new InstrumentException(e);
+        }
+        return incremental;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 数据的块数，空数据为1块
+     *
+     * @param size 数据长度
+     * @return 块数
+     */
+    private long chunks(long size) {
+        return Math.max(1, (size + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * 顺序计算子树
+     *
+     * @param data   子树覆盖的数据，从position到limit
+     * @param chunks 块数
+     * @return 子树摘要
+     */
+    private byte[] hash(ByteBuffer data, long chunks) {
+        if (chunks == 1) {
+            return leaf(data);
+        }
+        final int middle = data.position() + (int) (split(chunks) * chunkSize);
+        final ByteBuffer left = data.duplicate();
+        left.limit(middle);
+        final ByteBuffer right = data.duplicate();
+        right.position(middle);
+        return parent(hash(left, split(chunks)), hash(right, chunks - split(chunks)));
+    }
+
+    private byte[] leaf(ByteBuffer chunk) {
+        final MessageDigest digest = digests.get();
+        digest.update(LEAF);
+        digest.update(chunk);
+        return digest.digest();
+    }
+
+    private byte[] leaf(byte[] chunk, int offset, int length) {
+        final MessageDigest digest = digests.get();
+        digest.update(LEAF);
+        digest.update(chunk, offset, length);
+        return digest.digest();
+    }
+
+    private byte[] parent(byte[] left, byte[] right) {
+        final MessageDigest digest = digests.get();
+        digest.update(PARENT);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    /**
+     * 并行计算文件中的一棵子树
+     */
+    private class Node extends RecursiveTask<byte[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long size;
+        private final long from;
+        private final long chunks;
+
+        Node(FileChannel channel, long size, long from, long chunks) {
+            this.channel = channel;
+            this.size = size;
+            this.from = from;
+            this.chunks = chunks;
+        }
+
+        @Override
+        protected byte[] compute() {
+            if (chunks == 1 || chunks * chunkSize <= SEQUENTIAL_SIZE) {
+                final long position = from * chunkSize;
+                try {
+                    return hash(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(chunks * chunkSize, size - position)), chunks);
+                } catch (IOException e) {
+                    throw new InstrumentException(e);
+                }
+            }
+            final long left = split(chunks);
+            final Node task = new Node(channel, size, from, left);
+            task.fork();
+            final byte[] right = new Node(channel, size, from + left, chunks - left).compute();
+            return parent(task.join(), right);
+        }
+    }
+
+    /**
+     * 增量计算
+     * 只保存每棵已完成的完全子树的摘要(最多64个)及未满的最后一块，
+     * 可随时计算当前摘要，或保存状态后在其他进程中继续计算
+     * 非线程安全
+     */
+    public class Incremental {
+
+        /**
+         * 已完成的完全子树摘要，从左到右，大小依次递减
+         */
+        private final List<byte[]> stack = new ArrayList<>();
+        /**
+         * 已完成的块数
+         */
+        private long chunks;
+        /**
+         * 数据总长度
+         */
+        private long length;
+        /**
+         * 最后一块的数据，块写满后要等到有新数据时才计算，以保证它是最后一块时仍能参与合并
+         */
+        private byte[] buffer;
+        private int pending;
+
+        private Incremental() {
+        }
+
+        /**
+         * 追加数据
+         *
+         * @param data 数据
+         * @return this
+         */
+        public Incremental update(byte[] data) {
+            return update(data, 0, data.length);
+        }
+
+        /**
+         * 追加数据
+         *
+         * @param data   数据
+         * @param offset 开始位置
+         * @param len    长度
+         * @return this
+         */
+        public Incremental update(byte[] data, int offset, int len) {
+            length += len;
+            while (len > 0) {
+                if (pending == chunkSize) {
+                    push(leaf(buffer, 0, chunkSize));
+                    pending = 0;
+                }
+                if (pending == 0 && len > chunkSize) {
+                    // 整块直接计算，不经过缓冲区
+                    push(leaf(data, offset, chunkSize));
+                    offset += chunkSize;
+                    len -= chunkSize;
+                    continue;
+                }
+                if (null == buffer) {
+                    buffer = new byte[chunkSize];
+                }
+                final int n = Math.min(len, chunkSize - pending);
+                System.arraycopy(data, offset, buffer, pending, n);
+                pending += n;
+                offset += n;
+                len -= n;
+            }
+            return this;
+        }
+
+        /**
+         * 追加一个块的摘要，与此前同样大小的子树合并
+         *
+         * @param node 块摘要
+         */
+        private void push(byte[] node) {
+            chunks++;
+            for (long total = chunks; (total & 1) == 0; total >>= 1) {
+                node = parent(stack.remove(stack.size() - 1), node);
+            }
+            stack.add(node);
+        }
+
+        /**
+         * 计算当前已追加数据的摘要，不影响继续追加
+         *
+         * @return 摘要
+         */
+        public byte[] digest() {
+            byte[] node = leaf(null == buffer ? new byte[0] : buffer, 0, pending);
+            for (int i = stack.size() - 1; i >= 0; i--) {
+                node = parent(stack.get(i), node);
+            }
+            return node;
+        }
+
+        /**
+         * 计算当前已追加数据的摘要，并转为16进制字符串
+         *
+         * @return 摘要
+         */
+        public String digestHex() {
+            return HexKit.encodeHexStr(digest());
+        }
+
+        /**
+         * 已追加的数据长度
+         *
+         * @return 长度
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * 保存当前状态，可通过{@link TreeDigester#resume(byte[])}恢复
+         * 状态包含未满的最后一块，最大约为块大小
+         *
+         * @return 状态
+         */
+        public byte[] saveState() {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + pending + stack.size() * 64);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(STATE_VERSION);
+                out.writeUTF(algorithm);
+                out.writeInt(chunkSize);
+                out.writeLong(length);
+                out.writeLong(chunks);
+                out.writeInt(stack.size());
+                out.writeInt(digests.get().getDigestLength());
+                for (byte[] node : stack) {
+                    out.write(node);
+                }
+                out.writeInt(pending);
+                if (pending > 0) {
+                    out.write(buffer, 0, pending);
+                }
+            } catch (IOException e) {
+                throw new InstrumentException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+}
@@ -38,6 +38,8 @@ import java.security.Key;
 /**
  * 默认的HMAC算法实现引擎，使用{@link Mac} 实现摘要
  * 当引入BouncyCastle库时自动使用其作为Provider
+ * 首个使用的线程直接使用初始化后的{@link Mac}，其他线程首次使用时再克隆各自的副本，
+ * 不支持克隆时多个线程串行使用同一个{@link Mac}
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -46,6 +48,18 @@ import java.security.Key;
 public class DefaultHMacEngine implements MacEngine {
 
     private Mac mac;
+    /**
+     * 直接使用{@link #mac}的线程
+     */
+    private volatile Thread owner;
+    /**
+     * 其他线程的{@link Mac}副本，首次跨线程使用时创建
+     */
+    private volatile ThreadLocal<Mac> local;
+    /**
+     * {@link #mac}是否支持克隆
+     */
+    private volatile boolean cloneable;
 
     /**
      * 构造
@@ -96,6 +110,10 @@ public class DefaultHMacEngine implements MacEngine {
         } catch (Exception e) {
             throw new InstrumentException(e);
         }
+
+        owner = null;
+        local = null;
+        cloneable = true;
         return this;
     }
 
@@ -104,6 +122,81 @@ public class DefaultHMacEngine implements MacEngine {
         if (bufferLength < 1) {
             bufferLength = IoKit.DEFAULT_BUFFER_SIZE;
         }
+        final Mac copy = localMac();
+        if (null == copy) {
+            synchronized (mac) {
+                return digest(mac, data, bufferLength);
+            }
+        }
+        return digest(copy, data, bufferLength);
+    }
+
+    @Override
+    public byte[] digest(byte[] data) {
+        final Mac copy = localMac();
+        if (null == copy) {
+            synchronized (mac) {
+                return mac.doFinal(data);
+            }
+        }
+        return copy.doFinal(data);
+    }
+
+    /**
+     * 获取当前线程的{@link Mac}副本
+     * 首个使用的线程或不支持克隆时返回null，此时需持有{@link #mac}的锁使用{@link #mac}
+     *
+     * @return {@link Mac}副本或null
+     */
+    private Mac localMac() {
+        if (!cloneable) {
+            return null;
+        }
+        final Thread current = Thread.currentThread();
+        if (null == owner) {
+            synchronized (mac) {
+                if (null == owner) {
+                    owner = current;
+                }
+            }
+        }
+        if (owner == current) {
+            return null;
+        }
+        ThreadLocal<Mac> threadLocal = local;
+        if (null == threadLocal) {
+            synchronized (mac) {
+                if (null == local) {
+                    local = new ThreadLocal<>();
+                }
+                threadLocal = local;
+            }
+        }
+        Mac copy = threadLocal.get();
+        if (null == copy) {
+            // 持锁克隆，保证克隆时{@link #mac}不处于计算中途
+            synchronized (mac) {
+                try {
+                    copy = (Mac) mac.clone();
+                } catch (CloneNotSupportedException e) {
+                    cloneable = false;
+                    return null;
+                }
+            }
+            threadLocal.set(copy);
+        }
+        return copy;
+    }
+
+    /**
+     * 使用指定的{@link Mac}生成摘要，结束后重置
+     *
+     * @param mac          {@link Mac}
+     * @param data         {@link InputStream} 数据流
+     * @param bufferLength 缓存长度
+     * @return 摘要bytes
+     */
+    private static byte[] digest(Mac mac, InputStream data, int bufferLength) {
         byte[] buffer = new byte[bufferLength];
 
         byte[] result;
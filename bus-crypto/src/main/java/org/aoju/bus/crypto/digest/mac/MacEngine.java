@@ -26,6 +26,7 @@ package org.aoju.bus.crypto.digest.mac;
 
 import org.aoju.bus.core.toolkit.IoKit;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 /**
@@ -46,6 +47,16 @@ public interface MacEngine {
      */
     byte[] digest(InputStream data, int bufferLength);
 
+    /**
+     * 生成摘要
+     *
+     * @param data 数据bytes
+     * @return 摘要bytes
+     */
+    default byte[] digest(byte[] data) {
+        return digest(new ByteArrayInputStream(data), -1);
+    }
+
 
     /**
      * 获取MAC算法块大小
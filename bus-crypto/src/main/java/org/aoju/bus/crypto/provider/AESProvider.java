@@ -25,11 +25,14 @@
 package org.aoju.bus.crypto.provider;
 
 import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.core.map.BoundedConcurrentMap;
 import org.aoju.bus.core.toolkit.StringKit;
 import org.aoju.bus.crypto.Builder;
 import org.aoju.bus.crypto.Provider;
 import org.aoju.bus.crypto.symmetric.AES;
 
+import java.util.Map;
+
 /**
  * 高级加密标准,是下一代的加密算法标准,速度快,安全级别高；
  * AES是一个使用128为分组块的分组加密算法,分组块和128、192或256位的密钥一起作为输入,
@@ -43,6 +46,11 @@ import org.aoju.bus.crypto.symmetric.AES;
  */
 public class AESProvider implements Provider {
 
+    /**
+     * 按密钥缓存的实例, 实例内部复用已初始化的Cipher
+     */
+    private final Map<String, AES> cache = new BoundedConcurrentMap<>(256);
+
     /**
      * 加密
      *
@@ -54,7 +62,7 @@ public class AESProvider implements Provider {
         if (StringKit.isEmpty(key)) {
             throw new InstrumentException("key is null!");
         }
-        AES aes = Builder.aes(key.getBytes());
+        AES aes = get(key);
         return aes.encrypt(content);
     }
 
@@ -70,8 +78,17 @@ public class AESProvider implements Provider {
         if (StringKit.isEmpty(key)) {
             throw new InstrumentException("key is null!");
         }
-        AES aes = Builder.aes(key.getBytes());
+        AES aes = get(key);
         return aes.decrypt(content);
     }
 
+    private AES get(String key) {
+        AES aes = cache.get(key);
+        if (null == aes) {
+            aes = Builder.aes(key.getBytes());
+            cache.putIfAbsent(key, aes);
+        }
+        return aes;
+    }
+
 }
@@ -25,11 +25,14 @@
 package org.aoju.bus.crypto.provider;
 
 import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.core.map.BoundedConcurrentMap;
 import org.aoju.bus.core.toolkit.StringKit;
 import org.aoju.bus.crypto.Builder;
 import org.aoju.bus.crypto.Provider;
 import org.aoju.bus.crypto.symmetric.DES;
 
+import java.util.Map;
+
 /**
  * 数据加密标准,速度较快,适用于加密大量数据的场合
  *
@@ -39,6 +42,11 @@ import org.aoju.bus.crypto.symmetric.DES;
  */
 public class DESProvider implements Provider {
 
+    /**
+     * 按密钥缓存的实例, 实例内部复用已初始化的Cipher
+     */
+    private final Map<String, DES> cache = new BoundedConcurrentMap<>(256);
+
     /**
      * 加密
      *
@@ -50,7 +58,7 @@ public class DESProvider implements Provider {
         if (StringKit.isEmpty(key)) {
             throw new InstrumentException("key is null!");
         }
-        DES des = Builder.des(key.getBytes());
+        DES des = get(key);
         return des.encrypt(content);
     }
 
@@ -66,8 +74,17 @@ public class DESProvider implements Provider {
         if (StringKit.isEmpty(key)) {
             throw new InstrumentException("key is null!");
         }
-        DES des = Builder.des(key.getBytes());
+        DES des = get(key);
         return des.decrypt(content);
     }
 
+    private DES get(String key) {
+        DES des = cache.get(key);
+        if (null == des) {
+            des = Builder.des(key.getBytes());
+            cache.putIfAbsent(key, des);
+        }
+        return des;
+    }
+
 }
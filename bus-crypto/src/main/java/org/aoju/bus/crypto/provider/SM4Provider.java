@@ -25,12 +25,15 @@
 package org.aoju.bus.crypto.provider;
 
 import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.core.map.BoundedConcurrentMap;
 import org.aoju.bus.core.toolkit.HexKit;
 import org.aoju.bus.core.toolkit.StringKit;
 import org.aoju.bus.crypto.Builder;
 import org.aoju.bus.crypto.Provider;
 import org.aoju.bus.crypto.symmetric.Symmetric;
 
+import java.util.Map;
+
 /**
  * 高级加密标准,是下一代的加密算法标准,速度快,安全级别高；
  * AES是一个使用128为分组块的分组加密算法,分组块和128、192或256位的密钥一起作为输入,
@@ -44,6 +47,11 @@ import org.aoju.bus.crypto.symmetric.Symmetric;
  */
 public class SM4Provider implements Provider {
 
+    /**
+     * 按密钥缓存的实例, 实例内部复用已初始化的Cipher
+     */
+    private final Map<String, Symmetric> cache = new BoundedConcurrentMap<>(256);
+
     /**
      * 加密
      *
@@ -55,7 +63,7 @@ public class SM4Provider implements Provider {
         if (StringKit.isEmpty(key)) {
             throw new InstrumentException("key is null!");
         }
-        Symmetric sm4 = Builder.sm4(HexKit.decodeHex(key));
+        Symmetric sm4 = get(key);
         return sm4.encrypt(content);
     }
 
@@ -70,8 +78,17 @@ public class SM4Provider implements Provider {
         if (StringKit.isEmpty(key)) {
             throw new InstrumentException("key is null!");
         }
-        Symmetric sm4 = Builder.sm4(HexKit.decodeHex(key));
+        Symmetric sm4 = get(key);
         return sm4.decrypt(content);
     }
 
+    private Symmetric get(String key) {
+        Symmetric sm4 = cache.get(key);
+        if (null == sm4) {
+            sm4 = Builder.sm4(HexKit.decodeHex(key));
+            cache.putIfAbsent(key, sm4);
+        }
+        return sm4;
+    }
+
 }
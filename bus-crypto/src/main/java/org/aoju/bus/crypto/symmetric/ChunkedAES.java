@@ -0,0 +1,468 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.crypto.symmetric;
+
+import org.aoju.bus.core.lang.Assert;
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.crypto.Builder;
+import org.aoju.bus.crypto.Streams;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 分块的AES-GCM加密
+ * 数据按固定大小分块, 每块独立加密并带认证标签, 可并行加解密, 也可只解密需要的块:
+ * <pre>
+ * 头部: 版本(1) | 块大小(4) | 盐(16) | nonce前缀(7)
+ * 每块: 密文 | 标签(16), 最后一块明文小于块大小(可为空)
+ * </pre>
+ * 每个文件使用 HmacSHA256(密钥, 盐) 派生的独立密钥, 每块的nonce为 前缀 | 块序号(4) | 是否最后一块(1),
+ * 头部作为附加认证数据, 块被调换、截断或头部被修改都会导致解密失败
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class ChunkedAES {
+
+    /**
+     * 默认块大小
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    /**
+     * 头部长度
+     */
+    public static final int HEADER_LENGTH = 28;
+
+    private static final byte VERSION = 1;
+    private static final int SALT_LENGTH = 16;
+    private static final int PREFIX_LENGTH = 7;
+    private static final int TAG_LENGTH = 16;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final long MAX_CHUNKS = 1L << 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> Builder.createCipher("AES/GCM/NoPadding"));
+
+    private final byte[] key;
+    private final int chunkSize;
+
+    /**
+     * 最近一次解析的头部, 随机读取同一文件时复用派生的密钥
+     */
+    private volatile Header lastHeader;
+
+    /**
+     * 构造
+     *
+     * @param key 密钥, 16、24或32字节
+     */
+    public ChunkedAES(byte[] key) {
+        this(key, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 构造
+     *
+     * @param key       密钥, 16、24或32字节
+     * @param chunkSize 加密时的块大小, 解密时以头部记录的为准
+     */
+    public ChunkedAES(byte[] key, int chunkSize) {
+        Assert.isTrue(null != key && (key.length == 16 || key.length == 24 || key.length == 32),
+                "AES key must be 16, 24 or 32 bytes");
+        Assert.isTrue(chunkSize > 0 && chunkSize <= MAX_CHUNK_SIZE, "Invalid chunk size: {}", chunkSize);
+        this.key = key.clone();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 流式加密, 不会关闭流
+     *
+     * @param in  明文
+     * @param out 密文
+     */
+    public void encrypt(InputStream in, OutputStream out) {
+        final Header header = newHeader();
+        final byte[] plain = Streams.acquire(chunkSize);
+        final byte[] sealed = Streams.acquire(chunkSize + TAG_LENGTH);
+        try {
+            out.write(header.raw);
+            for (long index = 0; ; index++) {
+                final int length = Streams.readFully(in, plain, 0, chunkSize);
+                final boolean last = length < chunkSize;
+                out.write(sealed, 0, seal(header, index, last, plain, length, sealed));
+                if (last) {
+                    break;
+                }
+            }
+            out.flush();
+        } catch (IOException | GeneralSecurityException e) {
+            throw new InstrumentException(e);
+        } finally {
+            Streams.release(sealed);
+            Streams.release(plain);
+        }
+    }
+
+    /**
+     * 流式解密, 不会关闭流
+     *
+     * @param in  密文
+     * @param out 明文
+     */
+    public void decrypt(InputStream in, OutputStream out) {
+        try {
+            final byte[] raw = new byte[HEADER_LENGTH];
+            if (Streams.readFully(in, raw, 0, HEADER_LENGTH) < HEADER_LENGTH) {
+                throw new InstrumentException("Truncated header");
+            }
+            final Header header = parseHeader(raw);
+            final int sealedSize = header.chunkSize + TAG_LENGTH;
+            final byte[] sealed = Streams.acquire(sealedSize);
+            final byte[] plain = Streams.acquire(header.chunkSize);
+            try {
+                for (long index = 0; ; index++) {
+                    final int length = Streams.readFully(in, sealed, 0, sealedSize);
+                    final boolean last = length < sealedSize;
+                    if (last && length < TAG_LENGTH) {
+                        throw new InstrumentException("Truncated chunk: {}", index);
+                    }
+                    out.write(plain, 0, open(header, index, last, sealed, length, plain));
+                    if (last) {
+                        break;
+                    }
+                }
+            } finally {
+                Streams.release(plain);
+                Streams.release(sealed);
+            }
+            out.flush();
+        } catch (IOException | GeneralSecurityException e) {
+            throw new InstrumentException(e);
+        }
+    }
+
+    /**
+     * 并行加密文件, 各块按位置直接写入, 不会关闭通道
+     *
+     * @param in       明文
+     * @param out      密文
+     * @param executor 执行加密的线程池
+     */
+    public void encrypt(FileChannel in, FileChannel out, ExecutorService executor) {
+        try {
+            final long size = in.size();
+            final long chunks = size / chunkSize + 1;
+            checkChunks(chunks);
+            final Header header = newHeader();
+            write(out, header.raw, header.raw.length, 0);
+            execute(chunks, executor, (from, to) -> {
+                final byte[] plain = new byte[chunkSize];
+                final byte[] sealed = new byte[chunkSize + TAG_LENGTH];
+                for (long index = from; index < to; index++) {
+                    final long position = index * chunkSize;
+                    final int length = (int) Math.min(chunkSize, size - position);
+                    read(in, plain, length, position);
+                    final int sealedLength = seal(header, index, index == chunks - 1, plain, length, sealed);
+                    write(out, sealed, sealedLength, HEADER_LENGTH + index * (chunkSize + TAG_LENGTH));
+                }
+            });
+            // 覆盖已有文件时去掉多余的旧内容
+            final int lastSealedLength = (int) (size - (chunks - 1) * chunkSize) + TAG_LENGTH;
+            final long sealedSize = HEADER_LENGTH + (chunks - 1) * (chunkSize + TAG_LENGTH) + lastSealedLength;
+            if (out.size() > sealedSize) {
+                out.truncate(sealedSize);
+            }
+        } catch (IOException e) {
+            throw new InstrumentException(e);
+        }
+    }
+
+    /**
+     * 并行解密文件, 各块按位置直接写入, 不会关闭通道
+     *
+     * @param in       密文
+     * @param out      明文
+     * @param executor 执行解密的线程池
+     */
+    public void decrypt(FileChannel in, FileChannel out, ExecutorService executor) {
+        try {
+            final Header header = readHeader(in);
+            final long size = in.size();
+            final int sealedSize = header.chunkSize + TAG_LENGTH;
+            final long full = (size - HEADER_LENGTH) / sealedSize;
+            final int rest = (int) ((size - HEADER_LENGTH) % sealedSize);
+            if (rest < TAG_LENGTH) {
+                throw new InstrumentException("Truncated chunk: {}", full);
+            }
+            checkChunks(full + 1);
+            execute(full + 1, executor, (from, to) -> {
+                final byte[] sealed = new byte[sealedSize];
+                final byte[] plain = new byte[header.chunkSize];
+                for (long index = from; index < to; index++) {
+                    final int length = index < full ? sealedSize : rest;
+                    read(in, sealed, length, HEADER_LENGTH + index * sealedSize);
+                    final int plainLength = open(header, index, index == full, sealed, length, plain);
+                    write(out, plain, plainLength, index * header.chunkSize);
+                }
+            });
+            final long plainSize = full * header.chunkSize + rest - TAG_LENGTH;
+            if (out.size() > plainSize) {
+                out.truncate(plainSize);
+            }
+        } catch (IOException e) {
+            throw new InstrumentException(e);
+        }
+    }
+
+    /**
+     * 随机读取, 只解密覆盖所需范围的块
+     *
+     * @param in       密文
+     * @param position 明文中的位置
+     * @param buffer   目标数组
+     * @param off      偏移
+     * @param len      最大读取长度
+     * @return 读取的字节数, 位置超出明文长度时为-1
+     */
+    public int read(FileChannel in, long position, byte[] buffer, int off, int len) {
+        try {
+            final Header header = readHeader(in);
+            final long plainSize = plainSize(header, in.size());
+            if (position >= plainSize) {
+                return -1;
+            }
+            len = (int) Math.min(len, plainSize - position);
+            final int sealedSize = header.chunkSize + TAG_LENGTH;
+            final long lastIndex = plainSize / header.chunkSize;
+            final byte[] sealed = Streams.acquire(sealedSize);
+            final byte[] plain = Streams.acquire(header.chunkSize);
+            try {
+                int copied = 0;
+                while (copied < len) {
+                    final long current = position + copied;
+                    final long index = current / header.chunkSize;
+                    final boolean last = index == lastIndex;
+                    final int length = last ? (int) (plainSize % header.chunkSize) + TAG_LENGTH : sealedSize;
+                    read(in, sealed, length, HEADER_LENGTH + index * sealedSize);
+                    final int plainLength = open(header, index, last, sealed, length, plain);
+                    final int start = (int) (current - index * header.chunkSize);
+                    final int count = Math.min(len - copied, plainLength - start);
+                    System.arraycopy(plain, start, buffer, off + copied, count);
+                    copied += count;
+                }
+                return copied;
+            } finally {
+                Streams.release(plain);
+                Streams.release(sealed);
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            throw new InstrumentException(e);
+        }
+    }
+
+    /**
+     * 计算密文对应的明文长度
+     *
+     * @param in 密文
+     * @return 明文长度
+     */
+    public long plainSize(FileChannel in) {
+        try {
+            return plainSize(readHeader(in), in.size());
+        } catch (IOException e) {
+            throw new InstrumentException(e);
+        }
+    }
+
+    private static long plainSize(Header header, long size) {
+        final int sealedSize = header.chunkSize + TAG_LENGTH;
+        final long rest = (size - HEADER_LENGTH) % sealedSize;
+        if (rest < TAG_LENGTH) {
+            throw new InstrumentException("Truncated chunk: {}", (size - HEADER_LENGTH) / sealedSize);
+        }
+        return (size - HEADER_LENGTH) / sealedSize * header.chunkSize + rest - TAG_LENGTH;
+    }
+
+    private static int seal(Header header, long index, boolean last, byte[] in, int length, byte[] out) throws GeneralSecurityException {
+        final Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.ENCRYPT_MODE, header.key, new GCMParameterSpec(TAG_LENGTH * 8, header.nonce(index, last)));
+        cipher.updateAAD(header.raw);
+        return cipher.doFinal(in, 0, length, out, 0);
+    }
+
+    private static int open(Header header, long index, boolean last, byte[] in, int length, byte[] out) throws GeneralSecurityException {
+        final Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, header.key, new GCMParameterSpec(TAG_LENGTH * 8, header.nonce(index, last)));
+        cipher.updateAAD(header.raw);
+        return cipher.doFinal(in, 0, length, out, 0);
+    }
+
+    private static void checkChunks(long chunks) {
+        if (chunks > MAX_CHUNKS) {
+            throw new InstrumentException("Too many chunks: {}", chunks);
+        }
+    }
+
+    private static void read(FileChannel channel, byte[] buffer, int length, long position) throws IOException {
+        final ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new InstrumentException("Unexpected end of file at {}", position + target.position());
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, byte[] buffer, int length, long position) throws IOException {
+        final ByteBuffer source = ByteBuffer.wrap(buffer, 0, length);
+        while (source.hasRemaining()) {
+            channel.write(source, position + source.position());
+        }
+    }
+
+    /**
+     * 将块序号范围拆分为若干任务提交执行, 等待全部完成
+     */
+    private static void execute(long chunks, ExecutorService executor, ChunkTask task) {
+        final long tasks = Math.min(chunks, Runtime.getRuntime().availableProcessors() * 4L);
+        final long step = (chunks + tasks - 1) / tasks;
+        final List<Future<?>> futures = new ArrayList<>();
+        for (long from = 0; from < chunks; from += step) {
+            final long start = from;
+            final long end = Math.min(chunks, from + step);
+            futures.add(executor.submit(() -> {
+                task.run(start, end);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InstrumentException(e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e.getCause() instanceof InstrumentException
+                    ? (InstrumentException) e.getCause() : new InstrumentException(e.getCause());
+        }
+    }
+
+    private Header newHeader() {
+        final byte[] raw = new byte[HEADER_LENGTH];
+        raw[0] = VERSION;
+        ByteBuffer.wrap(raw, 1, 4).putInt(chunkSize);
+        final byte[] random = new byte[SALT_LENGTH + PREFIX_LENGTH];
+        RANDOM.nextBytes(random);
+        System.arraycopy(random, 0, raw, 5, random.length);
+        return new Header(raw, chunkSize, deriveKey(raw));
+    }
+
+    private Header readHeader(FileChannel in) throws IOException {
+        final byte[] raw = new byte[HEADER_LENGTH];
+        if (in.size() < HEADER_LENGTH) {
+            throw new InstrumentException("Truncated header");
+        }
+        read(in, raw, HEADER_LENGTH, 0);
+        return parseHeader(raw);
+    }
+
+    private Header parseHeader(byte[] raw) {
+        final Header cached = this.lastHeader;
+        if (null != cached && Arrays.equals(cached.raw, raw)) {
+            return cached;
+        }
+        if (raw[0] != VERSION) {
+            throw new InstrumentException("Unsupported version: {}", raw[0]);
+        }
+        final int size = ByteBuffer.wrap(raw, 1, 4).getInt();
+        if (size <= 0 || size > MAX_CHUNK_SIZE) {
+            throw new InstrumentException("Invalid chunk size: {}", size);
+        }
+        final Header header = new Header(raw, size, deriveKey(raw));
+        this.lastHeader = header;
+        return header;
+    }
+
+    private SecretKey deriveKey(byte[] raw) {
+        try {
+            final Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            mac.update(raw, 5, SALT_LENGTH);
+            return new SecretKeySpec(mac.doFinal(), 0, key.length, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new InstrumentException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkTask {
+        void run(long from, long to) throws IOException, GeneralSecurityException;
+    }
+
+    private static final class Header {
+
+        private final byte[] raw;
+        private final int chunkSize;
+        private final SecretKey key;
+
+        Header(byte[] raw, int chunkSize, SecretKey key) {
+            this.raw = raw;
+            this.chunkSize = chunkSize;
+            this.key = key;
+        }
+
+        byte[] nonce(long index, boolean last) {
+            final byte[] nonce = new byte[12];
+            System.arraycopy(raw, 5 + SALT_LENGTH, nonce, 0, PREFIX_LENGTH);
+            nonce[7] = (byte) (index >>> 24);
+            nonce[8] = (byte) (index >>> 16);
+            nonce[9] = (byte) (index >>> 8);
+            nonce[10] = (byte) index;
+            nonce[11] = (byte) (last ? 1 : 0);
+            return nonce;
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.crypto.symmetric;
+
+import org.aoju.bus.crypto.Builder;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 已初始化的{@link Cipher}池
+ * 按线程ID分片, 每个分片缓存一个实例, 取出与归还均为原子操作; 本线程的分片为空或已占用时依次尝试其它分片,
+ * 只有所有分片的实例都在使用中才新建;
+ * Cipher在doFinal后回到初始化后的状态, 密钥与参数未变化时可直接复用, 省去密钥扩展
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+final class CipherPool {
+
+    private static final int STRIPES;
+
+    static {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        // 线程数通常多于CPU数, 被挂起的线程也会占用实例
+        STRIPES = Math.min(64, Math.max(16, stripes));
+    }
+
+    private final String algorithm;
+
+    private final int mode;
+
+    private final AtomicReferenceArray<Entry> slots = new AtomicReferenceArray<>(STRIPES);
+
+    /**
+     * @param algorithm 算法
+     * @param mode      {@link Cipher#ENCRYPT_MODE}或{@link Cipher#DECRYPT_MODE}
+     */
+    CipherPool(String algorithm, int mode) {
+        this.algorithm = algorithm;
+        this.mode = mode;
+    }
+
+    /**
+     * 取出按给定密钥和参数初始化好的Cipher
+     *
+     * @param key     密钥
+     * @param params  参数, 可为null
+     * @param version 密钥与参数的版本, 变化后重新初始化
+     * @return Cipher, 用完后调用{@link #release(Entry)}
+     * @throws GeneralSecurityException 初始化失败
+     */
+    Entry acquire(Key key, AlgorithmParameterSpec params, int version) throws GeneralSecurityException {
+        Entry entry = null;
+        int stripe = stripe();
+        for (int i = 0; i < STRIPES && null == entry; i++) {
+            entry = slots.getAndSet((stripe + i) & (STRIPES - 1), null);
+        }
+        if (null == entry) {
+            entry = new Entry(Builder.createCipher(algorithm));
+        }
+        if (!entry.initialized || entry.version != version) {
+            entry.initialized = false;
+            if (null == params) {
+                entry.cipher.init(mode, key);
+            } else {
+                entry.cipher.init(mode, key, params);
+            }
+            entry.version = version;
+            entry.initialized = true;
+        }
+        return entry;
+    }
+
+    /**
+     * 归还Cipher, 所有分片都已有实例时丢弃
+     * 执行出错的Cipher状态不确定, 不应归还
+     *
+     * @param entry Cipher
+     */
+    void release(Entry entry) {
+        int stripe = stripe();
+        for (int i = 0; i < STRIPES; i++) {
+            int index = (stripe + i) & (STRIPES - 1);
+            if (null == slots.get(index) && slots.compareAndSet(index, null, entry)) {
+                return;
+            }
+        }
+    }
+
+    private static int stripe() {
+        return (int) Thread.currentThread().getId() & (STRIPES - 1);
+    }
+
+    static final class Entry {
+
+        final Cipher cipher;
+
+        private int version;
+
+        private boolean initialized;
+
+        Entry(Cipher cipher) {
+            this.cipher = cipher;
+        }
+    }
+
+}
@@ -31,22 +31,28 @@ import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.bus.core.toolkit.*;
 import org.aoju.bus.crypto.Builder;
 import org.aoju.bus.crypto.Padding;
+import org.aoju.bus.crypto.Streams;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEParameterSpec;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.spec.AlgorithmParameterSpec;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Arrays;
 
 /**
  * 对称加密算法
  * 在对称加密算法中，数据发信方将明文(原始数据)和加密密钥一起经过特殊加密算法处理后，使其变成复杂的加密密文发送出去。
  * 收信方收到密文后，若想解读原文，则需要使用加密用过的密钥及相同算法的逆算法对密文进行解密，才能使其恢复成可读明文。
  * 在对称加密算法中，使用的密钥只有一个，发收信双方都使用这个密钥对数据进行加密和解密，这就要求解密方事先必须知道加密密钥。
+ * 加解密使用按密钥初始化好的Cipher池，多线程可并发调用同一实例。
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -56,6 +62,8 @@ public class Symmetric implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    private static final byte[] ZEROS = new byte[1024];
+
     /**
      * SecretKey 负责保存对称密钥
      */
@@ -64,6 +72,18 @@ public class Symmetric implements Serializable {
      * Cipher负责完成加密或解密工作
      */
     private Cipher cipher;
+    /**
+     * 加密使用的Cipher池
+     */
+    private transient CipherPool encryptPool;
+    /**
+     * 解密使用的Cipher池
+     */
+    private transient CipherPool decryptPool;
+    /**
+     * 密钥与参数的版本，变化后池中的Cipher重新初始化
+     */
+    private volatile int version;
     /**
      * 加密解密参数
      */
@@ -72,7 +92,6 @@ public class Symmetric implements Serializable {
      * 是否0填充
      */
     private boolean isZeroPadding;
-    private Lock lock = new ReentrantLock();
 
     /**
      * 构造，使用随机密钥
@@ -140,6 +159,9 @@ public class Symmetric implements Serializable {
         }
 
         this.cipher = Builder.createCipher(algorithm);
+        this.encryptPool = new CipherPool(algorithm, Cipher.ENCRYPT_MODE);
+        this.decryptPool = new CipherPool(algorithm, Cipher.DECRYPT_MODE);
+        this.version++;
         return this;
     }
 
@@ -151,6 +173,7 @@ public class Symmetric implements Serializable {
      */
     public Symmetric setParams(AlgorithmParameterSpec params) {
         this.params = params;
+        this.version++;
         return this;
     }
 
@@ -184,18 +207,13 @@ public class Symmetric implements Serializable {
      * @return 加密后的bytes
      */
     public byte[] encrypt(byte[] data) {
-        lock.lock();
         try {
-            if (null == this.params) {
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            } else {
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey, params);
-            }
-            return cipher.doFinal(paddingDataWithZero(data, cipher.getBlockSize()));
+            final CipherPool.Entry entry = encryptPool.acquire(secretKey, params, version);
+            final byte[] result = entry.cipher.doFinal(paddingDataWithZero(data, entry.cipher.getBlockSize()));
+            encryptPool.release(entry);
+            return result;
         } catch (Exception e) {
             throw new InstrumentException(e);
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -346,6 +364,28 @@ public class Symmetric implements Serializable {
         return Base64.encode(encrypt(data));
     }
 
+    /**
+     * 流式加密，按块处理，不会关闭流
+     *
+     * @param data 被加密的数据
+     * @param out  加密后的输出
+     * @throws InstrumentException IO异常
+     */
+    public void encrypt(InputStream data, OutputStream out) throws InstrumentException {
+        crypt(encryptPool, data, out, true);
+    }
+
+    /**
+     * 流式加密，不会关闭通道
+     *
+     * @param data 被加密的数据
+     * @param out  加密后的输出
+     * @throws InstrumentException IO异常
+     */
+    public void encrypt(ReadableByteChannel data, WritableByteChannel out) throws InstrumentException {
+        encrypt(Channels.newInputStream(data), Channels.newOutputStream(out));
+    }
+
     /**
      * 解密
      *
@@ -356,19 +396,13 @@ public class Symmetric implements Serializable {
         final int blockSize;
         final byte[] decryptData;
 
-        lock.lock();
         try {
-            if (null == this.params) {
-                cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            } else {
-                cipher.init(Cipher.DECRYPT_MODE, secretKey, params);
-            }
-            blockSize = cipher.getBlockSize();
-            decryptData = cipher.doFinal(bytes);
+            final CipherPool.Entry entry = decryptPool.acquire(secretKey, params, version);
+            blockSize = entry.cipher.getBlockSize();
+            decryptData = entry.cipher.doFinal(bytes);
+            decryptPool.release(entry);
         } catch (Exception e) {
             throw new InstrumentException(e);
-        } finally {
-            lock.unlock();
         }
 
         return removePadding(decryptData, blockSize);
@@ -458,6 +492,28 @@ public class Symmetric implements Serializable {
         return decryptStr(data, Charset.UTF_8);
     }
 
+    /**
+     * 流式解密，按块处理，不会关闭流
+     *
+     * @param data 被解密的数据
+     * @param out  解密后的输出
+     * @throws InstrumentException IO异常
+     */
+    public void decrypt(InputStream data, OutputStream out) throws InstrumentException {
+        crypt(decryptPool, data, out, false);
+    }
+
+    /**
+     * 流式解密，不会关闭通道
+     *
+     * @param data 被解密的数据
+     * @param out  解密后的输出
+     * @throws InstrumentException IO异常
+     */
+    public void decrypt(ReadableByteChannel data, WritableByteChannel out) throws InstrumentException {
+        decrypt(Channels.newInputStream(data), Channels.newOutputStream(out));
+    }
+
     /**
      * 获得对称密钥
      *
@@ -468,7 +524,7 @@ public class Symmetric implements Serializable {
     }
 
     /**
-     * 获得加密或解密器
+     * 获得加密或解密器，该实例不参与{@link #encrypt(byte[])}和{@link #decrypt(byte[])}
      *
      * @return 加密或解密
      */
@@ -476,6 +532,110 @@ public class Symmetric implements Serializable {
         return cipher;
     }
 
+    /**
+     * 使用{@link Cipher#update(byte[], int, int, byte[], int)}逐块处理流
+     * ZeroPadding模式下，加密时在末尾补0，解密时暂存末尾连续的0，确认为结尾后丢弃;
+     * 每次输出前按{@link Cipher#getOutputSize(int)}扩容，AEAD模式(如GCM)解密时输出集中在最后一次
+     *
+     * @param pool    Cipher池
+     * @param in      输入
+     * @param out     输出
+     * @param encrypt 是否加密
+     */
+    private void crypt(CipherPool pool, InputStream in, OutputStream out, boolean encrypt) {
+        byte[] input = null;
+        byte[] output = null;
+        try {
+            final CipherPool.Entry entry = pool.acquire(secretKey, params, version);
+            final Cipher cipher = entry.cipher;
+            final int blockSize = Math.max(1, cipher.getBlockSize());
+            input = Streams.acquire(Streams.BUFFER_SIZE);
+            output = Streams.acquire(input.length + blockSize);
+            final boolean stripZero = this.isZeroPadding && !encrypt;
+
+            long total = 0;
+            long zeros = 0;
+            int read;
+            while ((read = in.read(input)) >= 0) {
+                total += read;
+                output = ensureCapacity(output, cipher.getOutputSize(read));
+                final int length = cipher.update(input, 0, read, output, 0);
+                zeros = stripZero ? writeHoldingZeros(out, output, length, zeros) : write(out, output, length);
+            }
+            if (this.isZeroPadding && encrypt && total % blockSize > 0) {
+                final int padding = (int) (blockSize - total % blockSize);
+                Arrays.fill(input, 0, padding, (byte) 0);
+                output = ensureCapacity(output, cipher.getOutputSize(padding));
+                out.write(output, 0, cipher.update(input, 0, padding, output, 0));
+            }
+            output = ensureCapacity(output, cipher.getOutputSize(0));
+            final int length = cipher.doFinal(output, 0);
+            if (stripZero) {
+                writeHoldingZeros(out, output, length, zeros);
+            } else {
+                out.write(output, 0, length);
+            }
+            out.flush();
+            pool.release(entry);
+        } catch (Exception e) {
+            throw new InstrumentException(e);
+        } finally {
+            if (null != output) {
+                Streams.release(output);
+            }
+            if (null != input) {
+                Streams.release(input);
+            }
+        }
+    }
+
+    /**
+     * 缓冲区不足时换为更大的缓冲区
+     *
+     * @param buffer 当前缓冲区
+     * @param length 需要的长度
+     * @return 不小于指定长度的缓冲区
+     */
+    private static byte[] ensureCapacity(byte[] buffer, int length) {
+        if (buffer.length >= length) {
+            return buffer;
+        }
+        Streams.release(buffer);
+        return Streams.acquire(length);
+    }
+
+    private static long write(OutputStream out, byte[] data, int length) throws IOException {
+        out.write(data, 0, length);
+        return 0;
+    }
+
+    /**
+     * 写出数据，末尾连续的0暂不写出
+     *
+     * @param out    输出
+     * @param data   数据
+     * @param length 长度
+     * @param zeros  之前暂存的0的个数
+     * @return 当前暂存的0的个数
+     * @throws IOException IO异常
+     */
+    private static long writeHoldingZeros(OutputStream out, byte[] data, int length, long zeros) throws IOException {
+        int last = length - 1;
+        while (last >= 0 && 0 == data[last]) {
+            last--;
+        }
+        if (last < 0) {
+            return zeros + length;
+        }
+        while (zeros > 0) {
+            final int n = (int) Math.min(zeros, ZEROS.length);
+            out.write(ZEROS, 0, n);
+            zeros -= n;
+        }
+        out.write(data, 0, last + 1);
+        return length - 1 - last;
+    }
+
     /**
      * 数据按照blockSize的整数倍长度填充填充0
      *
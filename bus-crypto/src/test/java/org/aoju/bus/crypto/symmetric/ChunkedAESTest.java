@@ -0,0 +1,233 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.crypto.symmetric;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ChunkedAES}流式与文件加解密的往返及篡改检测
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class ChunkedAESTest {
+
+    private static final int CHUNK_SIZE = 64;
+    private static final int TAG_LENGTH = 16;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ChunkedAES aes = new ChunkedAES("0123456789abcdef".getBytes(), CHUNK_SIZE);
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void roundTripsEmptyInput() throws IOException {
+        assertRoundTrip(new byte[0]);
+    }
+
+    @Test
+    public void roundTripsExactMultipleOfChunkSize() throws IOException {
+        assertRoundTrip(random(CHUNK_SIZE * 3));
+    }
+
+    @Test
+    public void roundTripsPartialLastChunk() throws IOException {
+        assertRoundTrip(random(1));
+        assertRoundTrip(random(CHUNK_SIZE * 3 + 5));
+    }
+
+    @Test
+    public void encryptTruncatesLargerExistingFile() throws IOException {
+        byte[] plain = random(CHUNK_SIZE + 7);
+        File source = write(plain);
+        File target = write(random(CHUNK_SIZE * 10));
+
+        encrypt(source, target);
+
+        assertEquals(sealedSize(plain.length), target.length());
+        assertArrayEquals(plain, decrypt(target));
+    }
+
+    @Test
+    public void decryptTruncatesLargerExistingFile() throws IOException {
+        byte[] plain = random(CHUNK_SIZE + 7);
+        File target = folder.newFile();
+        encrypt(write(plain), target);
+
+        File result = write(random(CHUNK_SIZE * 10));
+        try (FileChannel in = FileChannel.open(target.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(result.toPath(), StandardOpenOption.WRITE)) {
+            aes.decrypt(in, out, executor);
+        }
+        assertArrayEquals(plain, Files.readAllBytes(result.toPath()));
+    }
+
+    @Test
+    public void rejectsTamperedChunk() throws IOException {
+        byte[] sealed = encrypt(random(CHUNK_SIZE * 3));
+        sealed[ChunkedAES.HEADER_LENGTH + CHUNK_SIZE + TAG_LENGTH + 1] ^= 1;
+        assertRejected(sealed);
+    }
+
+    @Test
+    public void rejectsTamperedHeader() throws IOException {
+        byte[] sealed = encrypt(random(CHUNK_SIZE));
+        sealed[ChunkedAES.HEADER_LENGTH - 1] ^= 1;
+        assertRejected(sealed);
+    }
+
+    @Test
+    public void rejectsTruncatedChunk() throws IOException {
+        byte[] sealed = encrypt(random(CHUNK_SIZE * 3 + 5));
+        // 去掉最后一块, 剩余部分按块边界完整
+        assertRejected(Arrays.copyOf(sealed, ChunkedAES.HEADER_LENGTH + 3 * (CHUNK_SIZE + TAG_LENGTH)));
+        // 最后一块不足标签长度
+        assertRejected(Arrays.copyOf(sealed, sealed.length - 6 - TAG_LENGTH));
+    }
+
+    @Test
+    public void readsRandomRanges() throws IOException {
+        byte[] plain = random(CHUNK_SIZE * 4 + 9);
+        File target = folder.newFile();
+        encrypt(write(plain), target);
+
+        try (FileChannel in = FileChannel.open(target.toPath(), StandardOpenOption.READ)) {
+            assertEquals(plain.length, aes.plainSize(in));
+            byte[] buffer = new byte[CHUNK_SIZE * 2];
+            int read = aes.read(in, CHUNK_SIZE - 3, buffer, 0, buffer.length);
+            assertEquals(buffer.length, read);
+            assertArrayEquals(Arrays.copyOfRange(plain, CHUNK_SIZE - 3, CHUNK_SIZE * 3 - 3), buffer);
+            assertEquals(9, aes.read(in, CHUNK_SIZE * 4, buffer, 0, buffer.length));
+            assertEquals(-1, aes.read(in, plain.length, buffer, 0, buffer.length));
+        }
+    }
+
+    private void assertRoundTrip(byte[] plain) throws IOException {
+        // 流式加密
+        byte[] sealed = encrypt(plain);
+        assertEquals(sealedSize(plain.length), sealed.length);
+        assertArrayEquals(plain, decrypt(sealed));
+        assertArrayEquals(plain, decrypt(write(sealed)));
+
+        // 并行加密, 两种方式互通
+        File target = folder.newFile();
+        encrypt(write(plain), target);
+        assertEquals(sealedSize(plain.length), target.length());
+        assertArrayEquals(plain, decrypt(target));
+        assertArrayEquals(plain, decrypt(Files.readAllBytes(target.toPath())));
+    }
+
+    private void assertRejected(byte[] sealed) throws IOException {
+        try {
+            decrypt(sealed);
+            fail();
+        } catch (InstrumentException expected) {
+        }
+        File file = write(sealed);
+        try {
+            decrypt(file);
+            fail();
+        } catch (InstrumentException expected) {
+        }
+    }
+
+    private byte[] encrypt(byte[] plain) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        aes.encrypt(new ByteArrayInputStream(plain), out);
+        return out.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] sealed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        aes.decrypt(new ByteArrayInputStream(sealed), out);
+        return out.toByteArray();
+    }
+
+    private void encrypt(File source, File target) throws IOException {
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+            aes.encrypt(in, out, executor);
+        }
+    }
+
+    private byte[] decrypt(File sealed) throws IOException {
+        File result = folder.newFile();
+        try (FileChannel in = FileChannel.open(sealed.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(result.toPath(), StandardOpenOption.WRITE)) {
+            aes.decrypt(in, out, executor);
+            assertEquals(out.size(), aes.plainSize(in));
+        }
+        return Files.readAllBytes(result.toPath());
+    }
+
+    private File write(byte[] content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private static long sealedSize(int plainSize) {
+        return ChunkedAES.HEADER_LENGTH + (plainSize / CHUNK_SIZE + 1L) * TAG_LENGTH + plainSize;
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+}
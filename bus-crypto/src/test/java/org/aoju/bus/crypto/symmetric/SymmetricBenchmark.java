@@ -0,0 +1,165 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.crypto.symmetric;
+
+import org.aoju.bus.core.lang.Algorithm;
+import org.aoju.bus.core.toolkit.HexKit;
+import org.aoju.bus.crypto.Builder;
+import org.aoju.bus.crypto.Padding;
+import org.aoju.bus.crypto.Provider;
+import org.aoju.bus.crypto.Registry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多线程共用一个{@link Symmetric}时的加解密吞吐量
+ * {@code locked}为原实现: 一个Cipher加锁, 每次重新初始化; 两者使用相同的Provider
+ * {@code provider}经由{@link Registry}中注册的{@link Provider}按密钥取得缓存的实例
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 8, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class SymmetricBenchmark {
+
+    private static final byte[] KEY = Arrays.copyOf("0123456789abcdef".getBytes(), 16);
+
+    private static final byte[] IV = Arrays.copyOf("fedcba9876543210".getBytes(), 16);
+
+    @Param({"16", "256", "4096", "65536"})
+    private int size;
+
+    private byte[] data;
+
+    private AES aes;
+
+    private Cipher cipher;
+
+    private SecretKeySpec key;
+
+    private SM4 sm4;
+
+    private Cipher sm4Cipher;
+
+    private SecretKeySpec sm4Key;
+
+    private Provider aesProvider;
+
+    private String aesProviderKey;
+
+    private byte[] aesProviderEncrypted;
+
+    private Provider sm4Provider;
+
+    private String sm4ProviderKey;
+
+    private byte[] sm4ProviderEncrypted;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SymmetricBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        data = new byte[size];
+        aes = new AES(org.aoju.bus.crypto.Mode.CBC, Padding.PKCS5Padding, KEY, IV);
+        key = new SecretKeySpec(KEY, "AES");
+        cipher = Builder.createCipher("AES/CBC/PKCS5Padding");
+
+        sm4 = new SM4(org.aoju.bus.crypto.Mode.CBC, Padding.PKCS5Padding, KEY, IV);
+        sm4Key = new SecretKeySpec(KEY, "SM4");
+        sm4Cipher = Builder.createCipher("SM4/CBC/PKCS5Padding");
+
+        // AESProvider使用密钥的字节, SM4Provider使用十六进制编码的密钥
+        aesProvider = Registry.require(Algorithm.AES);
+        aesProviderKey = new String(KEY);
+        aesProviderEncrypted = aesProvider.encrypt(aesProviderKey, data);
+        sm4Provider = Registry.require(Algorithm.SM4);
+        sm4ProviderKey = HexKit.encodeHexStr(KEY);
+        sm4ProviderEncrypted = sm4Provider.encrypt(sm4ProviderKey, data);
+    }
+
+    @Benchmark
+    public byte[] pooled() {
+        return aes.encrypt(data);
+    }
+
+    @Benchmark
+    public byte[] locked() throws Exception {
+        synchronized (cipher) {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(IV));
+            return cipher.doFinal(data);
+        }
+    }
+
+    @Benchmark
+    public byte[] sm4Pooled() {
+        return sm4.encrypt(data);
+    }
+
+    @Benchmark
+    public byte[] sm4Locked() throws Exception {
+        synchronized (sm4Cipher) {
+            sm4Cipher.init(Cipher.ENCRYPT_MODE, sm4Key, new IvParameterSpec(IV));
+            return sm4Cipher.doFinal(data);
+        }
+    }
+
+    @Benchmark
+    public byte[] aesProviderEncrypt() {
+        return aesProvider.encrypt(aesProviderKey, data);
+    }
+
+    @Benchmark
+    public byte[] aesProviderDecrypt() {
+        return aesProvider.decrypt(aesProviderKey, aesProviderEncrypted);
+    }
+
+    @Benchmark
+    public byte[] sm4ProviderEncrypt() {
+        return sm4Provider.encrypt(sm4ProviderKey, data);
+    }
+
+    @Benchmark
+    public byte[] sm4ProviderDecrypt() {
+        return sm4Provider.decrypt(sm4ProviderKey, sm4ProviderEncrypted);
+    }
+
+}
@@ -24,13 +24,18 @@
  ********************************************************************************/
 package org.aoju.bus.http.accord;
 
+import org.aoju.bus.core.lang.Symbol;
 import org.aoju.bus.core.toolkit.IoKit;
 import org.aoju.bus.http.Address;
 import org.aoju.bus.http.Builder;
 import org.aoju.bus.http.Route;
+import org.aoju.bus.http.UnoUrl;
 import org.aoju.bus.http.accord.platform.Platform;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.ref.Reference;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.*;
 import java.util.concurrent.Executor;
@@ -42,6 +47,9 @@ import java.util.concurrent.TimeUnit;
  * 管理HTTP和HTTP/2连接的重用，以减少网络延迟。 共享相同的
  * {@link Address}的HTTP请求可能共享一个{@link Connection}
  * 该类实现了哪些连接保持开放以供将来使用的策略
+ * 连接按主机和端口分组，HTTP/2连接另按IP地址索引用于连接合并，
+ * 查找时只检查同一主机的连接；空闲连接按变为空闲的先后排队，
+ * 由于保活时间相同，队首即最先过期的连接，清理时无需遍历全部连接
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -56,14 +64,38 @@ public final class ConnectionPool {
     private static final Executor executor = new ThreadPoolExecutor(0,
             Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
             new SynchronousQueue<>(), Builder.threadFactory("Httpd ConnectionPool", true));
-    public final Deque<RealConnection> connections = new ArrayDeque<>();
+    /**
+     * 检查泄漏的最小间隔
+     */
+    private static final long LEAK_CHECK_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
     public final RouteDatabase routeDatabase = new RouteDatabase();
     /**
      * 每个地址的最大空闲连接数.
      */
     private final int maxIdleConnections;
     private final long keepAliveDurationNs;
+    /**
+     * 每个主机的最大连接数，包括正在建立的连接，0表示不限制
+     */
+    private final int maxConnectionsPerHost;
+    /**
+     * 按主机和端口分组的连接
+     */
+    private final Map<String, Host> hosts = new HashMap<>();
+    /**
+     * HTTP/2连接按IP地址索引，用于连接合并
+     */
+    private final Map<InetSocketAddress, List<RealConnection>> multiplexed = new HashMap<>();
+    /**
+     * 空闲连接，按变为空闲的先后排列
+     */
+    private final Set<RealConnection> idleConnections = new LinkedHashSet<>();
     boolean cleanupRunning;
+    private int connectionCount;
+    private long lastLeakCheckNanos;
+    private long evictedConnectionCount;
+    private long waitCount;
+    private long waitNanos;
     private final Runnable cleanupRunnable = () -> {
         while (true) {
             long waitNanos = cleanup(System.nanoTime());
@@ -91,12 +123,33 @@ public final class ConnectionPool {
     }
 
     public ConnectionPool(int maxIdleConnections, long keepAliveDuration, TimeUnit timeUnit) {
+        this(maxIdleConnections, keepAliveDuration, timeUnit, 0);
+    }
+
+    /**
+     * 构造
+     *
+     * @param maxIdleConnections    最大空闲连接数
+     * @param keepAliveDuration     空闲连接保活时间
+     * @param timeUnit              时间单位
+     * @param maxConnectionsPerHost 每个主机的最大连接数，0表示不限制；
+     *                              达到上限时新请求先关闭该主机的空闲连接，否则在连接超时时间内等待
+     */
+    public ConnectionPool(int maxIdleConnections, long keepAliveDuration, TimeUnit timeUnit, int maxConnectionsPerHost) {
         this.maxIdleConnections = maxIdleConnections;
         this.keepAliveDurationNs = timeUnit.toNanos(keepAliveDuration);
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
 
         if (keepAliveDuration <= 0) {
             throw new IllegalArgumentException("keepAliveDuration <= 0: " + keepAliveDuration);
         }
+        if (maxConnectionsPerHost < 0) {
+            throw new IllegalArgumentException("maxConnectionsPerHost < 0: " + maxConnectionsPerHost);
+        }
+    }
+
+    private static String key(UnoUrl url) {
+        return url.host() + Symbol.C_COLON + url.port();
     }
 
     /**
@@ -105,11 +158,7 @@ public final class ConnectionPool {
      * @return 连接的数量
      */
     public synchronized int idleConnectionCount() {
-        int total = 0;
-        for (RealConnection connection : connections) {
-            if (connection.allocations.isEmpty()) total++;
-        }
-        return total;
+        return idleConnections.size();
     }
 
     /**
@@ -120,7 +169,56 @@ public final class ConnectionPool {
      * @return 连接总数
      */
     public synchronized int connectionCount() {
-        return connections.size();
+        return connectionCount;
+    }
+
+    /**
+     * 返回池中正在使用的连接数量
+     *
+     * @return 连接的数量
+     */
+    public synchronized int activeConnectionCount() {
+        return connectionCount - idleConnections.size();
+    }
+
+    /**
+     * 返回到指定主机的连接数量，包括正在建立的连接
+     *
+     * @param host 主机
+     * @param port 端口
+     * @return 连接的数量
+     */
+    public synchronized int connectionCount(String host, int port) {
+        Host entry = hosts.get(host + Symbol.C_COLON + port);
+        return null == entry ? 0 : entry.size();
+    }
+
+    /**
+     * 返回因过期、超出空闲数量或泄漏而被清除的连接总数
+     *
+     * @return 连接的数量
+     */
+    public synchronized long evictedConnectionCount() {
+        return evictedConnectionCount;
+    }
+
+    /**
+     * 返回因主机连接数达到上限而等待的次数
+     *
+     * @return 等待次数
+     */
+    public synchronized long waitCount() {
+        return waitCount;
+    }
+
+    /**
+     * 返回因主机连接数达到上限而等待的总时长
+     *
+     * @param unit 时间单位
+     * @return 等待时长
+     */
+    public synchronized long waitTime(TimeUnit unit) {
+        return unit.convert(waitNanos, TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -134,10 +232,25 @@ public final class ConnectionPool {
      */
     public RealConnection get(Address address, StreamAllocation streamAllocation, Route route) {
         assert (Thread.holdsLock(this));
-        for (RealConnection connection : connections) {
-            if (connection.isEligible(address, route)) {
-                streamAllocation.acquire(connection, true);
-                return connection;
+        Host host = hosts.get(key(address.url()));
+        if (null != host) {
+            for (RealConnection connection : host.connections) {
+                if (connection.isEligible(address, route)) {
+                    acquire(connection, streamAllocation);
+                    return connection;
+                }
+            }
+        }
+        if (null != route) {
+            // 其他主机的HTTP/2连接，IP地址相同且证书覆盖当前主机时可以合并
+            List<RealConnection> candidates = multiplexed.get(route.socketAddress());
+            if (null != candidates) {
+                for (RealConnection connection : candidates) {
+                    if (connection.isEligible(address, route)) {
+                        acquire(connection, streamAllocation);
+                        return connection;
+                    }
+                }
             }
         }
         return null;
@@ -153,10 +266,15 @@ public final class ConnectionPool {
      */
     public Socket deduplicate(Address address, StreamAllocation streamAllocation) {
         assert (Thread.holdsLock(this));
-        for (RealConnection connection : connections) {
+        Host host = hosts.get(key(address.url()));
+        if (null == host) {
+            return null;
+        }
+        for (RealConnection connection : host.connections) {
             if (connection.isEligible(address, null)
                     && connection.isMultiplexed()
                     && connection != streamAllocation.connection()) {
+                idleConnections.remove(connection);
                 return streamAllocation.releaseAndAcquire(connection);
             }
         }
@@ -169,7 +287,94 @@ public final class ConnectionPool {
             cleanupRunning = true;
             executor.execute(cleanupRunnable);
         }
-        connections.add(connection);
+        Host host = hosts.computeIfAbsent(key(connection.route().address().url()), key -> new Host());
+        if (host.connecting > 0) {
+            host.connecting--;
+        }
+        host.connections.add(connection);
+        if (connection.isMultiplexed()) {
+            multiplexed.computeIfAbsent(connection.route().socketAddress(), key -> new ArrayList<>()).add(connection);
+        }
+        connectionCount++;
+    }
+
+    /**
+     * 为即将建立的新连接占用主机的连接数，新连接建立后由{@link #put(RealConnection)}、
+     * 失败时由{@link #unreserve(Address)}归还
+     * 主机连接数达到上限时，先清除该主机空闲最久的连接；没有空闲连接则等待，
+     * 等待期间出现可用的连接时直接分配给{@code streamAllocation}，不再占用连接数
+     *
+     * @param address          地址
+     * @param streamAllocation 协调者
+     * @param timeoutMillis    最长等待时间，0表示不限制
+     * @return 被清除的连接的套接字，调用方应在同步块外关闭
+     * @throws IOException 等待超时、被中断或请求被取消
+     */
+    Socket reserve(Address address, StreamAllocation streamAllocation, int timeoutMillis) throws IOException {
+        assert (Thread.holdsLock(this));
+        String key = key(address.url());
+        Host host = hosts.computeIfAbsent(key, k -> new Host());
+        Socket socket = null;
+        long start = 0;
+        try {
+            while (maxConnectionsPerHost > 0 && host.size() >= maxConnectionsPerHost) {
+                RealConnection idle = host.oldestIdle(idleConnections);
+                if (null != idle) {
+                    evict(idle);
+                    socket = idle.socket();
+                    break;
+                }
+
+                long now = System.nanoTime();
+                if (start == 0) {
+                    start = now;
+                    waitCount++;
+                }
+                long remainingNs = timeoutMillis == 0 ? Long.MAX_VALUE
+                        : TimeUnit.MILLISECONDS.toNanos(timeoutMillis) - (now - start);
+                if (remainingNs <= 0) {
+                    throw new IOException("Too many connections to " + key + ": " + host.size());
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remainingNs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                if (streamAllocation.isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                // 等待期间可能已有连接空闲，或其他请求建立了可复用的HTTP/2连接
+                host = hosts.computeIfAbsent(key, k -> new Host());
+                if (null != get(address, streamAllocation, null)) {
+                    return null;
+                }
+            }
+        } finally {
+            if (start != 0) {
+                waitNanos += System.nanoTime() - start;
+            }
+        }
+        host.connecting++;
+        return socket;
+    }
+
+    /**
+     * 新连接建立失败时归还{@link #reserve(Address, StreamAllocation, int)}占用的连接数
+     *
+     * @param address 地址
+     */
+    void unreserve(Address address) {
+        assert (Thread.holdsLock(this));
+        String key = key(address.url());
+        Host host = hosts.get(key);
+        if (null != host && host.connecting > 0) {
+            host.connecting--;
+            if (host.size() == 0) {
+                hosts.remove(key);
+            }
+            notifyAll();
+        }
     }
 
     /**
@@ -180,10 +385,18 @@ public final class ConnectionPool {
      */
     public boolean connectionBecameIdle(RealConnection connection) {
         assert (Thread.holdsLock(this));
+        Host host = hosts.get(key(connection.route().address().url()));
+        boolean pooled = null != host && host.connections.contains(connection);
         if (connection.noNewStreams || maxIdleConnections == 0) {
-            connections.remove(connection);
+            if (pooled) {
+                remove(connection);
+            }
+            notifyAll();
             return true;
         } else {
+            if (pooled) {
+                idleConnections.add(connection);
+            }
             // 唤醒清理线程:可能已经超过了空闲连接限制
             notifyAll();
             return false;
@@ -194,16 +407,14 @@ public final class ConnectionPool {
      * 关闭并删除池中的所有空闲连接.
      */
     public void evictAll() {
-        List<RealConnection> evictedConnections = new ArrayList<>();
+        List<RealConnection> evictedConnections;
         synchronized (this) {
-            for (Iterator<RealConnection> i = connections.iterator(); i.hasNext(); ) {
-                RealConnection connection = i.next();
-                if (connection.allocations.isEmpty()) {
-                    connection.noNewStreams = true;
-                    evictedConnections.add(connection);
-                    i.remove();
-                }
+            evictedConnections = new ArrayList<>(idleConnections);
+            for (RealConnection connection : evictedConnections) {
+                connection.noNewStreams = true;
+                remove(connection);
             }
+            notifyAll();
         }
 
         for (RealConnection connection : evictedConnections) {
@@ -219,52 +430,103 @@ public final class ConnectionPool {
      * @return 睡眠时间
      */
     long cleanup(long now) {
-        int inUseConnectionCount = 0;
-        int idleConnectionCount = 0;
-        RealConnection longestIdleConnection = null;
-        long longestIdleDurationNs = Long.MIN_VALUE;
+        List<RealConnection> evictedConnections = new ArrayList<>();
+        long waitNs;
 
-        // 找到与清除的联系，或者下一次清除的时间
         synchronized (this) {
-            for (Iterator<RealConnection> i = connections.iterator(); i.hasNext(); ) {
-                RealConnection connection = i.next();
-
-                // 如果正在使用连接，请继续搜索.
-                if (pruneAndGetAllocationCount(connection, now) > 0) {
-                    inUseConnectionCount++;
-                    continue;
+            // 泄漏检测需要检查正在使用的连接，按间隔进行
+            if (now - lastLeakCheckNanos >= LEAK_CHECK_INTERVAL_NS
+                    && connectionCount > idleConnections.size()) {
+                lastLeakCheckNanos = now;
+                for (Host host : new ArrayList<>(hosts.values())) {
+                    for (RealConnection connection : new ArrayList<>(host.connections)) {
+                        if (!connection.allocations.isEmpty() && pruneAndGetAllocationCount(connection) == 0) {
+                            evict(connection);
+                            evictedConnections.add(connection);
+                        }
+                    }
                 }
+            }
 
-                idleConnectionCount++;
-
-                // 如果连接准备好被驱逐，我们就完成了
-                long idleDurationNs = now - connection.idleAtNanos;
-                if (idleDurationNs > longestIdleDurationNs) {
-                    longestIdleDurationNs = idleDurationNs;
-                    longestIdleConnection = connection;
+            // 队首的连接空闲最久，依次清除过期或超出空闲数量的连接
+            Iterator<RealConnection> iterator = idleConnections.iterator();
+            while (iterator.hasNext()) {
+                RealConnection connection = iterator.next();
+                if (now - connection.idleAtNanos < keepAliveDurationNs
+                        && idleConnections.size() <= maxIdleConnections) {
+                    break;
                 }
+                evict(connection);
+                evictedConnections.add(connection);
+                iterator = idleConnections.iterator();
             }
 
-            if (longestIdleDurationNs >= this.keepAliveDurationNs
-                    || idleConnectionCount > this.maxIdleConnections) {
-                // 我们发现了与驱逐有关的证据。将它从列表中移除，然后在下面(同步块外部)关闭它
-                connections.remove(longestIdleConnection);
-            } else if (idleConnectionCount > 0) {
+            if (!idleConnections.isEmpty()) {
                 // 一个连接将准备驱逐很快.
-                return keepAliveDurationNs - longestIdleDurationNs;
-            } else if (inUseConnectionCount > 0) {
+                RealConnection oldest = idleConnections.iterator().next();
+                waitNs = keepAliveDurationNs - (now - oldest.idleAtNanos);
+            } else if (connectionCount > 0) {
                 // 所有连接都在使用中。至少能维持生命直到我们再次运行.
-                return keepAliveDurationNs;
+                waitNs = keepAliveDurationNs;
             } else {
                 // 没有连接，空闲或正在使用
                 cleanupRunning = false;
-                return -1;
+                waitNs = -1;
+            }
+            if (!evictedConnections.isEmpty()) {
+                notifyAll();
+            }
+        }
+
+        for (RealConnection connection : evictedConnections) {
+            IoKit.close(connection.socket());
+        }
+        return waitNs;
+    }
+
+    /**
+     * 清除连接并计数
+     *
+     * @param connection 连接信息
+     */
+    private void evict(RealConnection connection) {
+        connection.noNewStreams = true;
+        remove(connection);
+        evictedConnectionCount++;
+    }
+
+    /**
+     * 从所有索引中删除连接
+     *
+     * @param connection 连接信息
+     */
+    private void remove(RealConnection connection) {
+        String key = key(connection.route().address().url());
+        Host host = hosts.get(key);
+        if (null == host || !host.connections.remove(connection)) {
+            return;
+        }
+        if (host.size() == 0) {
+            hosts.remove(key);
+        }
+        if (connection.isMultiplexed()) {
+            List<RealConnection> candidates = multiplexed.get(connection.route().socketAddress());
+            if (null != candidates) {
+                candidates.remove(connection);
+                if (candidates.isEmpty()) {
+                    multiplexed.remove(connection.route().socketAddress());
+                }
             }
         }
+        idleConnections.remove(connection);
+        connectionCount--;
+    }
 
-        IoKit.close(longestIdleConnection.socket());
-        // 立即清理.
-        return 0;
+    private void acquire(RealConnection connection, StreamAllocation streamAllocation) {
+        if (connection.allocations.isEmpty()) {
+            idleConnections.remove(connection);
+        }
+        streamAllocation.acquire(connection, true);
     }
 
     /**
@@ -272,10 +534,9 @@ public final class ConnectionPool {
      * 泄漏检测是不精确的，并且依赖于垃圾收集
      *
      * @param connection 连接信息
-     * @param now        时间
      * @return 可分配的数量
      */
-    private int pruneAndGetAllocationCount(RealConnection connection, long now) {
+    private int pruneAndGetAllocationCount(RealConnection connection) {
         List<Reference<StreamAllocation>> references = connection.allocations;
         for (int i = 0; i < references.size(); ) {
             Reference<StreamAllocation> reference = references.get(i);
@@ -294,14 +555,35 @@ public final class ConnectionPool {
 
             references.remove(i);
             connection.noNewStreams = true;
+        }
+        return references.size();
+    }
 
-            // 如果这是最后一次分配，则该连接可以立即被收回.
-            if (references.isEmpty()) {
-                connection.idleAtNanos = now - keepAliveDurationNs;
-                return 0;
+    /**
+     * 同一主机和端口的连接
+     */
+    private static class Host {
+
+        private final List<RealConnection> connections = new ArrayList<>();
+        /**
+         * 正在建立的连接数
+         */
+        private int connecting;
+
+        int size() {
+            return connections.size() + connecting;
+        }
+
+        RealConnection oldestIdle(Set<RealConnection> idleConnections) {
+            RealConnection oldest = null;
+            for (RealConnection connection : connections) {
+                if (connection.allocations.isEmpty() && idleConnections.contains(connection)
+                        && (null == oldest || connection.idleAtNanos < oldest.idleAtNanos)) {
+                    oldest = connection;
+                }
             }
+            return oldest;
         }
-        return references.size();
     }
 
 }
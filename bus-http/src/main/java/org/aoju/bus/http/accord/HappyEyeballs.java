@@ -0,0 +1,231 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.http.accord;
+
+import org.aoju.bus.core.toolkit.IoKit;
+import org.aoju.bus.http.Builder;
+import org.aoju.bus.http.Route;
+import org.aoju.bus.http.accord.platform.Platform;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Happy Eyeballs(RFC 8305)连接
+ * 按顺序依次发起连接，前一个连接在{@link #ATTEMPT_DELAY_MS}内未完成或失败时即发起下一个，
+ * 多个连接同时进行，第一个成功的胜出，其余的关闭；失败的路由记录到{@link RouteDatabase}
+ * 地址顺序由{@link RouteSelector}按IPv6、IPv4交替排列
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+final class HappyEyeballs {
+
+    /**
+     * 连接尝试之间的间隔，RFC 8305推荐250毫秒
+     */
+    static final long ATTEMPT_DELAY_MS = 250;
+
+    private static final Executor executor = new ThreadPoolExecutor(0,
+            Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), Builder.threadFactory("Httpd HappyEyeballs", true));
+
+    private final List<Route> routes;
+    private final RouteDatabase routeDatabase;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final BlockingQueue<Attempt> completed = new LinkedBlockingQueue<>();
+    private final List<Socket> sockets = new ArrayList<>();
+    private boolean finished;
+
+    HappyEyeballs(List<Route> routes, RouteDatabase routeDatabase, int connectTimeout, int readTimeout) {
+        this.routes = routes;
+        this.routeDatabase = routeDatabase;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * 是否需要竞速：不经过代理且同时包含IPv4和IPv6地址
+     *
+     * @param routes 路由
+     * @return the true/false
+     */
+    static boolean supports(List<Route> routes) {
+        boolean ipv4 = false;
+        boolean ipv6 = false;
+        for (Route route : routes) {
+            if (route.proxy().type() != Proxy.Type.DIRECT) {
+                return false;
+            }
+            InetAddress address = route.socketAddress().getAddress();
+            ipv4 |= address instanceof Inet4Address;
+            ipv6 |= address instanceof Inet6Address;
+        }
+        return ipv4 && ipv6;
+    }
+
+    /**
+     * 竞速连接
+     *
+     * @return 第一个成功的连接
+     * @throws IOException 全部失败或被取消
+     */
+    Attempt connect() throws IOException {
+        int next = 0;
+        int running = 0;
+        IOException failure = null;
+        try {
+            start(routes.get(next++));
+            running++;
+            while (running > 0) {
+                Attempt attempt = next < routes.size()
+                        ? completed.poll(ATTEMPT_DELAY_MS, TimeUnit.MILLISECONDS)
+                        : completed.take();
+                if (null == attempt) {
+                    start(routes.get(next++));
+                    running++;
+                    continue;
+                }
+                running--;
+                if (null != attempt.socket) {
+                    finish(attempt.socket);
+                    return attempt;
+                }
+                if (!isFinished()) {
+                    // 取消导致的失败不记录
+                    routeDatabase.failed(attempt.route);
+                }
+                if (null == failure) {
+                    failure = attempt.failure;
+                } else {
+                    failure.addSuppressed(attempt.failure);
+                }
+                if (next < routes.size() && !isFinished()) {
+                    // 失败后立即发起下一个
+                    start(routes.get(next++));
+                    running++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(null);
+            throw new InterruptedIOException();
+        }
+        finish(null);
+        throw failure;
+    }
+
+    /**
+     * 取消所有未完成的连接
+     */
+    void cancel() {
+        finish(null);
+    }
+
+    private synchronized boolean isFinished() {
+        return finished;
+    }
+
+    private void start(Route route) {
+        executor.execute(() -> {
+            Socket socket = null;
+            try {
+                socket = route.address().socketFactory().createSocket();
+                if (!register(socket)) {
+                    throw new SocketException("Canceled");
+                }
+                socket.setSoTimeout(readTimeout);
+                Platform.get().connectSocket(socket, route.socketAddress(), connectTimeout);
+                completed.add(new Attempt(route, socket, null));
+            } catch (Throwable e) {
+                // 任何异常都需回报结果，否则等待的连接线程无法结束
+                IoKit.close(socket);
+                IOException failure;
+                if (e instanceof ConnectException) {
+                    failure = new ConnectException("Failed to connect to " + route.socketAddress());
+                    failure.initCause(e);
+                } else if (e instanceof IOException) {
+                    failure = (IOException) e;
+                } else {
+                    failure = new IOException(e);
+                }
+                completed.add(new Attempt(route, null, failure));
+                if (e instanceof Error) {
+                    throw (Error) e;
+                }
+            }
+        });
+    }
+
+    private synchronized boolean register(Socket socket) {
+        if (finished) {
+            return false;
+        }
+        sockets.add(socket);
+        return true;
+    }
+
+    /**
+     * 结束竞速，关闭除胜出连接外的所有连接
+     *
+     * @param winner 胜出的连接
+     */
+    private void finish(Socket winner) {
+        List<Socket> losers;
+        synchronized (this) {
+            finished = true;
+            losers = new ArrayList<>(sockets);
+            sockets.clear();
+        }
+        for (Socket socket : losers) {
+            if (socket != winner) {
+                IoKit.close(socket);
+            }
+        }
+    }
+
+    /**
+     * 一次连接尝试的结果
+     */
+    static final class Attempt {
+
+        final Route route;
+        final Socket socket;
+        final IOException failure;
+
+        Attempt(Route route, Socket socket, IOException failure) {
+            this.route = route;
+            this.socket = socket;
+            this.failure = failure;
+        }
+    }
+
+}
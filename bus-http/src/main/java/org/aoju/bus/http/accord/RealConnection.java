@@ -54,6 +54,7 @@ import java.net.*;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -76,8 +77,14 @@ public final class RealConnection extends Http2Connection.Listener implements Co
 
     /**
      * 下面的字段由connect()初始化，并且从不重新分配
+     * 竞速连接时{@link #route}在connect()中替换为胜出的路由
      */
-    private final Route route;
+    private Route route;
+    /**
+     * 与{@link #route}竞速连接的路由，首次连接后清空
+     */
+    private List<Route> racingRoutes = Collections.emptyList();
+    private volatile HappyEyeballs happyEyeballs;
     /**
      * 如果为真，则不能在此连接上创建新的流
      */
@@ -116,6 +123,15 @@ public final class RealConnection extends Http2Connection.Listener implements Co
         this.route = route;
     }
 
+    /**
+     * 设置与当前路由竞速连接的路由，见{@link HappyEyeballs}
+     *
+     * @param routes 包含当前路由在内的全部路由
+     */
+    void raceWith(List<Route> routes) {
+        this.racingRoutes = routes;
+    }
+
     public static RealConnection testConnection(
             ConnectionPool connectionPool, Route route, Socket socket, long idleAtNanos) {
         RealConnection result = new RealConnection(connectionPool, route);
@@ -249,18 +265,34 @@ public final class RealConnection extends Http2Connection.Listener implements Co
         Proxy proxy = route.proxy();
         Address address = route.address();
 
-        rawSocket = proxy.type() == Proxy.Type.DIRECT || proxy.type() == Proxy.Type.HTTP
-                ? address.socketFactory().createSocket()
-                : new Socket(proxy);
+        if (!racingRoutes.isEmpty()) {
+            List<Route> routes = racingRoutes;
+            racingRoutes = Collections.emptyList();
+            eventListener.connectStart(call, route.socketAddress(), proxy);
+            HappyEyeballs race = new HappyEyeballs(routes,
+                    Builder.instance.routeDatabase(connectionPool), connectTimeout, readTimeout);
+            happyEyeballs = race;
+            try {
+                HappyEyeballs.Attempt winner = race.connect();
+                route = winner.route;
+                rawSocket = winner.socket;
+            } finally {
+                happyEyeballs = null;
+            }
+        } else {
+            rawSocket = proxy.type() == Proxy.Type.DIRECT || proxy.type() == Proxy.Type.HTTP
+                    ? address.socketFactory().createSocket()
+                    : new Socket(proxy);
 
-        eventListener.connectStart(call, route.socketAddress(), proxy);
-        rawSocket.setSoTimeout(readTimeout);
-        try {
-            Platform.get().connectSocket(rawSocket, route.socketAddress(), connectTimeout);
-        } catch (ConnectException e) {
-            ConnectException ce = new ConnectException("Failed to connect to " + route.socketAddress());
-            ce.initCause(e);
-            throw ce;
+            eventListener.connectStart(call, route.socketAddress(), proxy);
+            rawSocket.setSoTimeout(readTimeout);
+            try {
+                Platform.get().connectSocket(rawSocket, route.socketAddress(), connectTimeout);
+            } catch (ConnectException e) {
+                ConnectException ce = new ConnectException("Failed to connect to " + route.socketAddress());
+                ce.initCause(e);
+                throw ce;
+            }
         }
 
         // 下面的try/catch块是一种避免Android 7.0崩溃的伪代码
@@ -553,6 +585,10 @@ public final class RealConnection extends Http2Connection.Listener implements Co
     }
 
     public void cancel() {
+        HappyEyeballs race = happyEyeballs;
+        if (null != race) {
+            race.cancel();
+        }
         IoKit.close(rawSocket);
     }
 
@@ -93,6 +93,38 @@ public final class RouteSelector {
         return address.getHostAddress();
     }
 
+    /**
+     * 按RFC 8305交替排列IPv6和IPv4地址，以DNS返回的第一个地址的类型开始，
+     * 同类型的地址保持原有顺序
+     *
+     * @param addresses 地址
+     * @return 排列后的地址
+     */
+    static List<InetAddress> interleave(List<InetAddress> addresses) {
+        if (addresses.size() < 2) {
+            return addresses;
+        }
+        List<InetAddress> first = new ArrayList<>();
+        List<InetAddress> second = new ArrayList<>();
+        Class<?> family = addresses.get(0).getClass();
+        for (InetAddress address : addresses) {
+            (family.isInstance(address) ? first : second).add(address);
+        }
+        if (second.isEmpty()) {
+            return addresses;
+        }
+        List<InetAddress> result = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) {
+                result.add(first.get(i));
+            }
+            if (i < second.size()) {
+                result.add(second.get(i));
+            }
+        }
+        return result;
+    }
+
     /**
      * 如果要尝试另一组路由，则返回true。每个地址至少有一条路由
      *
@@ -240,8 +272,7 @@ public final class RouteSelector {
 
             eventListener.dnsEnd(call, socketHost, addresses);
 
-            for (int i = 0, size = addresses.size(); i < size; i++) {
-                InetAddress inetAddress = addresses.get(i);
+            for (InetAddress inetAddress : interleave(addresses)) {
                 inetSocketAddresses.add(new InetSocketAddress(inetAddress, socketPort));
             }
         }
@@ -272,6 +303,28 @@ public final class RouteSelector {
         public List<Route> getAll() {
             return new ArrayList<>(routes);
         }
+
+        /**
+         * 返回与{@code route}竞速连接的路由，即{@code route}及本组中尚未尝试的路由，
+         * 仅在同时包含IPv4和IPv6地址时竞速，否则返回空；返回的路由视为已尝试
+         *
+         * @param route 首先连接的路由
+         * @return 竞速的路由
+         */
+        public List<Route> racing(Route route) {
+            List<Route> result = new ArrayList<>();
+            result.add(route);
+            for (int i = nextRouteIndex; i < routes.size(); i++) {
+                if (!routes.get(i).equals(route)) {
+                    result.add(routes.get(i));
+                }
+            }
+            if (result.size() < 2 || !HappyEyeballs.supports(result)) {
+                return Collections.emptyList();
+            }
+            nextRouteIndex = routes.size();
+            return result;
+        }
     }
 
 }
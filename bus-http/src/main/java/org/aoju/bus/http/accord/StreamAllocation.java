@@ -201,6 +201,7 @@ public final class StreamAllocation {
             routeSelection = routeSelector.next();
         }
 
+        Socket evicted = null;
         synchronized (connectionPool) {
             if (canceled) throw new IOException("Canceled");
 
@@ -224,13 +225,25 @@ public final class StreamAllocation {
                     selectedRoute = routeSelection.next();
                 }
 
-                // 创建一个连接并立即将其分配给这个分配。这使得异步cancel()可以中断我们将要进行的握手
-                route = selectedRoute;
-                refusedStreamCount = 0;
-                result = new RealConnection(connectionPool, selectedRoute);
-                acquire(result, false);
+                // 主机连接数达到上限时等待，期间可能直接复用池中的连接
+                evicted = connectionPool.reserve(address, this, connectTimeout);
+                if (connection != null) {
+                    foundPooledConnection = true;
+                    result = connection;
+                    route = connection.route();
+                } else {
+                    // 创建一个连接并立即将其分配给这个分配。这使得异步cancel()可以中断我们将要进行的握手
+                    route = selectedRoute;
+                    refusedStreamCount = 0;
+                    result = new RealConnection(connectionPool, selectedRoute);
+                    if (routeSelection != null) {
+                        result.raceWith(routeSelection.racing(selectedRoute));
+                    }
+                    acquire(result, false);
+                }
             }
         }
+        IoKit.close(evicted);
 
         // 如果在第二次找到池连接，就完成了。
         if (foundPooledConnection) {
@@ -239,13 +252,22 @@ public final class StreamAllocation {
         }
 
         // TCP + TLS握手，这是一个阻塞操作
-        result.connect(connectTimeout, readTimeout, writeTimeout, pingIntervalMillis,
-                connectionRetryEnabled, call, eventListener);
+        try {
+            result.connect(connectTimeout, readTimeout, writeTimeout, pingIntervalMillis,
+                    connectionRetryEnabled, call, eventListener);
+        } catch (RuntimeException e) {
+            synchronized (connectionPool) {
+                connectionPool.unreserve(address);
+            }
+            throw e;
+        }
         routeDatabase().connected(result.route());
 
         Socket socket = null;
         synchronized (connectionPool) {
             reportedAcquired = true;
+            // 竞速连接时使用胜出的路由
+            route = result.route();
 
             // 连接池信息
             Builder.instance.put(connectionPool, result);
@@ -404,6 +426,8 @@ public final class StreamAllocation {
             canceled = true;
             codecToCancel = codec;
             connectionToCancel = connection;
+            // 唤醒等待主机连接数的请求
+            connectionPool.notifyAll();
         }
         if (codecToCancel != null) {
             codecToCancel.cancel();
@@ -513,6 +537,11 @@ public final class StreamAllocation {
         return socket;
     }
 
+    boolean isCanceled() {
+        assert (Thread.holdsLock(connectionPool));
+        return canceled;
+    }
+
     public boolean hasMoreRoutes() {
         return route != null
                 || (routeSelection != null && routeSelection.hasNext())
@@ -36,6 +36,8 @@ import org.aoju.bus.http.NewCall;
 import org.aoju.bus.http.Response;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * 从源服务器到客户机应用程序的一次性流，包含响应主体的原始字节。 到web服务器的活动连接支持每个响应主体。
@@ -52,6 +54,7 @@ import java.io.*;
  *   <li>Response.body().byteStream().close()</li>
  *   <li>Response.body().bytes()</li>
  *   <li>Response.body().string()</li>
+ *   <li>Response.body().writeTo(channel)</li>
  * </ul>
  * 这个类可以用来传输非常大的响应。例如，可以使用这个类来读取大于分配给当前进程的整个内存的响应。
  * 它甚至可以传输大于当前设备总存储的响应，这是视频流应用程序的一个常见需求
@@ -187,6 +190,31 @@ public abstract class ResponseBody implements Closeable {
         }
     }
 
+    /**
+     * 将响应体全部写入通道并关闭响应体，缓存的响应可直接从文件传输而不经过用户态缓冲
+     *
+     * @param target 目标通道
+     * @return 写入的字节数
+     * @throws IOException 异常
+     */
+    public long writeTo(WritableByteChannel target) throws IOException {
+        BufferSource source = source();
+        try {
+            long total = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    total += target.write(buffer);
+                }
+                buffer.clear();
+            }
+            return total;
+        } finally {
+            IoKit.close(source);
+        }
+    }
+
     private java.nio.charset.Charset charset() {
         MediaType contentType = contentType();
         return contentType != null ? contentType.charset(Charset.UTF_8) : Charset.UTF_8;
@@ -27,12 +27,15 @@ package org.aoju.bus.http.bodys;
 import org.aoju.bus.core.io.Buffer;
 import org.aoju.bus.core.io.ByteString;
 import org.aoju.bus.core.lang.Charset;
+import org.aoju.bus.core.lang.Header;
+import org.aoju.bus.core.lang.Http;
 import org.aoju.bus.core.lang.MediaType;
 import org.aoju.bus.core.lang.Normal;
 import org.aoju.bus.core.lang.Symbol;
 import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.bus.http.OnBack;
 import org.aoju.bus.http.Process;
+import org.aoju.bus.http.Request;
 import org.aoju.bus.http.Response;
 import org.aoju.bus.http.Results.Body;
 import org.aoju.bus.http.accord.ProcessStream;
@@ -216,8 +219,44 @@ public class ResultBody extends AbstractBody implements Body {
                 throw new InstrumentException("Cannot create file [" + file.getAbsolutePath() + "]", e);
             }
         }
-        return taskExecutor.download(coverHttp, file, toByteStream(),
+        Download download = taskExecutor.download(coverHttp, file, toByteStream(),
                 getRangeStart());
+        long length = getLength();
+        if (!cached && null != coverHttp && length > 0
+                && response.code() == HttpURLConnection.HTTP_OK
+                && Http.GET.equals(response.request().method())
+                && "bytes".equalsIgnoreCase(response.header(Header.ACCEPT_RANGES))) {
+            // If-Range只能使用强校验的ETag，弱ETag时改用Last-Modified
+            String etag = response.header("ETag");
+            String validator = null != etag && !etag.startsWith("W/") ? etag : response.header("Last-Modified");
+            download.setRanger(length, validator, (from, to) -> openRange(from, to, validator));
+        }
+        return download;
+    }
+
+    /**
+     * 重新请求指定范围的内容，文件已变化时服务器会返回完整内容，此时请求失败
+     *
+     * @param from      起始位置
+     * @param to        结束位置(含)
+     * @param validator 强校验的ETag或Last-Modified
+     * @return 输入流
+     * @throws IOException 请求失败或服务器没有按范围返回
+     */
+    private InputStream openRange(long from, long to, String validator) throws IOException {
+        Request.Builder builder = response.request().newBuilder()
+                .header("Range", "bytes=" + from + Symbol.HYPHEN + to);
+        if (null != validator) {
+            builder.header("If-Range", validator);
+        }
+        Response ranged = coverHttp.getHttpClient().request(builder.build()).execute();
+        String range = ranged.header(Header.CONTENT_RANGE);
+        if (ranged.code() != HttpURLConnection.HTTP_PARTIAL || null == range
+                || !range.startsWith("bytes " + from + Symbol.HYPHEN)) {
+            ranged.close();
+            throw new IOException("Range " + from + Symbol.HYPHEN + to + " not satisfied, status " + ranged.code());
+        }
+        return ranged.body().byteStream();
     }
 
     @Override
@@ -29,6 +29,7 @@ import org.aoju.bus.core.lang.Header;
 import org.aoju.bus.core.lang.Http;
 import org.aoju.bus.core.lang.MediaType;
 import org.aoju.bus.core.lang.Symbol;
+import org.aoju.bus.core.map.BoundedConcurrentMap;
 import org.aoju.bus.core.toolkit.IoKit;
 import org.aoju.bus.http.*;
 import org.aoju.bus.http.accord.platform.Platform;
@@ -45,14 +46,20 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.Flushable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 缓存HTTP和HTTPS对文件系统的响应，以便可以重用它们，从而节省时间和带宽.
+ * 条目按key分布到多个{@link DiskLruCache}分片，各分片有独立的日志和锁；
+ * 较小的响应同时保留在内存中，命中时不再读取文件
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -64,7 +71,22 @@ public final class Cache implements Closeable, Flushable {
     private static final int ENTRY_METADATA = 0;
     private static final int ENTRY_BODY = 1;
     private static final int ENTRY_COUNT = 2;
-    final DiskLruCache cache;
+    /**
+     * 放入内存的响应体上限
+     */
+    private static final int MEMORY_MAX_BODY = 16 * 1024;
+    final DiskLruCache[] shards;
+    private final File directory;
+    private final FileSystem fileSystem;
+    /**
+     * 较小响应的内存缓存，未启用时为null
+     */
+    private final Map<String, Memory> memory;
+    private final LongAdder memoryHitCount = new LongAdder();
+    private final LongAdder diskHitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder readByteCount = new LongAdder();
+    private final LongAdder writeByteCount = new LongAdder();
     int writeSuccessCount;
     int writeAbortCount;
     private int networkCount;
@@ -113,8 +135,47 @@ public final class Cache implements Closeable, Flushable {
         this(directory, maxSize, FileSystem.SYSTEM);
     }
 
+    /**
+     * 在{@code directory}中创建最多{@code maxSize}字节的缓存，条目按key分布到{@code shards}个分片，
+     * 分片数大于1时各分片位于以序号命名的子目录中
+     *
+     * @param directory  目录
+     * @param maxSize    缓存的最大大小(以字节为单位)，平均分配给各分片
+     * @param shards     分片数
+     * @param memorySize 内存中缓存较小响应的最大字节数，0表示不使用
+     */
+    public Cache(File directory, long maxSize, int shards, long memorySize) {
+        this(directory, maxSize, shards, memorySize, FileSystem.SYSTEM);
+    }
+
     Cache(File directory, long maxSize, FileSystem fileSystem) {
-        this.cache = DiskLruCache.create(fileSystem, directory, VERSION, ENTRY_COUNT, maxSize);
+        this(directory, maxSize, 1, 0, fileSystem);
+    }
+
+    Cache(File directory, long maxSize, int shards, long memorySize, FileSystem fileSystem) {
+        if (shards < 1 || shards > 256) {
+            throw new IllegalArgumentException("shards out of range: " + shards);
+        }
+        if (maxSize < shards) {
+            throw new IllegalArgumentException("maxSize < shards");
+        }
+        this.directory = directory;
+        this.fileSystem = fileSystem;
+        this.shards = new DiskLruCache[shards];
+        for (int i = 0; i < shards; i++) {
+            long size = maxSize / shards + (i == 0 ? maxSize % shards : 0);
+            File dir = shards == 1 ? directory : new File(directory, Integer.toString(i));
+            this.shards[i] = DiskLruCache.create(fileSystem, dir, VERSION, ENTRY_COUNT, size);
+        }
+        this.memory = memorySize > 0
+                ? new BoundedConcurrentMap<>(memorySize, BoundedConcurrentMap.Policy.TINY_LFU, (key, value) -> value.weight, null)
+                : null;
+        if (null != memory) {
+            // 删除、淘汰及迭代删除都经过此回调
+            for (DiskLruCache shard : this.shards) {
+                shard.setRemovalListener(this::forget);
+            }
+        }
     }
 
     public static String key(UnoUrl url) {
@@ -134,17 +195,41 @@ public final class Cache implements Closeable, Flushable {
         }
     }
 
+    /**
+     * key所在的分片，key为md5的十六进制形式
+     *
+     * @param key 缓存key
+     * @return 分片
+     */
+    private DiskLruCache shard(String key) {
+        return shards.length == 1 ? shards[0] : shards[Integer.parseInt(key.substring(0, 4), 16) % shards.length];
+    }
+
     Response get(Request request) {
         String key = key(request.url());
+        Memory cached = null != memory ? memory.get(key) : null;
+        if (null != cached) {
+            Response response = cached.entry.response(key, cached.body);
+            if (!cached.entry.matches(request, response)) {
+                missCount.increment();
+                return null;
+            }
+            memoryHitCount.increment();
+            readByteCount.add(cached.body.length);
+            return response;
+        }
+
         DiskLruCache.Snapshot snapshot;
         Entry entry;
         try {
-            snapshot = cache.get(key);
+            snapshot = shard(key).get(key);
             if (snapshot == null) {
+                missCount.increment();
                 return null;
             }
         } catch (IOException e) {
             // 放弃，因为缓存无法读取
+            missCount.increment();
             return null;
         }
 
@@ -152,19 +237,65 @@ public final class Cache implements Closeable, Flushable {
             entry = new Entry(snapshot.getSource(ENTRY_METADATA));
         } catch (IOException e) {
             IoKit.close(snapshot);
+            missCount.increment();
             return null;
         }
 
-        Response response = entry.response(snapshot);
+        long length = snapshot.getLength(ENTRY_BODY);
+        Response response = null != memory && length <= MEMORY_MAX_BODY
+                ? remember(key, entry, snapshot)
+                : entry.response(snapshot);
 
-        if (!entry.matches(request, response)) {
-            IoKit.close(response.body());
+        if (null == response || !entry.matches(request, response)) {
+            if (null != response) {
+                IoKit.close(response.body());
+            }
+            missCount.increment();
             return null;
         }
 
+        diskHitCount.increment();
+        readByteCount.add(length);
         return response;
     }
 
+    /**
+     * 读出较小的响应体放入内存缓存；放入后快照已不是当前版本时撤销，
+     * 保证与更新条目后的{@link #forget}无论先后都不会留下旧的响应
+     *
+     * @param key      缓存key
+     * @param entry    条目信息
+     * @param snapshot 快照，读取后关闭
+     * @return 响应，读取失败时为null
+     */
+    private Response remember(String key, Entry entry, DiskLruCache.Snapshot snapshot) {
+        byte[] body;
+        try {
+            body = IoKit.buffer(snapshot.getSource(ENTRY_BODY)).readByteArray();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            snapshot.close();
+        }
+        Memory cached = new Memory(entry, body, snapshot.getLength(ENTRY_METADATA) + body.length);
+        memory.put(key, cached);
+        if (!snapshot.isCurrent()) {
+            memory.remove(key, cached);
+        }
+        return entry.response(key, body);
+    }
+
+    /**
+     * 条目修改、删除或被淘汰后移出内存缓存
+     *
+     * @param key 缓存key
+     */
+    private void forget(String key) {
+        if (null != memory) {
+            memory.remove(key);
+        }
+    }
+
     CacheRequest put(Response response) {
         String requestMethod = response.request().method();
 
@@ -187,14 +318,15 @@ public final class Cache implements Closeable, Flushable {
         }
 
         Entry entry = new Entry(response);
+        String key = key(response.request().url());
         DiskLruCache.Editor editor = null;
         try {
-            editor = cache.edit(key(response.request().url()));
+            editor = shard(key).edit(key);
             if (editor == null) {
                 return null;
             }
             entry.writeTo(editor);
-            return new CacheRequestImpl(editor);
+            return new CacheRequestImpl(key, editor);
         } catch (IOException e) {
             abortQuietly(editor);
             return null;
@@ -202,25 +334,49 @@ public final class Cache implements Closeable, Flushable {
     }
 
     void remove(Request request) throws IOException {
-        cache.remove(key(request.url()));
+        String key = key(request.url());
+        shard(key).remove(key);
     }
 
     void update(Response cached, Response network) {
         Entry entry = new Entry(network);
-        DiskLruCache.Snapshot snapshot = ((CacheResponseBody) cached.body()).snapshot;
+        CacheResponseBody body = (CacheResponseBody) cached.body();
         DiskLruCache.Editor editor = null;
         try {
             // 如果快照不是当前的，则返回null
-            editor = snapshot.edit();
+            editor = edit(body);
             if (editor != null) {
                 entry.writeTo(editor);
                 editor.commit();
+                forget(body.key);
             }
         } catch (IOException e) {
             abortQuietly(editor);
         }
     }
 
+    /**
+     * 编辑响应对应的条目，来自内存的响应使用磁盘上条目的当前版本
+     *
+     * @param body 缓存的响应体
+     * @return 编辑器，条目已变化或不存在时为null
+     * @throws IOException 异常
+     */
+    private DiskLruCache.Editor edit(CacheResponseBody body) throws IOException {
+        if (null != body.snapshot) {
+            return body.snapshot.edit();
+        }
+        DiskLruCache.Snapshot snapshot = shard(body.key).get(body.key);
+        if (null == snapshot) {
+            return null;
+        }
+        try {
+            return snapshot.edit();
+        } finally {
+            snapshot.close();
+        }
+    }
+
     private void abortQuietly(DiskLruCache.Editor editor) {
         // 放弃，因为缓存无法写入
         try {
@@ -238,7 +394,9 @@ public final class Cache implements Closeable, Flushable {
      * @throws IOException 初始化异常
      */
     public void initialize() throws IOException {
-        cache.initialize();
+        for (DiskLruCache shard : shards) {
+            shard.initialize();
+        }
     }
 
     /**
@@ -247,7 +405,15 @@ public final class Cache implements Closeable, Flushable {
      * @throws IOException 删除异常
      */
     public void delete() throws IOException {
-        cache.delete();
+        for (DiskLruCache shard : shards) {
+            shard.delete();
+        }
+        if (shards.length > 1) {
+            fileSystem.deleteContents(directory);
+        }
+        if (null != memory) {
+            memory.clear();
+        }
     }
 
     /**
@@ -256,7 +422,12 @@ public final class Cache implements Closeable, Flushable {
      * @throws IOException 清除异常
      */
     public void evictAll() throws IOException {
-        cache.evictAll();
+        for (DiskLruCache shard : shards) {
+            shard.evictAll();
+        }
+        if (null != memory) {
+            memory.clear();
+        }
     }
 
 
@@ -269,7 +440,7 @@ public final class Cache implements Closeable, Flushable {
      */
     public Iterator<String> urls() throws IOException {
         return new Iterator<String>() {
-            final Iterator<DiskLruCache.Snapshot> delegate = cache.snapshots();
+            final Iterator<DiskLruCache.Snapshot> delegate = snapshots();
 
             String nextUrl;
             boolean canRemove;
@@ -313,6 +484,48 @@ public final class Cache implements Closeable, Flushable {
         };
     }
 
+    /**
+     * 依次遍历各分片的快照
+     *
+     * @return 迭代器
+     * @throws IOException 异常
+     */
+    private Iterator<DiskLruCache.Snapshot> snapshots() throws IOException {
+        final List<Iterator<DiskLruCache.Snapshot>> delegates = new ArrayList<>(shards.length);
+        for (DiskLruCache shard : shards) {
+            delegates.add(shard.snapshots());
+        }
+        return new Iterator<DiskLruCache.Snapshot>() {
+            int index;
+            Iterator<DiskLruCache.Snapshot> removeFrom;
+
+            @Override
+            public boolean hasNext() {
+                while (index < delegates.size()) {
+                    if (delegates.get(index).hasNext()) {
+                        return true;
+                    }
+                    index++;
+                }
+                return false;
+            }
+
+            @Override
+            public DiskLruCache.Snapshot next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                removeFrom = delegates.get(index);
+                return removeFrom.next();
+            }
+
+            @Override
+            public void remove() {
+                if (null == removeFrom) throw new IllegalStateException("remove() before next()");
+                removeFrom.remove();
+                removeFrom = null;
+            }
+        };
+    }
+
     public synchronized int writeAbortCount() {
         return writeAbortCount;
     }
@@ -322,29 +535,52 @@ public final class Cache implements Closeable, Flushable {
     }
 
     public long size() throws IOException {
-        return cache.size();
+        long size = 0;
+        for (DiskLruCache shard : shards) {
+            size += shard.size();
+        }
+        return size;
     }
 
     public long maxSize() {
-        return cache.getMaxSize();
+        long maxSize = 0;
+        for (DiskLruCache shard : shards) {
+            maxSize += shard.getMaxSize();
+        }
+        return maxSize;
     }
 
     @Override
     public void flush() throws IOException {
-        cache.flush();
+        for (DiskLruCache shard : shards) {
+            shard.flush();
+        }
     }
 
     @Override
     public void close() throws IOException {
-        cache.close();
+        IOException failure = null;
+        for (DiskLruCache shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (null != memory) {
+            memory.clear();
+        }
+        if (null != failure) {
+            throw failure;
+        }
     }
 
     public File directory() {
-        return cache.getDirectory();
+        return directory;
     }
 
     public boolean isClosed() {
-        return cache.isClosed();
+        return shards[0].isClosed();
     }
 
     synchronized void trackResponse(CacheStrategy cacheStrategy) {
@@ -375,6 +611,51 @@ public final class Cache implements Closeable, Flushable {
         return requestCount;
     }
 
+    /**
+     * 直接从内存返回的响应数
+     *
+     * @return 数量
+     */
+    public long memoryHitCount() {
+        return memoryHitCount.sum();
+    }
+
+    /**
+     * 从磁盘读取的响应数
+     *
+     * @return 数量
+     */
+    public long diskHitCount() {
+        return diskHitCount.sum();
+    }
+
+    /**
+     * 查找缓存但没有可用响应的次数
+     *
+     * @return 数量
+     */
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 缓存返回的响应体字节数
+     *
+     * @return 字节数
+     */
+    public long readByteCount() {
+        return readByteCount.sum();
+    }
+
+    /**
+     * 写入缓存的响应体字节数
+     *
+     * @return 字节数
+     */
+    public long writeByteCount() {
+        return writeByteCount.sum();
+    }
+
     private static final class Entry {
         /**
          * 合成响应标头:请求发送时的本地时间
@@ -595,8 +876,16 @@ public final class Cache implements Closeable, Flushable {
         }
 
         public Response response(DiskLruCache.Snapshot snapshot) {
-            String contentType = responseHeaders.get(Header.CONTENT_TYPE);
-            String contentLength = responseHeaders.get(Header.CONTENT_LENGTH);
+            return response(new CacheResponseBody(snapshot,
+                    responseHeaders.get(Header.CONTENT_TYPE), responseHeaders.get(Header.CONTENT_LENGTH)));
+        }
+
+        public Response response(String key, byte[] body) {
+            return response(new CacheResponseBody(key, body,
+                    responseHeaders.get(Header.CONTENT_TYPE), responseHeaders.get(Header.CONTENT_LENGTH)));
+        }
+
+        private Response response(CacheResponseBody body) {
             Request cacheRequest = new Request.Builder()
                     .url(url)
                     .method(requestMethod, null)
@@ -608,7 +897,7 @@ public final class Cache implements Closeable, Flushable {
                     .code(code)
                     .message(message)
                     .headers(responseHeaders)
-                    .body(new CacheResponseBody(snapshot, contentType, contentLength))
+                    .body(body)
                     .handshake(handshake)
                     .sentRequestAtMillis(sentRequestMillis)
                     .receivedResponseAtMillis(receivedResponseMillis)
@@ -616,15 +905,46 @@ public final class Cache implements Closeable, Flushable {
         }
     }
 
+    /**
+     * 内存中的响应
+     */
+    private static final class Memory {
+        final Entry entry;
+        final byte[] body;
+        final int weight;
+
+        Memory(Entry entry, byte[] body, long weight) {
+            this.entry = entry;
+            this.body = body;
+            this.weight = (int) Math.min(weight, Integer.MAX_VALUE);
+        }
+    }
+
     private static class CacheResponseBody extends ResponseBody {
+        final String key;
+        /**
+         * 来自内存的响应为null
+         */
         final DiskLruCache.Snapshot snapshot;
+        private final FileChannel channel;
         private final BufferSource bodySource;
         private final String contentType;
         private final String contentLength;
 
+        CacheResponseBody(String key, byte[] body, String contentType, String contentLength) {
+            this.key = key;
+            this.snapshot = null;
+            this.channel = null;
+            this.contentType = contentType;
+            this.contentLength = contentLength;
+            this.bodySource = new Buffer().write(body);
+        }
+
         CacheResponseBody(final DiskLruCache.Snapshot snapshot,
                           String contentType, String contentLength) {
+            this.key = snapshot.key();
             this.snapshot = snapshot;
+            this.channel = snapshot.getChannel(ENTRY_BODY);
             this.contentType = contentType;
             this.contentLength = contentLength;
 
@@ -656,6 +976,34 @@ public final class Cache implements Closeable, Flushable {
         public BufferSource source() {
             return bodySource;
         }
+
+        /**
+         * 先写出已缓冲的部分，其余直接从文件传输到目标通道
+         */
+        @Override
+        public long writeTo(WritableByteChannel target) throws IOException {
+            if (null == channel) {
+                return super.writeTo(target);
+            }
+            try {
+                long total = 0;
+                ByteBuffer buffered = ByteBuffer.wrap(bodySource.buffer().readByteArray());
+                while (buffered.hasRemaining()) {
+                    total += target.write(buffered);
+                }
+                long position = channel.position();
+                long size = channel.size();
+                while (position < size) {
+                    long count = channel.transferTo(position, size - position, target);
+                    position += count;
+                    total += count;
+                }
+                channel.position(position);
+                return total;
+            } finally {
+                close();
+            }
+        }
     }
 
     private final class CacheRequestImpl implements CacheRequest {
@@ -664,10 +1012,16 @@ public final class Cache implements Closeable, Flushable {
         private Sink cacheOut;
         private Sink body;
 
-        CacheRequestImpl(final DiskLruCache.Editor editor) {
+        CacheRequestImpl(final String key, final DiskLruCache.Editor editor) {
             this.editor = editor;
             this.cacheOut = editor.newSink(ENTRY_BODY);
             this.body = new DelegateSink(cacheOut) {
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    super.write(source, byteCount);
+                    writeByteCount.add(byteCount);
+                }
+
                 @Override
                 public void close() throws IOException {
                     synchronized (Cache.this) {
@@ -679,6 +1033,7 @@ public final class Cache implements Closeable, Flushable {
                     }
                     super.close();
                     editor.commit();
+                    forget(key);
                 }
             };
         }
@@ -33,11 +33,13 @@ import org.aoju.bus.http.Builder;
 import org.aoju.bus.logger.Logger;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.util.*;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -94,6 +96,10 @@ public final class DiskLruCache implements Closeable, Flushable {
      * 当前用于在此缓存中存储值的字节数
      */
     private long size = 0;
+    /**
+     * 条目被删除或淘汰后的回调，参数为key
+     */
+    private volatile Consumer<String> removalListener;
     private final Runnable cleanupRunnable = new Runnable() {
         public void run() {
             synchronized (DiskLruCache.this) {
@@ -568,6 +574,11 @@ public final class DiskLruCache implements Closeable, Flushable {
         journalWriter.writeUtf8(REMOVE).writeByte(Symbol.C_SPACE).writeUtf8(entry.key).writeByte(Symbol.C_LF);
         lruEntries.remove(entry.key);
 
+        Consumer<String> listener = removalListener;
+        if (null != listener) {
+            listener.accept(entry.key);
+        }
+
         if (journalRebuildRequired()) {
             executor.execute(cleanupRunnable);
         }
@@ -575,6 +586,15 @@ public final class DiskLruCache implements Closeable, Flushable {
         return true;
     }
 
+    /**
+     * 设置条目被删除或淘汰后的回调，回调在持有缓存锁时执行
+     *
+     * @param listener 回调，参数为key
+     */
+    void setRemovalListener(Consumer<String> listener) {
+        this.removalListener = listener;
+    }
+
     public synchronized boolean isClosed() {
         return closed;
     }
@@ -728,12 +748,14 @@ public final class DiskLruCache implements Closeable, Flushable {
         private final String key;
         private final long sequenceNumber;
         private final Source[] sources;
+        private final FileChannel[] channels;
         private final long[] lengths;
 
-        Snapshot(String key, long sequenceNumber, Source[] sources, long[] lengths) {
+        Snapshot(String key, long sequenceNumber, Source[] sources, FileChannel[] channels, long[] lengths) {
             this.key = key;
             this.sequenceNumber = sequenceNumber;
             this.sources = sources;
+            this.channels = channels;
             this.lengths = lengths;
         }
 
@@ -749,10 +771,32 @@ public final class DiskLruCache implements Closeable, Flushable {
             return sources[index];
         }
 
+        /**
+         * 值文件的通道，与{@link #getSource}共享读取位置，可用于零拷贝传输
+         *
+         * @param index 值索引
+         * @return 文件系统不是{@link FileSystem#SYSTEM}时为null
+         */
+        public FileChannel getChannel(int index) {
+            return null != channels ? channels[index] : null;
+        }
+
         public long getLength(int index) {
             return lengths[index];
         }
 
+        /**
+         * 快照是否仍是条目的当前版本
+         *
+         * @return 条目被修改或删除后为false
+         */
+        public boolean isCurrent() {
+            synchronized (DiskLruCache.this) {
+                Entry entry = lruEntries.get(key);
+                return null != entry && entry.readable && entry.sequenceNumber == sequenceNumber;
+            }
+        }
+
         public void close() {
             for (Source in : sources) {
                 IoKit.close(in);
@@ -931,12 +975,20 @@ public final class DiskLruCache implements Closeable, Flushable {
             if (!Thread.holdsLock(DiskLruCache.this)) throw new AssertionError();
 
             Source[] sources = new Source[valueCount];
+            // 本地文件保留通道，读取较大的值时可直接传输
+            FileChannel[] channels = fileSystem == FileSystem.SYSTEM ? new FileChannel[valueCount] : null;
             long[] lengths = this.lengths.clone();
             try {
                 for (int i = 0; i < valueCount; i++) {
-                    sources[i] = fileSystem.source(cleanFiles[i]);
+                    if (null != channels) {
+                        FileInputStream in = new FileInputStream(cleanFiles[i]);
+                        channels[i] = in.getChannel();
+                        sources[i] = IoKit.source(in);
+                    } else {
+                        sources[i] = fileSystem.source(cleanFiles[i]);
+                    }
                 }
-                return new Snapshot(key, sequenceNumber, sources, lengths);
+                return new Snapshot(key, sequenceNumber, sources, channels, lengths);
             } catch (FileNotFoundException e) {
                 for (int i = 0; i < valueCount; i++) {
                     if (sources[i] != null) {
@@ -0,0 +1,459 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.http.metric;
+
+import org.aoju.bus.core.map.BoundedConcurrentMap;
+import org.aoju.bus.http.DnsX;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+
+/**
+ * 带缓存的DNS实现
+ * 成功的结果按TTL缓存，失败的结果按负缓存TTL缓存；
+ * 结果接近过期时在后台提前刷新，过期后的一段时间内仍返回旧结果并在后台刷新，
+ * 刷新失败时继续使用旧结果直到该时间段结束；同一主机的并发解析只执行一次
+ * 解析由{@link Resolver}完成，默认委托给{@link DnsX#SYSTEM}，也可替换为本地实现
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public final class CachingDns implements DnsX {
+
+    /**
+     * 剩余有效期低于TTL的该比例时提前刷新
+     */
+    private static final double REFRESH_AHEAD = 0.2;
+    /**
+     * 默认的后台刷新线程池
+     */
+    private static final ExecutorService executor;
+
+    static {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), org.aoju.bus.http.Builder.threadFactory("Httpd Dns", true));
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    private final Resolver resolver;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final long staleMillis;
+    private final boolean prefetch;
+    private final Executor refresher;
+    private final LongSupplier clock;
+    private final Map<String, Entry> cache;
+    private final ConcurrentMap<String, CompletableFuture<Entry>> pending = new ConcurrentHashMap<>();
+
+    private CachingDns(Builder builder) {
+        this.resolver = builder.resolver;
+        this.ttlMillis = builder.ttlMillis;
+        this.negativeTtlMillis = builder.negativeTtlMillis;
+        this.staleMillis = builder.staleMillis;
+        this.prefetch = builder.prefetch;
+        this.refresher = builder.executor;
+        this.clock = builder.clock;
+        this.cache = new BoundedConcurrentMap<>(builder.maxEntries);
+    }
+
+    /**
+     * 读取JVM的DNS缓存配置，未设置或设置为永久缓存时使用默认值
+     *
+     * @param property     安全属性名
+     * @param defaultValue 默认值(秒)
+     * @return 毫秒
+     */
+    private static long securityTtl(String property, long defaultValue) {
+        try {
+            String value = Security.getProperty(property);
+            if (null != value) {
+                long seconds = Long.parseLong(value.trim());
+                if (seconds >= 0) {
+                    return TimeUnit.SECONDS.toMillis(seconds);
+                }
+            }
+        } catch (NumberFormatException | SecurityException ignored) {
+        }
+        return TimeUnit.SECONDS.toMillis(defaultValue);
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        if (null == hostname) {
+            throw new UnknownHostException("hostname == null");
+        }
+
+        long now = clock.getAsLong();
+        Entry entry = cache.get(hostname);
+        if (null != entry) {
+            if (now < entry.expireAt) {
+                if (prefetch && null != entry.addresses && now >= entry.refreshAt) {
+                    refresh(hostname);
+                }
+                return entry.result(hostname);
+            }
+            if (null != entry.addresses && now < entry.expireAt + staleMillis) {
+                // 已过期，先返回旧结果
+                refresh(hostname);
+                return entry.addresses;
+            }
+        }
+        return resolve(hostname).result(hostname);
+    }
+
+    /**
+     * 删除指定主机的缓存
+     *
+     * @param hostname 主机名
+     */
+    public void evict(String hostname) {
+        cache.remove(hostname);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * 缓存的主机数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 同步解析，同一主机的并发请求等待同一次解析
+     *
+     * @param hostname 主机名
+     * @return 缓存条目
+     * @throws UnknownHostException 等待被中断
+     */
+    private Entry resolve(String hostname) throws UnknownHostException {
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = pending.putIfAbsent(hostname, future);
+        if (null != existing) {
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                UnknownHostException exception = new UnknownHostException("Interrupted while resolving " + hostname);
+                exception.initCause(e);
+                throw exception;
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+        try {
+            Entry entry = load(hostname);
+            future.complete(entry);
+            return entry;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            pending.remove(hostname, future);
+        }
+    }
+
+    /**
+     * 在后台刷新，已有解析在进行时忽略
+     *
+     * @param hostname 主机名
+     */
+    private void refresh(String hostname) {
+        if (pending.containsKey(hostname)) {
+            return;
+        }
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        if (null != pending.putIfAbsent(hostname, future)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    future.complete(load(hostname));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    pending.remove(hostname, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(hostname, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 解析并写入缓存；解析失败而旧结果仍可使用时保留旧结果
+     *
+     * @param hostname 主机名
+     * @return 缓存条目
+     */
+    private Entry load(String hostname) {
+        Entry entry;
+        try {
+            Answer answer = resolver.resolve(hostname);
+            long now = clock.getAsLong();
+            if (null == answer || answer.addresses.isEmpty()) {
+                entry = Entry.negative(hostname + " returned no addresses", now + negativeTtlMillis);
+            } else {
+                long ttl = answer.ttlMillis < 0 ? ttlMillis : answer.ttlMillis;
+                entry = new Entry(answer.addresses, null, now + ttl, now + ttl - (long) (ttl * REFRESH_AHEAD));
+            }
+        } catch (UnknownHostException e) {
+            entry = Entry.negative(e.getMessage(), clock.getAsLong() + negativeTtlMillis);
+        }
+
+        if (null == entry.addresses) {
+            Entry previous = cache.get(hostname);
+            if (null != previous && null != previous.addresses
+                    && clock.getAsLong() < previous.expireAt + staleMillis) {
+                return previous;
+            }
+        }
+        cache.put(hostname, entry);
+        return entry;
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IllegalStateException(e);
+    }
+
+    /**
+     * 实际执行解析的解析器
+     */
+    @FunctionalInterface
+    public interface Resolver {
+
+        /**
+         * 使用{@link DnsX}解析，TTL使用{@link CachingDns}的默认值
+         *
+         * @param dns DNS服务
+         * @return 解析器
+         */
+        static Resolver of(DnsX dns) {
+            return hostname -> new Answer(dns.lookup(hostname), -1);
+        }
+
+        /**
+         * 解析主机名
+         *
+         * @param hostname 主机名
+         * @return 解析结果
+         * @throws UnknownHostException 主机不存在
+         */
+        Answer resolve(String hostname) throws UnknownHostException;
+
+    }
+
+    /**
+     * 解析结果
+     */
+    public static final class Answer {
+
+        private final List<InetAddress> addresses;
+        private final long ttlMillis;
+
+        /**
+         * @param addresses 地址
+         * @param ttlMillis 有效期(毫秒)，小于0时使用默认值
+         */
+        public Answer(List<InetAddress> addresses, long ttlMillis) {
+            this.addresses = Collections.unmodifiableList(new ArrayList<>(addresses));
+            this.ttlMillis = ttlMillis;
+        }
+
+        public List<InetAddress> addresses() {
+            return addresses;
+        }
+
+        public long ttlMillis() {
+            return ttlMillis;
+        }
+    }
+
+    private static final class Entry {
+
+        final List<InetAddress> addresses;
+        final String failure;
+        final long expireAt;
+        final long refreshAt;
+
+        Entry(List<InetAddress> addresses, String failure, long expireAt, long refreshAt) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expireAt = expireAt;
+            this.refreshAt = refreshAt;
+        }
+
+        static Entry negative(String failure, long expireAt) {
+            return new Entry(null, failure, expireAt, expireAt);
+        }
+
+        List<InetAddress> result(String hostname) throws UnknownHostException {
+            if (null == addresses) {
+                throw new UnknownHostException(null == failure ? hostname : failure);
+            }
+            return addresses;
+        }
+    }
+
+    public static final class Builder {
+
+        Resolver resolver = Resolver.of(DnsX.SYSTEM);
+        long ttlMillis = securityTtl("networkaddress.cache.ttl", 30);
+        long negativeTtlMillis = securityTtl("networkaddress.cache.negative.ttl", 10);
+        long staleMillis = TimeUnit.MINUTES.toMillis(1);
+        boolean prefetch = true;
+        long maxEntries = 1024;
+        Executor executor = CachingDns.executor;
+        LongSupplier clock = System::currentTimeMillis;
+
+        public Builder() {
+        }
+
+        public CachingDns build() {
+            return new CachingDns(this);
+        }
+
+        /**
+         * 委托的DNS服务，例如{@link DnsOverHttps}
+         *
+         * @param dns DNS服务
+         * @return this
+         */
+        public Builder dns(DnsX dns) {
+            this.resolver = Resolver.of(dns);
+            return this;
+        }
+
+        /**
+         * 解析器，可返回每个主机的TTL
+         *
+         * @param resolver 解析器
+         * @return this
+         */
+        public Builder resolver(Resolver resolver) {
+            this.resolver = resolver;
+            return this;
+        }
+
+        /**
+         * 解析器未给出TTL时使用的有效期
+         *
+         * @param ttl  有效期
+         * @param unit 单位
+         * @return this
+         */
+        public Builder ttl(long ttl, TimeUnit unit) {
+            this.ttlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * 解析失败结果的有效期
+         *
+         * @param ttl  有效期
+         * @param unit 单位
+         * @return this
+         */
+        public Builder negativeTtl(long ttl, TimeUnit unit) {
+            this.negativeTtlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * 过期后仍可返回旧结果的时长，0表示过期后同步解析
+         *
+         * @param stale 时长
+         * @param unit  单位
+         * @return this
+         */
+        public Builder staleWhileRevalidate(long stale, TimeUnit unit) {
+            this.staleMillis = unit.toMillis(stale);
+            return this;
+        }
+
+        /**
+         * 是否在过期前提前刷新
+         *
+         * @param prefetch 是否提前刷新
+         * @return this
+         */
+        public Builder prefetch(boolean prefetch) {
+            this.prefetch = prefetch;
+            return this;
+        }
+
+        public Builder maxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * 执行后台刷新的线程池
+         *
+         * @param executor 线程池
+         * @return this
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * 时钟(毫秒)，默认为{@link System#currentTimeMillis()}
+         *
+         * @param clock 时钟
+         * @return this
+         */
+        public Builder clock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+    }
+
+}
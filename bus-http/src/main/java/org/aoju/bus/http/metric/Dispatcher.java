@@ -29,16 +29,18 @@ import org.aoju.bus.http.NewCall;
 import org.aoju.bus.http.RealCall;
 import org.aoju.bus.http.RealCall.AsyncCall;
 
+import java.lang.reflect.Method;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 关于何时执行异步请求的策略
  * 每个dispatcher使用一个{@link ExecutorService}在内部运行调用。
  * 如果您提供自己的执行程序，它应该能够并发地运行{@linkplain #getMaxRequests 配置的最大调用数}
+ * 等待的调用按主机排队，同一主机内先进先出，各主机轮流获得执行机会；
+ * 入队、出队与计数均无锁，排队时间和执行时间记录在{@link LatencyHistogram}中
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -47,24 +49,44 @@ import java.util.concurrent.TimeUnit;
 public final class Dispatcher {
 
     /**
-     * 准备异步调用的顺序，他们将被运行
+     * 虚拟线程模式下默认的最大并发请求数
      */
-    private final Deque<AsyncCall> readyAsyncCalls = new ArrayDeque<>();
+    private static final int VIRTUAL_MAX_REQUESTS = 4096;
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}，JDK不支持时为null
+     */
+    private static final Method VIRTUAL_EXECUTOR = virtualExecutorMethod();
+
+    /**
+     * 按主机分组的等待调用
+     */
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+    /**
+     * 可能有调用可以执行的主机
+     */
+    private final Queue<Host> pendingHosts = new ConcurrentLinkedQueue<>();
     /**
      * 运行异步调用。包括尚未结束的已取消调用
      */
-    private final Deque<AsyncCall> runningAsyncCalls = new ArrayDeque<>();
+    private final Map<AsyncCall, Running> runningAsyncCalls = new ConcurrentHashMap<>();
     /**
      * 运行同步调用。包括尚未结束的已取消调用
      */
-    private final Deque<RealCall> runningSyncCalls = new ArrayDeque<>();
-    private int maxRequests = 64;
-    private int maxRequestsPerHost = 5;
-    private Runnable idleCallback;
+    private final Set<RealCall> runningSyncCalls = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    /**
+     * 已占用的异步调用名额
+     */
+    private final AtomicInteger runningAsyncCount = new AtomicInteger();
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+    private volatile int maxRequests = 64;
+    private volatile int maxRequestsPerHost = 5;
+    private volatile Runnable idleCallback;
     /**
      * 执行调用
      */
-    private ExecutorService executorService;
+    private volatile ExecutorService executorService;
 
     public Dispatcher(ExecutorService executorService) {
         this.executorService = executorService;
@@ -73,15 +95,80 @@ public final class Dispatcher {
     public Dispatcher() {
     }
 
-    public synchronized ExecutorService executorService() {
-        if (executorService == null) {
-            executorService = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
-                    new SynchronousQueue<>(), Builder.threadFactory("Httpd Dispatcher", false));
+    /**
+     * 使用虚拟线程执行调用的调度器，阻塞的网络IO不占用平台线程，
+     * 最大并发请求数默认提高到{@value #VIRTUAL_MAX_REQUESTS}；
+     * JDK不支持虚拟线程时使用与CPU核数相当的固定线程池，最大并发请求数与线程数相同，其余调用排队
+     *
+     * @return 调度器
+     */
+    public static Dispatcher newVirtualThreadDispatcher() {
+        if (null != VIRTUAL_EXECUTOR) {
+            try {
+                Dispatcher dispatcher = new Dispatcher((ExecutorService) VIRTUAL_EXECUTOR.invoke(null));
+                dispatcher.maxRequests = VIRTUAL_MAX_REQUESTS;
+                return dispatcher;
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // 使用线程池
+            }
+        }
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), Builder.threadFactory("Httpd Dispatcher", false));
+        executor.allowCoreThreadTimeOut(true);
+        Dispatcher dispatcher = new Dispatcher(executor);
+        dispatcher.maxRequests = threads;
+        return dispatcher;
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     *
+     * @return the true/false
+     */
+    public static boolean isVirtualThreadSupported() {
+        return null != VIRTUAL_EXECUTOR;
+    }
+
+    private static Method virtualExecutorMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
         }
-        return executorService;
     }
 
-    public synchronized int getMaxRequests() {
+    /**
+     * 名额未满时占用一个
+     *
+     * @param counter 计数
+     * @param max     上限
+     * @return 是否占用成功
+     */
+    private static boolean tryAcquire(AtomicInteger counter, int max) {
+        for (int current = counter.get(); current < max; current = counter.get()) {
+            if (counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public ExecutorService executorService() {
+        ExecutorService result = executorService;
+        if (result == null) {
+            synchronized (this) {
+                result = executorService;
+                if (result == null) {
+                    executorService = result = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                            new SynchronousQueue<>(), Builder.threadFactory("Httpd Dispatcher", false));
+                }
+            }
+        }
+        return result;
+    }
+
+    public int getMaxRequests() {
         return maxRequests;
     }
 
@@ -95,13 +182,12 @@ public final class Dispatcher {
         if (maxRequests < 1) {
             throw new IllegalArgumentException("max < 1: " + maxRequests);
         }
-        synchronized (this) {
-            this.maxRequests = maxRequests;
-        }
+        this.maxRequests = maxRequests;
+        scheduleAll();
         promoteAndExecute();
     }
 
-    public synchronized int getMaxRequestsPerHost() {
+    public int getMaxRequestsPerHost() {
         return maxRequestsPerHost;
     }
 
@@ -116,26 +202,29 @@ public final class Dispatcher {
         if (maxRequestsPerHost < 1) {
             throw new IllegalArgumentException("max < 1: " + maxRequestsPerHost);
         }
-        synchronized (this) {
-            this.maxRequestsPerHost = maxRequestsPerHost;
-        }
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        scheduleAll();
         promoteAndExecute();
     }
 
-
     /**
      * 设置一个回调，以便每次调度程序变为空闲时调用(当运行的调用数量返回零时)
      *
      * @param idleCallback 回调
      */
-    public synchronized void setIdleCallback(Runnable idleCallback) {
+    public void setIdleCallback(Runnable idleCallback) {
         this.idleCallback = idleCallback;
     }
 
     public void enqueue(AsyncCall call) {
-        synchronized (this) {
-            readyAsyncCalls.add(call);
-        }
+        Queued queued = new Queued(call, System.nanoTime());
+        Host host = hosts.compute(call.host(), (name, existing) -> {
+            Host result = null == existing ? new Host(name) : existing;
+            result.ready.offer(queued);
+            return result;
+        });
+        queuedCount.incrementAndGet();
+        schedule(host);
         promoteAndExecute();
     }
 
@@ -144,12 +233,14 @@ public final class Dispatcher {
      * {@linkplain NewCall#execute()}和异步
      * 执行的{@linkplain NewCall#enqueue}。
      */
-    public synchronized void cancelAll() {
-        for (AsyncCall call : readyAsyncCalls) {
-            call.get().cancel();
+    public void cancelAll() {
+        for (Host host : hosts.values()) {
+            for (Queued queued : host.ready) {
+                queued.call.get().cancel();
+            }
         }
 
-        for (AsyncCall call : runningAsyncCalls) {
+        for (AsyncCall call : runningAsyncCalls.keySet()) {
             call.get().cancel();
         }
 
@@ -159,69 +250,125 @@ public final class Dispatcher {
     }
 
     /**
-     * 将符合条件的调用从{@link #readyAsyncCalls}提升到{@link #runningAsyncCalls}，
-     * 并在executor服务上运行它们。必须不与同步调用，因为执行调用可以调用到用户代码
+     * 依次处理有等待调用的主机，在名额允许时将调用交给executor服务执行
+     * 总名额已满时主机重新排队，等待任一调用结束；主机名额已满时等待该主机的调用结束
      *
      * @return 如果调度程序当前正在运行调用，则为true
      */
     private boolean promoteAndExecute() {
         assert (!Thread.holdsLock(this));
 
-        List<AsyncCall> executableCalls = new ArrayList<>();
-        boolean isRunning;
-        synchronized (this) {
-            for (Iterator<AsyncCall> i = readyAsyncCalls.iterator(); i.hasNext(); ) {
-                AsyncCall asyncCall = i.next();
-
-                if (runningAsyncCalls.size() >= maxRequests) break; // Max capacity.
-                if (runningCallsForHost(asyncCall) >= maxRequestsPerHost) continue; // Host max capacity.
-
-                i.remove();
-                executableCalls.add(asyncCall);
-                runningAsyncCalls.add(asyncCall);
+        Host host;
+        while (null != (host = pendingHosts.poll())) {
+            host.scheduled.set(false);
+            while (!host.ready.isEmpty()) {
+                if (!tryAcquire(runningAsyncCount, maxRequests)) {
+                    schedule(host);
+                    // 重新排队后再确认一次，避免错过同时结束的调用
+                    if (runningAsyncCount.get() >= maxRequests) {
+                        return runningCallsCount() > 0;
+                    }
+                    break;
+                }
+                // 持有预留期间主机不会被删除，取出的调用不会丢失
+                host.reserved.incrementAndGet();
+                try {
+                    Queued queued = host.ready.poll();
+                    if (null == queued) {
+                        runningAsyncCount.decrementAndGet();
+                        break;
+                    }
+                    boolean forWebSocket = queued.call.get().forWebSocket;
+                    if (!forWebSocket && !tryAcquire(host.running, maxRequestsPerHost)) {
+                        host.ready.offerFirst(queued);
+                        runningAsyncCount.decrementAndGet();
+                        if (host.running.get() >= maxRequestsPerHost) {
+                            break;
+                        }
+                        continue;
+                    }
+                    queuedCount.decrementAndGet();
+                    execute(host, queued, forWebSocket);
+                } finally {
+                    host.reserved.decrementAndGet();
+                }
             }
-            isRunning = runningCallsCount() > 0;
+            removeIfIdle(host);
         }
+        return runningCallsCount() > 0;
+    }
 
-        for (int i = 0, size = executableCalls.size(); i < size; i++) {
-            AsyncCall asyncCall = executableCalls.get(i);
-            asyncCall.executeOn(executorService());
-        }
+    private void execute(Host host, Queued queued, boolean forWebSocket) {
+        Running running = new Running(host, queued.enqueuedAt, forWebSocket);
+        runningAsyncCalls.put(queued.call, running);
+        queued.call.executeOn(command -> executorService().execute(() -> {
+            running.start();
+            command.run();
+        }));
+    }
 
-        return isRunning;
+    private void schedule(Host host) {
+        if (host.scheduled.compareAndSet(false, true)) {
+            pendingHosts.offer(host);
+        }
     }
 
-    /**
-     * @param call 回调信息
-     * @return 与{@code call}共享主机的运行调用的数量
-     */
-    private int runningCallsForHost(AsyncCall call) {
-        int result = 0;
-        for (AsyncCall c : runningAsyncCalls) {
-            if (c.get().forWebSocket) continue;
-            if (c.host().equals(call.host())) result++;
+    private void scheduleAll() {
+        for (Host host : hosts.values()) {
+            if (!host.ready.isEmpty()) {
+                schedule(host);
+            }
         }
-        return result;
     }
 
-    public synchronized void executed(RealCall call) {
+    public void executed(RealCall call) {
         runningSyncCalls.add(call);
     }
 
     public void finished(AsyncCall call) {
-        finished(runningAsyncCalls, call);
+        Running running = runningAsyncCalls.remove(call);
+        if (null == running) {
+            throw new AssertionError("Call wasn't in-flight!");
+        }
+        running.finish();
+        runningAsyncCount.decrementAndGet();
+        Host host = running.host;
+        if (!running.forWebSocket) {
+            host.running.decrementAndGet();
+        }
+        if (host.ready.isEmpty()) {
+            removeIfIdle(host);
+        } else {
+            schedule(host);
+        }
+        finished();
     }
 
-    public void finished(RealCall call) {
-        finished(runningSyncCalls, call);
+    /**
+     * 主机空闲时删除，避免访问过的主机一直占用内存
+     * 与{@link #enqueue}对同一主机名的操作互斥，入队的调用总会进入仍在映射中的主机；
+     * 有调用正在执行或被{@link #promoteAndExecute}预留时不删除
+     *
+     * @param host 主机
+     */
+    private void removeIfIdle(Host host) {
+        if (!host.ready.isEmpty() || host.running.get() != 0 || host.reserved.get() != 0) {
+            return;
+        }
+        hosts.computeIfPresent(host.name, (name, existing) ->
+                existing == host && existing.ready.isEmpty()
+                        && existing.running.get() == 0 && existing.reserved.get() == 0 ? null : existing);
     }
 
-    private <T> void finished(Deque<T> calls, T call) {
-        Runnable idleCallback;
-        synchronized (this) {
-            if (!calls.remove(call)) throw new AssertionError("Call wasn't in-flight!");
-            idleCallback = this.idleCallback;
+    public void finished(RealCall call) {
+        if (!runningSyncCalls.remove(call)) {
+            throw new AssertionError("Call wasn't in-flight!");
         }
+        finished();
+    }
+
+    private void finished() {
+        Runnable idleCallback = this.idleCallback;
 
         boolean isRunning = promoteAndExecute();
 
@@ -230,29 +377,111 @@ public final class Dispatcher {
         }
     }
 
-    public synchronized List<NewCall> queuedCalls() {
+    public List<NewCall> queuedCalls() {
         List<NewCall> result = new ArrayList<>();
-        for (AsyncCall asyncCall : readyAsyncCalls) {
-            result.add(asyncCall.get());
+        for (Host host : hosts.values()) {
+            for (Queued queued : host.ready) {
+                result.add(queued.call.get());
+            }
         }
         return Collections.unmodifiableList(result);
     }
 
-    public synchronized List<NewCall> runningCalls() {
-        List<NewCall> result = new ArrayList<>();
-        result.addAll(runningSyncCalls);
-        for (AsyncCall asyncCall : runningAsyncCalls) {
+    public List<NewCall> runningCalls() {
+        List<NewCall> result = new ArrayList<>(runningSyncCalls);
+        for (AsyncCall asyncCall : runningAsyncCalls.keySet()) {
             result.add(asyncCall.get());
         }
         return Collections.unmodifiableList(result);
     }
 
-    public synchronized int queuedCallsCount() {
-        return readyAsyncCalls.size();
+    public int queuedCallsCount() {
+        return queuedCount.get();
+    }
+
+    public int runningCallsCount() {
+        return runningAsyncCount.get() + runningSyncCalls.size();
+    }
+
+    /**
+     * 异步调用从入队到开始执行的等待时间
+     *
+     * @return 直方图
+     */
+    public LatencyHistogram queueTime() {
+        return queueTime;
+    }
+
+    /**
+     * 异步调用从开始执行到结束的时间
+     *
+     * @return 直方图
+     */
+    public LatencyHistogram runTime() {
+        return runTime;
+    }
+
+    /**
+     * 同一主机的调用
+     */
+    private static final class Host {
+
+        final String name;
+        final Deque<Queued> ready = new ConcurrentLinkedDeque<>();
+        /**
+         * 正在执行的调用数，不含WebSocket
+         */
+        final AtomicInteger running = new AtomicInteger();
+        /**
+         * 已从{@link #ready}取出、尚未执行或放回的调用数
+         */
+        final AtomicInteger reserved = new AtomicInteger();
+        /**
+         * 是否已在{@link #pendingHosts}中
+         */
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Host(String name) {
+            this.name = name;
+        }
     }
 
-    public synchronized int runningCallsCount() {
-        return runningAsyncCalls.size() + runningSyncCalls.size();
+    private static final class Queued {
+
+        final AsyncCall call;
+        final long enqueuedAt;
+
+        Queued(AsyncCall call, long enqueuedAt) {
+            this.call = call;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final class Running {
+
+        final Host host;
+        final long enqueuedAt;
+        final boolean forWebSocket;
+        volatile long startedAt;
+
+        Running(Host host, long enqueuedAt, boolean forWebSocket) {
+            this.host = host;
+            this.enqueuedAt = enqueuedAt;
+            this.forWebSocket = forWebSocket;
+        }
+
+        void start() {
+            long now = System.nanoTime();
+            startedAt = now;
+            queueTime.record(now - enqueuedAt);
+        }
+
+        void finish() {
+            long started = startedAt;
+            if (started != 0) {
+                runTime.record(System.nanoTime() - started);
+            }
+        }
     }
 
 }
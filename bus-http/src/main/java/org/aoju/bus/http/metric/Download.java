@@ -28,11 +28,26 @@ import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.bus.core.toolkit.IoKit;
 import org.aoju.bus.http.OnBack;
 import org.aoju.bus.http.Process;
+import org.aoju.bus.http.magic.ProgressListener;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 文件下载
+ * 设置{@link #setSegments(int)}且服务器支持Range请求时，文件分为多段通过各自的连接并行下载，
+ * 各段按偏移写入文件，进度定期保存在同目录的{@code .seg}文件中，再次下载同一文件时从中断处继续
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -40,6 +55,20 @@ import java.io.*;
  */
 public class Download {
 
+    /**
+     * 每段的最小字节数
+     */
+    private static final long MIN_SEGMENT_BYTES = 1024 * 1024;
+    /**
+     * 下载多少字节后保存一次进度
+     */
+    private static final long CHECKPOINT_BYTES = 8 * 1024 * 1024;
+    /**
+     * 每段出错后重新请求的次数
+     */
+    private static final int MAX_RETRIES = 2;
+    private static final String CHECKPOINT_SUFFIX = ".seg";
+
     private final Object lock = new Object();
     protected boolean nextOnIO = false;
     private File file;
@@ -54,6 +83,28 @@ public class Download {
     private volatile int status;
     private boolean sOnIO;
     private boolean fOnIO;
+    private ProgressListener progressListener;
+    private String checksumAlgorithm;
+    private String checksum;
+    private long totalBytes = -1;
+
+    private int segmentCount = 1;
+    private Ranger ranger;
+    private String validator;
+    /**
+     * 分段下载的各段，单线程下载时为null
+     */
+    private volatile Segment[] segments;
+    private FileChannel channel;
+    /**
+     * 正在下载的段数
+     */
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong downloaded = new AtomicLong();
+    private final AtomicLong reported = new AtomicLong();
+    private final AtomicLong unsaved = new AtomicLong();
+    private final AtomicBoolean settled = new AtomicBoolean();
+    private final AtomicBoolean failed = new AtomicBoolean();
 
     private Ctrl ctrl;
 
@@ -100,6 +151,58 @@ public class Download {
         return this;
     }
 
+    /**
+     * 设置并行下载的段数，服务器不支持Range请求或文件较小时仍使用单个连接
+     *
+     * @param segments 段数
+     * @return Download
+     */
+    public Download setSegments(int segments) {
+        if (segments > 0) {
+            this.segmentCount = segments;
+        }
+        return this;
+    }
+
+    /**
+     * 设置按范围获取内容的方式，由支持Range请求的响应设置
+     *
+     * @param totalBytes 文件总字节数
+     * @param validator  ETag或Last-Modified，用于确认续传的是同一文件，可为null
+     * @param ranger     获取指定范围的内容
+     * @return Download
+     */
+    public Download setRanger(long totalBytes, String validator, Ranger ranger) {
+        this.totalBytes = totalBytes;
+        this.validator = validator;
+        this.ranger = ranger;
+        return this;
+    }
+
+    /**
+     * 设置下载完成后校验的摘要，不一致时按下载失败处理
+     *
+     * @param algorithm 摘要算法，如SHA-256
+     * @param checksum  十六进制的摘要值
+     * @return Download
+     */
+    public Download setChecksum(String algorithm, String checksum) {
+        this.checksumAlgorithm = algorithm;
+        this.checksum = checksum;
+        return this;
+    }
+
+    /**
+     * 设置下载进度监听，分段下载时为各段进度之和
+     *
+     * @param progressListener 进度监听
+     * @return Download
+     */
+    public Download setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
     /**
      * 在IO线程执行
      *
@@ -145,6 +248,11 @@ public class Download {
         if (buffSize == 0) {
             buffSize = Process.DEFAULT_STEP_BYTES;
         }
+        int count = (int) Math.min(segmentCount, totalBytes / MIN_SEGMENT_BYTES);
+        if (null != ranger && count > 1) {
+            startSegments(count);
+            return ctrl;
+        }
         RandomAccessFile raFile = randomAccessFile();
         status = Ctrl.STATUS__DOWNLOADING;
         taskExecutor.execute(() -> {
@@ -191,28 +299,35 @@ public class Download {
                     while ((len = input.read(buff)) != -1) {
                         raFile.write(buff, 0, len);
                         doneBytes += len;
+                        progress(doneBytes);
                         if (status == Ctrl.STATUS__CANCELED
                                 || status == Ctrl.STATUS__PAUSED) {
                             break;
                         }
                     }
                     if (len == -1) {
+                        IoKit.close(raFile);
+                        verify();
+                        if (null != progressListener) {
+                            progressListener.updateProgress(doneBytes, totalBytes < 0 ? doneBytes : totalBytes, true);
+                        }
                         synchronized (lock) {
                             status = Ctrl.STATUS__DONE;
                         }
                     }
                 }
             }
-        } catch (IOException e) {
+        } catch (IOException | RuntimeException e) {
             synchronized (lock) {
                 status = Ctrl.STATUS__ERROR;
             }
+            IOException error = e instanceof IOException ? (IOException) e : new IOException(e);
             if (onFailure != null) {
                 taskExecutor.execute(() -> {
-                    onFailure.on(new Failure(e));
+                    onFailure.on(new Failure(error));
                 }, fOnIO);
             } else {
-                throw new InstrumentException("Streaming failed!", e);
+                throw new InstrumentException("Streaming failed!", error);
             }
         } finally {
             IoKit.close(raFile);
@@ -227,6 +342,341 @@ public class Download {
         }
     }
 
+    /**
+     * 按保存的进度或重新分段，各段交给IO线程并行下载，最初的响应流用作尚未开始的第一段
+     *
+     * @param count 段数
+     */
+    private void startSegments(int count) {
+        File checkpoint = checkpointFile();
+        Segment[] parts = loadCheckpoint(checkpoint);
+        try {
+            if (null == parts) {
+                parts = new Segment[count];
+                long size = totalBytes / count;
+                for (int i = 0; i < count; i++) {
+                    long start = i * size;
+                    long end = i == count - 1 ? totalBytes - 1 : start + size - 1;
+                    parts[i] = new Segment(start, end, 0);
+                }
+            }
+            RandomAccessFile raFile = new RandomAccessFile(file, "rw");
+            raFile.setLength(totalBytes);
+            channel = raFile.getChannel();
+        } catch (IOException e) {
+            status = Ctrl.STATUS__ERROR;
+            IoKit.close(input);
+            throw new InstrumentException("Can't get file [" + file.getAbsolutePath() + "] Input stream", e);
+        }
+
+        if (parts[0].start == 0 && parts[0].done == 0) {
+            parts[0].input = input;
+        } else {
+            IoKit.close(input);
+        }
+        long done = 0;
+        for (Segment part : parts) {
+            done += part.done;
+        }
+        downloaded.set(done);
+        reported.set(done);
+        segments = parts;
+        status = Ctrl.STATUS__DOWNLOADING;
+
+        boolean running = false;
+        for (Segment part : parts) {
+            running |= submit(part);
+        }
+        if (!running) {
+            taskExecutor.execute(this::settle, true);
+        }
+    }
+
+    /**
+     * 提交尚未完成且不在下载中的段
+     *
+     * @param segment 段
+     * @return 是否已提交
+     */
+    private boolean submit(Segment segment) {
+        if (segment.remaining() <= 0 || !segment.running.compareAndSet(false, true)) {
+            return false;
+        }
+        active.incrementAndGet();
+        taskExecutor.execute(() -> transfer(segment), true);
+        return true;
+    }
+
+    private void transfer(Segment segment) {
+        IOException failure = null;
+        do {
+            int retries = 0;
+            while (failure == null && status == Ctrl.STATUS__DOWNLOADING && segment.remaining() > 0) {
+                try {
+                    segment.transfer();
+                } catch (IOException e) {
+                    IoKit.close(segment.input);
+                    segment.input = null;
+                    if (++retries > MAX_RETRIES || status != Ctrl.STATUS__DOWNLOADING) {
+                        failure = e;
+                    }
+                } catch (RuntimeException e) {
+                    // Ranger或进度监听抛出的异常不重试，按失败结束，避免该段一直处于下载中
+                    IoKit.close(segment.input);
+                    segment.input = null;
+                    failure = new IOException(e);
+                }
+            }
+            IoKit.close(segment.input);
+            segment.input = null;
+            segment.running.set(false);
+            // 暂停后立即继续时由当前线程接着下载
+        } while (failure == null && status == Ctrl.STATUS__DOWNLOADING
+                && segment.remaining() > 0 && segment.running.compareAndSet(false, true));
+
+        if (null != failure) {
+            synchronized (lock) {
+                status = Ctrl.STATUS__ERROR;
+            }
+        }
+        if (active.decrementAndGet() == 0) {
+            settle();
+        }
+        if (null != failure && failed.compareAndSet(false, true)) {
+            doneBytes = downloaded.get();
+            if (onFailure != null) {
+                Failure result = new Failure(failure);
+                taskExecutor.execute(() -> onFailure.on(result), fOnIO);
+            } else {
+                throw new InstrumentException("Streaming failed!", failure);
+            }
+        }
+    }
+
+    /**
+     * 没有段在下载时按状态收尾：全部完成时校验并回调，暂停或出错时保存进度，取消时删除文件
+     */
+    private void settle() {
+        Segment[] parts = segments;
+        int state = status;
+        if (state == Ctrl.STATUS__PAUSED) {
+            saveCheckpoint();
+            return;
+        }
+        boolean complete = state == Ctrl.STATUS__DOWNLOADING;
+        for (Segment part : parts) {
+            complete &= part.remaining() <= 0;
+        }
+        if (!complete && state == Ctrl.STATUS__DOWNLOADING || !settled.compareAndSet(false, true)) {
+            return;
+        }
+        if (state == Ctrl.STATUS__ERROR) {
+            saveCheckpoint();
+        }
+        IoKit.close(channel);
+        if (state == Ctrl.STATUS__CANCELED) {
+            checkpointFile().delete();
+            file.delete();
+            return;
+        }
+        if (!complete) {
+            return;
+        }
+        IOException failure = null;
+        try {
+            verify();
+        } catch (IOException e) {
+            failure = e;
+        }
+        checkpointFile().delete();
+        synchronized (lock) {
+            status = null == failure ? Ctrl.STATUS__DONE : Ctrl.STATUS__ERROR;
+        }
+        doneBytes = downloaded.get();
+        if (null != failure) {
+            IOException error = failure;
+            if (onFailure != null) {
+                taskExecutor.execute(() -> onFailure.on(new Failure(error)), fOnIO);
+            } else {
+                throw new InstrumentException("Streaming failed!", error);
+            }
+        } else if (onSuccess != null) {
+            taskExecutor.execute(() -> onSuccess.on(file), sOnIO);
+        }
+    }
+
+    /**
+     * 累计下载进度，每前进约1%或一个缓冲区通知一次监听
+     *
+     * @param done 已下载字节数
+     */
+    private void progress(long done) {
+        if (null == progressListener) {
+            return;
+        }
+        long last = reported.get();
+        long step = Math.max(buffSize, totalBytes / 100);
+        if ((done - last >= step || done == totalBytes) && reported.compareAndSet(last, done)) {
+            progressListener.updateProgress(done, totalBytes, done == totalBytes);
+        }
+    }
+
+    private void verify() throws IOException {
+        if (null == checksum) {
+            return;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(checksumAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Unsupported checksum algorithm: " + checksumAlgorithm, e);
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buff = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buff)) != -1) {
+                digest.update(buff, 0, len);
+            }
+        }
+        StringBuilder actual = new StringBuilder();
+        for (byte b : digest.digest()) {
+            actual.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        if (!actual.toString().equalsIgnoreCase(checksum)) {
+            throw new IOException("Checksum mismatch, expected " + checksum + " but was " + actual);
+        }
+    }
+
+    private File checkpointFile() {
+        return new File(file.getPath() + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * 读取保存的进度，文件大小或validator不一致时丢弃
+     *
+     * @param checkpoint 进度文件
+     * @return 各段，没有可用的进度时为null
+     */
+    private Segment[] loadCheckpoint(File checkpoint) {
+        if (!checkpoint.isFile() || file.length() != totalBytes) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(checkpoint.toPath(), StandardCharsets.UTF_8);
+            if (lines.size() < 3 || Long.parseLong(lines.get(0)) != totalBytes
+                    || !lines.get(1).equals(null == validator ? "" : validator)) {
+                return null;
+            }
+            List<Segment> parts = new ArrayList<>();
+            long expected = 0;
+            for (String line : lines.subList(2, lines.size())) {
+                String[] fields = line.split(" ");
+                Segment part = new Segment(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                if (part.start != expected || part.end < part.start || part.done < 0 || part.remaining() < 0) {
+                    return null;
+                }
+                expected = part.end + 1;
+                parts.add(part);
+            }
+            return expected == totalBytes ? parts.toArray(new Segment[0]) : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 先把已写入的内容刷到磁盘，再以替换文件的方式保存进度
+     */
+    private void saveCheckpoint() {
+        Segment[] parts = segments;
+        synchronized (parts) {
+            StringBuilder content = new StringBuilder()
+                    .append(totalBytes).append('\n')
+                    .append(null == validator ? "" : validator).append('\n');
+            for (Segment part : parts) {
+                content.append(part.start).append(' ').append(part.end).append(' ').append(part.done).append('\n');
+            }
+            File checkpoint = checkpointFile();
+            File temp = new File(checkpoint.getPath() + ".tmp");
+            try {
+                if (channel.isOpen()) {
+                    channel.force(false);
+                }
+                Files.write(temp.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+                Files.move(temp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ignored) {
+                // 进度无法保存时下次重新下载
+            }
+        }
+    }
+
+    /**
+     * 按范围获取内容
+     */
+    public interface Ranger {
+
+        /**
+         * 打开指定范围的内容
+         *
+         * @param from 起始位置
+         * @param to   结束位置(含)
+         * @return 输入流
+         * @throws IOException 请求失败或服务器没有按范围返回
+         */
+        InputStream open(long from, long to) throws IOException;
+
+    }
+
+    /**
+     * 分段下载中的一段
+     */
+    private class Segment {
+
+        final long start;
+        final long end;
+        final AtomicBoolean running = new AtomicBoolean();
+        /**
+         * 已写入文件的字节数
+         */
+        volatile long done;
+        InputStream input;
+
+        Segment(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = done;
+        }
+
+        long remaining() {
+            return end - start + 1 - done;
+        }
+
+        void transfer() throws IOException {
+            if (null == input) {
+                input = ranger.open(start + done, end);
+            }
+            byte[] buff = new byte[buffSize];
+            ByteBuffer buffer = ByteBuffer.wrap(buff);
+            while (status == Ctrl.STATUS__DOWNLOADING && remaining() > 0) {
+                int len = input.read(buff, 0, (int) Math.min(buff.length, remaining()));
+                if (len == -1) {
+                    throw new EOFException("Segment ended at " + (start + done) + ", expected " + (end + 1));
+                }
+                buffer.clear().limit(len);
+                long position = start + done;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                done += len;
+                progress(downloaded.addAndGet(len));
+                if (unsaved.addAndGet(len) >= CHECKPOINT_BYTES) {
+                    unsaved.set(0);
+                    saveCheckpoint();
+                }
+            }
+        }
+    }
+
     public class Ctrl {
 
         /**
@@ -265,6 +715,20 @@ public class Download {
             return status;
         }
 
+        /**
+         * @return 已下载字节数，分段下载时为各段之和
+         */
+        public long doneBytes() {
+            return null != segments ? downloaded.get() : doneBytes;
+        }
+
+        /**
+         * @return 文件总字节数，未知时为-1
+         */
+        public long totalBytes() {
+            return totalBytes;
+        }
+
         /**
          * 暂停下载任务
          */
@@ -281,8 +745,15 @@ public class Download {
          */
         public void resume() {
             synchronized (lock) {
-                if (status == STATUS__PAUSED) {
-                    status = STATUS__DOWNLOADING;
+                if (status != STATUS__PAUSED) {
+                    return;
+                }
+                status = STATUS__DOWNLOADING;
+            }
+            Segment[] parts = segments;
+            if (null != parts) {
+                for (Segment part : parts) {
+                    submit(part);
                 }
             }
         }
@@ -296,6 +767,10 @@ public class Download {
                     status = STATUS__CANCELED;
                 }
             }
+            // 暂停中的分段下载没有线程收尾
+            if (null != segments && active.get() == 0) {
+                settle();
+            }
         }
 
     }
@@ -0,0 +1,137 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.http.metric;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图
+ * 以微秒计，按2的幂分桶，第i个桶记录[2^(i-1), 2^i)微秒的次数；
+ * 记录无锁，百分位数为所在桶的上界，误差不超过一倍
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 纳秒
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket].increment();
+        count.increment();
+        totalMicros.add(micros);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * 平均耗时
+     *
+     * @param unit 单位
+     * @return 平均耗时
+     */
+    public long mean(TimeUnit unit) {
+        long n = count.sum();
+        return n == 0 ? 0 : unit.convert(totalMicros.sum() / n, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * 百分位耗时
+     *
+     * @param percentile 百分位，0到100
+     * @param unit       单位
+     * @return 耗时上界
+     */
+    public long percentile(double percentile, TimeUnit unit) {
+        long[] counts = counts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                return unit.convert(i == 0 ? 1 : 1L << i, TimeUnit.MICROSECONDS);
+            }
+        }
+        return unit.convert(1L << (BUCKETS - 1), TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * 各桶的次数
+     *
+     * @return 次数
+     */
+    public long[] counts() {
+        long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = buckets[i].sum();
+        }
+        return result;
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        totalMicros.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count()
+                + ", mean=" + mean(TimeUnit.MICROSECONDS) + "us"
+                + ", p50=" + percentile(50, TimeUnit.MICROSECONDS) + "us"
+                + ", p99=" + percentile(99, TimeUnit.MICROSECONDS) + "us";
+    }
+
+}
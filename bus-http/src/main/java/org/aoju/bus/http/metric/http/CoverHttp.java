@@ -98,6 +98,15 @@ public abstract class CoverHttp<C extends CoverHttp<?>> implements Cancelable {
         return urlPath;
     }
 
+    /**
+     * 获取执行请求的客户端
+     *
+     * @return 客户端
+     */
+    public Httpv getHttpClient() {
+        return httpClient;
+    }
+
     /**
      * 获取请求任务的标签
      *
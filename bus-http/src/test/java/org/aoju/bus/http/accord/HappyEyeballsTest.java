@@ -0,0 +1,240 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.http.accord;
+
+import org.aoju.bus.http.Address;
+import org.aoju.bus.http.DnsX;
+import org.aoju.bus.http.Protocol;
+import org.aoju.bus.http.Route;
+import org.aoju.bus.http.secure.Authenticator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link HappyEyeballs}在本地替身套接字上的回退行为
+ * IPv6路由的连接由替身控制(挂起或拒绝)，IPv4路由连接到本地的{@link ServerSocket}
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class HappyEyeballsTest {
+
+    private ServerSocket server;
+    private RouteDatabase routeDatabase;
+    private final Map<InetSocketAddress, StubSocket> sockets = new ConcurrentHashMap<>();
+    /**
+     * IPv6连接的行为：true为挂起直到关闭，false为立即拒绝
+     */
+    private volatile boolean stallIpv6;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        routeDatabase = new RouteDatabase();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void fallsBackAfterAttemptDelayWhenFirstStalls() throws IOException, InterruptedException {
+        stallIpv6 = true;
+        Route ipv6 = route("::1");
+        Route ipv4 = route("127.0.0.1");
+
+        long start = System.nanoTime();
+        HappyEyeballs.Attempt winner = new HappyEyeballs(Arrays.asList(ipv6, ipv4), routeDatabase, 10_000, 10_000)
+                .connect();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        try {
+            assertEquals(ipv4, winner.route);
+            assertTrue(winner.socket.isConnected());
+            assertTrue(elapsed >= HappyEyeballs.ATTEMPT_DELAY_MS);
+            assertTrue(elapsed < 5_000);
+            // 挂起的连接被关闭
+            assertTrue(sockets.get(ipv6.socketAddress()).closed.await(5, TimeUnit.SECONDS));
+            // 被取消的连接不算失败
+            assertFalse(routeDatabase.shouldPostpone(ipv6));
+        } finally {
+            winner.socket.close();
+        }
+    }
+
+    @Test
+    public void startsNextAttemptImmediatelyOnFailure() throws IOException {
+        stallIpv6 = false;
+        Route ipv6 = route("::1");
+        Route ipv4 = route("127.0.0.1");
+
+        long start = System.nanoTime();
+        HappyEyeballs.Attempt winner = new HappyEyeballs(Arrays.asList(ipv6, ipv4), routeDatabase, 10_000, 10_000)
+                .connect();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        try {
+            assertEquals(ipv4, winner.route);
+            assertTrue(elapsed < HappyEyeballs.ATTEMPT_DELAY_MS);
+            assertTrue(routeDatabase.shouldPostpone(ipv6));
+            assertFalse(routeDatabase.shouldPostpone(ipv4));
+        } finally {
+            winner.socket.close();
+        }
+    }
+
+    @Test
+    public void recordsEveryRouteWhenAllFail() throws IOException {
+        stallIpv6 = false;
+        Route first = route("::1");
+        Route second = route("::2");
+
+        try {
+            new HappyEyeballs(Arrays.asList(first, second), routeDatabase, 10_000, 10_000).connect();
+            fail();
+        } catch (ConnectException expected) {
+            assertEquals(1, expected.getSuppressed().length);
+        }
+        assertTrue(routeDatabase.shouldPostpone(first));
+        assertTrue(routeDatabase.shouldPostpone(second));
+    }
+
+    @Test
+    public void cancelAbortsRace() throws InterruptedException {
+        stallIpv6 = true;
+        Route first = route("::1");
+        Route second = route("::2");
+        HappyEyeballs race = new HappyEyeballs(Arrays.asList(first, second), routeDatabase, 10_000, 10_000);
+
+        CountDownLatch failed = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                race.connect();
+            } catch (IOException e) {
+                failed.countDown();
+            }
+        });
+        thread.start();
+        Thread.sleep(HappyEyeballs.ATTEMPT_DELAY_MS * 2);
+        race.cancel();
+
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        for (StubSocket socket : sockets.values()) {
+            assertTrue(socket.closed.await(5, TimeUnit.SECONDS));
+        }
+        thread.join();
+    }
+
+    private Route route(String host) {
+        InetSocketAddress target;
+        try {
+            target = new InetSocketAddress(InetAddress.getByName(host), server.getLocalPort());
+        } catch (UnknownHostException e) {
+            throw new AssertionError(e);
+        }
+        Address address = new Address("localhost", server.getLocalPort(), DnsX.SYSTEM, new StubSocketFactory(),
+                null, null, null, Authenticator.NONE, null,
+                Collections.singletonList(Protocol.HTTP_1_1),
+                Collections.singletonList(ConnectionSuite.CLEARTEXT), ProxySelector.getDefault());
+        return new Route(address, Proxy.NO_PROXY, target);
+    }
+
+    /**
+     * IPv4连接真实建立，IPv6连接按{@link #stallIpv6}挂起或拒绝
+     */
+    private final class StubSocket extends Socket {
+
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void connect(SocketAddress endpoint, int timeout) throws IOException {
+            InetSocketAddress address = (InetSocketAddress) endpoint;
+            if (address.getAddress() instanceof Inet4Address) {
+                super.connect(endpoint, timeout);
+                return;
+            }
+            sockets.put(address, this);
+            if (!stallIpv6) {
+                throw new ConnectException("Connection refused");
+            }
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new SocketException("Socket closed");
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            closed.countDown();
+            super.close();
+        }
+    }
+
+    private final class StubSocketFactory extends SocketFactory {
+
+        @Override
+        public Socket createSocket() {
+            return new StubSocket();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.http.cache;
+
+import org.aoju.bus.core.io.BufferSink;
+import org.aoju.bus.core.toolkit.IoKit;
+import org.aoju.bus.http.Protocol;
+import org.aoju.bus.http.Request;
+import org.aoju.bus.http.Response;
+import org.aoju.bus.http.UnoUrl;
+import org.aoju.bus.http.bodys.ResponseBody;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link Cache}的分片路由及内存缓存与磁盘条目的一致性
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class CacheTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private Cache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (null != cache) {
+            cache.delete();
+        }
+    }
+
+    @Test
+    public void routesEntriesToShardByKey() throws IOException {
+        int shards = 4;
+        cache = new Cache(directory, 1 << 20, shards, 0);
+        boolean[] used = new boolean[shards];
+        for (int i = 0; i < 64; i++) {
+            String url = url(i);
+            store(cache, url, "body " + i);
+            String key = Cache.key(UnoUrl.get(url));
+            int index = Integer.parseInt(key.substring(0, 4), 16) % shards;
+            used[index] = true;
+            for (int shard = 0; shard < shards; shard++) {
+                File file = new File(new File(directory, Integer.toString(shard)), key + ".1");
+                assertEquals(url + " in shard " + shard, shard == index, file.exists());
+            }
+        }
+        for (boolean shard : used) {
+            assertTrue(shard);
+        }
+
+        // 重新打开后按相同的分片读取
+        cache.close();
+        cache = new Cache(directory, 1 << 20, shards, 0);
+        for (int i = 0; i < 64; i++) {
+            assertEquals("body " + i, read(cache, url(i)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShardCountOutOfRange() {
+        new Cache(directory, 1 << 20, 0, 0);
+    }
+
+    @Test
+    public void legacyConstructorKeepsMemoryTierOff() throws IOException {
+        cache = new Cache(directory, 1 << 20);
+        store(cache, url(0), "body");
+        assertEquals("body", read(cache, url(0)));
+        assertEquals("body", read(cache, url(0)));
+        assertEquals(0, cache.memoryHitCount());
+        assertEquals(2, cache.diskHitCount());
+    }
+
+    @Test
+    public void servesSmallResponsesFromMemory() throws IOException {
+        cache = new Cache(directory, 1 << 20, 1, 1 << 20);
+        store(cache, url(0), "body");
+        assertEquals("body", read(cache, url(0)));
+        assertEquals("body", read(cache, url(0)));
+        assertEquals(1, cache.diskHitCount());
+        assertEquals(1, cache.memoryHitCount());
+
+        // 覆盖写入后不再返回内存中的旧响应
+        store(cache, url(0), "changed");
+        assertEquals("changed", read(cache, url(0)));
+    }
+
+    @Test
+    public void evictedEntriesLeaveMemory() throws IOException {
+        cache = new Cache(directory, 4096, 1, 1 << 20);
+        store(cache, url(0), "small");
+        assertEquals("small", read(cache, url(0)));
+        assertEquals("small", read(cache, url(0)));
+        assertEquals(1, cache.memoryHitCount());
+
+        char[] large = new char[1000];
+        Arrays.fill(large, 'x');
+        for (int i = 1; i <= 8; i++) {
+            store(cache, url(i), new String(large));
+        }
+        // 同步执行淘汰
+        cache.flush();
+
+        assertNull(read(cache, url(0)));
+        assertEquals(1, cache.memoryHitCount());
+    }
+
+    @Test
+    public void removedEntriesLeaveMemory() throws IOException {
+        cache = new Cache(directory, 1 << 20, 2, 1 << 20);
+        store(cache, url(0), "body");
+        assertEquals("body", read(cache, url(0)));
+
+        cache.remove(new Request.Builder().url(url(0)).build());
+        assertNull(read(cache, url(0)));
+
+        store(cache, url(1), "body");
+        assertEquals("body", read(cache, url(1)));
+        Iterator<String> urls = cache.urls();
+        assertEquals(url(1), urls.next());
+        urls.remove();
+        assertNull(read(cache, url(1)));
+    }
+
+    /**
+     * 读取线程把读到的旧版本放入内存时，写入线程可能已提交新版本并清除了内存；
+     * 每轮写入结束后内存中不能留下旧版本
+     */
+    @Test
+    public void rememberRacingWithWriteNeverLeavesStaleEntry() throws Exception {
+        cache = new Cache(directory, 1 << 20, 1, 1 << 20);
+        String url = url(0);
+        store(cache, url, "0");
+
+        for (int round = 1; round <= 200; round++) {
+            AtomicBoolean stop = new AtomicBoolean();
+            Thread[] readers = new Thread[2];
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = new Thread(() -> {
+                    while (!stop.get()) {
+                        try {
+                            read(cache, url);
+                        } catch (IOException e) {
+                            throw new AssertionError(e);
+                        }
+                    }
+                });
+                readers[i].start();
+            }
+            store(cache, url, Integer.toString(round));
+            stop.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            assertEquals(Integer.toString(round), read(cache, url));
+            assertEquals(Integer.toString(round), read(cache, url));
+        }
+    }
+
+    private static String url(int index) {
+        return "http://example.test/" + index;
+    }
+
+    private static void store(Cache cache, String url, String body) throws IOException {
+        Request request = new Request.Builder().url(url).build();
+        Response network = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .build();
+        Response response = network.newBuilder()
+                .networkResponse(network)
+                .body(ResponseBody.create(null, body))
+                .build();
+        CacheRequest cacheRequest = cache.put(response);
+        assertNotNull(cacheRequest);
+        BufferSink sink = IoKit.buffer(cacheRequest.body());
+        sink.writeUtf8(body);
+        sink.close();
+    }
+
+    private static String read(Cache cache, String url) throws IOException {
+        Response response = cache.get(new Request.Builder().url(url).build());
+        return null == response ? null : response.body().string();
+    }
+
+}
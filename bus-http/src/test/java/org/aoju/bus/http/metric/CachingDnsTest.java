@@ -0,0 +1,197 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.http.metric;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link CachingDns}在本地解析器上的TTL及过期行为
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class CachingDnsTest {
+
+    private static final String HOST = "example.test";
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final Queue<Runnable> refreshes = new ArrayDeque<>();
+
+    private InetAddress first;
+    private InetAddress second;
+    /**
+     * 下一次解析的结果，为null时解析失败
+     */
+    private volatile InetAddress answer;
+
+    @Before
+    public void setUp() throws UnknownHostException {
+        first = InetAddress.getByAddress(HOST, new byte[]{10, 0, 0, 1});
+        second = InetAddress.getByAddress(HOST, new byte[]{10, 0, 0, 2});
+        answer = first;
+    }
+
+    private CachingDns.Builder builder() {
+        return new CachingDns.Builder()
+                .resolver(hostname -> {
+                    lookups.incrementAndGet();
+                    InetAddress address = answer;
+                    if (null == address) {
+                        throw new UnknownHostException(hostname);
+                    }
+                    return new CachingDns.Answer(Collections.singletonList(address), 1000);
+                })
+                .negativeTtl(500, TimeUnit.MILLISECONDS)
+                .clock(clock::get)
+                .executor(refreshes::add);
+    }
+
+    @Test
+    public void cachesUntilTtlExpires() throws UnknownHostException {
+        CachingDns dns = builder().prefetch(false).staleWhileRevalidate(0, TimeUnit.MILLISECONDS).build();
+
+        assertEquals(Collections.singletonList(first), dns.lookup(HOST));
+        clock.addAndGet(999);
+        answer = second;
+        assertEquals(Collections.singletonList(first), dns.lookup(HOST));
+        assertEquals(1, lookups.get());
+
+        clock.addAndGet(1);
+        assertEquals(Collections.singletonList(second), dns.lookup(HOST));
+        assertEquals(2, lookups.get());
+        assertTrue(refreshes.isEmpty());
+    }
+
+    @Test
+    public void refreshesAheadOfExpiry() throws UnknownHostException {
+        CachingDns dns = builder().staleWhileRevalidate(0, TimeUnit.MILLISECONDS).build();
+
+        dns.lookup(HOST);
+        answer = second;
+        clock.addAndGet(799);
+        dns.lookup(HOST);
+        assertTrue(refreshes.isEmpty());
+
+        clock.addAndGet(1);
+        assertEquals(Collections.singletonList(first), dns.lookup(HOST));
+        assertEquals(1, refreshes.size());
+        // 刷新进行中时不重复提交
+        dns.lookup(HOST);
+        assertEquals(1, refreshes.size());
+
+        refreshes.poll().run();
+        assertEquals(Collections.singletonList(second), dns.lookup(HOST));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void servesStaleWhileRevalidating() throws UnknownHostException {
+        CachingDns dns = builder().prefetch(false).staleWhileRevalidate(5, TimeUnit.SECONDS).build();
+
+        dns.lookup(HOST);
+        answer = second;
+        clock.addAndGet(3000);
+        assertEquals(Collections.singletonList(first), dns.lookup(HOST));
+        assertEquals(1, refreshes.size());
+        assertEquals(1, lookups.get());
+
+        refreshes.poll().run();
+        assertEquals(Collections.singletonList(second), dns.lookup(HOST));
+    }
+
+    @Test
+    public void failedRefreshKeepsStaleAnswerUntilWindowCloses() throws UnknownHostException {
+        CachingDns dns = builder().prefetch(false).staleWhileRevalidate(5, TimeUnit.SECONDS).build();
+
+        dns.lookup(HOST);
+        answer = null;
+        clock.addAndGet(3000);
+        assertEquals(Collections.singletonList(first), dns.lookup(HOST));
+        refreshes.poll().run();
+        assertEquals(Collections.singletonList(first), dns.lookup(HOST));
+
+        // 窗口内每次都重新尝试刷新
+        assertEquals(1, refreshes.size());
+        refreshes.poll().run();
+        assertEquals(3, lookups.get());
+
+        clock.addAndGet(3000);
+        try {
+            dns.lookup(HOST);
+            fail();
+        } catch (UnknownHostException expected) {
+        }
+    }
+
+    @Test
+    public void cachesFailuresForNegativeTtl() {
+        CachingDns dns = builder().build();
+        answer = null;
+
+        assertUnknown(dns);
+        assertUnknown(dns);
+        assertEquals(1, lookups.get());
+
+        clock.addAndGet(500);
+        assertUnknown(dns);
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void evictForcesResolution() throws UnknownHostException {
+        CachingDns dns = builder().build();
+
+        dns.lookup(HOST);
+        answer = second;
+        dns.evict(HOST);
+        List<InetAddress> addresses = dns.lookup(HOST);
+        assertEquals(Collections.singletonList(second), addresses);
+        assertEquals(2, lookups.get());
+    }
+
+    private static void assertUnknown(CachingDns dns) {
+        try {
+            dns.lookup(HOST);
+            fail();
+        } catch (UnknownHostException expected) {
+        }
+    }
+
+}
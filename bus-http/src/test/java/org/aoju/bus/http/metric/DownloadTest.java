@@ -0,0 +1,389 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.http.metric;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link Download}分段下载的断点续传及暂停、继续、取消
+ * 各段内容由内存中的{@link Download.Ranger}提供
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class DownloadTest {
+
+    private static final int SIZE = 4 * 1024 * 1024;
+    private static final int SEGMENTS = 4;
+    private static final String VALIDATOR = "\"v1\"";
+    private static final byte[] DATA = new byte[SIZE];
+
+    static {
+        new Random(1).nextBytes(DATA);
+    }
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutorService executor;
+    private TaskExecutor taskExecutor;
+    private File file;
+    private File checkpoint;
+
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        taskExecutor = new TaskExecutor(executor, null, null, null, null, null, null);
+        file = new File(folder.getRoot(), "data.bin");
+        checkpoint = new File(file.getPath() + ".seg");
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void downloadsAllSegments() throws Exception {
+        Source source = new Source();
+        Outcome outcome = new Outcome();
+        Download.Ctrl ctrl = download(source, source.stream(0, SIZE - 1), VALIDATOR, outcome).start();
+
+        outcome.awaitSuccess();
+        assertEquals(Download.Ctrl.STATUS__DONE, ctrl.status());
+        assertEquals(SIZE, ctrl.doneBytes());
+        assertArrayEquals(DATA, Files.readAllBytes(file.toPath()));
+        assertFalse(checkpoint.exists());
+        // 第一段使用最初的响应流
+        assertEquals(SEGMENTS - 1, source.opened.size());
+    }
+
+    @Test
+    public void resumesFromCheckpoint() throws Exception {
+        // 最后一段无法获取，其余各段缓慢下载
+        Source first = new Source();
+        first.delayMillis = 1;
+        first.failFrom = SIZE / SEGMENTS * (SEGMENTS - 1);
+        Outcome failed = new Outcome();
+        download(first, first.stream(0, SIZE - 1), VALIDATOR, failed).start();
+
+        assertNotNull(failed.awaitFailure());
+        awaitFile(checkpoint, true);
+        List<String> lines = Files.readAllLines(checkpoint.toPath(), StandardCharsets.UTF_8);
+        assertEquals(Integer.toString(SIZE), lines.get(0));
+        assertEquals(VALIDATOR, lines.get(1));
+        long saved = 0;
+        for (String line : lines.subList(2, lines.size())) {
+            saved += Long.parseLong(line.split(" ")[2]);
+        }
+        assertTrue(saved < SIZE);
+
+        Source second = new Source();
+        Outcome outcome = new Outcome();
+        Download.Ctrl ctrl = download(second, second.stream(0, SIZE - 1), VALIDATOR, outcome).start();
+        outcome.awaitSuccess();
+
+        assertArrayEquals(DATA, Files.readAllBytes(file.toPath()));
+        assertFalse(checkpoint.exists());
+        assertEquals(SIZE, ctrl.doneBytes());
+        // 只请求保存的进度之后的内容，尚未开始的第一段使用最初的响应流
+        for (String line : lines.subList(2, lines.size())) {
+            String[] fields = line.split(" ");
+            long start = Long.parseLong(fields[0]);
+            long end = Long.parseLong(fields[1]);
+            long done = Long.parseLong(fields[2]);
+            if (start + done <= end && start + done > 0) {
+                assertTrue(line, second.opened.contains(start + done));
+            }
+        }
+        assertEquals(SIZE - saved, second.served.get());
+    }
+
+    @Test
+    public void ignoresCheckpointWhenValidatorChanges() throws Exception {
+        Source first = new Source();
+        first.delayMillis = 1;
+        first.failFrom = SIZE / SEGMENTS * (SEGMENTS - 1);
+        Outcome failed = new Outcome();
+        download(first, first.stream(0, SIZE - 1), VALIDATOR, failed).start();
+        failed.awaitFailure();
+        awaitFile(checkpoint, true);
+
+        Source second = new Source();
+        Outcome outcome = new Outcome();
+        download(second, second.stream(0, SIZE - 1), "\"v2\"", outcome).start();
+        outcome.awaitSuccess();
+
+        assertArrayEquals(DATA, Files.readAllBytes(file.toPath()));
+        assertEquals(SIZE, second.served.get());
+    }
+
+    @Test
+    public void pauseSavesProgressAndResumeCompletes() throws Exception {
+        Source source = new Source();
+        source.hold();
+        Outcome outcome = new Outcome();
+        Download.Ctrl ctrl = download(source, source.stream(0, SIZE - 1), VALIDATOR, outcome).start();
+        source.awaitOpened(SEGMENTS - 1);
+
+        ctrl.pause();
+        source.release();
+        awaitFile(checkpoint, true);
+        assertEquals(Download.Ctrl.STATUS__PAUSED, ctrl.status());
+        assertTrue(ctrl.doneBytes() < SIZE);
+        assertFalse(outcome.settled());
+
+        ctrl.resume();
+        outcome.awaitSuccess();
+        assertEquals(Download.Ctrl.STATUS__DONE, ctrl.status());
+        assertArrayEquals(DATA, Files.readAllBytes(file.toPath()));
+        assertFalse(checkpoint.exists());
+    }
+
+    @Test
+    public void cancelWhilePausedDeletesFiles() throws Exception {
+        Source source = new Source();
+        source.hold();
+        Outcome outcome = new Outcome();
+        Download.Ctrl ctrl = download(source, source.stream(0, SIZE - 1), VALIDATOR, outcome).start();
+        source.awaitOpened(SEGMENTS - 1);
+
+        ctrl.pause();
+        source.release();
+        awaitFile(checkpoint, true);
+
+        ctrl.cancel();
+        assertEquals(Download.Ctrl.STATUS__CANCELED, ctrl.status());
+        awaitFile(file, false);
+        awaitFile(checkpoint, false);
+        // 取消后继续无效
+        ctrl.resume();
+        assertEquals(Download.Ctrl.STATUS__CANCELED, ctrl.status());
+        assertFalse(outcome.settled());
+    }
+
+    @Test
+    public void cancelWhileDownloadingDeletesFiles() throws Exception {
+        Source source = new Source();
+        source.hold();
+        Outcome outcome = new Outcome();
+        Download.Ctrl ctrl = download(source, source.stream(0, SIZE - 1), VALIDATOR, outcome).start();
+        source.awaitOpened(SEGMENTS - 1);
+
+        ctrl.cancel();
+        source.release();
+        awaitFile(file, false);
+        assertEquals(Download.Ctrl.STATUS__CANCELED, ctrl.status());
+        assertFalse(checkpoint.exists());
+        assertFalse(outcome.settled());
+    }
+
+    @Test
+    public void survivesRapidPauseAndResume() throws Exception {
+        Source source = new Source();
+        source.delayMillis = 1;
+        Outcome outcome = new Outcome();
+        Download.Ctrl ctrl = download(source, source.stream(0, SIZE - 1), VALIDATOR, outcome).start();
+
+        for (int i = 0; i < 50 && !outcome.settled(); i++) {
+            ctrl.pause();
+            Thread.sleep(2);
+            ctrl.resume();
+            Thread.sleep(2);
+        }
+        outcome.awaitSuccess();
+        assertArrayEquals(DATA, Files.readAllBytes(file.toPath()));
+        assertFalse(checkpoint.exists());
+    }
+
+    @Test
+    public void progressListenerFailureEndsDownload() throws Exception {
+        Source source = new Source();
+        Outcome outcome = new Outcome();
+        Download download = download(source, source.stream(0, SIZE - 1), VALIDATOR, outcome);
+        download.setProgressListener((done, total, finished) -> {
+            throw new IllegalStateException("listener");
+        });
+        Download.Ctrl ctrl = download.start();
+
+        IOException failure = outcome.awaitFailure();
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertEquals(Download.Ctrl.STATUS__ERROR, ctrl.status());
+        awaitFile(checkpoint, true);
+    }
+
+    @Test
+    public void rangerRuntimeFailureEndsDownload() throws Exception {
+        Source source = new Source();
+        source.runtimeFailure = true;
+        source.failFrom = SIZE / SEGMENTS;
+        Outcome outcome = new Outcome();
+        Download.Ctrl ctrl = download(source, source.stream(0, SIZE - 1), VALIDATOR, outcome).start();
+
+        IOException failure = outcome.awaitFailure();
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertEquals(Download.Ctrl.STATUS__ERROR, ctrl.status());
+        // 出错后可按保存的进度继续
+        awaitFile(checkpoint, true);
+    }
+
+    private Download download(Source source, InputStream input, String validator, Outcome outcome) {
+        return new Download(file, input, taskExecutor, 0)
+                .setSegments(SEGMENTS)
+                .setRanger(SIZE, validator, source)
+                .setOnSuccess(outcome::success)
+                .setOnFailure(outcome::failure);
+    }
+
+    private static void awaitFile(File file, boolean exists) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (file.exists() != exists) {
+            assertTrue(file + (exists ? " not created" : " not deleted"), System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * 按范围提供{@link #DATA}，可以延迟、暂停输出或在指定位置之后失败
+     */
+    private static final class Source implements Download.Ranger {
+
+        final List<Long> opened = new CopyOnWriteArrayList<>();
+        final AtomicLong served = new AtomicLong();
+        volatile long failFrom = Long.MAX_VALUE;
+        volatile boolean runtimeFailure;
+        volatile long delayMillis;
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        @Override
+        public InputStream open(long from, long to) throws IOException {
+            if (from >= failFrom) {
+                if (runtimeFailure) {
+                    throw new IllegalStateException("range " + from);
+                }
+                throw new IOException("range " + from);
+            }
+            opened.add(from);
+            return stream(from, to);
+        }
+
+        void hold() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        void awaitOpened(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (opened.size() < count) {
+                assertTrue(System.nanoTime() < deadline);
+                Thread.sleep(5);
+            }
+        }
+
+        InputStream stream(long from, long to) {
+            return new InputStream() {
+                long position = from;
+
+                @Override
+                public int read() {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    try {
+                        gate.await();
+                        if (delayMillis > 0) {
+                            Thread.sleep(delayMillis);
+                        }
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                    if (position > to) {
+                        return -1;
+                    }
+                    int count = (int) Math.min(Math.min(len, 16 * 1024), to - position + 1);
+                    System.arraycopy(DATA, (int) position, b, off, count);
+                    position += count;
+                    served.addAndGet(count);
+                    return count;
+                }
+            };
+        }
+    }
+
+    private static final class Outcome {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        volatile boolean succeeded;
+
+        void success(File file) {
+            succeeded = true;
+            done.countDown();
+        }
+
+        void failure(Download.Failure result) {
+            failure.set(result.getException());
+            done.countDown();
+        }
+
+        boolean settled() {
+            return done.getCount() == 0;
+        }
+
+        void awaitSuccess() throws InterruptedException {
+            assertTrue("download not finished", done.await(30, TimeUnit.SECONDS));
+            assertNull(failure.get());
+            assertTrue(succeeded);
+        }
+
+        IOException awaitFailure() throws InterruptedException {
+            assertTrue("download not failed", done.await(30, TimeUnit.SECONDS));
+            assertNotNull(failure.get());
+            return failure.get();
+        }
+    }
+
+}
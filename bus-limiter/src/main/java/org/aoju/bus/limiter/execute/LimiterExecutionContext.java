@@ -80,6 +80,23 @@ public class LimiterExecutionContext {
         this.key = generateKey();
     }
 
+    /**
+     * @param metadata    元数据
+     * @param args        展开后的参数
+     * @param target      目标对象
+     * @param beanFactory beanFactory
+     * @param key         已计算的key
+     */
+    public LimiterExecutionContext(LimitedResourceMetadata metadata, Object[] args, Object target, BeanFactory beanFactory, Object key) {
+        this.metadata = metadata;
+        this.args = args;
+        this.target = target;
+        this.injectArgs = generateInjectArgs();
+        this.beanFactory = beanFactory;
+        this.evaluator = new LimiterOperationExpressionEvaluator();
+        this.key = key;
+    }
+
     public static HashMap<String, Object> getEmptyMap() {
         return emptyMap;
     }
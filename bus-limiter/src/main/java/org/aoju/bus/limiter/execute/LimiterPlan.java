@@ -0,0 +1,198 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.execute;
+
+import org.aoju.bus.core.lang.Assert;
+import org.aoju.bus.core.lang.Symbol;
+import org.aoju.bus.core.toolkit.CollKit;
+import org.aoju.bus.core.toolkit.ObjectKit;
+import org.aoju.bus.core.toolkit.StringKit;
+import org.aoju.bus.limiter.Injector;
+import org.aoju.bus.limiter.expression.LimiterOperationExpressionEvaluator;
+import org.aoju.bus.limiter.metadata.LimitedResourceMetadata;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.InlineList;
+import org.springframework.expression.spel.ast.InlineMap;
+import org.springframework.expression.spel.ast.Literal;
+import org.springframework.expression.spel.standard.SpelExpression;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 某个方法在某个目标类上的限制计划
+ * 首次调用时解析注解对应的元数据并编译key表达式, 常量key直接算出结果;
+ * 之后每次调用只计算非常量的key, 全部为常量时不产生任何对象
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class LimiterPlan {
+
+    private final Class<?> targetClass;
+
+    private final Method method;
+
+    private final LimitedResourceMetadata[] metadata;
+
+    /**
+     * 非常量key的表达式, 常量key对应位置为null
+     */
+    private final Expression[] expressions;
+
+    /**
+     * 常量key, 全部为常量时直接作为每次调用的key
+     */
+    private final Object[] constantKeys;
+
+    private final boolean constant;
+
+    private final LimiterOperationExpressionEvaluator evaluator;
+
+    private final BeanFactory beanFactory;
+
+    /**
+     * 同一方法在其他目标类上的计划
+     */
+    private final LimiterPlan next;
+
+    public LimiterPlan(List<LimitedResourceMetadata> metadata, Class<?> targetClass, Method method,
+                       LimiterOperationExpressionEvaluator evaluator, BeanFactory beanFactory, LimiterPlan next) {
+        this.targetClass = targetClass;
+        this.method = method;
+        this.metadata = metadata.toArray(new LimitedResourceMetadata[0]);
+        this.expressions = new Expression[this.metadata.length];
+        this.constantKeys = new Object[this.metadata.length];
+        this.evaluator = evaluator;
+        this.beanFactory = beanFactory;
+        this.next = next;
+
+        boolean constant = true;
+        for (int i = 0; i < this.metadata.length; i++) {
+            String key = this.metadata[i].getLimitedResource().getKey();
+            if (!StringKit.hasText(key)) {
+                constantKeys[i] = targetClass.getName() + Symbol.SHAPE + method.getName();
+                continue;
+            }
+            Expression expression = evaluator.parseExpression(key);
+            Object value = isConstant(expression) ? expression.getValue() : null;
+            if (value != null) {
+                constantKeys[i] = value;
+            } else {
+                expressions[i] = expression;
+                constant = false;
+            }
+        }
+        this.constant = constant;
+    }
+
+    private static boolean isConstant(Expression expression) {
+        if (!(expression instanceof SpelExpression)) {
+            return false;
+        }
+        SpelNode node = ((SpelExpression) expression).getAST();
+        return node instanceof Literal
+                || (node instanceof InlineList && ((InlineList) node).isConstant())
+                || (node instanceof InlineMap && ((InlineMap) node).isConstant());
+    }
+
+    public Class<?> getTargetClass() {
+        return targetClass;
+    }
+
+    public LimiterPlan getNext() {
+        return next;
+    }
+
+    public boolean isEmpty() {
+        return metadata.length == 0;
+    }
+
+    public LimitedResourceMetadata[] getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * 展开可变参数, 与{@link LimiterExecutionContext}一致
+     *
+     * @param args 调用参数
+     * @return 参数
+     */
+    public Object[] extractArgs(Object[] args) {
+        if (!method.isVarArgs()) {
+            return args;
+        }
+        Object[] varArgs = ObjectKit.toObjectArray(args[args.length - 1]);
+        Object[] combinedArgs = new Object[args.length - 1 + varArgs.length];
+        System.arraycopy(args, 0, combinedArgs, 0, args.length - 1);
+        System.arraycopy(varArgs, 0, combinedArgs, args.length - 1, varArgs.length);
+        return combinedArgs;
+    }
+
+    /**
+     * 计算各个限制器的key
+     *
+     * @param args   展开后的参数
+     * @param target 目标对象
+     * @return key, 全部为常量时返回共享的数组, 调用方不可修改
+     */
+    public Object[] keys(Object[] args, Object target) {
+        if (constant) {
+            return constantKeys;
+        }
+        Object[] keys = constantKeys.clone();
+        for (int i = 0; i < expressions.length; i++) {
+            if (expressions[i] != null) {
+                LimitedResourceMetadata current = metadata[i];
+                EvaluationContext evaluationContext = evaluator.createEvaluationContext(current.getLimiter(), method, args,
+                        target, targetClass, method, injectArgs(current, args), beanFactory);
+                Object key = expressions[i].getValue(evaluationContext);
+                Assert.notNull(key, "key值计算为null!");
+                keys[i] = key;
+            }
+        }
+        return keys;
+    }
+
+    private static Map<String, Object> injectArgs(LimitedResourceMetadata metadata, Object[] args) {
+        Collection<Injector> argumentInjectors = metadata.getArgumentInjectors();
+        if (CollKit.isEmpty(argumentInjectors)) {
+            return LimiterExecutionContext.getEmptyMap();
+        }
+        Map<String, Object> retVal = new HashMap<>();
+        for (Injector argumentInjector : argumentInjectors) {
+            retVal.putAll(argumentInjector.inject(args));
+        }
+        return retVal;
+    }
+
+}
@@ -35,6 +35,8 @@ import org.springframework.core.DefaultParameterNameDiscoverer;
 import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 
 import java.lang.reflect.Method;
@@ -48,7 +50,8 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class LimiterOperationExpressionEvaluator {
 
-    private final SpelExpressionParser parser = new SpelExpressionParser();
+    private final SpelExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, LimiterOperationExpressionEvaluator.class.getClassLoader()));
 
     private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
 
@@ -75,6 +78,16 @@ public class LimiterOperationExpressionEvaluator {
         return getExpression(methodKey, keyExpression).getValue(evalContext);
     }
 
+    /**
+     * 解析表达式, 多次执行后编译为字节码
+     *
+     * @param expression 表达式
+     * @return 解析结果
+     */
+    public Expression parseExpression(String expression) {
+        return this.parser.parseExpression(expression);
+    }
+
     protected Expression getExpression(AnnotatedElementKey elementKey, String expression) {
 
         ExpressionKey expressionKey = new ExpressionKey(elementKey, expression);
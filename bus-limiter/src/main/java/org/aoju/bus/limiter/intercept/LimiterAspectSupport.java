@@ -27,6 +27,8 @@ package org.aoju.bus.limiter.intercept;
 import org.aoju.bus.core.toolkit.CollKit;
 import org.aoju.bus.limiter.execute.LimitContextsValueWrapper;
 import org.aoju.bus.limiter.execute.LimiterExecutionContext;
+import org.aoju.bus.limiter.execute.LimiterPlan;
+import org.aoju.bus.limiter.expression.LimiterOperationExpressionEvaluator;
 import org.aoju.bus.limiter.metadata.LimitedResourceMetadata;
 import org.aoju.bus.limiter.metadata.LimitedResourceMetadataCache;
 import org.aoju.bus.limiter.resource.LimitedResource;
@@ -42,6 +44,9 @@ import org.springframework.beans.factory.SmartInitializingSingleton;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 实际的advisor
@@ -61,6 +66,10 @@ public abstract class LimiterAspectSupport implements BeanFactoryAware, Initiali
 
     private LimitedResourceMetadataCache limitedResourceMetadataCache;
 
+    private final LimiterOperationExpressionEvaluator evaluator = new LimiterOperationExpressionEvaluator();
+
+    private final Map<Method, LimiterPlan> limiterPlans = new ConcurrentHashMap<>(1024);
+
     /**
      * 执行
      *
@@ -75,30 +84,80 @@ public abstract class LimiterAspectSupport implements BeanFactoryAware, Initiali
 
         if (this.initialized) {
             Class<?> targetClass = AopProxyUtils.ultimateTargetClass(target);
-            LimitedResourceSource limitedResourceSource = getLimitedResourceSource();
-            if (limitedResourceSource != null) {
-                Collection<LimitedResource> limitedResources = limitedResourceSource.getLimitedResource(targetClass, method);
-                if (!CollKit.isEmpty(limitedResources)) {
-                    Collection<LimiterExecutionContext> contexts = getLimiterOperationContexts(limitedResources, method, args, target, targetClass);
-                    LimitContextsValueWrapper limitContextsValueWrapper = limitContexts(contexts);
-                    if (limitContextsValueWrapper.value()) {
+            LimiterPlan plan = getLimiterPlan(targetClass, method);
+            if (plan != null && !plan.isEmpty()) {
+                LimitedResourceMetadata[] metadata = plan.getMetadata();
+                Object[] limiterArgs = plan.extractArgs(args);
+                Object[] keys = plan.keys(limiterArgs, target);
+                int acquired = 0;
+                try {
+                    for (; acquired < metadata.length; acquired++) {
+                        LimitedResourceMetadata current = metadata[acquired];
+                        Object key = keys[acquired];
+                        boolean ret;
+                        Throwable throwable = null;
                         try {
-                            return invocation.proceed();
+                            ret = current.getLimiter().limit(key, current.getLimiterParameters());
                         } catch (Throwable e) {
-                            throw e;
-                        } finally {
-                            releaseContexts(contexts);
+                            throwable = e;
+                            ret = current.getErrorHandler().resolve(e,
+                                    new LimiterExecutionContext(current, limiterArgs, target, this.beanFactory, key));
+                        }
+                        if (!ret) {
+                            return current.getFallback().resolve(current.getTargetMethod(), current.getTargetClass(),
+                                    limiterArgs, current.getLimitedResource(), target);
+                        }
+                        if (throwable != null) {
+                            return null;
                         }
-                    } else {
-                        return limitContextsValueWrapper.getLimiterFailResolveResult();
                     }
-
+                    return invocation.proceed();
+                } finally {
+                    for (int i = 0; i < acquired; i++) {
+                        metadata[i].getLimiter().release(keys[i], metadata[i].getLimiterParameters());
+                    }
                 }
             }
         }
         return invocation.proceed();
     }
 
+    /**
+     * 获取方法的限制计划, 首次调用时创建
+     * 以方法为键, 同一方法在多个目标类上的计划串成链表, 查找时不创建对象
+     *
+     * @param targetClass 目标类
+     * @param method      方法
+     * @return 限制计划
+     */
+    protected LimiterPlan getLimiterPlan(Class<?> targetClass, Method method) {
+        LimiterPlan plan = findLimiterPlan(this.limiterPlans.get(method), targetClass);
+        if (plan != null) {
+            return plan;
+        }
+        LimitedResourceSource limitedResourceSource = getLimitedResourceSource();
+        if (limitedResourceSource == null) {
+            return null;
+        }
+        List<LimitedResourceMetadata> metadata = new ArrayList<>();
+        Collection<LimitedResource> limitedResources = limitedResourceSource.getLimitedResource(targetClass, method);
+        if (!CollKit.isEmpty(limitedResources)) {
+            for (LimitedResource limitedResource : limitedResources) {
+                metadata.add(limitedResourceMetadataCache.getLimitedResourceMetadata(limitedResource, method, targetClass));
+            }
+        }
+        // 元数据在锁外创建, 其中获取bean时可能再次进入切面
+        return findLimiterPlan(this.limiterPlans.compute(method, (k, head) -> findLimiterPlan(head, targetClass) != null ? head
+                : new LimiterPlan(metadata, targetClass, method, this.evaluator, this.beanFactory, head)), targetClass);
+    }
+
+    private static LimiterPlan findLimiterPlan(LimiterPlan plan, Class<?> targetClass) {
+        while (plan != null && plan.getTargetClass() != targetClass) {
+            plan = plan.getNext();
+        }
+        return plan;
+    }
+
     @Override
     public void afterSingletonsInstantiated() {
         this.initialized = true;
@@ -150,6 +209,7 @@ public abstract class LimiterAspectSupport implements BeanFactoryAware, Initiali
 
     public void setLimitedResourceSource(LimitedResourceSource limitedResourceSource) {
         this.limitedResourceSource = limitedResourceSource;
+        this.limiterPlans.clear();
     }
 
     @Override
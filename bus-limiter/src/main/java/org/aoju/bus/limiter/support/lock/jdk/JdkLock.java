@@ -24,14 +24,21 @@
  ********************************************************************************/
 package org.aoju.bus.limiter.support.lock.jdk;
 
+import org.aoju.bus.core.lang.Symbol;
 import org.aoju.bus.logger.Logger;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * 基于ConcurrentHashMap和ReentrantLock实现的一个简单的锁组件
+ * 基于ConcurrentHashMap实现的键锁组件
+ * 每个键对应一个带引用计数的可重入锁, 最后一个使用者释放后才从锁表移除,
+ * 保证同一时刻同一键只有一个锁实例; 支持等待超时、租期和公平交接,
+ * 竞争情况按键前缀(第一个冒号之前的部分)统计, 没有冒号的键及超出前缀数上限的键合并统计
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -39,55 +46,148 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class JdkLock extends org.aoju.bus.limiter.support.lock.Lock {
 
+    /**
+     * 竞争日志的最小间隔
+     */
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 单独统计的键前缀数上限
+     */
+    private static final int MAX_STATS_PREFIXES = 1024;
+
+    /**
+     * 没有前缀或超出上限的键共用的统计项
+     */
+    public static final String OTHER_PREFIX = Symbol.STAR;
+
     private String lockName;
 
-    private ConcurrentHashMap<Object, Lock> locks;
+    private ConcurrentHashMap<Object, KeyedLock> locks;
+
+    private final long waitNanos;
+
+    private final long leaseNanos;
+
+    private final boolean fair;
+
+    private final Map<String, LockStats> stats = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextLog = new AtomicLong(System.nanoTime());
+
+    private final LongAdder suppressed = new LongAdder();
 
     public JdkLock(String lockName, int initialCapacity, float loadFactor, int concurrencyLevel) {
         this.lockName = lockName;
-        locks = new ConcurrentHashMap<>(initialCapacity, loadFactor, concurrencyLevel);
+        this.locks = new ConcurrentHashMap<>(initialCapacity, loadFactor, concurrencyLevel);
+        this.waitNanos = 0;
+        this.leaseNanos = 0;
+        this.fair = false;
     }
 
     public JdkLock(String lockName) {
+        this(lockName, 0, 0, TimeUnit.MILLISECONDS, false);
+    }
+
+    /**
+     * @param lockName  名称
+     * @param waitTime  获取锁的最长等待时间, 0为不等待
+     * @param leaseTime 租期, 持有超过该时间后可被其他线程接管, 0为不限
+     * @param unit      时间单位
+     * @param fair      是否按等待顺序获取
+     */
+    public JdkLock(String lockName, long waitTime, long leaseTime, TimeUnit unit, boolean fair) {
         this.lockName = lockName;
-        locks = new ConcurrentHashMap<>();
+        this.locks = new ConcurrentHashMap<>();
+        this.waitNanos = unit.toNanos(waitTime);
+        this.leaseNanos = unit.toNanos(leaseTime);
+        this.fair = fair;
     }
 
     @Override
     public boolean lock(Object key) {
-        // 对于一个良好的资源 竞态条件的不应该频繁产生
-        Lock lock = new ReentrantLock();
-        Lock oldLock = locks.putIfAbsent(key, lock);
-        if (oldLock != null) {
-            boolean ret = oldLock.tryLock();
-            if (ret) {
-                Logger.info("acquire lock on  {}  success", key);
-            } else {
-                Logger.info("acquire lock on {} fail", key);
-            }
-            return ret;
-        } else {
-            boolean ret = lock.tryLock();
-            if (ret) {
-                Logger.info("acquire lock on  {}  success", key);
-            } else {
-                Logger.info("acquire lock on {} fail", key);
+        return tryLock(key, waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 在超时时间内获取锁
+     *
+     * @param key     键
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return 是否获取成功
+     */
+    public boolean tryLock(Object key, long timeout, TimeUnit unit) {
+        KeyedLock lock = locks.compute(key, (k, current) -> {
+            if (current == null) {
+                current = new KeyedLock(fair, leaseNanos);
             }
-            return ret;
+            current.refs++;
+            return current;
+        });
+
+        long start = System.nanoTime();
+        int result = lock.acquire(unit.toNanos(timeout));
+        if (result == KeyedLock.FAILED) {
+            dereference(key, lock);
+        }
+        if (result != KeyedLock.ACQUIRED) {
+            contended(key, result, System.nanoTime() - start);
         }
+        return result != KeyedLock.FAILED;
     }
 
     @Override
     public void unlock(Object key) {
-        Lock lock = locks.remove(key);
+        KeyedLock lock = locks.get(key);
         if (lock == null) {
             throw new RuntimeException("未找到该锁！");
         }
-        lock.unlock();
+        if (!lock.release()) {
+            // 租期已过被其他线程接管, 或当前线程未持有
+            Logger.warn("lock on {} is not held by current thread, lease may have expired", key);
+        }
+        dereference(key, lock);
+    }
+
+    /**
+     * 获取各个键前缀的竞争统计
+     *
+     * @return 键前缀与统计, 只读; 没有前缀或超出上限的键记在{@link #OTHER_PREFIX}下
+     */
+    public Map<String, LockStats> getStats() {
+        return Collections.unmodifiableMap(stats);
     }
 
     @Override
     public String getLimiterName() {
         return lockName;
     }
+
+    private void dereference(Object key, KeyedLock lock) {
+        locks.computeIfPresent(key, (k, current) -> current == lock && --current.refs == 0 ? null : current);
+    }
+
+    private void contended(Object key, int result, long waited) {
+        String text = String.valueOf(key);
+        int index = text.indexOf(Symbol.C_COLON);
+        String prefix = index < 0 ? OTHER_PREFIX : text.substring(0, index);
+        LockStats current = stats.get(prefix);
+        if (current == null) {
+            current = stats.computeIfAbsent(stats.size() < MAX_STATS_PREFIXES ? prefix : OTHER_PREFIX, k -> new LockStats());
+        }
+        current.record(result, waited);
+
+        // 竞争激烈时每秒最多输出一条日志
+        long now = System.nanoTime();
+        long next = nextLog.get();
+        if (now - next >= 0 && nextLog.compareAndSet(next, now + LOG_INTERVAL_NANOS)) {
+            long count = suppressed.sumThenReset();
+            Logger.info("acquire lock on {} {}, {} similar events suppressed", key,
+                    result == KeyedLock.FAILED ? "fail" : result == KeyedLock.TAKEN_OVER ? "took over expired lease" : "success after wait", count);
+        } else {
+            suppressed.increment();
+        }
+    }
+
 }
@@ -0,0 +1,139 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.lock.jdk;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个键上的可重入锁
+ * 支持超时等待、租期和公平交接: 超过租期未释放的锁可被等待者接管,
+ * 公平模式下只有最早等待的线程能获取锁
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+class KeyedLock {
+
+    static final int FAILED = 0;
+    static final int ACQUIRED = 1;
+    static final int ACQUIRED_AFTER_WAIT = 2;
+    static final int TAKEN_OVER = 3;
+
+    private final boolean fair;
+
+    private final long leaseNanos;
+
+    private final ArrayDeque<Thread> waiters;
+
+    /**
+     * 引用计数, 由锁表在compute中维护, 为0时从锁表移除
+     */
+    int refs;
+
+    private Thread owner;
+
+    private int holds;
+
+    private long lockedAt;
+
+    KeyedLock(boolean fair, long leaseNanos) {
+        this.fair = fair;
+        this.leaseNanos = leaseNanos;
+        this.waiters = fair ? new ArrayDeque<>() : null;
+    }
+
+    /**
+     * 在超时时间内获取锁
+     *
+     * @param timeoutNanos 超时时间, 不大于0时不等待
+     * @return 获取结果
+     */
+    synchronized int acquire(long timeoutNanos) {
+        Thread current = Thread.currentThread();
+        if (owner == current) {
+            holds++;
+            return ACQUIRED;
+        }
+
+        long now = System.nanoTime();
+        long deadline = now + timeoutNanos;
+        boolean waited = false;
+        boolean queued = false;
+        try {
+            for (; ; ) {
+                boolean expired = owner != null && leaseNanos > 0 && now - lockedAt > leaseNanos;
+                if ((owner == null || expired) && (!fair || waiters.isEmpty() || waiters.peekFirst() == current)) {
+                    owner = current;
+                    holds = 1;
+                    lockedAt = now;
+                    return expired ? TAKEN_OVER : waited ? ACQUIRED_AFTER_WAIT : ACQUIRED;
+                }
+
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    return FAILED;
+                }
+                if (fair && !queued) {
+                    waiters.addLast(current);
+                    queued = true;
+                }
+                if (owner != null && leaseNanos > 0) {
+                    remaining = Math.max(1, Math.min(remaining, lockedAt + leaseNanos - now + 1));
+                }
+                waited = true;
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                now = System.nanoTime();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FAILED;
+        } finally {
+            if (queued) {
+                waiters.remove(current);
+                // 队首离开后让下一个等待者重新检查
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 释放锁
+     *
+     * @return 当前线程不再持有该锁(如租期已过被接管)时返回false
+     */
+    synchronized boolean release() {
+        if (owner != Thread.currentThread()) {
+            return false;
+        }
+        if (--holds == 0) {
+            owner = null;
+            notifyAll();
+        }
+        return true;
+    }
+
+}
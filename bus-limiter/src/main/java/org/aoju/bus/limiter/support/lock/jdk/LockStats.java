@@ -0,0 +1,90 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.lock.jdk;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 某一类键上的锁竞争统计
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class LockStats {
+
+    private final LongAdder contended = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder takenOver = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    void record(int result, long waitNanos) {
+        contended.increment();
+        this.waitNanos.add(waitNanos);
+        if (result == KeyedLock.FAILED) {
+            failed.increment();
+        } else if (result == KeyedLock.TAKEN_OVER) {
+            takenOver.increment();
+        }
+    }
+
+    /**
+     * @return 锁已被占用的次数
+     */
+    public long getContended() {
+        return contended.sum();
+    }
+
+    /**
+     * @return 获取失败的次数
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return 租期已过被接管的次数
+     */
+    public long getTakenOver() {
+        return takenOver.sum();
+    }
+
+    /**
+     * @return 累计等待时长(纳秒)
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "LockStats{contended=" + getContended() + ", failed=" + getFailed()
+                + ", takenOver=" + getTakenOver() + ", waitNanos=" + getWaitNanos() + '}';
+    }
+
+}
@@ -0,0 +1,197 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.peak.jdk;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按延迟自适应的并发上限
+ * 参照Gradient2: 以长期平均延迟与当前窗口平均延迟之比作为梯度,
+ * 延迟升高时按比例收缩上限, 延迟稳定时每个窗口增加 sqrt(上限) 的排队余量;
+ * 并发未达上限一半时不调整, 避免低负载下上限无限上涨
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class GradientLimit {
+
+    /**
+     * 允许的延迟升高比例, 超过后开始收缩
+     */
+    private static final double TOLERANCE = 1.5;
+
+    /**
+     * 每个窗口向新上限靠拢的比例
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * 长期平均延迟的窗口数
+     */
+    private static final int LONG_WINDOW = 600;
+
+    private static final long WINDOW_NANOS = 100_000_000L;
+
+    private static final int WINDOW_SAMPLES = 10;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile int limit;
+
+    private double estimatedLimit;
+
+    private double longRtt;
+
+    private long windowStart;
+
+    private long windowRtt;
+
+    private int windowSamples;
+
+    private int windowMaxInFlight;
+
+    private volatile long lastAccess;
+
+    /**
+     * @param initialLimit 初始上限
+     * @param minLimit     最小上限
+     * @param maxLimit     最大上限
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+        this.windowStart = System.nanoTime();
+        this.lastAccess = windowStart;
+    }
+
+    /**
+     * 当前并发低于上限时占用一个名额
+     *
+     * @return 是否占用成功
+     */
+    boolean tryAcquire() {
+        lastAccess = System.nanoTime();
+        for (; ; ) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放名额并记录本次耗时
+     *
+     * @param startNanos 获取名额的时间
+     */
+    void release(long startNanos) {
+        int current = inFlight.getAndDecrement();
+        long now = System.nanoTime();
+        sample(now - startNanos, current, now);
+    }
+
+    private synchronized void sample(long rtt, int current, long now) {
+        windowRtt += rtt;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, current);
+        if (now - windowStart < WINDOW_NANOS || windowSamples < WINDOW_SAMPLES) {
+            return;
+        }
+
+        double shortRtt = Math.max(1, (double) windowRtt / windowSamples);
+        int maxInFlight = windowMaxInFlight;
+        windowStart = now;
+        windowRtt = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+
+        if (longRtt == 0) {
+            longRtt = shortRtt;
+        } else {
+            longRtt += (shortRtt - longRtt) * 2 / (LONG_WINDOW + 1);
+        }
+        // 延迟长期偏低时(如下游扩容后)加速长期均值的回落
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        if (maxInFlight < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.min(maxLimit, Math.max(minLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    boolean matches(int maxLimit) {
+        return this.maxLimit == maxLimit;
+    }
+
+    boolean isIdle(long now, long expireNanos) {
+        return inFlight.get() == 0 && now - lastAccess > expireNanos;
+    }
+
+    /**
+     * @return 当前并发上限
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return 正在执行的请求数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return 累计拒绝次数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+}
@@ -0,0 +1,166 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.peak.jdk;
+
+import org.aoju.bus.limiter.support.peak.PeakLimiter;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 自适应并发限制
+ * 注解中的max作为并发上限的最大值, 实际上限由{@link GradientLimit}按执行耗时调整;
+ * 耗时从获取到释放计算, 二者须在同一线程中成对调用, 与切面的执行方式一致
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class JdkAdaptivePeakLimiter extends PeakLimiter {
+
+    private final String limiterName;
+
+    private final int initialLimit;
+
+    private final int minLimit;
+
+    private final long expireNanos;
+
+    private final Map<Object, GradientLimit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * 当前线程已获取、尚未释放的名额
+     */
+    private final ThreadLocal<Deque<Pending>> pending = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private volatile long nextSweep;
+
+    public JdkAdaptivePeakLimiter(String limiterName) {
+        this(limiterName, 20, 1, 10, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param limiterName       名称
+     * @param initialLimit      初始上限, 不超过注解中的max
+     * @param minLimit          最小上限
+     * @param expireAfterAccess 空闲键的过期时间
+     * @param unit              时间单位
+     */
+    public JdkAdaptivePeakLimiter(String limiterName, int initialLimit, int minLimit, long expireAfterAccess, TimeUnit unit) {
+        this.limiterName = limiterName;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.expireNanos = Math.max(1, unit.toNanos(expireAfterAccess));
+        this.nextSweep = System.nanoTime() + expireNanos;
+    }
+
+    @Override
+    public boolean acquire(Object key, int max) {
+        GradientLimit limit = get(key, max);
+        if (!limit.tryAcquire()) {
+            return false;
+        }
+        pending.get().addLast(new Pending(key, limit, System.nanoTime()));
+        return true;
+    }
+
+    @Override
+    public void release(Object key, int max) {
+        Iterator<Pending> iterator = pending.get().descendingIterator();
+        while (iterator.hasNext()) {
+            Pending entry = iterator.next();
+            if (Objects.equals(entry.key, key)) {
+                iterator.remove();
+                entry.limit.release(entry.startNanos);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 获取键当前的并发状态
+     *
+     * @param key 键
+     * @return 并发状态, 不存在时为null
+     */
+    public GradientLimit getLimit(Object key) {
+        return limits.get(key);
+    }
+
+    /**
+     * @return 所有键的并发状态, 只读
+     */
+    public Map<Object, GradientLimit> getLimits() {
+        return Collections.unmodifiableMap(limits);
+    }
+
+    @Override
+    public String getLimiterName() {
+        return limiterName;
+    }
+
+    private GradientLimit get(Object key, int max) {
+        GradientLimit limit = limits.get(key);
+        if (limit == null || !limit.matches(max)) {
+            limit = limits.compute(key, (k, old) ->
+                    old != null && old.matches(max) ? old : new GradientLimit(initialLimit, minLimit, max));
+        }
+        long now = System.nanoTime();
+        if (now - nextSweep > 0 && sweeping.compareAndSet(false, true)) {
+            try {
+                nextSweep = now + expireNanos;
+                limits.values().removeIf(value -> value.isIdle(now, expireNanos));
+            } finally {
+                sweeping.set(false);
+            }
+        }
+        return limit;
+    }
+
+    private static class Pending {
+
+        private final Object key;
+
+        private final GradientLimit limit;
+
+        private final long startNanos;
+
+        Pending(Object key, GradientLimit limit, long startNanos) {
+            this.key = key;
+            this.limit = limit;
+            this.startNanos = startNanos;
+        }
+    }
+
+}
@@ -59,7 +59,7 @@ public class JdkPeakLimiter extends PeakLimiter {
     @Override
     public boolean acquire(Object key, int max) {
         CacheKey cacheKey = new CacheKey(key, max);
-        return cache.getIfPresent(cacheKey).tryAcquire();
+        return cache.getUnchecked(cacheKey).tryAcquire();
     }
 
     @Override
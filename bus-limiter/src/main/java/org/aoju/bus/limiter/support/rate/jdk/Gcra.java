@@ -0,0 +1,69 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.jdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 通用信元速率算法(GCRA)
+ * 只保存理论到达时间(TAT), 每个许可使TAT推后一个发放间隔,
+ * TAT超出当前时间的部分不大于容量对应的时长即放行; 效果与令牌桶等价, 状态只有一个long
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class Gcra extends RateLimiterObject {
+
+    /**
+     * 允许TAT领先当前时间的最大时长, 即容量 * 发放间隔
+     */
+    private final long limitNanos;
+
+    private final AtomicLong tat;
+
+    public Gcra(double rate, long capacity) {
+        super(rate, capacity);
+        this.limitNanos = toNanos(capacity / rate);
+        this.tat = new AtomicLong(System.nanoTime());
+    }
+
+    @Override
+    protected long reserve(long permits, long now, long maxWaitNanos) {
+        long increment = toNanos(permits / rate);
+        for (; ; ) {
+            long current = tat.get();
+            long next = Math.max(current, now) + increment;
+            long wait = next - limitNanos - now;
+            if (wait > maxWaitNanos) {
+                return -1 - wait;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+}
@@ -24,16 +24,17 @@
  ********************************************************************************/
 package org.aoju.bus.limiter.support.rate.jdk;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import org.aoju.bus.limiter.support.rate.RateLimiter;
 
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 一个RateLimiter组件
+ * 按键与速率、容量保存限制器, 同一个键的不同注解参数互不影响; 长期未访问的限制器在后续请求中顺带清理
  *
  * @author Kimi Liu
  * @version 6.1.1
@@ -43,8 +44,15 @@ public class JdkRateLimiter extends RateLimiter {
 
     private String rateLimiterName;
 
-    private LoadingCache<CacheKey, RateLimiterObject>
-            cache;
+    private final Algorithm algorithm;
+
+    private final long expireNanos;
+
+    private final Map<CacheKey, RateLimiterObject> cache = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private volatile long nextSweep;
 
     /**
      * @param rateLimiterName       名称
@@ -52,23 +60,53 @@ public class JdkRateLimiter extends RateLimiter {
      * @param expireAfterAccessUnit 过期数量
      */
     public JdkRateLimiter(String rateLimiterName, long expireAfterAccess, TimeUnit expireAfterAccessUnit) {
+        this(rateLimiterName, expireAfterAccess, expireAfterAccessUnit, Algorithm.TOKEN_BUCKET);
+    }
+
+    /**
+     * @param rateLimiterName       名称
+     * @param expireAfterAccess     过期时间
+     * @param expireAfterAccessUnit 过期数量
+     * @param algorithm             限流算法
+     */
+    public JdkRateLimiter(String rateLimiterName, long expireAfterAccess, TimeUnit expireAfterAccessUnit, Algorithm algorithm) {
         this.rateLimiterName = rateLimiterName;
-        this.cache = CacheBuilder.newBuilder()
-                .expireAfterAccess(expireAfterAccess, expireAfterAccessUnit)
-                .concurrencyLevel(16)
-                .build(new CacheLoader<CacheKey, RateLimiterObject>() {
-                    @Override
-                    public RateLimiterObject load(CacheKey key) {
-                        return new RateLimiterObject();
-                    }
-                });
+        this.algorithm = algorithm;
+        this.expireNanos = Math.max(1, expireAfterAccessUnit.toNanos(expireAfterAccess));
+        this.nextSweep = System.nanoTime() + expireNanos;
     }
 
     @Override
     public boolean acquire(Object key, double rate, long capacity) {
-        CacheKey cacheKey = new CacheKey(key, rate, capacity);
-        RateLimiterObject rateLimiterObject = cache.getUnchecked(cacheKey);
-        return rateLimiterObject.tryAcquire(1, rate, capacity);
+        return get(key, rate, capacity).tryAcquire(1);
+    }
+
+    /**
+     * 阻塞直到获取许可
+     *
+     * @param key      键
+     * @param rate     每秒许可数
+     * @param capacity 最大突发许可数
+     * @param permits  许可数
+     * @return 等待的时长(纳秒)
+     */
+    public long acquire(Object key, double rate, long capacity, long permits) {
+        return get(key, rate, capacity).acquire(permits);
+    }
+
+    /**
+     * 在超时时间内获取许可
+     *
+     * @param key      键
+     * @param rate     每秒许可数
+     * @param capacity 最大突发许可数
+     * @param permits  许可数
+     * @param timeout  超时时间
+     * @param unit     时间单位
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(Object key, double rate, long capacity, long permits, long timeout, TimeUnit unit) {
+        return get(key, rate, capacity).tryAcquire(permits, timeout, unit);
     }
 
     @Override
@@ -76,13 +114,31 @@ public class JdkRateLimiter extends RateLimiter {
         return rateLimiterName;
     }
 
+    private RateLimiterObject get(Object key, double rate, long capacity) {
+        CacheKey cacheKey = new CacheKey(key, rate, capacity);
+        RateLimiterObject limiter = cache.get(cacheKey);
+        if (limiter == null) {
+            limiter = cache.computeIfAbsent(cacheKey, k -> algorithm.create(rate, capacity));
+        }
+        long now = System.nanoTime();
+        if (now - nextSweep > 0 && sweeping.compareAndSet(false, true)) {
+            try {
+                nextSweep = now + expireNanos;
+                cache.values().removeIf(value -> now - value.getLastAccess() > expireNanos);
+            } finally {
+                sweeping.set(false);
+            }
+        }
+        return limiter;
+    }
+
     private static class CacheKey {
 
-        private Object key;
-        private double rate;
-        private long capacity;
+        private final Object key;
+        private final double rate;
+        private final long capacity;
 
-        public CacheKey(Object key, double rate, long capacity) {
+        CacheKey(Object key, double rate, long capacity) {
             this.key = key;
             this.rate = rate;
             this.capacity = capacity;
@@ -100,8 +156,57 @@ public class JdkRateLimiter extends RateLimiter {
 
         @Override
         public int hashCode() {
-            return Objects.hash(key, rate, capacity);
+            int result = Objects.hashCode(key);
+            result = 31 * result + Double.hashCode(rate);
+            return 31 * result + Long.hashCode(capacity);
         }
     }
 
+    /**
+     * 限流算法
+     */
+    public enum Algorithm {
+
+        /**
+         * 令牌桶, 允许容量以内的突发
+         */
+        TOKEN_BUCKET {
+            @Override
+            RateLimiterObject create(double rate, long capacity) {
+                return new TokenBucket(rate, capacity);
+            }
+        },
+        /**
+         * 通用信元速率算法, 与令牌桶等价
+         */
+        GCRA {
+            @Override
+            RateLimiterObject create(double rate, long capacity) {
+                return new Gcra(rate, capacity);
+            }
+        },
+        /**
+         * 滑动窗口日志, 窗口为 capacity / rate 秒, 精确但内存与容量成正比;
+         * 容量超过{@link SlidingWindowLog#MAX_CAPACITY}时改用滑动窗口计数
+         */
+        SLIDING_WINDOW_LOG {
+            @Override
+            RateLimiterObject create(double rate, long capacity) {
+                return capacity > SlidingWindowLog.MAX_CAPACITY
+                        ? new SlidingWindowCounter(rate, capacity) : new SlidingWindowLog(rate, capacity);
+            }
+        },
+        /**
+         * 滑动窗口计数, 窗口为 capacity / rate 秒, 按上一窗口占比估算
+         */
+        SLIDING_WINDOW_COUNTER {
+            @Override
+            RateLimiterObject create(double rate, long capacity) {
+                return new SlidingWindowCounter(rate, capacity);
+            }
+        };
+
+        abstract RateLimiterObject create(double rate, long capacity);
+    }
+
 }
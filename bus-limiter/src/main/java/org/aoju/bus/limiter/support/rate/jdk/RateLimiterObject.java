@@ -24,45 +24,149 @@
  ********************************************************************************/
 package org.aoju.bus.limiter.support.rate.jdk;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
 /**
- * 基于令牌桶实现的速率限制器
+ * 单个键的速率限制器
+ * 状态通过CAS更新, 时间使用{@link System#nanoTime()}, 获取许可时不加锁也不分配对象
  *
  * @author Kimi Liu
  * @version 6.1.1
  * @since JDK 1.8+
  */
-public class RateLimiterObject {
+public abstract class RateLimiterObject {
+
+    /**
+     * 每秒许可数
+     */
+    protected final double rate;
+
+    /**
+     * 最大突发许可数
+     */
+    protected final long capacity;
+
+    /**
+     * 最近一次访问时间(纳秒), 用于淘汰长期未使用的限制器, 精确到毫秒即可
+     */
+    private volatile long lastAccess;
+
+    private static final long ACCESS_PRECISION = TimeUnit.MILLISECONDS.toNanos(1);
 
-    private double rate;
+    protected RateLimiterObject(double rate, long capacity) {
+        if (rate <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("rate and capacity must be positive: rate=" + rate + ", capacity=" + capacity);
+        }
+        this.rate = rate;
+        this.capacity = capacity;
+        this.lastAccess = System.nanoTime();
+    }
+
+    /**
+     * 预占许可
+     *
+     * @param permits     许可数, 不超过capacity
+     * @param now         当前时间(纳秒)
+     * @param maxWaitNanos 最多愿意等待的时长
+     * @return 大于等于0表示已预占, 值为需要等待的纳秒数;
+     * 小于0表示未预占, 值为 -1 - 建议的重试等待时长, 永远无法满足时为{@link Long#MIN_VALUE}
+     */
+    protected abstract long reserve(long permits, long now, long maxWaitNanos);
+
+    /**
+     * 不等待地获取许可
+     *
+     * @param permits 许可数
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(long permits) {
+        if (permits > capacity) {
+            return false;
+        }
+        long now = touch();
+        return reserve(permits, now, 0) == 0;
+    }
 
-    private long capacity;
+    /**
+     * 在超时时间内获取许可, 等待期间不响应中断
+     *
+     * @param permits 许可数
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(long permits, long timeout, TimeUnit unit) {
+        if (permits > capacity) {
+            return false;
+        }
+        long now = touch();
+        long deadline = now + Math.min(Math.max(0, unit.toNanos(timeout)), Long.MAX_VALUE >> 2);
+        for (; ; ) {
+            long result = reserve(permits, now, deadline - now);
+            if (result >= 0) {
+                sleep(result);
+                return true;
+            }
+            long retryAfter = -1 - result;
+            if (result == Long.MIN_VALUE || now + retryAfter > deadline) {
+                return false;
+            }
+            sleep(Math.max(retryAfter, 1));
+            now = touch();
+        }
+    }
 
-    private long lastSyncTime;
+    /**
+     * 阻塞直到获取许可
+     *
+     * @param permits 许可数
+     * @return 等待的时长(纳秒)
+     */
+    public long acquire(long permits) {
+        if (permits > capacity) {
+            throw new IllegalArgumentException("permits " + permits + " exceed capacity " + capacity);
+        }
+        long start = touch();
+        long now = start;
+        for (; ; ) {
+            long result = reserve(permits, now, Long.MAX_VALUE);
+            if (result >= 0) {
+                sleep(result);
+                return now - start + result;
+            }
+            sleep(Math.max(-1 - result, 1));
+            now = touch();
+        }
+    }
 
-    private double storedPermits;
+    public long getLastAccess() {
+        return lastAccess;
+    }
 
-    public synchronized boolean tryAcquire(long permits, double rate, long capacity) {
-        if (permits > capacity) return false;
-        long now = System.currentTimeMillis();
-        if (rate != this.rate || capacity != this.capacity) {
-            this.rate = rate;
-            this.capacity = capacity;
-            this.storedPermits = capacity - permits;
-            this.lastSyncTime = now;
-            return true;
+    private long touch() {
+        long now = System.nanoTime();
+        // 减少对共享变量的写入
+        if (now - lastAccess > ACCESS_PRECISION) {
+            lastAccess = now;
         }
-        resync(now);
-        if (storedPermits >= permits) {
-            storedPermits = storedPermits - permits;
-            return true;
+        return now;
+    }
+
+    private static void sleep(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        while (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+            nanos = deadline - System.nanoTime();
         }
-        return false;
     }
 
-    private void resync(long nowMicros) {
-        double newPermits = (nowMicros - lastSyncTime) * rate / 1000 + storedPermits;
-        storedPermits = Math.max(newPermits, capacity);
-        this.lastSyncTime = nowMicros;
+    /**
+     * 秒数转纳秒, 溢出时取上限
+     */
+    protected static long toNanos(double seconds) {
+        double nanos = seconds * 1_000_000_000d;
+        return nanos >= Long.MAX_VALUE >> 2 ? Long.MAX_VALUE >> 2 : (long) Math.ceil(nanos);
     }
 
 }
@@ -0,0 +1,114 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.jdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 滑动窗口计数
+ * 只保存当前与上一个固定窗口的计数, 按上一窗口在滑动窗口中的占比加权估算,
+ * 内存固定; 窗口序号与两个计数压缩在一个long中CAS更新
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class SlidingWindowCounter extends RateLimiterObject {
+
+    private static final int COUNT_BITS = 21;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long INDEX_MASK = (1L << (Long.SIZE - 2 * COUNT_BITS)) - 1;
+
+    /**
+     * 容量上限, 受计数位数限制
+     */
+    public static final long MAX_CAPACITY = COUNT_MASK;
+
+    private final long windowNanos;
+
+    private final long origin;
+
+    /**
+     * 窗口序号(高22位) | 上一窗口计数(21位) | 当前窗口计数(低21位)
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public SlidingWindowCounter(double rate, long capacity) {
+        super(rate, capacity);
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity " + capacity + " exceeds " + MAX_CAPACITY);
+        }
+        this.windowNanos = Math.max(1, toNanos(capacity / rate));
+        this.origin = System.nanoTime();
+    }
+
+    @Override
+    protected long reserve(long permits, long now, long maxWaitNanos) {
+        long offset = Math.max(0, now - origin);
+        long index = (offset / windowNanos) & INDEX_MASK;
+        long elapsed = offset % windowNanos;
+        for (; ; ) {
+            long current = state.get();
+            long previous = (current >>> COUNT_BITS) & COUNT_MASK;
+            long count = current & COUNT_MASK;
+            long distance = (index - (current >>> (2 * COUNT_BITS))) & INDEX_MASK;
+            if (distance == 1) {
+                previous = count;
+                count = 0;
+            } else if (distance != 0) {
+                previous = 0;
+                count = 0;
+            }
+
+            double estimate = previous * ((double) (windowNanos - elapsed) / windowNanos) + count;
+            if (estimate + permits <= capacity) {
+                long next = index << (2 * COUNT_BITS) | previous << COUNT_BITS | (count + permits);
+                if (state.compareAndSet(current, next)) {
+                    return 0;
+                }
+                continue;
+            }
+            return -1 - retryAfter(permits, previous, count, elapsed);
+        }
+    }
+
+    /**
+     * 估算再次尝试前需要等待的时长
+     */
+    private long retryAfter(long permits, long previous, long count, long elapsed) {
+        long wait;
+        if (count + permits <= capacity && previous > 0) {
+            // 当前窗口内, 随上一窗口占比下降即可满足
+            double fraction = 1 - (double) (capacity - count - permits) / previous;
+            wait = (long) Math.ceil(windowNanos * fraction) - elapsed;
+        } else {
+            // 进入下一个窗口后, 当前计数成为上一窗口计数
+            double fraction = count == 0 ? 0 : Math.max(0, 1 - (double) (capacity - permits) / count);
+            wait = windowNanos - elapsed + (long) Math.ceil(windowNanos * fraction);
+        }
+        return Math.max(1, wait);
+    }
+
+}
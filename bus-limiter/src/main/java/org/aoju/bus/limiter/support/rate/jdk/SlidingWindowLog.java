@@ -0,0 +1,93 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.jdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 滑动窗口日志
+ * 在环形数组中记录最近capacity次许可的时间, 任意长度为 capacity / rate 秒的窗口内不超过capacity次;
+ * 精确但内存与容量成正比, 每个键最多占用{@link #MAX_CAPACITY}个long
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class SlidingWindowLog extends RateLimiterObject {
+
+    /**
+     * 容量上限(每个键32KB), 超过后应改用{@link SlidingWindowCounter}
+     */
+    public static final int MAX_CAPACITY = 1 << 12;
+
+    private final long windowNanos;
+
+    private final AtomicLongArray log;
+
+    /**
+     * 已发放的许可总数, 对capacity取模即最早一条记录的位置
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    public SlidingWindowLog(double rate, long capacity) {
+        super(rate, capacity);
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity " + capacity + " exceeds " + MAX_CAPACITY);
+        }
+        this.windowNanos = toNanos(capacity / rate);
+        this.log = new AtomicLongArray((int) capacity);
+        long expired = System.nanoTime() - windowNanos;
+        for (int i = 0; i < capacity; i++) {
+            log.set(i, expired);
+        }
+    }
+
+    @Override
+    protected long reserve(long permits, long now, long maxWaitNanos) {
+        for (; ; ) {
+            long h = head.get();
+            // 放行permits次后, 窗口内最早的一条是当前第permits早的记录
+            long oldest = log.get(index(h + permits - 1));
+            long at = Math.max(now, oldest + windowNanos);
+            long wait = at - now;
+            if (wait > maxWaitNanos) {
+                return -1 - wait;
+            }
+            if (head.compareAndSet(h, h + permits)) {
+                // 与并发请求合计超过容量时, 后者可能读到尚未写入的位置, 至多多放行一次
+                for (long i = h; i < h + permits; i++) {
+                    log.set(index(i), at);
+                }
+                return wait;
+            }
+        }
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+}
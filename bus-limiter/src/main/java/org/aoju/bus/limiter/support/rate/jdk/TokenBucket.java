@@ -0,0 +1,73 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.jdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 令牌桶
+ * 以令牌桶变空的时刻表示状态, 当前令牌数 = min(容量, (now - 变空时刻) * rate),
+ * 一次CAS即可完成补充与扣减; 等待获取时允许该时刻超过当前时间, 即预支未来的令牌
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class TokenBucket extends RateLimiterObject {
+
+    /**
+     * 桶满时对应的时长(纳秒)
+     */
+    private final long burstNanos;
+
+    /**
+     * 令牌桶变空的时刻(纳秒)
+     */
+    private final AtomicLong emptyAt;
+
+    public TokenBucket(double rate, long capacity) {
+        super(rate, capacity);
+        this.burstNanos = toNanos(capacity / rate);
+        // 初始为满桶
+        this.emptyAt = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    @Override
+    protected long reserve(long permits, long now, long maxWaitNanos) {
+        long cost = toNanos(permits / rate);
+        for (; ; ) {
+            long current = emptyAt.get();
+            long credit = Math.min(burstNanos, now - current);
+            long wait = cost - credit;
+            if (wait > maxWaitNanos) {
+                return -1 - wait;
+            }
+            if (emptyAt.compareAndSet(current, now - credit + cost)) {
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+}
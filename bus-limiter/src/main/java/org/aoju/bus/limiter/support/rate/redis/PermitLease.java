@@ -0,0 +1,163 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.redis;
+
+import org.aoju.bus.logger.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 从Redis批量租用的令牌
+ * 本地令牌用完后由一个请求向Redis领取下一批, 其余请求等待同一次领取;
+ * 超过租期未用完的令牌归还给Redis, 避免长期占用全局配额
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+class PermitLease {
+
+    private static final CompletableFuture<Boolean> GRANTED = CompletableFuture.completedFuture(true);
+
+    private static final CompletableFuture<Boolean> DENIED = CompletableFuture.completedFuture(false);
+
+    private final RedisRatelimiterObject object;
+
+    private final double rate;
+
+    private final long capacity;
+
+    private final long batch;
+
+    private final long leaseNanos;
+
+    private final AtomicLong permits = new AtomicLong();
+
+    private final AtomicReference<CompletableFuture<Long>> refilling = new AtomicReference<>();
+
+    private volatile long expireAt = System.nanoTime();
+
+    PermitLease(RedisRatelimiterObject object, double rate, long capacity, long batch, long leaseNanos) {
+        this.object = object;
+        this.rate = rate;
+        this.capacity = capacity;
+        this.batch = Math.max(1, Math.min(batch, capacity));
+        this.leaseNanos = leaseNanos;
+    }
+
+    /**
+     * 领取到的令牌可能被并发请求取完, 此时继续领取, 直到Redis不再发放
+     */
+    boolean tryAcquire() {
+        for (; ; ) {
+            if (take()) {
+                return true;
+            }
+            if (RedisRatelimiterObject.join(refill()) <= 0) {
+                return false;
+            }
+        }
+    }
+
+    CompletionStage<Boolean> tryAcquireAsync() {
+        if (take()) {
+            return GRANTED;
+        }
+        return refill().thenCompose(granted -> granted > 0 ? tryAcquireAsync() : DENIED);
+    }
+
+    boolean matches(double rate, long capacity) {
+        return this.rate == rate && this.capacity == capacity;
+    }
+
+    boolean isExpired(long now) {
+        return now - expireAt > 0;
+    }
+
+    /**
+     * 归还剩余的令牌
+     *
+     * @return 归还完成的通知, 失败时只记录日志
+     */
+    CompletableFuture<Void> release() {
+        long rest = permits.getAndSet(0);
+        if (rest <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return object.release(rest, rate, capacity).handle((value, e) -> {
+            if (e != null) {
+                Logger.warn("release {} permits of {} failed: {}", rest, object.getName(), e.getMessage());
+            }
+            return (Void) null;
+        }).toCompletableFuture();
+    }
+
+    private boolean take() {
+        if (isExpired(System.nanoTime())) {
+            release();
+            return false;
+        }
+        for (; ; ) {
+            long current = permits.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (permits.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private CompletableFuture<Long> refill() {
+        CompletableFuture<Long> created = new CompletableFuture<>();
+        for (; ; ) {
+            CompletableFuture<Long> current = refilling.get();
+            if (current != null) {
+                return current;
+            }
+            if (refilling.compareAndSet(null, created)) {
+                break;
+            }
+        }
+        object.lease(batch, 1, rate, capacity).whenComplete((granted, e) -> {
+            if (e == null && granted > 0) {
+                // 先延长租期再放入令牌, 避免新令牌被判定为过期
+                expireAt = System.nanoTime() + leaseNanos;
+                permits.addAndGet(granted);
+            }
+            refilling.set(null);
+            if (e == null) {
+                created.complete(granted);
+            } else {
+                created.completeExceptionally(e);
+            }
+        });
+        return created;
+    }
+
+}
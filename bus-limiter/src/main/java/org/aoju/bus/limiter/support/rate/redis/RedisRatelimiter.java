@@ -29,7 +29,18 @@ import org.aoju.bus.logger.Logger;
 import org.redisson.Redisson;
 import org.redisson.config.Config;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
+ * 基于Redis的分布式限流
+ * 默认每个许可访问一次Redis; 指定租用数量后, 每个节点按批向Redis租用令牌并在本地发放,
+ * 租期内未用完的令牌归还Redis, Redis访问次数约为请求数 / 租用数量
+ *
  * @author Kimi Liu
  * @version 6.1.1
  * @since JDK 1.8+
@@ -40,21 +51,68 @@ public class RedisRatelimiter extends RateLimiter {
 
     private RateLimiterRedission ratelimiterRedission;
 
+    /**
+     * 每次租用的令牌数, 不大于1时不租用
+     */
+    private final long leaseSize;
+
+    private final long leaseNanos;
+
+    private final Map<String, PermitLease> leases = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private volatile long nextSweep;
+
     /**
      * @param limiterName 名称
      * @param config      配置
      */
     public RedisRatelimiter(String limiterName, Config config) {
+        this(limiterName, config, 1, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param limiterName 名称
+     * @param config      配置
+     * @param leaseSize   每次租用的令牌数, 不超过限流容量
+     * @param leaseTime   租期, 到期未用完的令牌归还, 租用时必须大于0
+     * @param unit        租期单位
+     */
+    public RedisRatelimiter(String limiterName, Config config, long leaseSize, long leaseTime, TimeUnit unit) {
+        if (leaseSize > 1 && leaseTime <= 0) {
+            throw new IllegalArgumentException("leaseTime must be positive when leaseSize > 1");
+        }
         this.limiterName = limiterName;
         this.ratelimiterRedission = new RateLimiterRedission(config);
+        this.leaseSize = leaseSize;
+        this.leaseNanos = unit.toNanos(leaseTime);
+        this.nextSweep = System.nanoTime() + leaseNanos;
         Logger.info("RedisRateLimiter named {} start success!", limiterName);
 
     }
 
     @Override
     public boolean acquire(Object key, double rate, long capacity) {
-        RedisRatelimiterObject rateLimiterObject = ratelimiterRedission.getRedisRatelimiterObject(key.toString());
-        return rateLimiterObject.tryAcquire(1, rate, capacity);
+        if (leaseSize <= 1) {
+            return ratelimiterRedission.getRedisRatelimiterObject(key.toString()).tryAcquire(1, rate, capacity);
+        }
+        return lease(key.toString(), rate, capacity).tryAcquire();
+    }
+
+    /**
+     * 异步获取一个许可, 本地有租用的令牌时直接完成
+     *
+     * @param key      键
+     * @param rate     每秒许可数
+     * @param capacity 最大突发许可数
+     * @return 是否获取成功
+     */
+    public CompletionStage<Boolean> acquireAsync(Object key, double rate, long capacity) {
+        if (leaseSize <= 1) {
+            return ratelimiterRedission.getRedisRatelimiterObject(key.toString()).tryAcquireAsync(1, rate, capacity);
+        }
+        return lease(key.toString(), rate, capacity).tryAcquireAsync();
     }
 
     @Override
@@ -62,6 +120,48 @@ public class RedisRatelimiter extends RateLimiter {
         return limiterName;
     }
 
+    /**
+     * 归还所有租用的令牌并关闭连接
+     */
+    public void shutdown() {
+        // 等待归还完成后再关闭连接
+        CompletableFuture.allOf(leases.values().stream()
+                .map(PermitLease::release)
+                .toArray(CompletableFuture[]::new)).join();
+        leases.clear();
+        ratelimiterRedission.shutdown();
+    }
+
+    private PermitLease lease(String key, double rate, long capacity) {
+        PermitLease lease = leases.get(key);
+        if (lease == null || !lease.matches(rate, capacity)) {
+            lease = leases.compute(key, (k, old) -> {
+                if (old != null && old.matches(rate, capacity)) {
+                    return old;
+                }
+                if (old != null) {
+                    old.release();
+                }
+                return new PermitLease(ratelimiterRedission.getRedisRatelimiterObject(k), rate, capacity, leaseSize, leaseNanos);
+            });
+        }
+        long now = System.nanoTime();
+        if (now - nextSweep > 0 && sweeping.compareAndSet(false, true)) {
+            try {
+                nextSweep = now + leaseNanos;
+                leases.values().removeIf(value -> {
+                    if (value.isExpired(now)) {
+                        value.release();
+                        return true;
+                    }
+                    return false;
+                });
+            } finally {
+                sweeping.set(false);
+            }
+        }
+        return lease;
+    }
 
     /**
      * 继承自Redisson 实现自定义api
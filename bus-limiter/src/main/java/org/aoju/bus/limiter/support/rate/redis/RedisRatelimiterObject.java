@@ -24,74 +24,186 @@
  ********************************************************************************/
 package org.aoju.bus.limiter.support.rate.redis;
 
-import org.aoju.bus.core.lang.Normal;
+import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.redisson.RedissonObject;
-import org.redisson.api.RFuture;
+import org.redisson.RedissonScript;
+import org.redisson.api.RScript;
+import org.redisson.client.RedisException;
 import org.redisson.client.codec.Codec;
 import org.redisson.client.codec.LongCodec;
-import org.redisson.client.protocol.RedisCommand;
-import org.redisson.client.protocol.RedisCommands;
 import org.redisson.command.CommandAsyncExecutor;
 
-import java.util.Arrays;
-import java.util.Objects;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 /**
+ * Redis中的令牌桶
+ * 以键的剩余存活时间作为时钟, 令牌数、时钟与参数摘要保存在一个hash中, 每次只有一次HMGET和一次HMSET;
+ * 脚本通过EVALSHA执行, 服务端没有缓存脚本时回退为EVAL
+ *
  * @author Kimi Liu
  * @version 6.1.1
  * @since JDK 1.8+
  */
 public class RedisRatelimiterObject extends RedissonObject {
 
+    /**
+     * 领取令牌
+     * ARGV: 容量, 每秒令牌数, 希望领取的数量, 至少需要的数量, 参数摘要
+     * 返回实际领取的数量, 不足最少数量时为0
+     */
+    private static final String ACQUIRE_SCRIPT =
+            "local capacity = tonumber(ARGV[1])\n" +
+                    "local rate = tonumber(ARGV[2])\n" +
+                    "local requested = tonumber(ARGV[3])\n" +
+                    "local minimum = tonumber(ARGV[4])\n" +
+                    "local state = redis.call('hmget', KEYS[1], 'permit', 'pttl', 'hash')\n" +
+                    "local now = redis.call('pttl', KEYS[1])\n" +
+                    "local permit = capacity\n" +
+                    "if state[3] == ARGV[5] and now > 0 then\n" +
+                    "    permit = math.min(capacity, tonumber(state[1]) + (tonumber(state[2]) - now) * rate / 1000)\n" +
+                    "else\n" +
+                    "    now = 3153600000000\n" +
+                    "end\n" +
+                    "local granted = 0\n" +
+                    "if permit >= minimum then\n" +
+                    "    granted = math.min(requested, math.floor(permit))\n" +
+                    "end\n" +
+                    "redis.call('hmset', KEYS[1], 'permit', permit - granted, 'pttl', now, 'hash', ARGV[5])\n" +
+                    "if now == 3153600000000 then\n" +
+                    "    redis.call('pexpire', KEYS[1], now)\n" +
+                    "end\n" +
+                    "return granted";
+
+    /**
+     * 归还未使用的令牌
+     * ARGV: 归还数量, 参数摘要, 容量
+     */
+    private static final String RELEASE_SCRIPT =
+            "local state = redis.call('hmget', KEYS[1], 'permit', 'hash')\n" +
+                    "if state[2] == ARGV[2] then\n" +
+                    "    redis.call('hset', KEYS[1], 'permit', math.min(tonumber(ARGV[3]), tonumber(state[1]) + tonumber(ARGV[1])))\n" +
+                    "end\n" +
+                    "return 0";
+
+    private static final String ACQUIRE_SHA = sha1(ACQUIRE_SCRIPT);
+
+    private static final String RELEASE_SHA = sha1(RELEASE_SCRIPT);
+
+    private final RScript script;
+
+    private final List<Object> keys;
 
     public RedisRatelimiterObject(Codec codec, CommandAsyncExecutor commandExecutor, String name) {
         super(codec, commandExecutor, name);
+        this.script = new RedissonScript(commandExecutor, LongCodec.INSTANCE);
+        this.keys = Collections.singletonList(name);
     }
 
     public RedisRatelimiterObject(CommandAsyncExecutor commandExecutor, String name) {
-        super(commandExecutor, name);
+        this(LongCodec.INSTANCE, commandExecutor, name);
     }
 
     public boolean tryAcquire(long permits, double rate, long capacity) {
         if (permits > capacity) return false;
-        return get(tryAcquireAsync(RedisCommands.EVAL_LONG, permits, rate, capacity)) != -1;
+        return join(lease(permits, permits, rate, capacity)) >= permits;
+    }
+
+    public CompletionStage<Boolean> tryAcquireAsync(long permits, double rate, long capacity) {
+        if (permits > capacity) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return lease(permits, permits, rate, capacity).thenApply(granted -> granted >= permits);
+    }
+
+    /**
+     * 批量领取令牌
+     *
+     * @param requested 希望领取的数量
+     * @param minimum   至少需要的数量, 不足时不领取
+     * @param rate      每秒令牌数
+     * @param capacity  容量
+     * @return 实际领取的数量
+     */
+    public CompletionStage<Long> lease(long requested, long minimum, double rate, long capacity) {
+        return eval(ACQUIRE_SHA, ACQUIRE_SCRIPT, capacity, rate, requested, minimum, digest(rate, capacity));
     }
 
-    private <T> RFuture<T> tryAcquireAsync(RedisCommand<T> command, long permits, double rate, long capacity) {
-        String hash = Objects.hash(rate, capacity) + Normal.EMPTY;
-        return commandExecutor.evalWriteAsync(getName(), LongCodec.INSTANCE, command,
-                "local capacity = tonumber(ARGV[1])\n" +
-                        "local rate = tonumber(ARGV[2])\n" +
-                        "local acq = tonumber(ARGV[3])\n" +
-                        "if (redis.call('exists',KEYS[1]) == 0 or redis.call('hget',KEYS[1],'hash') ~= ARGV[4]) then\n" +
-                        "    -- create\n" +
-                        "    redis.call('hset', KEYS[1], 'capacity ', capacity)\n" +
-                        "    redis.call('hset', KEYS[1], 'rate', rate)\n" +
-                        "    redis.call('hset', KEYS[1], 'permit', capacity-acq)\n" +
-                        "    redis.call('hset', KEYS[1], 'hash', ARGV[4])\n" +
-                        "    redis.call('expire', KEYS[1],3153600000000)\n" +
-                        "    redis.call('hset', KEYS[1], 'pttl',3153600000000000)\n" +
-                        "    return capacity-acq\n" +
-                        "end\n" +
-                        "local rate = tonumber(redis.call('hget', KEYS[1],'rate'))\n" +
-                        "local now = redis.call('pttl', KEYS[1])\n" +
-                        "local pttl = tonumber(redis.call('hget', KEYS[1], 'pttl'))\n" +
-                        "local permit = tonumber(redis.call('hget', KEYS[1], 'permit'))\n" +
-                        "local newPermit = permit + ((pttl-now)/1000*rate)\n" +
-                        "if(newPermit >= capacity) then\n" +
-                        "     redis.call('hset', KEYS[1], 'permit', capacity-acq)\n" +
-                        "     redis.call('hset', KEYS[1], 'pttl', now)\n" +
-                        "     return capacity-acq\n" +
-                        "end\n" +
-                        "if(newPermit >= acq) then\n" +
-                        "    redis.call('hset', KEYS[1], 'permit', newPermit-acq)\n" +
-                        "    redis.call('hset', KEYS[1], 'pttl', now)\n" +
-                        "    return newPermit-acq\n" +
-                        "end\n" +
-                        "return -1 ",
-                Arrays.asList(getName()),
-                permits, rate, capacity, hash);
+    /**
+     * 归还未使用的令牌, 参数变化后的旧令牌直接丢弃
+     *
+     * @param permits  数量
+     * @param rate     每秒令牌数
+     * @param capacity 容量
+     * @return 完成通知
+     */
+    public CompletionStage<Long> release(long permits, double rate, long capacity) {
+        return eval(RELEASE_SHA, RELEASE_SCRIPT, permits, digest(rate, capacity), capacity);
     }
 
+    private CompletionStage<Long> eval(String sha, String lua, Object... args) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        script.<Long>evalShaAsync(getName(), RScript.Mode.READ_WRITE, sha, RScript.ReturnType.INTEGER, keys, args)
+                .whenComplete((value, e) -> {
+                    if (e == null) {
+                        result.complete(value);
+                    } else if (isNoScript(e)) {
+                        // EVAL会同时缓存脚本, 之后的EVALSHA即可命中
+                        script.<Long>evalAsync(getName(), RScript.Mode.READ_WRITE, lua, RScript.ReturnType.INTEGER, keys, args)
+                                .whenComplete((retry, error) -> {
+                                    if (error == null) {
+                                        result.complete(retry);
+                                    } else {
+                                        result.completeExceptionally(error);
+                                    }
+                                });
+                    } else {
+                        result.completeExceptionally(e);
+                    }
+                });
+        return result;
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof RedisException && cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT");
+    }
+
+    private static String digest(double rate, long capacity) {
+        return rate + ":" + capacity;
+    }
+
+    /**
+     * 等待结果, 异常按原类型抛出
+     */
+    static <T> T join(CompletionStage<T> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new InstrumentException(e.getCause());
+        }
+    }
+
+    private static String sha1(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new InstrumentException(e);
+        }
+    }
 
 }
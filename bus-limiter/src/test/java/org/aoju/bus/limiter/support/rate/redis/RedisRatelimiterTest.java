@@ -0,0 +1,174 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.redis;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.config.Config;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 租用令牌在嵌入式Redis上的行为
+ *
+ * @author Kimi Liu
+ * @version 6.1.1
+ * @since JDK 1.8+
+ */
+public class RedisRatelimiterTest {
+
+    /**
+     * 测试期间几乎不补充令牌
+     */
+    private static final double RATE = 0.001;
+
+    private static RedisServer server;
+
+    private static Config config;
+
+    @BeforeClass
+    public static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = new RedisServer(port);
+        server.start();
+        config = new Config();
+        // 默认的FstCodec在JDK 9+上反射访问JDK内部字段会失败,脚本参数本身使用LongCodec
+        config.setCodec(StringCodec.INSTANCE);
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + port);
+    }
+
+    @AfterClass
+    public static void stopRedis() {
+        server.stop();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void leaseRequiresLeaseTime() {
+        new RedisRatelimiter("test", config, 10, 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void contendedLeaseGrantsEveryAvailablePermit() throws Exception {
+        RedisRatelimiter limiter = new RedisRatelimiter("test", config, 10, 1, TimeUnit.MINUTES);
+        try {
+            String key = UUID.randomUUID().toString();
+            // 请求总数小于容量, 全部都应获得许可
+            int granted = concurrently(16, 10, () -> limiter.acquire(key, RATE, 200));
+            assertEquals(160, granted);
+        } finally {
+            limiter.shutdown();
+        }
+    }
+
+    @Test
+    public void contendedAsyncLeaseGrantsEveryAvailablePermit() throws Exception {
+        RedisRatelimiter limiter = new RedisRatelimiter("test", config, 10, 1, TimeUnit.MINUTES);
+        try {
+            String key = UUID.randomUUID().toString();
+            int granted = concurrently(16, 10,
+                    () -> limiter.acquireAsync(key, RATE, 200).toCompletableFuture().get());
+            assertEquals(160, granted);
+        } finally {
+            limiter.shutdown();
+        }
+    }
+
+    @Test
+    public void leaseNeverExceedsCapacity() throws Exception {
+        RedisRatelimiter limiter = new RedisRatelimiter("test", config, 7, 1, TimeUnit.MINUTES);
+        try {
+            String key = UUID.randomUUID().toString();
+            int granted = concurrently(16, 10, () -> limiter.acquire(key, RATE, 50));
+            assertEquals(50, granted);
+        } finally {
+            limiter.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdownReturnsUnusedPermits() {
+        String key = UUID.randomUUID().toString();
+        RedisRatelimiter leasing = new RedisRatelimiter("test", config, 10, 1, TimeUnit.MINUTES);
+        leasing.acquire(key, RATE, 20);
+        leasing.shutdown();
+
+        RedisRatelimiter direct = new RedisRatelimiter("test", config);
+        try {
+            for (int i = 0; i < 19; i++) {
+                assertEquals("permit " + i, true, direct.acquire(key, RATE, 20));
+            }
+            assertFalse(direct.acquire(key, RATE, 20));
+        } finally {
+            direct.shutdown();
+        }
+    }
+
+    /**
+     * 多个线程同时开始, 每个线程请求固定次数
+     *
+     * @return 获得许可的次数
+     */
+    private static int concurrently(int threads, int attempts, Callable<Boolean> acquire) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CyclicBarrier start = new CyclicBarrier(threads);
+            AtomicInteger granted = new AtomicInteger();
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < attempts; j++) {
+                        if (acquire.call()) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            return granted.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
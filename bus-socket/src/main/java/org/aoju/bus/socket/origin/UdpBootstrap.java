@@ -240,11 +240,10 @@ public class UdpBootstrap<Request> implements Runnable {
         }
         for (int i = 0; i < config.getThreadNum(); i++) {
             RingBuffer<UdpReadEvent<Request>> ringBuffer = readRingBuffers[i];
-            try {
-                int index = ringBuffer.tryNextWriteIndex();
+            // 发布一个空事件以唤醒等待中的消费线程
+            int index = ringBuffer.tryNextWriteIndex();
+            if (index >= 0) {
                 ringBuffer.publishWriteIndex(index);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
             }
         }
         updateServiceStatus(STATUS_STOPPED);